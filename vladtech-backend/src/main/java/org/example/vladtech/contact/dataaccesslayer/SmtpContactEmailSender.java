@@ -3,6 +3,7 @@ package org.example.vladtech.contact.dataaccesslayer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.example.vladtech.contact.domain.ContactEmail;
+import org.example.vladtech.utils.MailDelivery;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Repository;
@@ -11,9 +12,11 @@ import org.springframework.stereotype.Repository;
 public class SmtpContactEmailSender implements ContactEmailSender {
 
     private final JavaMailSender mailSender;
+    private final MailDelivery mailDelivery;
 
-    public SmtpContactEmailSender(JavaMailSender mailSender) {
+    public SmtpContactEmailSender(JavaMailSender mailSender, MailDelivery mailDelivery) {
         this.mailSender = mailSender;
+        this.mailDelivery = mailDelivery;
     }
 
     @Override
@@ -37,7 +40,7 @@ public class SmtpContactEmailSender implements ContactEmailSender {
             helper.setSubject(email.getTitle());
             helper.setText(buildHtmlBody(email), true); // true = HTML
 
-            mailSender.send(mimeMessage);
+            mailDelivery.send(mimeMessage);
         } catch (MessagingException e) {
             throw new RuntimeException("Failed to send contact email", e);
         }
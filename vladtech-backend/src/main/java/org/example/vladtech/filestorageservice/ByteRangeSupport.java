@@ -0,0 +1,125 @@
+package org.example.vladtech.filestorageservice;
+
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * HTTP Range / If-Range helpers shared by the file serving endpoints.
+ */
+public final class ByteRangeSupport {
+
+    private ByteRangeSupport() {
+    }
+
+    public record ByteRange(long start, long end) {
+        public long length() {
+            return end - start + 1;
+        }
+
+        public String contentRange(long totalLength) {
+            return "bytes " + start + "-" + end + "/" + totalLength;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RangeOpener {
+        InputStream open(ByteRange range) throws IOException;
+    }
+
+    /**
+     * Whether a Range header parses as a byte range set. A malformed header is ignored and the
+     * full representation served, as RFC 9110 asks; only well-formed ranges can earn a 416.
+     */
+    public static boolean isWellFormed(String rangeHeader) {
+        try {
+            return !HttpRange.parseRanges(rangeHeader).isEmpty();
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves a Range header against a representation length. Returns an empty list when the
+     * header is malformed or none of its ranges can be satisfied (the caller answers 416), so
+     * callers check {@link #isWellFormed} first.
+     */
+    public static List<ByteRange> resolve(String rangeHeader, long length) {
+        List<HttpRange> requested;
+        try {
+            requested = HttpRange.parseRanges(rangeHeader);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+        long total = 0;
+        for (HttpRange range : requested) {
+            long start = range.getRangeStart(length);
+            long end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                continue;
+            }
+            ranges.add(new ByteRange(start, end));
+            total += end - start + 1;
+        }
+
+        // Same guard as Spring's ResourceRegion handling: asking for more bytes than the
+        // representation holds is treated as abuse rather than served.
+        if (total > length) {
+            return Collections.emptyList();
+        }
+        return ranges;
+    }
+
+    /**
+     * Evaluates an If-Range precondition. An entity tag must match strongly; a date must match
+     * the representation's last-modified time to the second. No header means the range applies.
+     */
+    public static boolean ifRangeMatches(String ifRange, String etag, long lastModifiedMillis) {
+        if (ifRange == null || ifRange.isBlank()) {
+            return true;
+        }
+        String value = ifRange.trim();
+        if (value.startsWith("\"") || value.startsWith("W/")) {
+            return etag != null && !value.startsWith("W/") && value.equals(etag);
+        }
+        if (lastModifiedMillis < 0) {
+            return false;
+        }
+        try {
+            long ifRangeSeconds = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+            return ifRangeSeconds == lastModifiedMillis / 1000;
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes a multipart/byteranges body, opening each part through the given opener so the
+     * caller controls how bytes are fetched.
+     */
+    public static void writeMultipart(OutputStream out, List<ByteRange> ranges, String contentType,
+                                      long totalLength, String boundary, RangeOpener opener) throws IOException {
+        for (ByteRange range : ranges) {
+            String partHeader = "\r\n--" + boundary + "\r\n"
+                    + "Content-Type: " + contentType + "\r\n"
+                    + "Content-Range: " + range.contentRange(totalLength) + "\r\n\r\n";
+            out.write(partHeader.getBytes(StandardCharsets.US_ASCII));
+            try (InputStream in = opener.open(range)) {
+                in.transferTo(out);
+            }
+        }
+        out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+}
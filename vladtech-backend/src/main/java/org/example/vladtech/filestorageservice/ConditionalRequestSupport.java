@@ -0,0 +1,49 @@
+package org.example.vladtech.filestorageservice;
+
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Conditional GET evaluation (If-None-Match / If-Modified-Since) for the file serving endpoints.
+ */
+public final class ConditionalRequestSupport {
+
+    private ConditionalRequestSupport() {
+    }
+
+    /**
+     * Returns true when the client's cached copy is current and a 304 can be sent. Per RFC 9110,
+     * If-None-Match takes precedence and uses weak comparison; If-Modified-Since is only
+     * consulted when no If-None-Match header was sent.
+     */
+    public static boolean isNotModified(String ifNoneMatch, String ifModifiedSince, String etag, long lastModifiedMillis) {
+        if (ifNoneMatch != null && !ifNoneMatch.isBlank()) {
+            if (etag == null) {
+                return false;
+            }
+            String current = opaqueTag(etag);
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || opaqueTag(tag).equals(current)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        if (ifModifiedSince != null && !ifModifiedSince.isBlank() && lastModifiedMillis >= 0) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                return lastModifiedMillis / 1000 <= since;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+}
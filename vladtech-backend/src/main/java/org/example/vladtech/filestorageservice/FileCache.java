@@ -0,0 +1,264 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-budgeted cache of hot GridFS files keyed by ObjectId.
+ *
+ * Every looked-up file gets a small metadata entry (its GridFSFile), so repeat requests skip
+ * the fs.files query; files no larger than {@code max-entry-bytes} also keep their content,
+ * optionally in direct (off-heap) buffers. Entries are kept in LRU order, and a TinyLFU-style
+ * frequency sketch decides admission: when the budget is full a newcomer only displaces the
+ * LRU victim if it has been requested more often, so a burst of one-off downloads cannot flush
+ * the gallery images everyone keeps asking for.
+ */
+@Component
+public class FileCache {
+
+    // Rough per-entry bookkeeping cost charged against the budget (map node, GridFSFile, metadata)
+    static final long ENTRY_OVERHEAD_BYTES = 512;
+
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final boolean offHeap;
+
+    private final LinkedHashMap<ObjectId, CachedFile> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final FrequencySketch sketch = new FrequencySketch(4096);
+    private long usedBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public FileCache(@Value("${filestorage.cache.max-bytes:67108864}") long maxBytes,
+                     @Value("${filestorage.cache.max-entry-bytes:2097152}") long maxEntryBytes,
+                     @Value("${filestorage.cache.off-heap:false}") boolean offHeap) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Returns the cached entry (with or without content) and records the access, or null.
+     */
+    public synchronized CachedFile get(ObjectId id) {
+        sketch.increment(id);
+        CachedFile entry = entries.get(id);
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * True when a file of this length may be cached with its content.
+     */
+    public boolean admitsContent(long length) {
+        return maxBytes > 0 && length >= 0 && length <= maxEntryBytes;
+    }
+
+    public synchronized void putMetadata(ObjectId id, GridFSFile file) {
+        if (maxBytes <= 0 || entries.containsKey(id)) {
+            return;
+        }
+        admit(id, new CachedFile(file, null));
+    }
+
+    public synchronized void putContent(ObjectId id, GridFSFile file, byte[] content) {
+        if (!admitsContent(content.length)) {
+            return;
+        }
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(content.length) : ByteBuffer.allocate(content.length);
+        buffer.put(content).flip();
+        admit(id, new CachedFile(file, buffer.asReadOnlyBuffer()));
+    }
+
+    public synchronized void invalidate(ObjectId id) {
+        CachedFile removed = entries.remove(id);
+        if (removed != null) {
+            usedBytes -= removed.weight();
+        }
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(entries.size(), usedBytes, maxBytes, offHeap,
+                hits.sum(), misses.sum(), evictions.sum(), rejections.sum());
+    }
+
+    private void admit(ObjectId id, CachedFile candidate) {
+        long weight = candidate.weight();
+        if (weight > maxBytes) {
+            rejections.increment();
+            return;
+        }
+
+        CachedFile previous = entries.remove(id);
+        if (previous != null) {
+            usedBytes -= previous.weight();
+        }
+
+        int candidateFrequency = sketch.frequency(id);
+        Iterator<Map.Entry<ObjectId, CachedFile>> lru = entries.entrySet().iterator();
+        while (usedBytes + weight > maxBytes && lru.hasNext()) {
+            Map.Entry<ObjectId, CachedFile> victim = lru.next();
+            if (previous == null && sketch.frequency(victim.getKey()) > candidateFrequency) {
+                // The victim is hotter than the newcomer: keep it and drop the candidate.
+                rejections.increment();
+                return;
+            }
+            usedBytes -= victim.getValue().weight();
+            lru.remove();
+            evictions.increment();
+        }
+
+        entries.put(id, candidate);
+        usedBytes += weight;
+    }
+
+    /**
+     * A cached file: always its GridFSFile, plus its content when it was small enough.
+     */
+    public static final class CachedFile {
+        private final GridFSFile file;
+        private final ByteBuffer content;
+
+        CachedFile(GridFSFile file, ByteBuffer content) {
+            this.file = file;
+            this.content = content;
+        }
+
+        public GridFSFile getFile() {
+            return file;
+        }
+
+        public boolean hasContent() {
+            return content != null;
+        }
+
+        /**
+         * Independent stream over the cached bytes [start, endInclusive].
+         */
+        public InputStream openStream(long start, long endInclusive) {
+            ByteBuffer view = content.duplicate();
+            view.position((int) start);
+            view.limit((int) endInclusive + 1);
+            return new ByteBufferInputStream(view);
+        }
+
+        public InputStream openStream() {
+            return openStream(0, content.limit() - 1L);
+        }
+
+        long weight() {
+            return ENTRY_OVERHEAD_BYTES + (content != null ? content.capacity() : 0);
+        }
+    }
+
+    public record CacheStats(int entries, long usedBytes, long maxBytes, boolean offHeap,
+                             long hits, long misses, long evictions, long rejections) {
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit access counters. Counters are halved once the number of
+     * recorded accesses reaches ten times the table width, so popularity decays over time.
+     */
+    static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+        private final byte[][] counters;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int width) {
+            int size = Integer.highestOneBit(Math.max(16, width));
+            this.counters = new byte[DEPTH][size];
+            this.mask = size - 1;
+            this.sampleSize = size * 10;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int index = index(hash, row);
+                if (counters[row][index] < 15) {
+                    counters[row][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int min = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, counters[row][index(hash, row)]);
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            int h = (hash ^ SEEDS[row]) * 0x45D9F3B;
+            h ^= h >>> 16;
+            return h & mask;
+        }
+
+        private void reset() {
+            for (byte[] row : counters) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package org.example.vladtech.filestorageservice;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
@@ -10,12 +11,17 @@ import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.bson.Document; // explicit import to use Document type
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
@@ -25,6 +31,13 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class FileController {
 
+    // For content-versioned URLs, which never change meaning
+    static final CacheControl IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+    // For uploads still waiting for media processing: revalidated, so the optimized copy replaces them
+    static final CacheControl PENDING = CacheControl.noCache().cachePublic();
+    // One file plus room for part headers and the odd extra field
+    private static final long MAX_STREAM_BODY_BYTES = FileStorageService.MAX_FILE_SIZE + 64 * 1024;
+
     private final FileStorageService fileStorageService;
 
     @PostMapping
@@ -34,7 +47,7 @@ public class FileController {
 
             Map<String, String> response = new HashMap<>();
             response.put("id", fileId);
-            response.put("url", "/uploads/reviews/" + fileId);
+            response.put("url", fileStorageService.urlFor(fileId));
             response.put("filename", file.getOriginalFilename());
 
             log.info("File uploaded successfully: id={}, filename={}", fileId, file.getOriginalFilename());
@@ -54,43 +67,123 @@ public class FileController {
         }
     }
 
+    /**
+     * Same contract as {@link #uploadReviewImage}, but the "file" part is streamed straight into
+     * GridFS as it is read from the request instead of being buffered by the multipart resolver.
+     */
+    @PostMapping("/stream")
+    public ResponseEntity<?> uploadReviewImageStream(HttpServletRequest request) {
+        try {
+            MultipartStreamParser parser = new MultipartStreamParser(request.getInputStream(),
+                    MultipartStreamParser.boundaryOf(request.getContentType()), MAX_STREAM_BODY_BYTES);
+
+            MultipartStreamParser.Part part;
+            while ((part = parser.nextPart()) != null) {
+                if (!"file".equals(part.getName()) || !part.isFile()) {
+                    continue;
+                }
+                String fileId = fileStorageService.saveStream(part.getFilename(), part.getContentType(), part.getInputStream());
+
+                Map<String, String> response = new HashMap<>();
+                response.put("id", fileId);
+                response.put("url", fileStorageService.urlFor(fileId));
+                response.put("filename", part.getFilename());
+
+                log.info("File streamed successfully: id={}, filename={}", fileId, part.getFilename());
+                return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            }
+            throw new IllegalArgumentException("Missing file part");
+
+        } catch (IllegalArgumentException | MultipartStreamParser.MalformedMultipartException e) {
+            log.warn("Invalid streamed upload request: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } catch (IOException e) {
+            log.error("Failed to stream upload", e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to upload file");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<StreamingResponseBody> getReviewImage(
             @PathVariable String id,
-            @RequestParam(value = "download", defaultValue = "false") boolean forceDownload) {
+            @RequestParam(value = "download", defaultValue = "false") boolean forceDownload,
+            @RequestParam(value = "w", required = false) Integer width,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+        return serveFile(id, null, forceDownload, width, rangeHeader, ifRange, ifNoneMatch, ifModifiedSince);
+    }
+
+    /**
+     * Content-versioned form of {@link #getReviewImage}: the URL changes with the content, so
+     * the response may be cached for a year without revalidation. A stale version redirects
+     * to the current URL.
+     */
+    @GetMapping("/{id}/v/{version}")
+    public ResponseEntity<StreamingResponseBody> getVersionedReviewImage(
+            @PathVariable String id,
+            @PathVariable String version,
+            @RequestParam(value = "download", defaultValue = "false") boolean forceDownload,
+            @RequestParam(value = "w", required = false) Integer width,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince) {
+        return serveFile(id, version, forceDownload, width, rangeHeader, ifRange, ifNoneMatch, ifModifiedSince);
+    }
 
+    private ResponseEntity<StreamingResponseBody> serveFile(String id,
+                                                            String version,
+                                                            boolean forceDownload,
+                                                            Integer width,
+                                                            String rangeHeader,
+                                                            String ifRange,
+                                                            String ifNoneMatch,
+                                                            String ifModifiedSince) {
         try {
-            FileStorageService.FileResourceWithMetadata fileData =
-                    fileStorageService.loadResourceWithMetadata(id);
+            // Only reads the fs.files document; chunks are not touched until the body is written.
+            FileStorageService.FileResourceWithMetadata fileData = fileStorageService.loadResourceWithMetadata(id);
+
+            if (version != null) {
+                // Variants carry their own hash; the URL is versioned by the original's
+                String current = FileStorageService.versionOf(fileData.getMetadata());
+                if (!version.equals(current)) {
+                    log.debug("Stale version requested: id={}, version={}, current={}", id, version, current);
+                    String location = MediaUrls.reviewUrl(id, current) + (width != null ? "?w=" + width : "");
+                    return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(location)).build();
+                }
+            }
+            if (width != null) {
+                fileData = fileStorageService.loadResourceWithMetadata(id, width);
+            }
 
-            Resource resource = fileData.getResource();
-            Document metadata = fileData.getMetadata();
-            String contentType = fileData.getContentType();
+            String etag = fileData.getETag();
+            long lastModified = fileData.getLastModified();
 
-            // Get original filename from metadata or fallback to resource filename
-            String originalFilename = (metadata != null && metadata.containsKey("originalFilename"))
-                    ? metadata.getString("originalFilename")
-                    : resource.getFilename();
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.parseMediaType(contentType));
-
-            // Try to set content length if available — but keep it optional.
-            try {
-                long contentLength = resource.contentLength();
-                headers.setContentLength(contentLength);
-            } catch (IOException e) {
-                // Don't propagate; content length may not be determinable for GridFS streams.
-                log.warn("Could not determine content length for file: {}", id, e);
+            if (ConditionalRequestSupport.isNotModified(ifNoneMatch, ifModifiedSince, etag, lastModified)) {
+                log.debug("File not modified: id={}, etag={}", id, etag);
+                HttpHeaders notModifiedHeaders = notModifiedHeaders(etag, lastModified);
+                setCacheControl(notModifiedHeaders, version != null, fileStorageService.hasFinalContent(fileData));
+                return new ResponseEntity<>(notModifiedHeaders, HttpStatus.NOT_MODIFIED);
             }
 
-            // Set content disposition (inline for browser display, attachment for download)
-            String disposition = forceDownload ? "attachment" : "inline";
-            headers.set(HttpHeaders.CONTENT_DISPOSITION,
-                    disposition + "; filename=\"" + originalFilename + "\"");
+            Resource resource = fileData.getResource();
+            HttpHeaders headers = fileHeaders(id, fileData, forceDownload);
+            setCacheControl(headers, version != null, fileStorageService.hasFinalContent(fileData));
+            String originalFilename = originalFilename(fileData);
+            String contentType = fileData.getContentType();
 
-            // Set cache headers for better performance (images typically don't change)
-            headers.setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
+            long length = fileData.getLength();
+            if (rangeHeader != null && length >= 0 && ByteRangeSupport.isWellFormed(rangeHeader)
+                    && ByteRangeSupport.ifRangeMatches(ifRange, etag, lastModified)) {
+                return serveRanges(id, fileData, headers, rangeHeader, length);
+            }
 
             log.debug("Serving file: id={}, filename={}, contentType={}", id, originalFilename, contentType);
 
@@ -124,6 +217,115 @@ public class FileController {
         }
     }
 
+    /**
+     * Versioned URLs of final content are cached as immutable; content that may still be
+     * replaced (by media processing, or by the width variant it stands in for) is revalidated
+     * on every use, whatever the URL.
+     */
+    static void setCacheControl(HttpHeaders headers, boolean versioned, boolean finalContent) {
+        if (!finalContent) {
+            headers.setCacheControl(PENDING);
+        } else if (versioned) {
+            headers.setCacheControl(IMMUTABLE);
+        }
+    }
+
+    static HttpHeaders notModifiedHeaders(String etag, long lastModified) {
+        HttpHeaders headers = new HttpHeaders();
+        if (etag != null) {
+            headers.setETag(etag);
+        }
+        if (lastModified >= 0) {
+            headers.setLastModified(lastModified);
+        }
+        headers.setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
+        return headers;
+    }
+
+    /**
+     * Headers of a full-body response for a stored file; shared with {@link NonBlockingFileFilter}.
+     */
+    static HttpHeaders fileHeaders(String id, FileStorageService.FileResourceWithMetadata fileData, boolean forceDownload) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType(fileData.getContentType()));
+
+        // Try to set content length if available — but keep it optional.
+        try {
+            long contentLength = fileData.getResource().contentLength();
+            headers.setContentLength(contentLength);
+        } catch (IOException e) {
+            // Don't propagate; content length may not be determinable for GridFS streams.
+            log.warn("Could not determine content length for file: {}", id, e);
+        }
+
+        // Set content disposition (inline for browser display, attachment for download)
+        String disposition = forceDownload ? "attachment" : "inline";
+        headers.set(HttpHeaders.CONTENT_DISPOSITION,
+                disposition + "; filename=\"" + originalFilename(fileData) + "\"");
+
+        // Set cache headers for better performance (images typically don't change)
+        headers.setCacheControl(CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
+
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (fileData.getETag() != null) {
+            headers.setETag(fileData.getETag());
+        }
+        if (fileData.getLastModified() >= 0) {
+            headers.setLastModified(fileData.getLastModified());
+        }
+        return headers;
+    }
+
+    // Original filename from metadata, or the stored filename
+    private static String originalFilename(FileStorageService.FileResourceWithMetadata fileData) {
+        Document metadata = fileData.getMetadata();
+        return (metadata != null && metadata.containsKey("originalFilename"))
+                ? metadata.getString("originalFilename")
+                : fileData.getResource().getFilename();
+    }
+
+    private ResponseEntity<StreamingResponseBody> serveRanges(String id,
+                                                             FileStorageService.FileResourceWithMetadata fileData,
+                                                             HttpHeaders headers,
+                                                             String rangeHeader,
+                                                             long length) {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve(rangeHeader, length);
+
+        if (ranges.isEmpty()) {
+            log.debug("Unsatisfiable range for file {}: {}", id, rangeHeader);
+            HttpHeaders errorHeaders = new HttpHeaders();
+            errorHeaders.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            errorHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            return new ResponseEntity<>(errorHeaders, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        if (ranges.size() == 1) {
+            ByteRangeSupport.ByteRange range = ranges.get(0);
+            headers.setContentLength(range.length());
+            headers.set(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+
+            log.debug("Serving range {} of file {}", range, id);
+            StreamingResponseBody body = outputStream -> {
+                try (InputStream in = fileStorageService.openRange(fileData, range.start(), range.end())) {
+                    in.transferTo(outputStream);
+                    outputStream.flush();
+                }
+            };
+            return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String partContentType = fileData.getContentType();
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+
+        log.debug("Serving {} ranges of file {}", ranges.size(), id);
+        StreamingResponseBody body = outputStream -> ByteRangeSupport.writeMultipart(
+                outputStream, ranges, partContentType, length, boundary,
+                range -> fileStorageService.openRange(fileData, range.start(), range.end()));
+        return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<?> deleteReviewImage(@PathVariable String id) {
         try {
@@ -149,17 +351,7 @@ public class FileController {
     public ResponseEntity<?> getFileMetadata(@PathVariable String id) {
         try {
             Document metadata = fileStorageService.getMetadata(id);
-
-            Map<String, Object> response = new HashMap<>();
-            if (metadata != null) {
-                response.put("originalFilename", metadata.getString("originalFilename"));
-                response.put("contentType", metadata.getString("contentType"));
-                response.put("size", metadata.getLong("size"));
-                response.put("uploadedAt", metadata.getLong("uploadedAt"));
-            }
-            response.put("id", id);
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(metadataResponse(id, metadata));
 
         } catch (IllegalArgumentException e) {
             log.warn("Invalid file ID for metadata: {}", id);
@@ -174,4 +366,47 @@ public class FileController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    // One fs.files query for a whole gallery instead of a request per photo
+    @GetMapping("/metadata")
+    public ResponseEntity<?> getFilesMetadata(@RequestParam("ids") List<String> ids) {
+        try {
+            Map<String, Document> found = fileStorageService.getMetadata(ids);
+
+            List<Map<String, Object>> files = new ArrayList<>();
+            found.forEach((id, metadata) -> files.add(metadataResponse(id, metadata)));
+            List<String> missing = ids.stream()
+                    .filter(id -> !found.containsKey(id))
+                    .distinct()
+                    .toList();
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("files", files);
+            response.put("missing", missing);
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid batch metadata request: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+
+        } catch (Exception e) {
+            log.error("Error retrieving metadata for {} files", ids.size(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private static Map<String, Object> metadataResponse(String id, Document metadata) {
+        Map<String, Object> response = new HashMap<>();
+        if (metadata != null) {
+            response.put("originalFilename", metadata.getString("originalFilename"));
+            response.put("contentType", metadata.getString("contentType"));
+            response.put("size", metadata.getLong("size"));
+            response.put("uploadedAt", metadata.getLong("uploadedAt"));
+        }
+        response.put("id", id);
+        response.put("url", MediaUrls.reviewUrl(id, FileStorageService.versionOf(metadata)));
+        return response;
+    }
+}
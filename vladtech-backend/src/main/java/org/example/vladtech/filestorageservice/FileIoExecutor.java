@@ -0,0 +1,79 @@
+package org.example.vladtech.filestorageservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool for blocking GridFS reads and writes that a request wants to run side by side.
+ * Deliberately not exposed as an {@link java.util.concurrent.Executor} bean so it does not
+ * replace the executor Spring Boot provides for {@code @Async} methods. When the pool and its
+ * queue are full the submitting thread runs the task itself, which throttles callers instead of
+ * failing them. Tasks see the submitting request's attributes, as they would on its own thread.
+ */
+@Component
+@Slf4j
+public class FileIoExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor executor;
+
+    public FileIoExecutor(@Value("${filestorage.io.threads:8}") int threads,
+                          @Value("${filestorage.io.queue-capacity:64}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "file-io-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @FunctionalInterface
+    public interface IoTask<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Runs {@code task} on the pool. Checked exceptions surface as the cause of the
+     * {@link CompletionException} thrown by {@code join()}.
+     */
+    public <T> CompletableFuture<T> submit(IoTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        executor.execute(() -> {
+            // Restored afterwards: with CallerRunsPolicy this may be the submitting thread itself
+            RequestAttributes previous = RequestContextHolder.getRequestAttributes();
+            RequestContextHolder.setRequestAttributes(requestAttributes);
+            try {
+                future.complete(task.call());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                RequestContextHolder.setRequestAttributes(previous);
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("File I/O tasks still running at shutdown");
+            executor.shutdownNow();
+        }
+    }
+}
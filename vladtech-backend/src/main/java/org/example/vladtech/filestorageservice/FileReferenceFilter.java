@@ -0,0 +1,80 @@
+package org.example.vladtech.filestorageservice;
+
+import org.bson.types.ObjectId;
+
+/**
+ * Bloom filter over file ids. {@link #mightContain} never answers false for an added id, and
+ * answers true for an id that was not added with roughly the configured probability, so it can
+ * tell which stored files are certainly unreferenced using about 10 bits per reference instead
+ * of a set of ObjectIds.
+ */
+public class FileReferenceFilter {
+
+    private final long[] bits;
+    private final int bitCount;
+    private final int hashCount;
+    private int added;
+
+    public FileReferenceFilter(int expectedEntries, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+        }
+        int entries = Math.max(expectedEntries, 1);
+        double ln2 = Math.log(2);
+        long optimalBits = (long) Math.ceil(-entries * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.bitCount = (int) Math.min(Math.max(optimalBits, 64), Integer.MAX_VALUE - 63);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / entries * ln2));
+        this.bits = new long[(bitCount + 63) / 64];
+    }
+
+    public void add(ObjectId id) {
+        long hash1 = hash(id, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(id, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) bitCount);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        added++;
+    }
+
+    public boolean mightContain(ObjectId id) {
+        long hash1 = hash(id, 0x9E3779B97F4A7C15L);
+        long hash2 = hash(id, 0xC2B2AE3D27D4EB4FL) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (int) Math.floorMod(hash1 + i * hash2, (long) bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return added;
+    }
+
+    public int bitCount() {
+        return bitCount;
+    }
+
+    // 64-bit mix of the 12 id bytes (murmur3 finalizer per word)
+    private static long hash(ObjectId id, long seed) {
+        byte[] bytes = id.toByteArray();
+        long h = seed;
+        for (int i = 0; i < bytes.length; i += 4) {
+            long word = ((bytes[i] & 0xFFL) << 24) | ((bytes[i + 1] & 0xFFL) << 16)
+                    | ((bytes[i + 2] & 0xFFL) << 8) | (bytes[i + 3] & 0xFFL);
+            h = mix(h ^ word);
+        }
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
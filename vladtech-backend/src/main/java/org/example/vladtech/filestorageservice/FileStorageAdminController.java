@@ -0,0 +1,153 @@
+package org.example.vladtech.filestorageservice;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/admin/files")
+@RequiredArgsConstructor
+public class FileStorageAdminController {
+
+    private final FileStorageService fileStorageService;
+    private final OrphanFileCollector orphanFileCollector;
+    private final PhotoArchiveService photoArchiveService;
+    private final MediaProcessingService mediaProcessingService;
+    private final UploadRateLimiter uploadRateLimiter;
+    private final UploadQuotaService uploadQuotaService;
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/cache")
+    public ResponseEntity<FileCache.CacheStats> getCacheStats() {
+        return ResponseEntity.ok(fileStorageService.getCacheStats());
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/processing")
+    public ResponseEntity<MediaProcessingService.ProcessingStats> getProcessingStats() {
+        return ResponseEntity.ok(mediaProcessingService.stats());
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/ratelimit")
+    public ResponseEntity<UploadRateLimiter.RateLimitStats> getRateLimitStats() {
+        return ResponseEntity.ok(uploadRateLimiter.stats());
+    }
+
+    // owner is "sub:<user id>" or "ip:<address>" for anonymous uploads
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/usage")
+    public ResponseEntity<UploadQuotaService.Usage> getStorageUsage(@RequestParam("owner") String owner) {
+        return ResponseEntity.ok(uploadQuotaService.usage(owner));
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @PostMapping("/tiering/run")
+    public ResponseEntity<StorageTieringService.TieringResult> runTiering() {
+        return ResponseEntity.ok(fileStorageService.runTiering());
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @PostMapping("/{id}/promote")
+    public ResponseEntity<?> promote(@PathVariable String id) {
+        try {
+            Map<String, Object> response = new HashMap<>();
+            response.put("id", id);
+            response.put("promoted", fileStorageService.promote(id));
+            return ResponseEntity.ok(response);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid file ID for promotion: {}", id);
+            return ResponseEntity.badRequest().build();
+
+        } catch (FileNotFoundException e) {
+            log.warn("File not found for promotion: {}", id);
+            return ResponseEntity.notFound().build();
+
+        } catch (Exception e) {
+            log.error("Error promoting file: {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/gc")
+    public ResponseEntity<OrphanFileCollector.GcStatus> getGcStatus() {
+        return ResponseEntity.ok(orphanFileCollector.status());
+    }
+
+    /**
+     * Starts an orphaned-file collection pass; poll GET /gc for progress. Defaults to a dry
+     * run that only reports what would be deleted.
+     */
+    @PreAuthorize("hasAuthority('Admin')")
+    @PostMapping("/gc")
+    public ResponseEntity<OrphanFileCollector.GcStatus> startGc(
+            @RequestParam(value = "dryRun", defaultValue = "true") boolean dryRun) {
+        if (!orphanFileCollector.start(dryRun)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(orphanFileCollector.status());
+        }
+        log.info("Orphan file collection started (dryRun={})", dryRun);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(orphanFileCollector.status());
+    }
+
+    /**
+     * Every photo of a project as one ZIP archive, streamed while it is built.
+     */
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/archive/projects/{projectIdentifier}")
+    public ResponseEntity<StreamingResponseBody> downloadProjectPhotos(@PathVariable String projectIdentifier) {
+        try {
+            return archive("project-" + projectIdentifier, photoArchiveService.projectPhotos(projectIdentifier));
+
+        } catch (FileNotFoundException e) {
+            log.warn("Project not found for photo archive: {}", projectIdentifier);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Every photo of a review as one ZIP archive, streamed while it is built.
+     */
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/archive/reviews/{reviewId}")
+    public ResponseEntity<StreamingResponseBody> downloadReviewPhotos(@PathVariable String reviewId) {
+        try {
+            return archive("review-" + reviewId, photoArchiveService.reviewPhotos(reviewId));
+
+        } catch (FileNotFoundException e) {
+            log.warn("Review not found for photo archive: {}", reviewId);
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> archive(String name, List<PhotoArchiveService.PhotoRef> photos) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("application/zip"));
+        headers.setContentDisposition(ContentDisposition.attachment().filename(name + "-photos.zip").build());
+        headers.setCacheControl(CacheControl.noStore());
+
+        log.info("Streaming photo archive {} ({} photos)", name, photos.size());
+        StreamingResponseBody body = outputStream -> photoArchiveService.writeArchive(photos, outputStream);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+}
@@ -6,7 +6,6 @@ import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.data.mongodb.gridfs.GridFsOperations;
 import org.springframework.data.mongodb.gridfs.GridFsTemplate;
@@ -17,6 +16,16 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -29,6 +38,13 @@ public class FileStorageService {
 
     private final GridFsTemplate gridFsTemplate;
     private final GridFsOperations gridFsOperations;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileCache fileCache;
+    private final ImageVariantService imageVariantService;
+    private final StorageTier coldTier;
+    private final StorageTieringService storageTieringService;
+    private final MediaProcessingService mediaProcessingService;
+    private final UploadQuotaService uploadQuotaService;
 
     // File size limit: 10MB
     public static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
@@ -43,6 +59,16 @@ public class FileStorageService {
 
     private static final int MAX_FILENAME_LENGTH = 255;
 
+    // Metadata fields returned by the metadata endpoints; nothing else is read from fs.files
+    public static final String[] METADATA_FIELDS = {"originalFilename", "contentType", "size", "uploadedAt", "sha256",
+            "optimizedSha256", "width", "height"};
+
+    // Upper bound on ids per batch metadata lookup (a gallery page fits comfortably)
+    public static final int MAX_METADATA_BATCH = 100;
+
+    // Hex digits of the content hash used as the version segment of media URLs
+    public static final int VERSION_LENGTH = 16;
+
     @Value("${filestorage.bucket:reviews}")
     private String bucket;
 
@@ -57,15 +83,144 @@ public class FileStorageService {
                     (MAX_FILE_SIZE / 1024 / 1024) + "MB");
         }
 
-        // Validate content type
-        String contentType = file.getContentType();
+        String contentType = validateContentType(file.getContentType());
+
+        String originalName = file.getOriginalFilename();
+        log.info("save: original filename='{}', size={}, contentType={}", originalName, file.getSize(), file.getContentType());
+        String cleanName = validateFilename(originalName);
+
+        Document metadata = new Document();
+        metadata.put("originalFilename", cleanName);
+        metadata.put("contentType", contentType);
+        metadata.put("size", file.getSize());
+        metadata.put("uploadedAt", System.currentTimeMillis());
+
+        try {
+            // Hash while GridFS consumes the stream, so the bytes are only read once
+            MessageDigest sha256 = newSha256();
+            ObjectId id;
+            try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+                id = gridFsTemplate.store(in, cleanName, contentType, metadata);
+            }
+            if (id == null) {
+                log.error("GridFsTemplate returned null id when storing file: {}", cleanName);
+                throw new IOException("Failed to save file: null id from storage");
+            }
+
+            ObjectId storedId = completeUpload(id, sha256, file.getSize(), cleanName);
+            if (storedId.equals(id)) {
+                requestVariants(id, cleanName, contentType);
+                mediaProcessingService.enqueue(id, contentType);
+            }
+            return storedId.toHexString();
+        } catch (Exception e) {
+            // Wrap any exception as IOException to keep the API contract for callers/tests
+            log.error("Failed to save file: {}", originalName, e);
+            throw new IOException("Failed to save file: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Streaming counterpart of {@link #save(MultipartFile)} for uploads read part by part from
+     * the request body. The content is piped straight into a GridFS upload stream while the
+     * size limit, image signature and SHA-256 are checked on the fly, so nothing is buffered
+     * beyond a GridFS chunk. The declared type and filename are validated before any bytes are
+     * stored; a stream that turns out too large aborts the upload and leaves nothing behind.
+     */
+    public String saveStream(String originalFilename, String contentType, InputStream content) throws IOException {
+        contentType = validateContentType(contentType);
+        String cleanName = validateFilename(originalFilename);
+        log.debug("saveStream: original filename='{}', contentType={}", originalFilename, contentType);
+
+        SizeLimitedInputStream limited = new SizeLimitedInputStream(content, MAX_FILE_SIZE);
+        InputStream checked = ImageSignatures.verify(limited, contentType);
+
+        Document metadata = new Document();
+        metadata.put("originalFilename", cleanName);
+        metadata.put("contentType", contentType);
+        metadata.put("uploadedAt", System.currentTimeMillis());
+
+        MessageDigest sha256 = newSha256();
+        ObjectId id;
+        try (InputStream in = new DigestInputStream(checked, sha256)) {
+            id = gridFsTemplate.store(in, cleanName, contentType, metadata);
+        } catch (Exception e) {
+            // GridFS aborts the upload and removes the chunks written so far
+            if (limited.isExceeded()) {
+                throw new IllegalArgumentException("File size exceeds maximum limit of " +
+                        (MAX_FILE_SIZE / 1024 / 1024) + "MB");
+            }
+            MultipartStreamParser.MalformedMultipartException malformed = findCause(e, MultipartStreamParser.MalformedMultipartException.class);
+            if (malformed != null) {
+                throw malformed;
+            }
+            log.error("Failed to save streamed file: {}", originalFilename, e);
+            throw new IOException("Failed to save file: " + e.getMessage(), e);
+        }
+        if (id == null) {
+            log.error("GridFsTemplate returned null id when storing file: {}", cleanName);
+            throw new IOException("Failed to save file: null id from storage");
+        }
+
+        ObjectId storedId = completeUpload(id, sha256, limited.getCount(), cleanName);
+        if (storedId.equals(id) && imageVariantService.supports(contentType)) {
+            imageVariantService.generateVariantsAsync(id, cleanName, contentType);
+        }
+        if (storedId.equals(id)) {
+            mediaProcessingService.enqueue(id, contentType);
+        }
+        return storedId.toHexString();
+    }
+
+    private ObjectId completeUpload(ObjectId id, MessageDigest sha256, long size, String cleanName) {
+        return completeUpload(id, HexFormat.of().formatHex(sha256.digest()), size, cleanName);
+    }
+
+    private ObjectId completeUpload(ObjectId id, String sha256, long size, String cleanName) {
+        ObjectId storedId = deduplicate(id, sha256, size);
+        if (!storedId.equals(id)) {
+            log.info("File deduplicated: filename={}, size={}, existing id={}",
+                    cleanName, size, storedId.toHexString());
+        } else {
+            uploadQuotaService.charge(id, size);
+            log.info("File saved successfully: id={}, filename={}, size={}",
+                    id.toHexString(), cleanName, size);
+        }
+        return storedId;
+    }
+
+    /**
+     * Finishes an upload whose chunks and fs.files document were written directly (see
+     * {@link ResumableUploadService}): records the hash, deduplicates and schedules variants
+     * like the other upload paths. Returns the id the file is served under.
+     */
+    public String registerUpload(ObjectId id, String cleanName, String contentType, String sha256, long size) {
+        ObjectId storedId = completeUpload(id, sha256, size, cleanName);
+        // Variant generation decodes the whole image in memory; leave very large ones alone
+        if (storedId.equals(id) && size <= MAX_FILE_SIZE && imageVariantService.supports(contentType)) {
+            imageVariantService.generateVariantsAsync(id, cleanName, contentType);
+            mediaProcessingService.enqueue(id, contentType);
+        }
+        return storedId.toHexString();
+    }
+
+    private static <T extends Throwable> T findCause(Throwable e, Class<T> type) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (type.isInstance(cause)) {
+                return type.cast(cause);
+            }
+        }
+        return null;
+    }
+
+    public String validateContentType(String contentType) {
         if (contentType == null || !ALLOWED_IMAGE_TYPES.contains(contentType.toLowerCase())) {
             throw new IllegalArgumentException("Invalid file type. Only images are allowed (JPEG, PNG, GIF, WebP)");
         }
+        return contentType;
+    }
 
-        // Validate and sanitize filename
-        String originalName = file.getOriginalFilename();
-        log.info("save: original filename='{}', size={}, contentType={}", originalName, file.getSize(), file.getContentType());
+    public String validateFilename(String originalName) {
         if (originalName == null || originalName.isBlank()) {
             throw new IllegalArgumentException("Filename is required");
         }
@@ -90,77 +245,177 @@ public class FileStorageService {
         if (cleanName.length() > MAX_FILENAME_LENGTH) {
             throw new IllegalArgumentException("Filename too long");
         }
+        return cleanName;
+    }
 
-        Document metadata = new Document();
-        metadata.put("originalFilename", cleanName);
-        metadata.put("contentType", contentType);
-        metadata.put("size", file.getSize());
-        metadata.put("uploadedAt", System.currentTimeMillis());
+    /**
+     * Records the content hash of a just-stored file and, when an older file with the same hash
+     * and length exists, drops the new copy in favour of a reference to the existing one.
+     * Returns the id the caller should use.
+     */
+    private ObjectId deduplicate(ObjectId id, String sha256, long length) {
+        gridFsRawStore.setContentHash(id, sha256, length);
+        ObjectId canonical = gridFsRawStore.findCanonical(sha256, length);
+        if (canonical == null || canonical.equals(id)) {
+            return id;
+        }
+        // The existing copy may be deleted concurrently (or already claimed for deletion); then
+        // ours simply stays
+        if (!gridFsRawStore.addReference(canonical)) {
+            return id;
+        }
+        gridFsTemplate.delete(new Query(Criteria.where("_id").is(id)));
+        fileCache.invalidate(canonical);
+        return canonical;
+    }
 
+    private static MessageDigest newSha256() {
         try {
-            ObjectId id = gridFsTemplate.store(file.getInputStream(), cleanName, contentType, metadata);
-            if (id == null) {
-                log.error("GridFsTemplate returned null id when storing file: {}", cleanName);
-                throw new IOException("Failed to save file: null id from storage");
-            }
-            log.info("File saved successfully: id={}, filename={}, size={}",
-                    id.toHexString(), cleanName, file.getSize());
-            return id.toHexString();
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Thumbnails are a best-effort extra: a failure here must not fail the upload itself.
+    // The job reads the stored file back, so the upload is never held in memory on the request thread.
+    private void requestVariants(ObjectId id, String filename, String contentType) {
+        if (!imageVariantService.supports(contentType)) {
+            return;
+        }
+        try {
+            imageVariantService.generateVariantsAsync(id, filename, contentType);
         } catch (Exception e) {
-            // Wrap any exception as IOException to keep the API contract for callers/tests
-            log.error("Failed to save file: {}", originalName, e);
-            throw new IOException("Failed to save file: " + e.getMessage(), e);
+            log.warn("Could not schedule image variants for {}: {}", id, e.getMessage());
         }
     }
 
+    /**
+     * The bytes to serve for a stored file: its optimized copy once background processing has
+     * produced one (see {@link MediaProcessingService}), otherwise the file as uploaded.
+     */
     public FileResourceWithMetadata loadResourceWithMetadata(String id) throws FileNotFoundException {
-        ObjectId objectId;
+        return servedVersion(loadStored(parseId(id)));
+    }
+
+    private FileResourceWithMetadata servedVersion(FileResourceWithMetadata stored) {
+        Object optimizedId = stored.getMetadata() != null ? stored.getMetadata().get("optimizedId") : null;
+        if (!(optimizedId instanceof ObjectId optimized)) {
+            return stored;
+        }
         try {
-            objectId = new ObjectId(id);
+            FileResourceWithMetadata copy = loadStored(optimized);
+            String uploadSha256 = stored.getMetadata().getString("sha256");
+            // Copies made before uploadSha256 was recorded still answer to the upload's URL version
+            if (uploadSha256 != null && copy.getMetadata() != null && copy.getMetadata().getString("uploadSha256") == null) {
+                return new FileResourceWithMetadata(copy.getResource(),
+                        new Document(copy.getMetadata()).append("uploadSha256", uploadSha256),
+                        copy.getContentType(), copy.getGridFsFile());
+            }
+            return copy;
+        } catch (FileNotFoundException e) {
+            log.warn("Optimized copy {} is missing, serving the upload as stored", optimized);
+            return stored;
+        }
+    }
+
+    private static ObjectId parseId(String id) {
+        try {
+            return new ObjectId(id);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException("Invalid id format");
         }
+    }
 
-        GridFSFile gridFsFile = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(objectId)));
+    private FileResourceWithMetadata loadStored(ObjectId objectId) throws FileNotFoundException {
+        String id = objectId.toHexString();
+
+        // Hot files are answered from the cache without a round trip to fs.files
+        FileCache.CachedFile cached = fileCache.get(objectId);
+        GridFSFile gridFsFile = cached != null
+                ? cached.getFile()
+                : gridFsTemplate.findOne(new Query(Criteria.where("_id").is(objectId)));
         if (gridFsFile == null) {
             throw new FileNotFoundException("File not found: " + id);
         }
-        GridFsResource gridFsResource = null;
+        if (cached == null) {
+            fileCache.putMetadata(objectId, gridFsFile);
+        }
+        storageTieringService.recordRead(gridFsFile);
+        // Only the fs.files document is read here; the download stream is opened lazily by
+        // StoredFileResource, so validators can be checked without touching fs.chunks.
+        Document metadata = gridFsFile.getMetadata();
+        String contentType = resolveContentType(metadata);
+
+        Resource resource = new StoredFileResource(gridFsFile, gridFsOperations, fileCache, cached, coldTier);
+        FileResourceWithMetadata result = new FileResourceWithMetadata(resource, metadata, contentType, gridFsFile);
+        log.debug("loadResourceWithMetadata: id={}, contentType={}, cached={}", id, contentType, cached != null);
+        return result;
+    }
+
+    /**
+     * Like {@link #loadResourceWithMetadata(String)}, but for {@code ?w=} requests: returns the
+     * nearest stored variant at least {@code width} pixels wide, generating it on first use,
+     * or the original when no narrower variant applies. The original served only because the
+     * variant could not be had right now is marked {@linkplain FileResourceWithMetadata#isInterim interim}.
+     */
+    public FileResourceWithMetadata loadResourceWithMetadata(String id, int width) throws IOException {
+        if (width <= 0) {
+            throw new IllegalArgumentException("Width must be positive");
+        }
+        // Variants are derived from the upload as stored, not from its optimized copy
+        FileResourceWithMetadata original = loadStored(parseId(id));
+        ImageVariantService.Resolution resolution = imageVariantService.resolveVariant(original, width);
+        if (resolution.variantId() == null) {
+            FileResourceWithMetadata served = servedVersion(original);
+            return resolution.deferred() ? served.asInterim() : served;
+        }
         try {
-            gridFsResource = gridFsOperations.getResource(gridFsFile);
-        } catch (Exception e) {
-            log.warn("Could not get GridFsResource for file {} on first attempt: {}", id, e.getMessage());
+            return loadResourceWithMetadata(resolution.variantId().toHexString());
+        } catch (FileNotFoundException e) {
+            log.warn("Variant {} of {} is missing, serving the original", resolution.variantId(), id);
+            return servedVersion(original).asInterim();
         }
-        // Retry once if we didn't get a resource — some mock setups may only respond on subsequent calls
-        if (gridFsResource == null) {
-            try {
-                gridFsResource = gridFsOperations.getResource(gridFsFile);
-                log.info("Second attempt to get GridFsResource for file {} returned {}", id, gridFsResource);
-            } catch (Exception e) {
-                log.warn("Could not get GridFsResource for file {} on second attempt: {}", id, e.getMessage());
-            }
+    }
+
+    private String resolveContentType(Document metadata) {
+        if (metadata != null && metadata.getString("contentType") != null) {
+            return metadata.getString("contentType");
         }
-        Document metadata = gridFsFile.getMetadata();
-        log.info("loadResourceWithMetadata: gridFsFile={}, resource={}, metadata={}", gridFsFile, gridFsResource, metadata);
+        // GridFsTemplate.store records the content type under "_contentType"
+        if (metadata != null && metadata.getString("_contentType") != null) {
+            return metadata.getString("_contentType");
+        }
+        return MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    }
 
-        String contentType;
-        if (metadata != null && metadata.containsKey("contentType")) {
-            contentType = metadata.getString("contentType");
-        } else if (gridFsResource != null) {
-            try {
-                String rt = gridFsResource.getContentType();
-                contentType = (rt != null) ? rt : MediaType.APPLICATION_OCTET_STREAM_VALUE;
-            } catch (Exception e) {
-                contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
-            }
-        } else {
-            contentType = MediaType.APPLICATION_OCTET_STREAM_VALUE;
+    /**
+     * Opens bytes [start, endInclusive] of a file returned by {@link #loadResourceWithMetadata}.
+     * Cached files are sliced from memory, files moved to the cold tier are read from there, other
+     * GridFS-backed files are read chunk-aligned straight from fs.chunks; anything else falls back
+     * to skipping through the resource stream.
+     */
+    public InputStream openRange(FileResourceWithMetadata fileData, long start, long endInclusive) throws IOException {
+        if (fileData.getResource() instanceof StoredFileResource stored && stored.getCachedContent() != null) {
+            return stored.getCachedContent().openStream(start, endInclusive);
         }
 
-        Resource resource = (gridFsResource != null) ? gridFsResource : new ByteArrayResource(new byte[0]);
-        FileResourceWithMetadata result = new FileResourceWithMetadata(resource, metadata, contentType);
-        log.info("loadResourceWithMetadata returning: {} (resource={}, metadata={}, contentType={})", result, resource, metadata, contentType);
-        return result;
+        GridFSFile gridFsFile = fileData.getGridFsFile();
+        if (gridFsFile != null && coldTier.holds(gridFsFile)) {
+            return coldTier.openRange(gridFsFile, start, endInclusive);
+        }
+        if (gridFsFile != null && gridFsFile.getObjectId() != null) {
+            return gridFsRawStore.openRange(gridFsFile.getObjectId(), gridFsFile.getChunkSize(), start, endInclusive);
+        }
+
+        InputStream in = fileData.getResource().getInputStream();
+        try {
+            in.skipNBytes(start);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return new BoundedInputStream(in, endInclusive - start + 1);
     }
 
     public GridFsResource loadAsResource(String id) throws FileNotFoundException {
@@ -187,7 +442,7 @@ public class FileStorageService {
         if (direct == null) {
             try {
                 direct = gridFsOperations.getResource(gridFsFile);
-                log.info("Second attempt to get GridFsResource for file {} returned {}", id, direct);
+                log.debug("Second attempt to get GridFsResource for file {} returned {}", id, direct);
             } catch (Exception e) {
                 log.warn("Could not get GridFsResource for file {} on second attempt: {}", id, e.getMessage());
             }
@@ -207,8 +462,114 @@ public class FileStorageService {
         throw new FileNotFoundException("Resource not available for file: " + id);
     }
 
+    public FileCache.CacheStats getCacheStats() {
+        return fileCache.stats();
+    }
+
+    /**
+     * Runs one pass of the storage tier mover now instead of waiting for the schedule.
+     */
+    public StorageTieringService.TieringResult runTiering() {
+        return storageTieringService.run();
+    }
+
+    /**
+     * Moves a cold file back into GridFS. Returns false when it is not held by another tier.
+     */
+    public boolean promote(String id) throws IOException {
+        ObjectId objectId;
+        try {
+            objectId = new ObjectId(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid id format");
+        }
+        if (gridFsTemplate.findOne(new Query(Criteria.where("_id").is(objectId))) == null) {
+            throw new FileNotFoundException("File not found: " + id);
+        }
+        return storageTieringService.promote(objectId);
+    }
+
+    /**
+     * Returns the descriptive metadata of a stored file (see {@link #METADATA_FIELDS}) from a
+     * projected fs.files query, without opening the file itself.
+     */
     public Document getMetadata(String id) throws FileNotFoundException {
-        return loadResourceWithMetadata(id).getMetadata();
+        Map<String, Document> found = getMetadata(List.of(id));
+        if (!found.containsKey(id)) {
+            throw new FileNotFoundException("File not found: " + id);
+        }
+        return found.get(id);
+    }
+
+    /**
+     * Batch form of {@link #getMetadata(String)}: one {@code $in} query for all ids. The result
+     * keeps the order of {@code ids}; ids of files that do not exist are left out.
+     */
+    public Map<String, Document> getMetadata(Collection<String> ids) {
+        if (ids.size() > MAX_METADATA_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_METADATA_BATCH + " ids can be requested at once");
+        }
+        Map<String, ObjectId> objectIds = new LinkedHashMap<>();
+        for (String id : ids) {
+            try {
+                objectIds.put(id, new ObjectId(id));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid id format");
+            }
+        }
+        if (objectIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<ObjectId, Document> found = gridFsRawStore.findMetadata(new HashSet<>(objectIds.values()), METADATA_FIELDS);
+        Map<String, Document> result = new LinkedHashMap<>();
+        objectIds.forEach((id, objectId) -> {
+            if (found.containsKey(objectId)) {
+                result.put(id, found.get(objectId));
+            }
+        });
+        log.debug("getMetadata: {} ids requested, {} found", objectIds.size(), result.size());
+        return result;
+    }
+
+    /**
+     * The URL to store for a saved file: {@code /uploads/reviews/{id}/v/{version}} when its
+     * content hash is known, else the plain {@code /uploads/reviews/{id}}.
+     */
+    public String urlFor(String id) {
+        ObjectId objectId;
+        try {
+            objectId = new ObjectId(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid id format");
+        }
+        Document metadata = gridFsRawStore.findMetadata(List.of(objectId), "sha256").get(objectId);
+        return MediaUrls.reviewUrl(id, versionOf(metadata));
+    }
+
+    /**
+     * Version of a stored file for its URL: a prefix of the SHA-256 of the upload as received,
+     * or null for files stored before hashes were recorded. It stays the same when the optimized
+     * copy takes over (which carries it as {@code uploadSha256}), so a URL handed out right
+     * after upload never goes stale.
+     */
+    public static String versionOf(Document metadata) {
+        String sha256 = null;
+        if (metadata != null) {
+            sha256 = metadata.getString("sha256") != null
+                    ? metadata.getString("sha256")
+                    : metadata.getString("uploadSha256");
+        }
+        return sha256 != null && sha256.length() >= VERSION_LENGTH ? sha256.substring(0, VERSION_LENGTH) : null;
+    }
+
+    /**
+     * Whether the bytes served for {@code fileData} are final and may be cached for long:
+     * false for an upload media processing may still replace with its optimized copy, and for
+     * an original served in place of a width variant that could not be had yet.
+     */
+    public boolean hasFinalContent(FileResourceWithMetadata fileData) {
+        return !fileData.isInterim() && !mediaProcessingService.awaitsProcessing(fileData.getMetadata());
     }
 
     /**
@@ -221,6 +582,9 @@ public class FileStorageService {
         if (r instanceof GridFsResource) {
             return (GridFsResource) r;
         }
+        if (r instanceof StoredFileResource) {
+            return ((StoredFileResource) r).open();
+        }
         return null;
     }
 
@@ -238,10 +602,50 @@ public class FileStorageService {
             throw new FileNotFoundException("File not found: " + id);
         }
 
-        gridFsTemplate.delete(new Query(Criteria.where("_id").is(objectId)));
+        // Deduplicated uploads share one stored copy; keep it while other references remain.
+        // Releasing the last reference also marks the file as deleting, so a concurrent upload
+        // with the same content keeps its own copy instead of taking a reference to this one.
+        long remainingReferences = gridFsRawStore.releaseReference(objectId);
+        if (remainingReferences > 0) {
+            fileCache.invalidate(objectId);
+            log.info("File reference released: id={}, remaining references={}", id, remainingReferences);
+            return;
+        }
+        if (remainingReferences < 0) {
+            log.info("File already being deleted: id={}", id);
+            return;
+        }
+
+        deleteStoredFile(gridFsFile);
         log.info("File deleted successfully: id={}", id);
     }
 
+    /**
+     * Deletes a file nothing refers to any more, whatever its reference count says, together
+     * with its variants and any cold copy. Returns false when the file was already gone, is
+     * being deleted, or gained a reference at or after {@code referencedBefore} (epoch millis).
+     */
+    public boolean deleteUnreferenced(ObjectId objectId, long referencedBefore) {
+        GridFSFile gridFsFile = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(objectId)));
+        // The claim fails when an upload deduplicated onto the file since it was scanned
+        if (gridFsFile == null || !gridFsRawStore.claimUnreferenced(objectId, referencedBefore)) {
+            return false;
+        }
+        deleteStoredFile(gridFsFile);
+        return true;
+    }
+
+    private void deleteStoredFile(GridFSFile gridFsFile) {
+        ObjectId objectId = gridFsFile.getObjectId();
+        gridFsTemplate.delete(new Query(Criteria.where("_id").is(objectId)));
+        if (coldTier.holds(gridFsFile)) {
+            coldTier.remove(objectId);
+        }
+        fileCache.invalidate(objectId);
+        imageVariantService.deleteVariants(objectId);
+        uploadQuotaService.release(gridFsFile);
+    }
+
     private boolean isValidFilename(String filename) {
 
         // Check for null bytes and control characters
@@ -264,11 +668,35 @@ public class FileStorageService {
         private final Resource resource;
         private final Document metadata;
         private final String contentType;
+        private final GridFSFile gridFsFile;
+        private final boolean interim;
 
         public FileResourceWithMetadata(Resource resource, Document metadata, String contentType) {
+            this(resource, metadata, contentType, null);
+        }
+
+        public FileResourceWithMetadata(Resource resource, Document metadata, String contentType, GridFSFile gridFsFile) {
+            this(resource, metadata, contentType, gridFsFile, false);
+        }
+
+        private FileResourceWithMetadata(Resource resource, Document metadata, String contentType, GridFSFile gridFsFile,
+                                         boolean interim) {
             this.resource = resource;
             this.metadata = metadata;
             this.contentType = contentType;
+            this.gridFsFile = gridFsFile;
+            this.interim = interim;
+        }
+
+        /**
+         * The same file, marked as served in place of what was asked for until that exists.
+         */
+        public FileResourceWithMetadata asInterim() {
+            return new FileResourceWithMetadata(resource, metadata, contentType, gridFsFile, true);
+        }
+
+        public boolean isInterim() {
+            return interim;
         }
 
         public Resource getResource() {
@@ -282,5 +710,141 @@ public class FileStorageService {
         public String getContentType() {
             return contentType;
         }
+
+        public GridFSFile getGridFsFile() {
+            return gridFsFile;
+        }
+
+        /**
+         * Stored length in bytes, or -1 when it cannot be determined.
+         */
+        public long getLength() {
+            if (gridFsFile != null) {
+                return gridFsFile.getLength();
+            }
+            try {
+                return resource.contentLength();
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+
+        /**
+         * Upload time in epoch millis, or -1 when unknown.
+         */
+        public long getLastModified() {
+            if (gridFsFile != null && gridFsFile.getUploadDate() != null) {
+                return gridFsFile.getUploadDate().getTime();
+            }
+            return -1;
+        }
+
+        /**
+         * Strong entity tag for the stored bytes: the content hash when one was recorded at
+         * upload, otherwise the ObjectId (GridFS files are immutable once written). Null when
+         * the file is not backed by GridFS.
+         */
+        public String getETag() {
+            if (metadata != null && metadata.getString("sha256") != null) {
+                return "\"" + metadata.getString("sha256") + "\"";
+            }
+            if (gridFsFile != null && gridFsFile.getId() != null && gridFsFile.getId().isObjectId()) {
+                return "\"" + gridFsFile.getObjectId().toHexString() + "\"";
+            }
+            return null;
+        }
+    }
+
+    // Caps a stream at a fixed number of bytes; used for range reads of non-GridFS resources.
+    private static final class BoundedInputStream extends InputStream {
+        private final InputStream delegate;
+        private long remaining;
+
+        BoundedInputStream(InputStream delegate, long limit) {
+            this.delegate = delegate;
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = delegate.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = delegate.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+
+    // Counts bytes and fails once more than the limit has been read; used for streamed uploads
+    // whose size is unknown until the part ends.
+    private static final class SizeLimitedInputStream extends InputStream {
+        private final InputStream delegate;
+        private final long limit;
+        private long count;
+        private boolean exceeded;
+
+        SizeLimitedInputStream(InputStream delegate, long limit) {
+            this.delegate = delegate;
+            this.limit = limit;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        boolean isExceeded() {
+            return exceeded;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b >= 0) {
+                advance(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = delegate.read(buffer, offset, length);
+            if (n > 0) {
+                advance(n);
+            }
+            return n;
+        }
+
+        private void advance(int n) throws IOException {
+            count += n;
+            if (count > limit) {
+                exceeded = true;
+                throw new IOException("Upload exceeds " + limit + " bytes");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,447 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Direct access to the GridFS {@code <bucket>.files} and {@code <bucket>.chunks} collections,
+ * for the operations GridFsTemplate has no API for (e.g. reading a byte range without
+ * pulling every earlier chunk through the driver's download stream).
+ */
+@Slf4j
+@Component
+public class GridFsRawStore {
+
+    private final MongoTemplate mongoTemplate;
+    private final String bucket;
+
+    public GridFsRawStore(MongoTemplate mongoTemplate,
+                          @Value("${spring.data.mongodb.gridfs.bucket:fs}") String bucket) {
+        this.mongoTemplate = mongoTemplate;
+        this.bucket = bucket;
+    }
+
+    public MongoCollection<Document> filesCollection() {
+        return mongoTemplate.getCollection(bucket + ".files");
+    }
+
+    public MongoCollection<Document> chunksCollection() {
+        return mongoTemplate.getCollection(bucket + ".chunks");
+    }
+
+    // Duplicate detection looks files up by content hash and length
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            filesCollection().createIndex(Indexes.ascending("metadata.sha256", "length"));
+        } catch (Exception e) {
+            log.warn("Could not create content hash index on {}.files: {}", bucket, e.getMessage());
+        }
+    }
+
+    /**
+     * Records the content hash and byte size of a just-stored file on its fs.files document.
+     */
+    public void setContentHash(ObjectId fileId, String sha256, long size) {
+        filesCollection().updateOne(Filters.eq("_id", fileId), Updates.combine(
+                Updates.set("metadata.sha256", sha256),
+                Updates.set("metadata.size", size)));
+    }
+
+    /**
+     * Records the CRC-32 of a stored file, which lets archives store it without a second read.
+     */
+    public void setChecksum(ObjectId fileId, long crc32) {
+        filesCollection().updateOne(Filters.eq("_id", fileId), Updates.set("metadata.crc32", crc32));
+    }
+
+    /**
+     * The oldest stored file with this content hash and length, or null. Always picking the
+     * oldest means two concurrent identical uploads agree on which copy survives. Files being
+     * deleted are skipped.
+     */
+    public ObjectId findCanonical(String sha256, long length) {
+        Document found = filesCollection()
+                .find(Filters.and(
+                        Filters.eq("metadata.sha256", sha256),
+                        Filters.eq("length", length),
+                        Filters.ne("metadata.deleting", true)))
+                .projection(Projections.include("_id"))
+                .sort(Sorts.ascending("_id"))
+                .limit(1)
+                .first();
+        return found != null ? found.getObjectId("_id") : null;
+    }
+
+    /**
+     * Adds a reference to a stored file. A file without {@code metadata.refCount} has exactly
+     * one reference. Returns false when the file no longer exists or is being deleted, in which
+     * case the caller keeps its own copy.
+     *
+     * Also stamps {@code metadata.lastReferencedAt} (epoch millis): the new reference is only
+     * saved with its review or project later, and the orphan collector's grace period runs from
+     * this time as well as from the upload date.
+     */
+    public boolean addReference(ObjectId fileId) {
+        Document updated = filesCollection().findOneAndUpdate(
+                Filters.and(Filters.eq("_id", fileId), Filters.ne("metadata.deleting", true)),
+                List.of(new Document("$set", new Document("metadata.refCount",
+                        new Document("$add", List.of(
+                                new Document("$ifNull", List.of("$metadata.refCount", 1)), 1)))
+                        .append("metadata.lastReferencedAt", System.currentTimeMillis()))));
+        return updated != null;
+    }
+
+    /**
+     * Drops one reference. Returns the references left, or 0 when the caller held the last one:
+     * the file is then marked {@code metadata.deleting}, so {@link #addReference} can no longer
+     * hand it to a new upload, and the caller must delete the bytes. Returns -1 when the file is
+     * gone or another caller already claimed its deletion.
+     *
+     * Decrementing and claiming are separate conditional updates; a reference added between the
+     * two makes the claim miss, and the loop then releases that reference instead.
+     */
+    public long releaseReference(ObjectId fileId) {
+        Bson live = Filters.and(Filters.eq("_id", fileId), Filters.ne("metadata.deleting", true));
+        while (true) {
+            Document updated = filesCollection().findOneAndUpdate(
+                    Filters.and(live, Filters.gt("metadata.refCount", 1)),
+                    Updates.inc("metadata.refCount", -1),
+                    new FindOneAndUpdateOptions()
+                            .projection(Projections.include("metadata.refCount"))
+                            .returnDocument(ReturnDocument.AFTER));
+            if (updated != null) {
+                Document metadata = updated.get("metadata", Document.class);
+                return ((Number) metadata.get("refCount")).longValue();
+            }
+            if (claimForDelete(Filters.and(live, Filters.or(
+                    Filters.exists("metadata.refCount", false),
+                    Filters.lte("metadata.refCount", 1))))) {
+                return 0;
+            }
+            if (filesCollection().countDocuments(live) == 0) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Marks a file {@code metadata.deleting} for the orphan collector, unless it is already being
+     * deleted or gained a reference at or after {@code referencedBefore} (epoch millis). Returns
+     * whether the claim succeeded; only then may the caller delete the bytes.
+     */
+    public boolean claimUnreferenced(ObjectId fileId, long referencedBefore) {
+        return claimForDelete(Filters.and(
+                Filters.eq("_id", fileId),
+                Filters.ne("metadata.deleting", true),
+                Filters.or(
+                        Filters.exists("metadata.lastReferencedAt", false),
+                        Filters.lt("metadata.lastReferencedAt", referencedBefore))));
+    }
+
+    private boolean claimForDelete(Bson filter) {
+        return filesCollection().updateOne(filter, Updates.set("metadata.deleting", true)).getModifiedCount() > 0;
+    }
+
+    /**
+     * Fetches the {@code metadata} sub-documents of the given files with one {@code $in} query,
+     * projected down to {@code fields} (e.g. {@code "originalFilename"}). Files that do not
+     * exist are absent from the result; a file without metadata maps to null.
+     */
+    public Map<ObjectId, Document> findMetadata(Collection<ObjectId> fileIds, String... fields) {
+        List<String> projected = new ArrayList<>();
+        projected.add("_id");
+        for (String field : fields) {
+            projected.add("metadata." + field);
+        }
+
+        Map<ObjectId, Document> result = new HashMap<>();
+        for (Document found : filesCollection()
+                .find(Filters.in("_id", fileIds))
+                .projection(Projections.include(projected))) {
+            result.put(found.getObjectId("_id"), found.get("metadata", Document.class));
+        }
+        return result;
+    }
+
+    /**
+     * One page of fs.files documents with an id greater than {@code after} (all when null), in
+     * id order, projected to id, length, upload date, {@code metadata.variantOf} and
+     * {@code metadata.lastReferencedAt}.
+     */
+    public List<Document> scanFiles(ObjectId after, int limit) {
+        List<Document> page = new ArrayList<>(limit);
+        filesCollection()
+                .find(after != null ? Filters.gt("_id", after) : Filters.empty())
+                .projection(Projections.include("_id", "length", "uploadDate", "metadata.variantOf",
+                        "metadata.lastReferencedAt"))
+                .sort(Sorts.ascending("_id"))
+                .limit(limit)
+                .into(page);
+        return page;
+    }
+
+    /**
+     * Records that a file was read at {@code readAt} (epoch millis). Never moves the time back.
+     */
+    public void markRead(ObjectId fileId, long readAt) {
+        filesCollection().updateOne(Filters.eq("_id", fileId), Updates.max("metadata.lastReadAt", readAt));
+    }
+
+    /**
+     * Marks a file as held by another storage tier. Returns false when the file no longer
+     * exists or already sits in that tier.
+     */
+    public boolean setTier(ObjectId fileId, String tier) {
+        return filesCollection().updateOne(
+                Filters.and(Filters.eq("_id", fileId), Filters.ne("metadata.tier", tier)),
+                Updates.combine(
+                        Updates.set("metadata.tier", tier),
+                        Updates.set("metadata.tieredAt", System.currentTimeMillis()),
+                        Updates.unset("metadata.chunksPurged"))).getModifiedCount() > 0;
+    }
+
+    /**
+     * Marks a file as held by GridFS again. With {@code chunksWritten} false the caller relies on
+     * the chunks still being there, so the update only applies while they have not been claimed
+     * by {@link #purgeChunks}. Returns false when the file is gone or, in that case, was claimed.
+     */
+    public boolean clearTier(ObjectId fileId, boolean chunksWritten) {
+        Bson filter = chunksWritten
+                ? Filters.eq("_id", fileId)
+                : Filters.and(Filters.eq("_id", fileId), Filters.ne("metadata.chunksPurged", true));
+        return filesCollection().updateOne(filter, Updates.combine(
+                Updates.unset("metadata.tier"),
+                Updates.unset("metadata.tieredAt"),
+                Updates.unset("metadata.chunksPurged"))).getModifiedCount() > 0;
+    }
+
+    /**
+     * Removes the chunks of a file held by another tier, keeping its fs.files document. The file
+     * is first claimed by flagging {@code metadata.chunksPurged} while it is still in the other
+     * tier, so a promotion that already cleared the tier keeps its chunks. Returns false when
+     * the file is no longer held elsewhere or its chunks were already claimed.
+     */
+    public boolean purgeChunks(ObjectId fileId) {
+        boolean claimed = filesCollection().updateOne(
+                Filters.and(Filters.eq("_id", fileId),
+                        Filters.exists("metadata.tier"),
+                        Filters.ne("metadata.chunksPurged", true)),
+                Updates.set("metadata.chunksPurged", true)).getModifiedCount() > 0;
+        if (claimed) {
+            deleteChunks(fileId);
+        }
+        return claimed;
+    }
+
+    public void deleteChunks(ObjectId fileId) {
+        chunksCollection().deleteMany(Filters.eq("files_id", fileId));
+    }
+
+    /**
+     * Ids, in order, of up to {@code limit} files that have chunks but no fs.files document,
+     * from {@code from} (the start when null) up to but excluding {@code before}: what an upload
+     * written chunk by chunk leaves behind when it is abandoned.
+     */
+    public List<ObjectId> findChunksWithoutFile(ObjectId from, ObjectId before, int limit) {
+        List<ObjectId> ids = new ArrayList<>();
+        // Every such upload has a first chunk, so looking at n = 0 visits each file once
+        chunksCollection().aggregate(List.of(
+                        Aggregates.match(Filters.and(
+                                from != null ? Filters.gte("files_id", from) : Filters.empty(),
+                                Filters.lt("files_id", before),
+                                Filters.eq("n", 0))),
+                        Aggregates.sort(Sorts.ascending("files_id")),
+                        Aggregates.lookup(bucket + ".files", "files_id", "_id", "file"),
+                        Aggregates.match(Filters.size("file", 0)),
+                        Aggregates.limit(limit),
+                        Aggregates.project(Projections.include("files_id"))))
+                .forEach(chunk -> ids.add(chunk.getObjectId("files_id")));
+        return ids;
+    }
+
+    /**
+     * Payload of chunk {@code n} of a file, or null when that chunk has not been written.
+     */
+    public byte[] readChunk(ObjectId fileId, int n) {
+        Document chunk = chunksCollection()
+                .find(Filters.and(Filters.eq("files_id", fileId), Filters.eq("n", n)))
+                .projection(Projections.include("data"))
+                .first();
+        return chunk != null ? chunk.get("data", Binary.class).getData() : null;
+    }
+
+    /**
+     * Writes chunk {@code n} of a file from the first {@code length} bytes of {@code data},
+     * replacing a shorter chunk written earlier.
+     */
+    public void saveChunk(ObjectId fileId, int n, byte[] data, int length) {
+        byte[] payload = length == data.length ? data : Arrays.copyOf(data, length);
+        chunksCollection().replaceOne(
+                Filters.and(Filters.eq("files_id", fileId), Filters.eq("n", n)),
+                new Document("files_id", fileId).append("n", n).append("data", new Binary(payload)),
+                new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Creates (or rewrites) the fs.files document of a file whose chunks were written directly.
+     */
+    public void saveFileDocument(ObjectId fileId, String filename, long length, int chunkSize, Document metadata) {
+        filesCollection().replaceOne(Filters.eq("_id", fileId),
+                new Document("_id", fileId)
+                        .append("length", length)
+                        .append("chunkSize", chunkSize)
+                        .append("uploadDate", new Date())
+                        .append("filename", filename)
+                        .append("metadata", metadata),
+                new ReplaceOptions().upsert(true));
+    }
+
+    /**
+     * Rewrites the chunks of an existing fs.files document from {@code content}, replacing any
+     * chunks left over from an earlier attempt. Returns the number of bytes written.
+     */
+    public long writeChunks(ObjectId fileId, int chunkSize, InputStream content) throws IOException {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        chunksCollection().deleteMany(Filters.eq("files_id", fileId));
+
+        long written = 0;
+        int n = 0;
+        byte[] chunk;
+        while ((chunk = content.readNBytes(chunkSize)).length > 0) {
+            chunksCollection().insertOne(new Document("files_id", fileId)
+                    .append("n", n++)
+                    .append("data", new Binary(chunk)));
+            written += chunk.length;
+        }
+        return written;
+    }
+
+    /**
+     * Opens a stream over bytes [start, endInclusive] of a stored file. Only the chunk documents
+     * overlapping the range are queried (via the unique {files_id, n} index GridFS maintains),
+     * so a tail range of a large file never reads its leading chunks.
+     */
+    public InputStream openRange(ObjectId fileId, int chunkSize, long start, long endInclusive) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        if (start < 0 || endInclusive < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + "-" + endInclusive);
+        }
+
+        int firstChunk = (int) (start / chunkSize);
+        int lastChunk = (int) (endInclusive / chunkSize);
+        long skipInFirstChunk = start - ((long) firstChunk * chunkSize);
+
+        log.debug("openRange: file={}, bytes={}-{}, chunks={}-{}", fileId, start, endInclusive, firstChunk, lastChunk);
+
+        MongoCursor<Document> cursor = chunksCollection()
+                .find(Filters.and(
+                        Filters.eq("files_id", fileId),
+                        Filters.gte("n", firstChunk),
+                        Filters.lte("n", lastChunk)))
+                .projection(Projections.include("n", "data"))
+                .sort(Sorts.ascending("n"))
+                .iterator();
+
+        return new ChunkRangeInputStream(cursor, skipInFirstChunk, endInclusive - start + 1);
+    }
+
+    /**
+     * Streams chunk payloads from a cursor, dropping the leading bytes of the first chunk and
+     * stopping once the requested number of bytes has been returned.
+     */
+    private static final class ChunkRangeInputStream extends InputStream {
+
+        private final MongoCursor<Document> cursor;
+        private long toSkip;
+        private long remaining;
+        private byte[] current = new byte[0];
+        private int position;
+        private int limit;
+
+        ChunkRangeInputStream(MongoCursor<Document> cursor, long toSkip, long length) {
+            this.cursor = cursor;
+            this.toSkip = toSkip;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            remaining--;
+            return current[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int count = Math.min(length, limit - position);
+            System.arraycopy(current, position, buffer, offset, count);
+            position += count;
+            remaining -= count;
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            while (position >= limit) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                if (!cursor.hasNext()) {
+                    throw new IOException("Unexpected end of GridFS chunks, " + remaining + " bytes missing");
+                }
+                Binary data = cursor.next().get("data", Binary.class);
+                current = data.getData();
+                position = (int) Math.min(toSkip, current.length);
+                toSkip -= position;
+                limit = (int) Math.min(current.length, position + remaining);
+            }
+            return true;
+        }
+
+        @Override
+        public void close() {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.vladtech.filestorageservice;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Magic-number checks for the image types accepted by the upload endpoints, used where the
+ * declared Content-Type of a streamed part cannot be trusted on its own.
+ */
+public final class ImageSignatures {
+
+    private static final int HEADER_BYTES = 12;
+
+    private ImageSignatures() {
+    }
+
+    /**
+     * Peeks at the first bytes of {@code in} and fails unless they match {@code contentType}.
+     * Returns a stream that still yields the complete content, header included.
+     */
+    public static InputStream verify(InputStream in, String contentType) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, 8192);
+        buffered.mark(HEADER_BYTES);
+        byte[] header = buffered.readNBytes(HEADER_BYTES);
+        buffered.reset();
+
+        if (header.length == 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (!matches(header, contentType.toLowerCase())) {
+            throw new IllegalArgumentException("File content does not match its declared type " + contentType);
+        }
+        return buffered;
+    }
+
+    static boolean matches(byte[] header, String contentType) {
+        return switch (contentType) {
+            case "image/jpeg" -> startsWith(header, 0, 0xFF, 0xD8, 0xFF);
+            case "image/png" -> startsWith(header, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A);
+            case "image/gif" -> startsWith(header, 0, 'G', 'I', 'F', '8');
+            case "image/webp" -> startsWith(header, 0, 'R', 'I', 'F', 'F') && startsWith(header, 8, 'W', 'E', 'B', 'P');
+            default -> false;
+        };
+    }
+
+    private static boolean startsWith(byte[] header, int offset, int... expected) {
+        if (header.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((header[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,432 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Width-bounded derivatives of uploaded images ("variants"), produced with plain ImageIO.
+ *
+ * Each variant is its own GridFS file with {@code metadata.variantOf} pointing at the original;
+ * the original records its pixel size and a {@code metadata.variants} map of width to variant
+ * id, so resolving {@code ?w=} is a lookup on the (usually cached) original's fs.files entry.
+ *
+ * Decoding needs about four bytes per pixel, so images are only decoded once their header shows
+ * at most {@code filestorage.images.max-pixels}, and at most
+ * {@code filestorage.variants.on-demand-concurrency} variants are generated on request threads at
+ * once; requests beyond that are served the original.
+ */
+@Slf4j
+@Service
+public class ImageVariantService {
+
+    // Formats ImageIO can both read and write out of the box; WebP uploads are served as-is.
+    private static final Map<String, String> FORMATS = Map.of(
+            "image/jpeg", "jpeg",
+            "image/png", "png",
+            "image/gif", "gif"
+    );
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final GridFsTemplate gridFsTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileCache fileCache;
+    private final List<Integer> widths;
+    private final long maxPixels;
+    private final Semaphore onDemandGenerations;
+
+    // One lock per original so concurrent first requests for a variant generate it only once.
+    // Counted, so an entry is dropped only once no thread holds or waits on it: a request arriving
+    // meanwhile then finds the same lock rather than a fresh one.
+    private final Map<ObjectId, GenerationLock> generationLocks = new ConcurrentHashMap<>();
+
+    private static final class GenerationLock {
+        private int users;
+    }
+
+    public ImageVariantService(GridFsTemplate gridFsTemplate,
+                               GridFsRawStore gridFsRawStore,
+                               FileCache fileCache,
+                               @Value("${filestorage.variants.widths:320,800,1600}") List<Integer> widths,
+                               @Value("${filestorage.images.max-pixels:40000000}") long maxPixels,
+                               @Value("${filestorage.variants.on-demand-concurrency:2}") int onDemandConcurrency) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.gridFsRawStore = gridFsRawStore;
+        this.fileCache = fileCache;
+        this.widths = widths.stream().filter(w -> w > 0).distinct().sorted().toList();
+        this.maxPixels = maxPixels;
+        this.onDemandGenerations = new Semaphore(Math.max(1, onDemandConcurrency));
+    }
+
+    // Variant lookups and deletes query fs.files by the original's id
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            gridFsRawStore.filesCollection().createIndex(
+                    Indexes.ascending("metadata.variantOf", "metadata.variantWidth"));
+        } catch (Exception e) {
+            log.warn("Could not create image variant index: {}", e.getMessage());
+        }
+    }
+
+    public List<Integer> getWidths() {
+        return widths;
+    }
+
+    public boolean supports(String contentType) {
+        return contentType != null && FORMATS.containsKey(contentType.toLowerCase());
+    }
+
+    /**
+     * Smallest configured width that is at least the requested one, or null when the request
+     * is wider than every variant (the original is served then).
+     */
+    public Integer selectWidth(int requestedWidth) {
+        for (Integer width : widths) {
+            if (width >= requestedWidth) {
+                return width;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Generates every configured variant of a freshly stored upload off the request thread.
+     */
+    @Async
+    public void generateVariantsAsync(ObjectId originalId, String filename, String contentType, byte[] content) {
+        try {
+            generateVariants(originalId, filename, contentType, content, widths);
+        } catch (Exception e) {
+            log.error("Failed to generate image variants for {}: {}", originalId, e.getMessage());
+        }
+    }
+
+    /**
+     * Same as {@link #generateVariantsAsync(ObjectId, String, String, byte[])} for uploads that
+     * were streamed into GridFS and never held in memory: the original is read back first.
+     */
+    @Async
+    public void generateVariantsAsync(ObjectId originalId, String filename, String contentType) {
+        try {
+            GridFSFile original = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(originalId)));
+            if (original == null) {
+                return;
+            }
+            byte[] content;
+            try (InputStream in = gridFsTemplate.getResource(original).getInputStream()) {
+                content = in.readAllBytes();
+            }
+            generateVariants(originalId, filename, contentType, content, widths);
+        } catch (Exception e) {
+            log.error("Failed to generate image variants for {}: {}", originalId, e.getMessage());
+        }
+    }
+
+    /**
+     * What to serve for a {@code ?w=} request: a variant, the original because no variant
+     * applies ({@link #ORIGINAL}), or the original for now because the variant could not be
+     * generated yet ({@link #DEFERRED}), which must not be cached as the answer for that width.
+     */
+    public record Resolution(ObjectId variantId, boolean deferred) {
+
+        public static final Resolution ORIGINAL = new Resolution(null, false);
+        public static final Resolution DEFERRED = new Resolution(null, true);
+
+        public static Resolution of(ObjectId variantId) {
+            return variantId != null ? new Resolution(variantId, false) : ORIGINAL;
+        }
+    }
+
+    /**
+     * Resolves the variant to serve for {@code ?w=requestedWidth}, generating it on demand for
+     * uploads that predate the pipeline.
+     */
+    public Resolution resolveVariant(FileStorageService.FileResourceWithMetadata original, int requestedWidth) throws IOException {
+        GridFSFile originalFile = original.getGridFsFile();
+        if (originalFile == null || originalFile.getId() == null || !originalFile.getId().isObjectId()
+                || !supports(original.getContentType()) || originalFile.getLength() > FileStorageService.MAX_FILE_SIZE) {
+            return Resolution.ORIGINAL;
+        }
+        Integer target = selectWidth(requestedWidth);
+        if (target == null) {
+            return Resolution.ORIGINAL;
+        }
+
+        Document metadata = original.getMetadata();
+        if (metadata != null && (metadata.containsKey("variantOf") || Boolean.TRUE.equals(metadata.get("variantsSkipped")))) {
+            return Resolution.ORIGINAL;
+        }
+        if (metadata != null) {
+            Integer originalWidth = metadata.getInteger("width");
+            if (originalWidth != null && target >= originalWidth) {
+                return Resolution.ORIGINAL;
+            }
+            Document variants = metadata.get("variants", Document.class);
+            if (variants != null && variants.getObjectId(String.valueOf(target)) != null) {
+                return Resolution.of(variants.getObjectId(String.valueOf(target)));
+            }
+        }
+
+        ObjectId originalId = originalFile.getObjectId();
+        GenerationLock lock = generationLocks.compute(originalId, (id, current) -> {
+            GenerationLock held = current != null ? current : new GenerationLock();
+            held.users++;
+            return held;
+        });
+        try {
+            synchronized (lock) {
+                // Another request (or the upload-time job) may have stored it since the metadata was read
+                GridFSFile existing = gridFsTemplate.findOne(new Query(Criteria.where("metadata.variantOf").is(originalId)
+                        .and("metadata.variantWidth").is(target)));
+                if (existing != null) {
+                    return Resolution.of(existing.getObjectId());
+                }
+
+                // This runs on a request thread; when enough are already decoding, serve the original
+                if (!onDemandGenerations.tryAcquire()) {
+                    log.debug("Not generating {}px variant of {} now, too many generations running", target, originalId);
+                    return Resolution.DEFERRED;
+                }
+                try {
+                    byte[] content;
+                    try (InputStream in = original.getResource().getInputStream()) {
+                        content = in.readAllBytes();
+                    }
+                    String filename = originalFile.getFilename();
+                    return Resolution.of(generateVariants(originalId, filename, original.getContentType(), content,
+                            List.of(target)).get(target));
+                } finally {
+                    onDemandGenerations.release();
+                }
+            }
+        } finally {
+            generationLocks.compute(originalId, (id, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    /**
+     * Decodes the original once and stores one variant per width narrower than the image.
+     * JPEGs are turned upright by their EXIF orientation first, as browsers display the original
+     * and as the optimized copy is stored, since re-encoding drops the tag. Records the original's
+     * displayed dimensions and the new variant ids on its fs.files document.
+     */
+    Map<Integer, ObjectId> generateVariants(ObjectId originalId, String filename, String contentType,
+                                            byte[] content, Collection<Integer> targetWidths) throws IOException {
+        String format = FORMATS.get(contentType.toLowerCase());
+        int orientation = "jpeg".equals(format) ? JpegSegments.read(content).orientation() : 1;
+        // Orientations 5-8 turn the image by a quarter, swapping its edges
+        boolean swapped = orientation >= 5;
+        BufferedImage source;
+        try {
+            source = decode(content, maxPixels);
+        } catch (ImageTooLargeException e) {
+            // Remembered so ?w= requests stop reading the original back just to refuse it again
+            log.warn("Skipping variants for {}: {}", originalId, e.getMessage());
+            gridFsRawStore.filesCollection().updateOne(Filters.eq("_id", originalId), Updates.combine(
+                    Updates.set("metadata.width", swapped ? e.getHeight() : e.getWidth()),
+                    Updates.set("metadata.height", swapped ? e.getWidth() : e.getHeight()),
+                    Updates.set("metadata.variantsSkipped", true)));
+            fileCache.invalidate(originalId);
+            return Map.of();
+        }
+        if (format == null || source == null) {
+            log.debug("Skipping variants for {}: unsupported image ({})", originalId, contentType);
+            return Map.of();
+        }
+        source = JpegSegments.applyOrientation(source, orientation);
+
+        List<Bson> updates = new ArrayList<>();
+        updates.add(Updates.set("metadata.width", source.getWidth()));
+        updates.add(Updates.set("metadata.height", source.getHeight()));
+
+        Map<Integer, ObjectId> stored = new LinkedHashMap<>();
+        for (Integer width : targetWidths) {
+            if (width >= source.getWidth()) {
+                continue;
+            }
+            byte[] encoded = encode(scaleToWidth(source, width, "jpeg".equals(format)), format);
+
+            Document metadata = new Document();
+            metadata.put("variantOf", originalId);
+            metadata.put("variantWidth", width);
+            metadata.put("contentType", contentType);
+            metadata.put("size", (long) encoded.length);
+            metadata.put("originalFilename", filename);
+            metadata.put("uploadedAt", System.currentTimeMillis());
+
+            ObjectId variantId = gridFsTemplate.store(new ByteArrayInputStream(encoded),
+                    variantFilename(filename, width), contentType, metadata);
+            stored.put(width, variantId);
+            updates.add(Updates.set("metadata.variants." + width, variantId));
+            log.debug("Stored {}px variant {} of {} ({} bytes)", width, variantId, originalId, encoded.length);
+        }
+
+        gridFsRawStore.filesCollection().updateOne(Filters.eq("_id", originalId), Updates.combine(updates));
+        // The cached fs.files entry of the original no longer lists its variants
+        fileCache.invalidate(originalId);
+        return stored;
+    }
+
+    /**
+     * Decodes an image after checking the dimensions declared in its header, so a small file
+     * claiming a huge size is refused before any pixel buffer is allocated. Returns null when no
+     * ImageIO reader understands the content.
+     */
+    static BufferedImage decode(byte[] content, long maxPixels) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new ImageTooLargeException(width, height, maxPixels);
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * An image whose declared size is above the configured pixel limit.
+     */
+    static final class ImageTooLargeException extends IOException {
+
+        private final int width;
+        private final int height;
+
+        ImageTooLargeException(int width, int height, long maxPixels) {
+            super(width + "x" + height + " exceeds the limit of " + maxPixels + " pixels");
+            this.width = width;
+            this.height = height;
+        }
+
+        int getWidth() {
+            return width;
+        }
+
+        int getHeight() {
+            return height;
+        }
+    }
+
+    /**
+     * Removes every variant of an original, e.g. when the original itself is deleted.
+     */
+    public void deleteVariants(ObjectId originalId) {
+        Query variantsQuery = new Query(Criteria.where("metadata.variantOf").is(originalId));
+        for (GridFSFile variant : gridFsTemplate.find(variantsQuery)) {
+            fileCache.invalidate(variant.getObjectId());
+        }
+        gridFsTemplate.delete(variantsQuery);
+    }
+
+    private static String variantFilename(String filename, int width) {
+        if (filename == null) {
+            return "variant-" + width;
+        }
+        int dot = filename.lastIndexOf('.');
+        return dot > 0
+                ? filename.substring(0, dot) + "-" + width + "w" + filename.substring(dot)
+                : filename + "-" + width + "w";
+    }
+
+    /**
+     * Downscales in successive halvings before the final bilinear step, which keeps thin lines
+     * and text legible without the cost of an area-averaging filter.
+     */
+    static BufferedImage scaleToWidth(BufferedImage source, int targetWidth, boolean opaque) {
+        int imageType = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        BufferedImage current = source;
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = width == targetWidth ? targetHeight : Math.max(targetHeight, height / 2);
+
+            BufferedImage step = new BufferedImage(width, height, imageType);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                g.dispose();
+            }
+            current = step;
+        } while (width != targetWidth);
+
+        return current;
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        return encode(image, format, JPEG_QUALITY);
+    }
+
+    static byte[] encode(BufferedImage image, String format, float jpegQuality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IOException("No ImageIO writer for " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
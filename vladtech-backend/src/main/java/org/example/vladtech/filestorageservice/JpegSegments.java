@@ -0,0 +1,140 @@
+package org.example.vladtech.filestorageservice;
+
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+/**
+ * Reads what {@link MediaProcessingService} needs from a JPEG's header segments before they are
+ * dropped by re-encoding: whether any metadata (EXIF, XMP, comments...) is present, and the
+ * EXIF orientation, which has to be applied to the pixels or the photo ends up sideways.
+ */
+public final class JpegSegments {
+
+    private static final int SOS = 0xDA;
+    private static final int APP1 = 0xE1;
+    private static final int APP15 = 0xEF;
+    private static final int COM = 0xFE;
+    private static final int ORIENTATION_TAG = 0x0112;
+
+    private JpegSegments() {
+    }
+
+    /**
+     * @param hasMetadata true when an APP1-APP15 or comment segment is present
+     * @param orientation EXIF orientation 1-8; 1 (as stored) when absent or unreadable
+     */
+    public record Info(boolean hasMetadata, int orientation) {
+    }
+
+    public static Info read(byte[] jpeg) {
+        boolean hasMetadata = false;
+        int orientation = 1;
+
+        int position = 2;
+        while (position + 4 <= jpeg.length && (jpeg[position] & 0xFF) == 0xFF) {
+            int marker = jpeg[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                // Fill byte before a marker
+                position++;
+                continue;
+            }
+            if (marker == SOS) {
+                break;
+            }
+            int length = u16(jpeg, position + 2, false);
+            int start = position + 4;
+            int end = position + 2 + length;
+            if (length < 2 || end > jpeg.length) {
+                break;
+            }
+            if ((marker >= APP1 && marker <= APP15) || marker == COM) {
+                hasMetadata = true;
+            }
+            if (marker == APP1 && isExif(jpeg, start, end)) {
+                orientation = exifOrientation(jpeg, start + 6, end);
+            }
+            position = end;
+        }
+        return new Info(hasMetadata, orientation);
+    }
+
+    /**
+     * Returns the image as it should be displayed for an EXIF orientation.
+     */
+    public static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);
+            case 8 -> new AffineTransform(0, -1, 1, 0, 0, w);
+            default -> null;
+        };
+        if (transform == null) {
+            return image;
+        }
+
+        boolean swapped = orientation >= 5;
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage oriented = new BufferedImage(swapped ? h : w, swapped ? w : h, type);
+        Graphics2D g = oriented.createGraphics();
+        try {
+            g.drawImage(image, transform, null);
+        } finally {
+            g.dispose();
+        }
+        return oriented;
+    }
+
+    private static boolean isExif(byte[] jpeg, int start, int end) {
+        return end - start >= 14
+                && jpeg[start] == 'E' && jpeg[start + 1] == 'x' && jpeg[start + 2] == 'i' && jpeg[start + 3] == 'f'
+                && jpeg[start + 4] == 0 && jpeg[start + 5] == 0;
+    }
+
+    // Looks the orientation tag up in IFD0 of the TIFF structure starting at tiff
+    private static int exifOrientation(byte[] jpeg, int tiff, int end) {
+        boolean littleEndian;
+        if (jpeg[tiff] == 'I' && jpeg[tiff + 1] == 'I') {
+            littleEndian = true;
+        } else if (jpeg[tiff] == 'M' && jpeg[tiff + 1] == 'M') {
+            littleEndian = false;
+        } else {
+            return 1;
+        }
+
+        long ifd = tiff + u32(jpeg, tiff + 4, littleEndian);
+        if (ifd + 2 > end) {
+            return 1;
+        }
+        int entries = u16(jpeg, (int) ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = (int) ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (u16(jpeg, entry, littleEndian) == ORIENTATION_TAG) {
+                int value = u16(jpeg, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int u16(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? (b1 << 8) | b0 : (b0 << 8) | b1;
+    }
+
+    private static long u32(byte[] data, int offset, boolean littleEndian) {
+        long high = u16(data, littleEndian ? offset + 2 : offset, littleEndian);
+        long low = u16(data, littleEndian ? offset : offset + 2, littleEndian);
+        return (high << 16) | low;
+    }
+}
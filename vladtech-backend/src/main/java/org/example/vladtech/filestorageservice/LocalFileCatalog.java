@@ -0,0 +1,124 @@
+package org.example.vladtech.filestorageservice;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves files under the local upload root and remembers their size, modification time and
+ * ETag, so repeated requests for the same gallery image do not stat the file every time. An
+ * entry is re-checked against the filesystem once it is older than the configured TTL.
+ */
+@Component
+@Slf4j
+public class LocalFileCatalog {
+
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]{0,254}");
+
+    private final Path root;
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final Map<Path, LocalFile> entries = new ConcurrentHashMap<>();
+
+    public LocalFileCatalog(@Value("${filestorage.local.root:uploads}") String root,
+                            @Value("${filestorage.local.attribute-ttl-ms:2000}") long ttlMillis,
+                            @Value("${filestorage.local.max-attribute-entries:10000}") int maxEntries) {
+        this.root = Paths.get(root).toAbsolutePath().normalize();
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Looks up {@code filename} inside {@code directory} (relative to the upload root).
+     *
+     * @throws IllegalArgumentException if the name could escape the directory
+     * @throws FileNotFoundException    if there is no regular file with that name
+     */
+    public LocalFile lookup(String directory, String filename) throws IOException {
+        if (filename == null || !SAFE_NAME.matcher(filename).matches() || filename.contains("..")) {
+            throw new IllegalArgumentException("Invalid filename");
+        }
+        Path base = root.resolve(directory).normalize();
+        Path path = base.resolve(filename).normalize();
+        if (!path.startsWith(base) || !path.getParent().equals(base)) {
+            throw new IllegalArgumentException("Invalid filename");
+        }
+
+        long now = System.currentTimeMillis();
+        LocalFile cached = entries.get(path);
+        if (cached != null && now - cached.checkedAt() < ttlMillis) {
+            return cached;
+        }
+
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            entries.remove(path);
+            throw new FileNotFoundException("File not found: " + filename);
+        }
+        if (!attributes.isRegularFile()) {
+            entries.remove(path);
+            throw new FileNotFoundException("File not found: " + filename);
+        }
+
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        LocalFile current;
+        if (cached != null && cached.size() == size && cached.lastModified() == lastModified) {
+            current = cached.recheckedAt(now);
+        } else {
+            MediaType contentType = MediaTypeFactory.getMediaType(filename).orElse(MediaType.APPLICATION_OCTET_STREAM);
+            current = new LocalFile(path, size, lastModified, etagOf(size, lastModified), contentType, now);
+        }
+
+        if (cached == null && entries.size() >= maxEntries) {
+            // Entries are cheap to rebuild; dropping them all keeps this bounded without bookkeeping
+            log.debug("Local file attribute cache full ({} entries), clearing", entries.size());
+            entries.clear();
+        }
+        entries.put(path, current);
+        return current;
+    }
+
+    /**
+     * Drops the remembered attributes of a file, e.g. after it was replaced or deleted.
+     */
+    public void invalidate(String directory, String filename) {
+        entries.remove(root.resolve(directory).resolve(filename).normalize());
+    }
+
+    /**
+     * Absolute path of a directory below the upload root.
+     */
+    public Path directory(String directory) {
+        return root.resolve(directory).normalize();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static String etagOf(long size, long lastModified) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(size) + "\"";
+    }
+
+    public record LocalFile(Path path, long size, long lastModified, String etag, MediaType contentType, long checkedAt) {
+        LocalFile recheckedAt(long time) {
+            return new LocalFile(path, size, lastModified, etag, contentType, time);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.vladtech.filestorageservice;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves portfolio images from the local upload directory. Takes precedence over the generic
+ * /uploads/** resource handler so that large gallery images can be handed to the container's
+ * sendfile support (Tomcat NIO) instead of being copied through heap buffers. When sendfile is
+ * not available the body is copied through one small buffer: a servlet output stream only takes
+ * byte arrays, so {@link FileChannel#transferTo} would stage every block twice to reach it.
+ */
+@RestController
+@RequestMapping("/uploads/portfolio")
+@RequiredArgsConstructor
+@Slf4j
+public class LocalFileController {
+
+    static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private static final String DIRECTORY = "portfolio";
+
+    private final LocalFileCatalog localFileCatalog;
+
+    // Below this size a plain write is cheaper than setting up sendfile (Tomcat's own default)
+    @Value("${filestorage.local.sendfile-min-bytes:49152}")
+    private long sendfileMinBytes;
+
+    @GetMapping("/{filename:.+}")
+    public ResponseEntity<StreamingResponseBody> getPortfolioImage(
+            @PathVariable String filename,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String rangeHeader,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            HttpServletRequest request) {
+
+        try {
+            LocalFileCatalog.LocalFile file = localFileCatalog.lookup(DIRECTORY, filename);
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setETag(file.etag());
+            headers.setLastModified(file.lastModified());
+            // Content-addressed names never change meaning; older uploads may be overwritten in place
+            headers.setCacheControl(MediaUrls.isContentAddressed(filename)
+                    ? FileController.IMMUTABLE
+                    : CacheControl.maxAge(7, TimeUnit.DAYS).cachePublic());
+
+            if (ConditionalRequestSupport.isNotModified(ifNoneMatch, ifModifiedSince, file.etag(), file.lastModified())) {
+                log.debug("Portfolio file not modified: {}", filename);
+                return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+            }
+
+            headers.setContentType(file.contentType());
+            headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+            long length = file.size();
+            if (rangeHeader != null && ByteRangeSupport.isWellFormed(rangeHeader)
+                    && ByteRangeSupport.ifRangeMatches(ifRange, file.etag(), file.lastModified())) {
+                return serveRanges(file, headers, rangeHeader, request);
+            }
+
+            headers.setContentLength(length);
+            return serve(file, headers, HttpStatus.OK, 0, length, request);
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid portfolio file requested: {}", filename);
+            return ResponseEntity.badRequest().build();
+
+        } catch (FileNotFoundException e) {
+            log.warn("Portfolio file not found: {}", filename);
+            return ResponseEntity.notFound().build();
+
+        } catch (Exception e) {
+            log.error("Error serving portfolio file: {}", filename, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> serveRanges(LocalFileCatalog.LocalFile file,
+                                                             HttpHeaders headers,
+                                                             String rangeHeader,
+                                                             HttpServletRequest request) {
+        long length = file.size();
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve(rangeHeader, length);
+
+        if (ranges.isEmpty()) {
+            HttpHeaders errorHeaders = new HttpHeaders();
+            errorHeaders.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            errorHeaders.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+            return new ResponseEntity<>(errorHeaders, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+        }
+
+        if (ranges.size() == 1) {
+            ByteRangeSupport.ByteRange range = ranges.get(0);
+            headers.setContentLength(range.length());
+            headers.set(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+            return serve(file, headers, HttpStatus.PARTIAL_CONTENT, range.start(), range.length(), request);
+        }
+
+        String boundary = MimeTypeUtils.generateMultipartBoundaryString();
+        String partContentType = file.contentType().toString();
+        headers.set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+
+        StreamingResponseBody body = outputStream -> {
+            try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+                ByteRangeSupport.writeMultipart(outputStream, ranges, partContentType, length, boundary,
+                        range -> rangeStream(channel, range));
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.PARTIAL_CONTENT);
+    }
+
+    private ResponseEntity<StreamingResponseBody> serve(LocalFileCatalog.LocalFile file,
+                                                       HttpHeaders headers,
+                                                       HttpStatus status,
+                                                       long start,
+                                                       long count,
+                                                       HttpServletRequest request) {
+        if ("HEAD".equals(request.getMethod())) {
+            return new ResponseEntity<>(headers, status);
+        }
+
+        if (count >= sendfileMinBytes && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // The container writes the bytes straight from the page cache once the headers are
+            // committed; the response must carry no body of its own.
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.path().toString());
+            request.setAttribute(SENDFILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_END_ATTR, start + count);
+            log.debug("Serving {} bytes of {} via sendfile", count, file.path().getFileName());
+            return new ResponseEntity<>(headers, status);
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (FileChannel channel = FileChannel.open(file.path(), StandardOpenOption.READ)) {
+                transfer(channel, start, count, outputStream);
+            }
+        };
+        return new ResponseEntity<>(body, headers, status);
+    }
+
+    static void transfer(FileChannel channel, long start, long count, OutputStream outputStream) throws IOException {
+        long copied = rangeStream(channel, new ByteRangeSupport.ByteRange(start, start + count - 1))
+                .transferTo(outputStream);
+        if (copied < count) {
+            // File shrank underneath us; the declared Content-Length can no longer be honoured
+            throw new IOException("Unexpected end of file at position " + (start + copied));
+        }
+        outputStream.flush();
+    }
+
+    private static InputStream rangeStream(FileChannel channel, ByteRangeSupport.ByteRange range) throws IOException {
+        channel.position(range.start());
+        return new FilterInputStream(Channels.newInputStream(channel)) {
+            private long remaining = range.length();
+
+            @Override
+            public int read() throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int b = super.read();
+                if (b >= 0) {
+                    remaining--;
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (remaining <= 0) {
+                    return -1;
+                }
+                int n = super.read(b, off, (int) Math.min(len, remaining));
+                if (n > 0) {
+                    remaining -= n;
+                }
+                return n;
+            }
+
+            @Override
+            public void close() {
+                // The channel is shared by all parts and closed by the caller
+            }
+        };
+    }
+}
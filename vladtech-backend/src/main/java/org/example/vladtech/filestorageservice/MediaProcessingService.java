@@ -0,0 +1,384 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background clean-up of uploaded photos: strips EXIF/XMP metadata (applying the EXIF
+ * orientation to the pixels first), scales images larger than {@code max-dimension} down and
+ * recompresses JPEGs to {@code jpeg-quality}, and records the pixel size on the fs.files
+ * document.
+ *
+ * Uploads are queued by id on a small bounded pool of their own; when the queue is full the
+ * upload is served as stored until {@link #requeueUnprocessed()} picks it up again, which also
+ * retries uploads whose processing failed, up to {@code max-attempts} times. The original is
+ * never modified: the optimized copy is stored as a variant of it ({@code metadata.variantOf},
+ * so it is deleted and collected with it) and takes over in one conditional update that sets
+ * {@code metadata.optimizedId}, which {@link FileStorageService#loadResourceWithMetadata(String)}
+ * follows. URLs keep the upload's own hash as their version; until {@link #awaitsProcessing}
+ * turns false the bytes behind them may still change, so they are not cached as immutable.
+ */
+@Slf4j
+@Service
+public class MediaProcessingService implements DisposableBean {
+
+    // Formats that are worth re-encoding; GIFs may be animated and WebP has no ImageIO codec
+    private static final Map<String, String> FORMATS = Map.of(
+            "image/jpeg", "jpeg",
+            "image/png", "png");
+
+    private final GridFsTemplate gridFsTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileCache fileCache;
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final long minBytes;
+    private final long maxPixels;
+    private final int maxAttempts;
+    private final long retryAfterMillis;
+    private final ThreadPoolExecutor executor;
+    // Ids queued or being processed, so the sweep does not queue them a second time
+    private final Set<ObjectId> pending = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong optimized = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong bytesSaved = new AtomicLong();
+    private final AtomicLong totalProcessingMillis = new AtomicLong();
+    private final AtomicLong maxProcessingMillis = new AtomicLong();
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+
+    public MediaProcessingService(GridFsTemplate gridFsTemplate,
+                                  GridFsRawStore gridFsRawStore,
+                                  FileCache fileCache,
+                                  @Value("${filestorage.processing.enabled:true}") boolean enabled,
+                                  @Value("${filestorage.processing.threads:2}") int threads,
+                                  @Value("${filestorage.processing.queue-capacity:200}") int queueCapacity,
+                                  @Value("${filestorage.processing.max-dimension:2560}") int maxDimension,
+                                  @Value("${filestorage.processing.jpeg-quality:0.82}") float jpegQuality,
+                                  @Value("${filestorage.processing.min-bytes:262144}") long minBytes,
+                                  @Value("${filestorage.images.max-pixels:40000000}") long maxPixels,
+                                  @Value("${filestorage.processing.max-attempts:3}") int maxAttempts,
+                                  @Value("${filestorage.processing.retry-after-ms:600000}") long retryAfterMillis) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.gridFsRawStore = gridFsRawStore;
+        this.fileCache = fileCache;
+        this.enabled = enabled;
+        this.maxDimension = maxDimension;
+        this.jpegQuality = jpegQuality;
+        this.minBytes = minBytes;
+        this.maxPixels = maxPixels;
+        this.maxAttempts = maxAttempts;
+        this.retryAfterMillis = retryAfterMillis;
+
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "media-processing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    // Decoding is CPU-heavy; let request threads win
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public record ProcessingStats(boolean enabled, int queued, int active, long submitted, long rejected,
+                                  long requeued, long optimized, long unchanged, long failed, long bytesSaved,
+                                  long averageProcessingMillis, long maxProcessingMillis,
+                                  long averageWaitMillis) {
+    }
+
+    public boolean supports(String contentType) {
+        return contentType != null && FORMATS.containsKey(contentType.toLowerCase());
+    }
+
+    /**
+     * Whether the bytes served for a stored file may still be replaced by an optimized copy:
+     * a supported upload that is neither processed nor out of attempts. Optimized copies and
+     * variants never are.
+     */
+    public boolean awaitsProcessing(Document metadata) {
+        if (!enabled || metadata == null || !supports(metadata.getString("contentType"))) {
+            return false;
+        }
+        Object failures = metadata.get("processingFailures");
+        return !metadata.containsKey("processedAt")
+                && !metadata.containsKey("optimizedId")
+                && !metadata.containsKey("variantOf")
+                && !(failures instanceof Number count && count.intValue() >= maxAttempts);
+    }
+
+    /**
+     * Queues a freshly stored upload for processing. Never blocks; returns false when the
+     * upload is not queued (disabled, unsupported type or queue full).
+     */
+    public boolean enqueue(ObjectId fileId, String contentType) {
+        if (!enabled || !supports(contentType)) {
+            return false;
+        }
+        if (!pending.add(fileId)) {
+            return true;
+        }
+        long queuedAt = System.currentTimeMillis();
+        try {
+            executor.execute(() -> {
+                totalWaitMillis.addAndGet(System.currentTimeMillis() - queuedAt);
+                try {
+                    run(fileId);
+                } finally {
+                    pending.remove(fileId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(fileId);
+            rejected.incrementAndGet();
+            log.warn("Media processing queue full, {} is served as uploaded until the next sweep", fileId);
+            return false;
+        }
+        submitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Queues supported uploads that were never processed: refused by a full queue, lost to a
+     * restart, or failed fewer than {@code max-attempts} times. Uploads younger than
+     * {@code retry-after-ms} are left to the queue they were put on. Takes no more than the
+     * queue has room for, so a backlog drains over several sweeps.
+     */
+    @Scheduled(fixedDelayString = "${filestorage.processing.sweep-interval-ms:300000}",
+            initialDelayString = "${filestorage.processing.sweep-initial-delay-ms:120000}")
+    public int requeueUnprocessed() {
+        int room = executor.getQueue().remainingCapacity();
+        if (!enabled || room == 0) {
+            return 0;
+        }
+        int queued = 0;
+        for (Document file : gridFsRawStore.filesCollection()
+                .find(Filters.and(
+                        Filters.in("metadata.contentType", FORMATS.keySet()),
+                        Filters.exists("metadata.processedAt", false),
+                        Filters.exists("metadata.optimizedId", false),
+                        Filters.exists("metadata.variantOf", false),
+                        Filters.ne("metadata.deleting", true),
+                        Filters.not(Filters.gte("metadata.processingFailures", maxAttempts)),
+                        Filters.lt("uploadDate", new Date(System.currentTimeMillis() - retryAfterMillis))))
+                .projection(Projections.include("_id", "metadata.contentType"))
+                .limit(room)) {
+            ObjectId fileId = file.getObjectId("_id");
+            if (pending.contains(fileId)) {
+                continue;
+            }
+            if (!enqueue(fileId, file.get("metadata", Document.class).getString("contentType"))) {
+                break;
+            }
+            queued++;
+        }
+        if (queued > 0) {
+            requeued.addAndGet(queued);
+            log.info("Queued {} unprocessed uploads for media processing", queued);
+        }
+        return queued;
+    }
+
+    public ProcessingStats stats() {
+        long finished = optimized.get() + unchanged.get() + failed.get();
+        return new ProcessingStats(enabled, executor.getQueue().size(), executor.getActiveCount(),
+                submitted.get(), rejected.get(), requeued.get(), optimized.get(), unchanged.get(), failed.get(), bytesSaved.get(),
+                finished > 0 ? totalProcessingMillis.get() / finished : 0, maxProcessingMillis.get(),
+                finished > 0 ? totalWaitMillis.get() / finished : 0);
+    }
+
+    private void run(ObjectId fileId) {
+        long started = System.nanoTime();
+        try {
+            if (process(fileId)) {
+                optimized.incrementAndGet();
+            } else {
+                unchanged.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("Failed to process upload {}: {}", fileId, e.getMessage());
+            // Counted so the sweep gives up on an upload that fails every time
+            try {
+                gridFsRawStore.filesCollection().updateOne(Filters.eq("_id", fileId),
+                        Updates.inc("metadata.processingFailures", 1));
+                fileCache.invalidate(fileId);
+            } catch (RuntimeException countFailed) {
+                log.warn("Could not record failed processing of {}: {}", fileId, countFailed.getMessage());
+            }
+        } finally {
+            long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            totalProcessingMillis.addAndGet(millis);
+            maxProcessingMillis.accumulateAndGet(millis, Math::max);
+        }
+    }
+
+    /**
+     * Processes one stored upload. Returns true when an optimized copy took over.
+     */
+    public boolean process(ObjectId fileId) throws IOException {
+        GridFSFile file = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(fileId)));
+        if (file == null) {
+            return false;
+        }
+        Document metadata = file.getMetadata() != null ? file.getMetadata() : new Document();
+        String contentType = metadata.getString("contentType");
+        if (metadata.containsKey("optimizedId") || metadata.containsKey("processedAt") || !supports(contentType)) {
+            return false;
+        }
+        // Resumable uploads may exceed what is read into memory here; settled so the sweep stops picking them
+        if (file.getLength() > FileStorageService.MAX_FILE_SIZE) {
+            log.info("Not processing upload {}: {} bytes", fileId, file.getLength());
+            markProcessed(fileId, List.of(Updates.set("metadata.processingSkipped", "too large")));
+            return false;
+        }
+
+        byte[] content;
+        try (InputStream in = gridFsTemplate.getResource(file).getInputStream()) {
+            content = in.readAllBytes();
+        }
+        String format = FORMATS.get(contentType.toLowerCase());
+        JpegSegments.Info jpeg = "jpeg".equals(format) ? JpegSegments.read(content) : new JpegSegments.Info(false, 1);
+
+        BufferedImage decoded;
+        try {
+            decoded = ImageVariantService.decode(content, maxPixels);
+        } catch (ImageVariantService.ImageTooLargeException e) {
+            log.warn("Not processing upload {}: {}", fileId, e.getMessage());
+            markProcessed(fileId, List.of(Updates.set("metadata.processingSkipped", "too large")));
+            return false;
+        }
+        if (decoded == null) {
+            markProcessed(fileId, List.of());
+            return false;
+        }
+        // The displayed size, matching what ImageVariantService records for the original
+        BufferedImage image = JpegSegments.applyOrientation(decoded, jpeg.orientation());
+        List<Bson> dimensions = List.of(
+                Updates.set("metadata.width", image.getWidth()),
+                Updates.set("metadata.height", image.getHeight()));
+
+        boolean oversized = Math.max(image.getWidth(), image.getHeight()) > maxDimension;
+        if (oversized) {
+            int targetWidth = image.getWidth() >= image.getHeight()
+                    ? maxDimension
+                    : Math.max(1, (int) Math.round((double) image.getWidth() * maxDimension / image.getHeight()));
+            image = ImageVariantService.scaleToWidth(image, targetWidth, "jpeg".equals(format));
+        }
+        if (!oversized && !jpeg.hasMetadata() && content.length < minBytes) {
+            markProcessed(fileId, dimensions);
+            return false;
+        }
+
+        byte[] encoded = ImageVariantService.encode(image, format, jpegQuality);
+        // Stripping metadata is worth a few bytes (it may carry the GPS position); otherwise only keep wins
+        if (encoded.length >= content.length && !jpeg.hasMetadata() && !oversized) {
+            markProcessed(fileId, dimensions);
+            return false;
+        }
+
+        String sha256 = HexFormat.of().formatHex(newSha256().digest(encoded));
+        Document optimizedMetadata = new Document();
+        optimizedMetadata.put("variantOf", fileId);
+        optimizedMetadata.put("optimized", true);
+        optimizedMetadata.put("contentType", contentType);
+        optimizedMetadata.put("size", (long) encoded.length);
+        optimizedMetadata.put("width", image.getWidth());
+        optimizedMetadata.put("height", image.getHeight());
+        optimizedMetadata.put("originalFilename", metadata.getString("originalFilename"));
+        optimizedMetadata.put("uploadedAt", System.currentTimeMillis());
+        // Not "sha256": the copy must never be picked as the canonical file of a duplicate upload
+        optimizedMetadata.put("optimizedSha256", sha256);
+        if (metadata.getString("sha256") != null) {
+            // Keeps the URL version of the upload, see FileStorageService.versionOf
+            optimizedMetadata.put("uploadSha256", metadata.getString("sha256"));
+        }
+        ObjectId optimizedId = gridFsTemplate.store(new ByteArrayInputStream(encoded),
+                file.getFilename(), contentType, optimizedMetadata);
+
+        List<Bson> updates = new ArrayList<>(dimensions);
+        updates.add(Updates.set("metadata.optimizedId", optimizedId));
+        updates.add(Updates.set("metadata.optimizedSha256", sha256));
+        updates.add(Updates.set("metadata.optimizedSize", (long) encoded.length));
+        updates.add(Updates.set("metadata.processedAt", System.currentTimeMillis()));
+        UpdateResult result = gridFsRawStore.filesCollection().updateOne(
+                Filters.and(Filters.eq("_id", fileId), Filters.exists("metadata.optimizedId", false)),
+                Updates.combine(updates));
+        if (result.getModifiedCount() == 0) {
+            // Deleted (or processed elsewhere) meanwhile; the copy has nothing to stand in for
+            gridFsTemplate.delete(new Query(Criteria.where("_id").is(optimizedId)));
+            return false;
+        }
+        fileCache.invalidate(fileId);
+
+        bytesSaved.addAndGet(content.length - encoded.length);
+        log.info("Optimized upload {}: {} -> {} bytes, {}x{}, orientation {}",
+                fileId, content.length, encoded.length, image.getWidth(), image.getHeight(), jpeg.orientation());
+        return true;
+    }
+
+    private void markProcessed(ObjectId fileId, List<Bson> dimensions) {
+        List<Bson> updates = new ArrayList<>(dimensions);
+        updates.add(Updates.set("metadata.processedAt", System.currentTimeMillis()));
+        gridFsRawStore.filesCollection().updateOne(Filters.eq("_id", fileId), Updates.combine(updates));
+        fileCache.invalidate(fileId);
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Media processing still running at shutdown");
+            executor.shutdownNow();
+        }
+    }
+}
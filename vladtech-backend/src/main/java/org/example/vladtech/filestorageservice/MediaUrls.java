@@ -0,0 +1,76 @@
+package org.example.vladtech.filestorageservice;
+
+import org.bson.types.ObjectId;
+
+import java.util.regex.Pattern;
+
+/**
+ * Builds and parses the file URLs stored on reviews, projects and portfolio items
+ * ({@code /uploads/reviews/<id>[/v/<version>]}, {@code /uploads/portfolio/<name>}). Absolute
+ * URLs, query strings and fragments are tolerated when parsing.
+ */
+public final class MediaUrls {
+
+    public static final String REVIEW_PREFIX = "/uploads/reviews/";
+    public static final String PORTFOLIO_PREFIX = "/uploads/portfolio/";
+
+    public static final String VERSION_SEGMENT = "/v/";
+
+    // Portfolio files named after their content: 32 hex digits of the SHA-256, then the extension
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("[0-9a-f]{32}\\.[a-z0-9]{1,5}");
+
+    private MediaUrls() {
+    }
+
+    /**
+     * URL of a stored review image; with a version (see {@link FileStorageService#versionOf})
+     * every upload gets a URL of its own, which can be cached as immutable once media processing
+     * is done with the file.
+     */
+    public static String reviewUrl(String id, String version) {
+        return version != null ? REVIEW_PREFIX + id + VERSION_SEGMENT + version : REVIEW_PREFIX + id;
+    }
+
+    public static boolean isContentAddressed(String portfolioFilename) {
+        return portfolioFilename != null && CONTENT_ADDRESSED_NAME.matcher(portfolioFilename).matches();
+    }
+
+    /**
+     * The GridFS id a review image URL (or a bare id) points at, or null if it names none.
+     */
+    public static ObjectId reviewFileId(String urlOrId) {
+        String id = pathTail(urlOrId, REVIEW_PREFIX);
+        if (id == null && urlOrId != null && !urlOrId.contains("/")) {
+            id = urlOrId.trim();
+        }
+        return id != null && ObjectId.isValid(id) ? new ObjectId(id) : null;
+    }
+
+    /**
+     * The file name a portfolio image URL points at, or null if it is not one.
+     */
+    public static String portfolioFilename(String url) {
+        String name = pathTail(url, PORTFOLIO_PREFIX);
+        return name != null && !name.isEmpty() && !name.contains("..") ? name : null;
+    }
+
+    // The single path segment following prefix, without query or fragment
+    private static String pathTail(String url, String prefix) {
+        if (url == null) {
+            return null;
+        }
+        int start = url.indexOf(prefix);
+        if (start < 0) {
+            return null;
+        }
+        String tail = url.substring(start + prefix.length());
+        int end = tail.length();
+        for (char terminator : new char[]{'?', '#', '/'}) {
+            int index = tail.indexOf(terminator);
+            if (index >= 0 && index < end) {
+                end = index;
+            }
+        }
+        return tail.substring(0, end);
+    }
+}
@@ -0,0 +1,298 @@
+package org.example.vladtech.filestorageservice;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental multipart/form-data reader. Parts are exposed one at a time as streams that read
+ * straight from the request body, so memory stays at one fixed buffer however large a part is.
+ * A part's stream is only valid until {@link #nextPart()} is called again; unread bytes of the
+ * current part are skipped then. Reading fails once the body grows past the given total, since
+ * each part's own limit still allows {@code MAX_PARTS} of them.
+ */
+public class MultipartStreamParser {
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final int MAX_PARTS = 64;
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final InputStream in;
+    private final long maxBodyBytes;
+    private final byte[] delimiter;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long bodyBytes;
+
+    private PartInputStream current;
+    private int partCount;
+    private boolean finished;
+
+    public MultipartStreamParser(InputStream in, String boundary) {
+        this(in, boundary, Long.MAX_VALUE);
+    }
+
+    public MultipartStreamParser(InputStream in, String boundary, long maxBodyBytes) {
+        if (boundary == null || boundary.isEmpty() || boundary.length() > 70) {
+            throw new IllegalArgumentException("Invalid multipart boundary");
+        }
+        this.in = in;
+        this.maxBodyBytes = maxBodyBytes;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        // The first boundary has no preceding line break; seed one so every delimiter looks alike
+        buffer[0] = '\r';
+        buffer[1] = '\n';
+        limit = 2;
+        // Anything before the first boundary is preamble and is skipped like a part body
+        current = new PartInputStream();
+    }
+
+    /**
+     * Extracts the boundary parameter of a multipart/form-data Content-Type header.
+     */
+    public static String boundaryOf(String contentType) {
+        if (contentType == null) {
+            throw new IllegalArgumentException("Content-Type must be multipart/form-data");
+        }
+        MediaType mediaType;
+        try {
+            mediaType = MediaType.parseMediaType(contentType);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Content-Type must be multipart/form-data");
+        }
+        if (!MediaType.MULTIPART_FORM_DATA.includes(mediaType) || mediaType.getParameter("boundary") == null) {
+            throw new IllegalArgumentException("Content-Type must be multipart/form-data with a boundary");
+        }
+        String boundary = mediaType.getParameter("boundary");
+        if (boundary.length() >= 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        return boundary;
+    }
+
+    /**
+     * Advances to the next part, or returns null after the closing boundary.
+     */
+    public Part nextPart() throws IOException {
+        if (finished) {
+            return null;
+        }
+        current.skipRemaining();
+
+        // position now sits on a delimiter
+        position += delimiter.length;
+        if (!ensure(2)) {
+            throw new MalformedMultipartException("Unexpected end of multipart body");
+        }
+        if (buffer[position] == '-' && buffer[position + 1] == '-') {
+            finished = true;
+            return null;
+        }
+        // Transport padding may follow the boundary before its line break
+        while (ensure(1) && (buffer[position] == ' ' || buffer[position] == '\t')) {
+            position++;
+        }
+        if (!ensure(2) || buffer[position] != '\r' || buffer[position + 1] != '\n') {
+            throw new MalformedMultipartException("Malformed multipart boundary line");
+        }
+        position += 2;
+
+        if (++partCount > MAX_PARTS) {
+            throw new MalformedMultipartException("Too many parts in multipart body");
+        }
+        Part part = readHeaders();
+        current = new PartInputStream();
+        part.content = current;
+        return part;
+    }
+
+    private Part readHeaders() throws IOException {
+        int end;
+        while ((end = indexOf(HEADER_END, position)) < 0) {
+            if (limit - position >= MAX_HEADER_BYTES) {
+                throw new MalformedMultipartException("Multipart part headers too large");
+            }
+            if (!fill()) {
+                throw new MalformedMultipartException("Unexpected end of multipart headers");
+            }
+        }
+
+        String headerBlock = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+        position = end + HEADER_END.length;
+
+        Part part = new Part();
+        for (String line : headerBlock.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Disposition")) {
+                try {
+                    ContentDisposition disposition = ContentDisposition.parse(value);
+                    part.name = disposition.getName();
+                    part.filename = disposition.getFilename();
+                } catch (IllegalArgumentException e) {
+                    throw new MalformedMultipartException("Invalid Content-Disposition: " + value);
+                }
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                part.contentType = value;
+            }
+        }
+        return part;
+    }
+
+    // Makes at least n unread bytes available; false on end of input
+    private boolean ensure(int n) throws IOException {
+        while (limit - position < n) {
+            if (!fill()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            return false;
+        }
+        int read = in.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        bodyBytes += read;
+        if (bodyBytes > maxBodyBytes) {
+            throw new MalformedMultipartException("Multipart body exceeds maximum size of " + maxBodyBytes + " bytes");
+        }
+        limit += read;
+        return true;
+    }
+
+    private int indexOf(byte[] pattern, int from) {
+        int last = limit - pattern.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    public static final class Part {
+        private String name;
+        private String filename;
+        private String contentType;
+        private InputStream content;
+
+        public String getName() {
+            return name;
+        }
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public boolean isFile() {
+            return filename != null;
+        }
+
+        public InputStream getInputStream() {
+            return content;
+        }
+    }
+
+    /**
+     * Thrown when the request body is not well-formed multipart data.
+     */
+    public static class MalformedMultipartException extends IOException {
+        public MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Body of the current part: everything up to (not including) the next delimiter. Only the
+     * last {@code delimiter.length - 1} buffered bytes are held back, in case they start one.
+     */
+    private final class PartInputStream extends InputStream {
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int n = read(single, 0, 1);
+            return n < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+            if (ended || current != this) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            int available = available();
+            while (available == 0 && !ended) {
+                if (!fill()) {
+                    throw new MalformedMultipartException("Unexpected end of multipart body");
+                }
+                available = available();
+            }
+            if (ended) {
+                return -1;
+            }
+            int count = Math.min(length, available);
+            System.arraycopy(buffer, position, target, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            if (ended || current != this) {
+                return 0;
+            }
+            int found = indexOf(delimiter, position);
+            if (found == position) {
+                ended = true;
+                return 0;
+            }
+            if (found > position) {
+                return found - position;
+            }
+            return Math.max(0, limit - position - (delimiter.length - 1));
+        }
+
+        void skipRemaining() throws IOException {
+            byte[] discard = new byte[4096];
+            while (read(discard, 0, discard.length) >= 0) {
+                // drain
+            }
+        }
+
+        @Override
+        public void close() {
+            // The request stream is owned by the parser; unread bytes are skipped by nextPart()
+        }
+    }
+}
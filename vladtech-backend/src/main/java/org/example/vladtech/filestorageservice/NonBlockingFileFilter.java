@@ -0,0 +1,130 @@
+package org.example.vladtech.filestorageservice;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Non-blocking serving mode for review images ({@code filestorage.nonblocking.enabled}).
+ * Answers {@code GET /uploads/reviews/{id}[/v/{version}]} before it reaches {@link FileController}, with the
+ * same headers, conditional handling and single-range support, but writes the body through
+ * {@link NonBlockingResponseWriter} instead of a StreamingResponseBody that holds a thread
+ * for the whole transfer. Anything else (uploads, deletes, HEAD, multi-range and
+ * unsatisfiable requests, stale versions, errors) goes on to the controller unchanged.
+ */
+@Component
+@ConditionalOnProperty(name = "filestorage.nonblocking.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class NonBlockingFileFilter extends OncePerRequestFilter {
+
+    private static final Pattern FILE_PATH = Pattern.compile("^/uploads/reviews/([0-9a-fA-F]{24})(?:/v/([0-9a-f]+))?$");
+
+    private final FileStorageService fileStorageService;
+    private final NonBlockingResponseWriter nonBlockingResponseWriter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || !FILE_PATH.matcher(path(request)).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean served;
+        try {
+            Matcher matcher = FILE_PATH.matcher(path(request));
+            served = matcher.matches() && serve(request, response, matcher.group(1), matcher.group(2));
+        } catch (IOException | RuntimeException e) {
+            if (request.isAsyncStarted() || response.isCommitted()) {
+                throw e;
+            }
+            // Not found, bad variant width, async unsupported...: the controller answers as usual
+            log.debug("Non-blocking serving declined for {}: {}", request.getRequestURI(), e.getMessage());
+            response.reset();
+            served = false;
+        }
+        if (!served) {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    // Returns false when the request is left to the controller
+    private boolean serve(HttpServletRequest request, HttpServletResponse response, String id, String version)
+            throws IOException {
+        String w = request.getParameter("w");
+        Integer width;
+        try {
+            width = w != null ? Integer.valueOf(w) : null;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        boolean forceDownload = Boolean.parseBoolean(request.getParameter("download"));
+
+        FileStorageService.FileResourceWithMetadata original = fileStorageService.loadResourceWithMetadata(id);
+        if (version != null && !version.equals(FileStorageService.versionOf(original.getMetadata()))) {
+            // The controller issues the redirect to the current version
+            return false;
+        }
+        FileStorageService.FileResourceWithMetadata fileData = width != null
+                ? fileStorageService.loadResourceWithMetadata(id, width)
+                : original;
+        String etag = fileData.getETag();
+        long lastModified = fileData.getLastModified();
+
+        if (ConditionalRequestSupport.isNotModified(request.getHeader(HttpHeaders.IF_NONE_MATCH),
+                request.getHeader(HttpHeaders.IF_MODIFIED_SINCE), etag, lastModified)) {
+            HttpHeaders notModifiedHeaders = FileController.notModifiedHeaders(etag, lastModified);
+            FileController.setCacheControl(notModifiedHeaders, version != null, fileStorageService.hasFinalContent(fileData));
+            send(response, HttpStatus.NOT_MODIFIED, notModifiedHeaders);
+            return true;
+        }
+
+        HttpHeaders headers = FileController.fileHeaders(id, fileData, forceDownload);
+        FileController.setCacheControl(headers, version != null, fileStorageService.hasFinalContent(fileData));
+        long length = fileData.getLength();
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+
+        if (rangeHeader != null && length >= 0 && ByteRangeSupport.isWellFormed(rangeHeader)
+                && ByteRangeSupport.ifRangeMatches(request.getHeader(HttpHeaders.IF_RANGE), etag, lastModified)) {
+            List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve(rangeHeader, length);
+            if (ranges.size() != 1) {
+                return false;
+            }
+            ByteRangeSupport.ByteRange range = ranges.get(0);
+            headers.setContentLength(range.length());
+            headers.set(HttpHeaders.CONTENT_RANGE, range.contentRange(length));
+            send(response, HttpStatus.PARTIAL_CONTENT, headers);
+            nonBlockingResponseWriter.write(request, response,
+                    () -> fileStorageService.openRange(fileData, range.start(), range.end()));
+            return true;
+        }
+
+        log.debug("Serving file without blocking: id={}", id);
+        send(response, HttpStatus.OK, headers);
+        nonBlockingResponseWriter.write(request, response, () -> fileData.getResource().getInputStream());
+        return true;
+    }
+
+    private static void send(HttpServletResponse response, HttpStatus status, HttpHeaders headers) {
+        response.setStatus(status.value());
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -0,0 +1,214 @@
+package org.example.vladtech.filestorageservice;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writes a response body with Servlet non-blocking I/O. The request goes async and no thread
+ * waits on the client: the container calls back when the socket can take more bytes, and the
+ * next block is only read from storage (on the {@link FileIoExecutor} pool, since the Mongo
+ * driver blocks) once the previous one has been handed to the container. A slow client
+ * therefore costs one buffer, not a worker thread, for the length of the download.
+ */
+@Component
+@Slf4j
+public class NonBlockingResponseWriter {
+
+    private final FileIoExecutor fileIoExecutor;
+    private final int bufferSize;
+    private final long timeoutMillis;
+
+    public NonBlockingResponseWriter(FileIoExecutor fileIoExecutor,
+                                     @Value("${filestorage.nonblocking.buffer-size:65536}") int bufferSize,
+                                     @Value("${filestorage.nonblocking.timeout-ms:600000}") long timeoutMillis) {
+        this.fileIoExecutor = fileIoExecutor;
+        this.bufferSize = bufferSize;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @FunctionalInterface
+    public interface ContentSource {
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Starts writing the content of {@code source} to {@code response}, whose status and
+     * headers must already be set, and returns immediately. The request is completed when
+     * the body is written, the client goes away or the timeout expires.
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, ContentSource source) throws IOException {
+        AsyncContext asyncContext = request.startAsync(request, response);
+        asyncContext.setTimeout(timeoutMillis);
+        Transfer transfer = new Transfer(asyncContext, response.getOutputStream(), source, new byte[bufferSize]);
+        asyncContext.addListener(transfer);
+        // The container calls onWritePossible as soon as the listener is set
+        transfer.output.setWriteListener(transfer);
+    }
+
+    private final class Transfer implements WriteListener, AsyncListener {
+        private final AsyncContext asyncContext;
+        private final ServletOutputStream output;
+        private final ContentSource source;
+        private final byte[] buffer;
+
+        private InputStream in;
+        private int position;
+        private int limit;
+        private boolean fetching;
+        private boolean endOfContent;
+        private boolean done;
+        private boolean pumping;
+
+        Transfer(AsyncContext asyncContext, ServletOutputStream output, ContentSource source, byte[] buffer) {
+            this.asyncContext = asyncContext;
+            this.output = output;
+            this.source = source;
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void onWritePossible() {
+            pump();
+        }
+
+        /**
+         * Moves bytes to the container while it accepts them. Called by the container when the
+         * socket is writable again and by the pool when a block has been read. Returns when
+         * the container is full (it calls back) or a read is in flight (the read calls back).
+         */
+        private synchronized void pump() {
+            if (pumping) {
+                // A read ran inline on this thread (pool saturated); the loop below picks it up
+                return;
+            }
+            pumping = true;
+            try {
+                while (!done && output.isReady()) {
+                    if (position < limit) {
+                        output.write(buffer, position, limit - position);
+                        position = limit;
+                    } else if (endOfContent) {
+                        finish();
+                    } else if (fetching) {
+                        return;
+                    } else {
+                        fetching = true;
+                        fileIoExecutor.submit(() -> {
+                            fetch();
+                            return null;
+                        });
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+            } finally {
+                pumping = false;
+            }
+        }
+
+        // Runs on the I/O pool: the only place storage is read
+        private void fetch() {
+            InputStream stream;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                stream = in;
+            }
+            try {
+                if (stream == null) {
+                    stream = source.open();
+                    synchronized (this) {
+                        if (done) {
+                            stream.close();
+                            return;
+                        }
+                        in = stream;
+                    }
+                }
+                int read = stream.readNBytes(buffer, 0, buffer.length);
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    position = 0;
+                    limit = read;
+                    endOfContent = read < buffer.length;
+                    fetching = false;
+                }
+            } catch (Exception e) {
+                fail(e);
+                return;
+            }
+            pump();
+        }
+
+        private synchronized void finish() {
+            if (done) {
+                return;
+            }
+            done = true;
+            closeInput();
+            asyncContext.complete();
+        }
+
+        private synchronized void fail(Throwable e) {
+            if (done) {
+                return;
+            }
+            log.debug("Non-blocking file transfer aborted: {}", e.toString());
+            done = true;
+            closeInput();
+            asyncContext.complete();
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            fail(t);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            synchronized (this) {
+                done = true;
+                closeInput();
+            }
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            fail(new IOException("Transfer timed out"));
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            fail(event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void closeInput() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    log.debug("Failed to close file stream: {}", e.getMessage());
+                }
+                in = null;
+            }
+        }
+    }
+}
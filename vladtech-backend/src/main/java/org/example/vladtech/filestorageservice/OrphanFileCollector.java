@@ -0,0 +1,434 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Mark-and-sweep removal of stored files nothing refers to: GridFS files no review or project
+ * photo points at, and files in uploads/portfolio no portfolio item uses. Deleting a review,
+ * project photo or portfolio item, and reloading the sample data, leave their files behind;
+ * this is what reclaims them.
+ *
+ * The mark phase reads every file URL from the owning collections into a Bloom filter. The
+ * sweep walks fs.files in id order, a batch at a time with a pause in between, and looks up
+ * each file the filter rules out in the owning collections again before deleting it, so a
+ * reference added after the mark still protects its file. Files uploaded or deduplicated onto
+ * within the grace period are never touched, which covers uploads whose review or project is
+ * not saved yet; variants
+ * live and die with their original. Orphaned chunks of unfinished resumable uploads are left to
+ * {@link ResumableUploadService}.
+ */
+@Service
+@Slf4j
+public class OrphanFileCollector {
+
+    // Where file URLs are stored: collection -> fields holding a URL or bare file id
+    static final Map<String, List<String>> REFERENCE_FIELDS = Map.of(
+            "reviews", List.of("photos.filename", "photos.url"),
+            "projects", List.of("photos.photoId", "photos.photoUrl"),
+            "portfolio", List.of("imageUrl"));
+
+    private static final String PORTFOLIO_DIRECTORY = "portfolio";
+    private static final int MAX_SAMPLE = 100;
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileStorageService fileStorageService;
+    private final LocalFileCatalog localFileCatalog;
+    private final FileIoExecutor fileIoExecutor;
+
+    private final boolean enabled;
+    private final boolean scheduledDryRun;
+    private final long graceMillis;
+    private final int batchSize;
+    private final long batchDelayMillis;
+    private final int maxDeletesPerRun;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Progress progress = new Progress(false);
+    private volatile GcStatus lastCompleted;
+
+    public OrphanFileCollector(MongoTemplate mongoTemplate,
+                               GridFsRawStore gridFsRawStore,
+                               FileStorageService fileStorageService,
+                               LocalFileCatalog localFileCatalog,
+                               FileIoExecutor fileIoExecutor,
+                               @Value("${filestorage.gc.enabled:false}") boolean enabled,
+                               @Value("${filestorage.gc.dry-run:true}") boolean scheduledDryRun,
+                               @Value("${filestorage.gc.grace-hours:24}") long graceHours,
+                               @Value("${filestorage.gc.batch-size:200}") int batchSize,
+                               @Value("${filestorage.gc.batch-delay-ms:250}") long batchDelayMillis,
+                               @Value("${filestorage.gc.max-deletes-per-run:1000}") int maxDeletesPerRun) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsRawStore = gridFsRawStore;
+        this.fileStorageService = fileStorageService;
+        this.localFileCatalog = localFileCatalog;
+        this.fileIoExecutor = fileIoExecutor;
+        this.enabled = enabled;
+        this.scheduledDryRun = scheduledDryRun;
+        this.graceMillis = TimeUnit.HOURS.toMillis(graceHours);
+        this.batchSize = batchSize;
+        this.batchDelayMillis = batchDelayMillis;
+        this.maxDeletesPerRun = maxDeletesPerRun;
+    }
+
+    public enum Phase {IDLE, MARKING, SWEEPING_GRIDFS, SWEEPING_LOCAL, DONE, FAILED}
+
+    public record GcStatus(Phase phase, boolean dryRun, Date startedAt, Date finishedAt,
+                           int references, long scannedFiles, long orphanedFiles, long deletedFiles,
+                           long freedBytes, long scannedLocalFiles, long orphanedLocalFiles,
+                           long deletedLocalFiles, List<String> sample, String error) {
+    }
+
+    /**
+     * Progress of the running pass, or the result of the last one.
+     */
+    public GcStatus status() {
+        return progress.snapshot();
+    }
+
+    public GcStatus lastCompleted() {
+        return lastCompleted;
+    }
+
+    /**
+     * Starts a pass in the background. Returns false when one is already running.
+     */
+    public boolean start(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        progress = new Progress(dryRun);
+        fileIoExecutor.submit(() -> {
+            runClaimed(dryRun);
+            return null;
+        });
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${filestorage.gc.interval-ms:86400000}",
+            initialDelayString = "${filestorage.gc.initial-delay-ms:1800000}")
+    public void runScheduled() {
+        // Runs on the I/O pool so the batch pauses don't hold up the scheduler thread
+        if (enabled && !start(scheduledDryRun)) {
+            log.debug("Orphan file collection still running, skipping scheduled pass");
+        }
+    }
+
+    /**
+     * Runs one complete pass on the calling thread.
+     *
+     * @throws IllegalStateException if a pass is already running
+     */
+    public GcStatus run(boolean dryRun) {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Garbage collection is already running");
+        }
+        progress = new Progress(dryRun);
+        return runClaimed(dryRun);
+    }
+
+    private GcStatus runClaimed(boolean dryRun) {
+        Progress current = progress;
+        try {
+            long cutoff = System.currentTimeMillis() - graceMillis;
+
+            current.phase = Phase.MARKING;
+            Set<String> portfolioNames = new HashSet<>();
+            FileReferenceFilter references = mark(portfolioNames);
+            current.references = references.size();
+
+            current.phase = Phase.SWEEPING_GRIDFS;
+            sweepGridFs(references, cutoff, dryRun, current);
+
+            current.phase = Phase.SWEEPING_LOCAL;
+            sweepLocal(portfolioNames, cutoff, dryRun, current);
+
+            current.phase = Phase.DONE;
+            log.info("Orphan file collection {}: {} of {} GridFS files orphaned ({} deleted, {} bytes), {} of {} portfolio files orphaned ({} deleted)",
+                    dryRun ? "dry run" : "finished",
+                    current.orphanedFiles, current.scannedFiles, current.deletedFiles, current.freedBytes,
+                    current.orphanedLocalFiles, current.scannedLocalFiles, current.deletedLocalFiles);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            current.phase = Phase.FAILED;
+            current.error = "Interrupted";
+        } catch (Exception e) {
+            log.error("Orphan file collection failed", e);
+            current.phase = Phase.FAILED;
+            current.error = e.getMessage();
+        } finally {
+            current.finishedAt = new Date();
+            running.set(false);
+        }
+        GcStatus result = current.snapshot();
+        lastCompleted = result;
+        return result;
+    }
+
+    /**
+     * Reads every stored reference: GridFS ids go into the returned filter, portfolio file
+     * names into {@code portfolioNames}.
+     */
+    FileReferenceFilter mark(Set<String> portfolioNames) {
+        List<ObjectId> ids = new ArrayList<>();
+        REFERENCE_FIELDS.forEach((collection, fields) -> {
+            for (Document document : collection(collection).find().projection(Projections.include(fields))) {
+                forEachReference(document, fields, value -> {
+                    ObjectId id = MediaUrls.reviewFileId(value);
+                    if (id != null) {
+                        ids.add(id);
+                    }
+                    String name = MediaUrls.portfolioFilename(value);
+                    if (name != null) {
+                        portfolioNames.add(name);
+                    }
+                });
+            }
+        });
+
+        FileReferenceFilter filter = new FileReferenceFilter(ids.size(), 0.01);
+        ids.forEach(filter::add);
+        log.debug("Marked {} file references ({} bits), {} portfolio files", ids.size(), filter.bitCount(), portfolioNames.size());
+        return filter;
+    }
+
+    private void sweepGridFs(FileReferenceFilter references, long cutoff, boolean dryRun, Progress current) throws InterruptedException {
+        ObjectId after = null;
+        while (true) {
+            List<Document> page = gridFsRawStore.scanFiles(after, batchSize);
+            if (page.isEmpty()) {
+                return;
+            }
+            after = page.get(page.size() - 1).getObjectId("_id");
+            current.scannedFiles += page.size();
+
+            // A variant belongs to its original; everything else to itself
+            Map<ObjectId, ObjectId> ownerOf = new LinkedHashMap<>();
+            Map<ObjectId, Long> lengthOf = new LinkedHashMap<>();
+            for (Document file : page) {
+                Date uploaded = file.getDate("uploadDate");
+                Document metadata = file.get("metadata", Document.class);
+                Object referencedAt = metadata != null ? metadata.get("lastReferencedAt") : null;
+                if (uploaded == null || uploaded.getTime() >= cutoff
+                        || referencedAt instanceof Number time && time.longValue() >= cutoff) {
+                    continue;
+                }
+                ObjectId id = file.getObjectId("_id");
+                Object variantOf = metadata != null ? metadata.get("variantOf") : null;
+                ObjectId owner = variantOf instanceof ObjectId original ? original : id;
+                if (!references.mightContain(owner)) {
+                    ownerOf.put(id, owner);
+                    Object length = file.get("length");
+                    lengthOf.put(id, length instanceof Number number ? number.longValue() : 0L);
+                }
+            }
+
+            if (!ownerOf.isEmpty()) {
+                Set<ObjectId> stillReferenced = findReferenced(new HashSet<>(ownerOf.values()));
+                // Variants of an original that still exists go with it, after its own grace check
+                Set<ObjectId> originals = new HashSet<>();
+                ownerOf.forEach((id, owner) -> {
+                    if (!owner.equals(id)) {
+                        originals.add(owner);
+                    }
+                });
+                Set<ObjectId> presentOriginals = originals.isEmpty()
+                        ? Set.of()
+                        : gridFsRawStore.findMetadata(originals).keySet();
+                for (Map.Entry<ObjectId, ObjectId> entry : ownerOf.entrySet()) {
+                    ObjectId id = entry.getKey();
+                    ObjectId owner = entry.getValue();
+                    if (stillReferenced.contains(owner) || !owner.equals(id) && presentOriginals.contains(owner)) {
+                        continue;
+                    }
+                    current.orphanedFiles++;
+                    current.sample(id.toHexString());
+                    if (dryRun || current.deletes() >= maxDeletesPerRun) {
+                        continue;
+                    }
+                    if (fileStorageService.deleteUnreferenced(id, cutoff)) {
+                        current.deletedFiles++;
+                        current.freedBytes += lengthOf.get(id);
+                        log.debug("Deleted orphaned file {}", id);
+                    }
+                }
+            }
+
+            if (page.size() < batchSize) {
+                return;
+            }
+            pause();
+        }
+    }
+
+    /**
+     * The subset of {@code ids} the owning collections refer to right now, by bare id or by
+     * the plain or content-versioned URL the upload endpoints hand out.
+     */
+    Set<ObjectId> findReferenced(Collection<ObjectId> ids) {
+        List<String> values = new ArrayList<>(ids.size() * 2);
+        StringJoiner hexIds = new StringJoiner("|", "^" + Pattern.quote(MediaUrls.REVIEW_PREFIX) + "(",
+                ")" + Pattern.quote(MediaUrls.VERSION_SEGMENT));
+        for (ObjectId id : ids) {
+            values.add(id.toHexString());
+            values.add(MediaUrls.REVIEW_PREFIX + id.toHexString());
+            hexIds.add(id.toHexString());
+        }
+        String versioned = hexIds.toString();
+
+        Set<ObjectId> referenced = new HashSet<>();
+        REFERENCE_FIELDS.forEach((collection, fields) -> {
+            List<Bson> matches = new ArrayList<>(fields.size() * 2);
+            for (String field : fields) {
+                matches.add(Filters.in(field, values));
+                matches.add(Filters.regex(field, versioned));
+            }
+            for (Document document : collection(collection).find(Filters.or(matches)).projection(Projections.include(fields))) {
+                forEachReference(document, fields, value -> {
+                    ObjectId id = MediaUrls.reviewFileId(value);
+                    if (id != null && ids.contains(id)) {
+                        referenced.add(id);
+                    }
+                });
+            }
+        });
+        return referenced;
+    }
+
+    private void sweepLocal(Set<String> portfolioNames, long cutoff, boolean dryRun, Progress current)
+            throws IOException, InterruptedException {
+        Path directory = localFileCatalog.directory(PORTFOLIO_DIRECTORY);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        int inBatch = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path path : files) {
+                BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                current.scannedLocalFiles++;
+                String name = path.getFileName().toString();
+                if (portfolioNames.contains(name) || attributes.lastModifiedTime().toMillis() >= cutoff) {
+                    continue;
+                }
+                if (collection("portfolio").countDocuments(
+                        Filters.regex("imageUrl", Pattern.quote(MediaUrls.PORTFOLIO_PREFIX + name) + "([?#].*)?$")) > 0) {
+                    continue;
+                }
+
+                current.orphanedLocalFiles++;
+                current.sample(MediaUrls.PORTFOLIO_PREFIX + name);
+                if (!dryRun && current.deletes() < maxDeletesPerRun && Files.deleteIfExists(path)) {
+                    localFileCatalog.invalidate(PORTFOLIO_DIRECTORY, name);
+                    current.deletedLocalFiles++;
+                    current.freedBytes += attributes.size();
+                    log.debug("Deleted orphaned portfolio file {}", name);
+                }
+                if (++inBatch >= batchSize) {
+                    inBatch = 0;
+                    pause();
+                }
+            }
+        }
+    }
+
+    private void pause() throws InterruptedException {
+        if (batchDelayMillis > 0) {
+            Thread.sleep(batchDelayMillis);
+        }
+    }
+
+    private MongoCollection<Document> collection(String name) {
+        return mongoTemplate.getCollection(name);
+    }
+
+    // Calls action with every string found under the dotted field paths, descending into arrays
+    static void forEachReference(Document document, List<String> fields, Consumer<String> action) {
+        for (String field : fields) {
+            collect(document, field.split("\\."), 0, action);
+        }
+    }
+
+    private static void collect(Object value, String[] path, int depth, Consumer<String> action) {
+        if (value instanceof List<?> list) {
+            for (Object element : list) {
+                collect(element, path, depth, action);
+            }
+        } else if (depth == path.length) {
+            if (value instanceof String text) {
+                action.accept(text);
+            }
+        } else if (value instanceof Document document) {
+            collect(document.get(path[depth]), path, depth + 1, action);
+        }
+    }
+
+    private static final class Progress {
+        final boolean dryRun;
+        final Date startedAt = new Date();
+        volatile Phase phase = Phase.IDLE;
+        volatile Date finishedAt;
+        volatile int references;
+        volatile long scannedFiles;
+        volatile long orphanedFiles;
+        volatile long deletedFiles;
+        volatile long freedBytes;
+        volatile long scannedLocalFiles;
+        volatile long orphanedLocalFiles;
+        volatile long deletedLocalFiles;
+        volatile String error;
+        final List<String> sample = new ArrayList<>();
+
+        Progress(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        long deletes() {
+            return deletedFiles + deletedLocalFiles;
+        }
+
+        synchronized void sample(String id) {
+            if (sample.size() < MAX_SAMPLE) {
+                sample.add(id);
+            }
+        }
+
+        synchronized GcStatus snapshot() {
+            return new GcStatus(phase, dryRun, startedAt, finishedAt, references, scannedFiles, orphanedFiles,
+                    deletedFiles, freedBytes, scannedLocalFiles, orphanedLocalFiles, deletedLocalFiles,
+                    List.copyOf(sample), error);
+        }
+    }
+}
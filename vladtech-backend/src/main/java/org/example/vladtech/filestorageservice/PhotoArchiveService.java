@@ -0,0 +1,228 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams every photo of a project or review as one ZIP archive. Each entry is copied from
+ * GridFS or the portfolio directory straight into the response as it is read, so nothing
+ * beyond a copy buffer is held in memory and the client has bytes as soon as the first entry
+ * header is out.
+ *
+ * Images are already compressed, so entries are STORED. A STORED entry needs its CRC-32 before
+ * its data: GridFS files carry one once an earlier export has recorded it; the rest go in as
+ * DEFLATED at level 0 (the same bytes in 64 KB blocks with a few bytes of framing each) and
+ * get their CRC recorded on the way through. Portfolio files are checksummed in a first pass,
+ * which the page cache makes cheap.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PhotoArchiveService {
+
+    // Where photos are listed: collection -> {file id field, URL field} of each photos[] element
+    private static final Map<String, String[]> PHOTO_FIELDS = Map.of(
+            "reviews", new String[]{"filename", "url"},
+            "projects", new String[]{"photoId", "photoUrl"});
+
+    private static final String PORTFOLIO_DIRECTORY = "portfolio";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileStorageService fileStorageService;
+    private final LocalFileCatalog localFileCatalog;
+
+    /**
+     * A photo to archive: a GridFS file, or a file in the portfolio directory.
+     */
+    public record PhotoRef(ObjectId fileId, String portfolioName) {
+    }
+
+    public List<PhotoRef> projectPhotos(String projectIdentifier) throws FileNotFoundException {
+        return photos("projects", Filters.eq("projectIdentifier", projectIdentifier),
+                "Project not found: " + projectIdentifier);
+    }
+
+    public List<PhotoRef> reviewPhotos(String reviewId) throws FileNotFoundException {
+        Object id = ObjectId.isValid(reviewId) ? new ObjectId(reviewId) : reviewId;
+        return photos("reviews", Filters.eq("_id", id), "Review not found: " + reviewId);
+    }
+
+    /**
+     * Writes the photos as a ZIP archive. Photos whose file is gone are left out; the stream
+     * is finished but not closed.
+     */
+    public void writeArchive(List<PhotoRef> photos, OutputStream outputStream) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(outputStream);
+        zip.setLevel(Deflater.NO_COMPRESSION);
+        Set<String> names = new HashSet<>();
+        byte[] buffer = new byte[BUFFER_SIZE];
+
+        int written = 0;
+        for (PhotoRef photo : photos) {
+            try {
+                if (photo.fileId() != null) {
+                    writeGridFsEntry(zip, photo.fileId(), names, buffer);
+                } else {
+                    writeLocalEntry(zip, photo.portfolioName(), names, buffer);
+                }
+                written++;
+            } catch (FileNotFoundException | IllegalArgumentException e) {
+                // Only raised before the entry is started, so the archive stays well-formed
+                log.warn("Photo left out of archive: {} ({})", photo, e.getMessage());
+            }
+            // Push each entry to the client instead of waiting for the container's buffer
+            zip.flush();
+        }
+        zip.finish();
+        log.debug("Photo archive written: {} of {} photos", written, photos.size());
+    }
+
+    private void writeGridFsEntry(ZipOutputStream zip, ObjectId id, Set<String> names, byte[] buffer)
+            throws IOException {
+        FileStorageService.FileResourceWithMetadata file = fileStorageService.loadResourceWithMetadata(id.toHexString());
+        Document metadata = file.getMetadata();
+        long length = file.getLength();
+        Object crc32 = metadata != null ? metadata.get("crc32") : null;
+
+        ZipEntry entry = new ZipEntry(entryName(names,
+                metadata != null ? metadata.getString("originalFilename") : null, id.toHexString()));
+        if (file.getLastModified() >= 0) {
+            entry.setTime(file.getLastModified());
+        }
+
+        try (InputStream in = file.getResource().getInputStream()) {
+            if (crc32 instanceof Number checksum && length >= 0) {
+                stored(entry, length, checksum.longValue());
+                zip.putNextEntry(entry);
+                copy(in, zip, buffer);
+                zip.closeEntry();
+                return;
+            }
+
+            entry.setMethod(ZipEntry.DEFLATED);
+            zip.putNextEntry(entry);
+            CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+            copy(checked, zip, buffer);
+            zip.closeEntry();
+            // Recorded on the file actually read, which is the optimized copy once there is one
+            ObjectId storedId = file.getGridFsFile() != null ? file.getGridFsFile().getObjectId() : id;
+            gridFsRawStore.setChecksum(storedId, checked.getChecksum().getValue());
+        }
+    }
+
+    private void writeLocalEntry(ZipOutputStream zip, String filename, Set<String> names, byte[] buffer)
+            throws IOException {
+        LocalFileCatalog.LocalFile file = localFileCatalog.lookup(PORTFOLIO_DIRECTORY, filename);
+
+        CRC32 crc32 = new CRC32();
+        long length = 0;
+        try (InputStream in = Files.newInputStream(file.path())) {
+            for (int read; (read = in.read(buffer)) >= 0; ) {
+                crc32.update(buffer, 0, read);
+                length += read;
+            }
+        }
+
+        ZipEntry entry = new ZipEntry(entryName(names, filename, filename));
+        entry.setTime(file.lastModified());
+        stored(entry, length, crc32.getValue());
+        zip.putNextEntry(entry);
+        try (InputStream in = Files.newInputStream(file.path())) {
+            copy(in, zip, buffer);
+        }
+        zip.closeEntry();
+    }
+
+    private List<PhotoRef> photos(String collection, Bson filter, String notFound) throws FileNotFoundException {
+        String[] fields = PHOTO_FIELDS.get(collection);
+        Document owner = mongoTemplate.getCollection(collection)
+                .find(filter)
+                .projection(Projections.include("photos." + fields[0], "photos." + fields[1]))
+                .first();
+        if (owner == null) {
+            throw new FileNotFoundException(notFound);
+        }
+
+        Set<PhotoRef> refs = new LinkedHashSet<>();
+        List<?> photos = owner.get("photos", List.class);
+        if (photos != null) {
+            for (Object photo : photos) {
+                if (photo instanceof Document document) {
+                    PhotoRef ref = resolve(document.get(fields[0]), document.get(fields[1]));
+                    if (ref != null) {
+                        refs.add(ref);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(refs);
+    }
+
+    private static PhotoRef resolve(Object id, Object url) {
+        ObjectId fileId = id instanceof String text ? MediaUrls.reviewFileId(text) : null;
+        if (fileId == null && url instanceof String text) {
+            fileId = MediaUrls.reviewFileId(text);
+            if (fileId == null) {
+                String name = MediaUrls.portfolioFilename(text);
+                return name != null ? new PhotoRef(null, name) : null;
+            }
+        }
+        return fileId != null ? new PhotoRef(fileId, null) : null;
+    }
+
+    private static void stored(ZipEntry entry, long length, long crc32) {
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(length);
+        entry.setCompressedSize(length);
+        entry.setCrc(crc32);
+    }
+
+    // Entry names must be unique within an archive: a.jpg, a-2.jpg, a-3.jpg...
+    static String entryName(Set<String> taken, String preferred, String fallback) {
+        String name = preferred != null && !preferred.isBlank() ? preferred : fallback;
+        if (taken.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int n = 2; ; n++) {
+            String candidate = base + "-" + n + extension;
+            if (taken.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, byte[] buffer) throws IOException {
+        for (int read; (read = in.read(buffer)) >= 0; ) {
+            out.write(buffer, 0, read);
+        }
+    }
+}
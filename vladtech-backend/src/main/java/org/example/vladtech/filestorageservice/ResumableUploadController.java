@@ -0,0 +1,211 @@
+package org.example.vladtech.filestorageservice;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resumable review image uploads for files too large, or connections too flaky, for a single
+ * request:
+ *
+ * <pre>
+ * POST   /uploads/reviews/sessions            {filename, contentType, length} -> 201, Location, Upload-Token
+ * PATCH  /uploads/reviews/sessions/{id}       Upload-Offset: n, raw bytes     -> 204, Upload-Offset
+ * HEAD   /uploads/reviews/sessions/{id}                                       -> 204, Upload-Offset
+ * POST   /uploads/reviews/sessions/{id}/complete                              -> 201 {id, url, filename}
+ * DELETE /uploads/reviews/sessions/{id}                                       -> 204
+ * </pre>
+ *
+ * Every request after the first must send the {@code Upload-Token} it returned; with a wrong
+ * token the session answers 404, as if it did not exist. A PATCH at the wrong offset gets 409
+ * with the offset to resume from.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/uploads/reviews/sessions")
+@RequiredArgsConstructor
+public class ResumableUploadController {
+
+    static final String UPLOAD_OFFSET = "Upload-Offset";
+    static final String UPLOAD_LENGTH = "Upload-Length";
+    static final String UPLOAD_TOKEN = "Upload-Token";
+
+    private final ResumableUploadService resumableUploadService;
+    private final FileStorageService fileStorageService;
+
+    @PostMapping
+    public ResponseEntity<?> createSession(@RequestBody Map<String, Object> request) {
+        try {
+            Object length = request.get("length");
+            if (!(length instanceof Number)) {
+                throw new IllegalArgumentException("length is required");
+            }
+            ResumableUploadService.UploadSession session = resumableUploadService.create(
+                    (String) request.get("filename"), (String) request.get("contentType"), ((Number) length).longValue());
+
+            log.debug("Upload session created: id={}", session.id());
+            return ResponseEntity.created(URI.create("/uploads/reviews/sessions/" + session.id()))
+                    .header(UPLOAD_OFFSET, "0")
+                    .header(UPLOAD_LENGTH, String.valueOf(session.length()))
+                    .header(UPLOAD_TOKEN, session.token())
+                    .body(sessionResponse(session));
+
+        } catch (IllegalArgumentException | ClassCastException e) {
+            log.warn("Invalid upload session request: {}", e.getMessage());
+            return badRequest(e.getMessage());
+        }
+    }
+
+    @RequestMapping(value = "/{id}", method = {RequestMethod.HEAD, RequestMethod.GET})
+    public ResponseEntity<?> getSession(@PathVariable String id,
+                                        @RequestHeader(UPLOAD_TOKEN) String token,
+                                        HttpServletRequest request) {
+        try {
+            ResumableUploadService.UploadSession session = resumableUploadService.get(id, token);
+            HttpHeaders headers = offsetHeaders(session);
+            headers.setCacheControl("no-store");
+            if ("HEAD".equals(request.getMethod())) {
+                return new ResponseEntity<>(headers, HttpStatus.NO_CONTENT);
+            }
+            return new ResponseEntity<>(sessionResponse(session), headers, HttpStatus.OK);
+
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PatchMapping("/{id}")
+    public ResponseEntity<?> appendChunk(@PathVariable String id,
+                                         @RequestHeader(UPLOAD_TOKEN) String token,
+                                         @RequestHeader(UPLOAD_OFFSET) long offset,
+                                         HttpServletRequest request) {
+        try {
+            ResumableUploadService.UploadSession session =
+                    resumableUploadService.append(id, token, offset, request.getInputStream());
+            return new ResponseEntity<>(offsetHeaders(session), HttpStatus.NO_CONTENT);
+
+        } catch (ResumableUploadService.OffsetMismatchException e) {
+            log.debug("Upload offset mismatch: id={}, sent={}, current={}", id, offset, e.getCurrentOffset());
+            Map<String, Object> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            error.put("offset", e.getCurrentOffset());
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(UPLOAD_OFFSET, String.valueOf(e.getCurrentOffset()))
+                    .body(error);
+
+        } catch (IllegalStateException e) {
+            return conflict(e.getMessage());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid upload chunk: id={}, {}", id, e.getMessage());
+            return badRequest(e.getMessage());
+
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+
+        } catch (IOException e) {
+            // Usually the client went away; what arrived is kept and the client resumes from there
+            log.warn("Upload chunk interrupted: id={}, {}", id, e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to store upload chunk");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    @PostMapping("/{id}/complete")
+    public ResponseEntity<?> completeSession(@PathVariable String id,
+                                             @RequestHeader(UPLOAD_TOKEN) String token) {
+        try {
+            String filename = resumableUploadService.get(id, token).filename();
+            String fileId = resumableUploadService.complete(id, token);
+
+            Map<String, String> response = new HashMap<>();
+            response.put("id", fileId);
+            response.put("url", fileStorageService.urlFor(fileId));
+            response.put("filename", filename);
+
+            log.info("Resumable upload completed: session={}, id={}, filename={}", id, fileId, filename);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+
+        } catch (IllegalStateException e) {
+            return conflict(e.getMessage());
+
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid upload completion: id={}, {}", id, e.getMessage());
+            return badRequest(e.getMessage());
+
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+
+        } catch (IOException e) {
+            log.error("Failed to complete upload session {}", id, e);
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Failed to upload file");
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancelSession(@PathVariable String id,
+                                           @RequestHeader(UPLOAD_TOKEN) String token) {
+        try {
+            resumableUploadService.cancel(id, token);
+            return ResponseEntity.noContent().build();
+
+        } catch (IllegalStateException e) {
+            return conflict(e.getMessage());
+
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    private static HttpHeaders offsetHeaders(ResumableUploadService.UploadSession session) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(UPLOAD_OFFSET, String.valueOf(session.offset()));
+        headers.set(UPLOAD_LENGTH, String.valueOf(session.length()));
+        return headers;
+    }
+
+    private static Map<String, Object> sessionResponse(ResumableUploadService.UploadSession session) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("id", session.id());
+        if (session.token() != null) {
+            response.put("token", session.token());
+        }
+        response.put("filename", session.filename());
+        response.put("offset", session.offset());
+        response.put("length", session.length());
+        response.put("chunkSize", ResumableUploadService.CHUNK_SIZE);
+        response.put("expiresAt", session.expiresAt());
+        return response;
+    }
+
+    private static ResponseEntity<Map<String, String>> badRequest(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.badRequest().body(error);
+    }
+
+    private static ResponseEntity<Map<String, String>> conflict(String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+    }
+}
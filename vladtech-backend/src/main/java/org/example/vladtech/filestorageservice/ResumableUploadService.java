@@ -0,0 +1,434 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumable uploads: a client creates a session for a file of known length, sends the bytes in
+ * any number of PATCH requests at increasing offsets, and finalizes. Sessions live in Mongo and
+ * bytes go straight into GridFS chunk documents under the session id (which becomes the file
+ * id), so an interrupted upload resumes from the last stored byte, also after a restart, and
+ * memory per session is one chunk. The fs.files document is only written on finalize, which is
+ * what makes the file visible. A finalized session is kept, without its lease, until it expires,
+ * so a client that retries {@code complete} after a lost response gets the same file id back.
+ *
+ * Session ids are ObjectIds, which are easy to guess, so every session also gets a random upload
+ * token, handed out once by {@link #create} and required by every other operation. Only its hash
+ * is stored, and a wrong token looks exactly like a session that does not exist.
+ */
+@Service
+@Slf4j
+public class ResumableUploadService {
+
+    // GridFS default chunk size
+    public static final int CHUNK_SIZE = 255 * 1024;
+    private static final long LEASE_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    // Chunks without a file or session are only removed once their id is this old, far longer
+    // than any upload takes to write its fs.files document after its chunks
+    private static final long ORPHAN_CHUNK_AGE_MILLIS = TimeUnit.DAYS.toMillis(1);
+    private static final int SWEEP_BATCH = 100;
+    private static final int TOKEN_BYTES = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final FileStorageService fileStorageService;
+    private final String collection;
+    private final long maxFileSize;
+    private final long sessionTtlMillis;
+    // Orphaned chunks below this id were already looked at; null until the first pass
+    private volatile ObjectId orphanScanFrom;
+
+    public ResumableUploadService(MongoTemplate mongoTemplate,
+                                  GridFsRawStore gridFsRawStore,
+                                  FileStorageService fileStorageService,
+                                  @Value("${filestorage.resumable.collection:upload_sessions}") String collection,
+                                  @Value("${filestorage.resumable.max-file-size:104857600}") long maxFileSize,
+                                  @Value("${filestorage.resumable.session-ttl-ms:86400000}") long sessionTtlMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsRawStore = gridFsRawStore;
+        this.fileStorageService = fileStorageService;
+        this.collection = collection;
+        this.maxFileSize = maxFileSize;
+        this.sessionTtlMillis = sessionTtlMillis;
+    }
+
+    /**
+     * A session as the client sees it; {@code token} is only set on the session {@link #create}
+     * returns, as it is not stored.
+     */
+    public record UploadSession(String id, String token, String filename, String contentType, long length, long offset,
+                                Date expiresAt) {
+        public boolean isComplete() {
+            return offset == length;
+        }
+    }
+
+    /**
+     * Thrown when a PATCH does not start at the session's current offset; the client should
+     * resume from {@link #getCurrentOffset()}.
+     */
+    public static class OffsetMismatchException extends RuntimeException {
+        private final long currentOffset;
+
+        public OffsetMismatchException(long currentOffset) {
+            super("Upload offset mismatch, current offset is " + currentOffset);
+            this.currentOffset = currentOffset;
+        }
+
+        public long getCurrentOffset() {
+            return currentOffset;
+        }
+    }
+
+    // The sweeper removes expired sessions and their chunks; the TTL index only catches
+    // sessions the sweeper missed, a day later, and the sweeper then finds their chunks.
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            sessions().createIndex(Indexes.ascending("expiresAt"),
+                    new IndexOptions().expireAfter(1L, TimeUnit.DAYS));
+        } catch (Exception e) {
+            log.warn("Could not create TTL index on {}: {}", collection, e.getMessage());
+        }
+    }
+
+    public UploadSession create(String originalFilename, String contentType, long length) {
+        contentType = fileStorageService.validateContentType(contentType);
+        String cleanName = fileStorageService.validateFilename(originalFilename);
+        if (length <= 0) {
+            throw new IllegalArgumentException("File is empty");
+        }
+        if (length > maxFileSize) {
+            throw new IllegalArgumentException("File size exceeds maximum limit of " +
+                    (maxFileSize / 1024 / 1024) + "MB");
+        }
+
+        ObjectId id = new ObjectId();
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        RANDOM.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        Date now = new Date();
+        Document session = new Document("_id", id)
+                .append("tokenHash", tokenHash(token))
+                .append("filename", cleanName)
+                .append("contentType", contentType)
+                .append("length", length)
+                .append("chunkSize", CHUNK_SIZE)
+                .append("offset", 0L)
+                .append("createdAt", now)
+                .append("expiresAt", new Date(now.getTime() + sessionTtlMillis));
+        sessions().insertOne(session);
+        log.debug("Upload session created: id={}, filename={}, length={}", id, cleanName, length);
+        return toSession(session, token);
+    }
+
+    public UploadSession get(String id, String token) throws FileNotFoundException {
+        Document session = sessions().find(owned(parseId(id), token)).first();
+        if (session == null) {
+            throw new FileNotFoundException("Upload session not found: " + id);
+        }
+        return toSession(session, null);
+    }
+
+    /**
+     * Stores the bytes of {@code body}, which must continue the upload at {@code offset}. The
+     * offset is committed after every chunk, and the bytes received so far are kept when the
+     * body breaks off, so the client can always resume from {@link UploadSession#offset()}.
+     */
+    public UploadSession append(String id, String token, long offset, InputStream body) throws IOException {
+        ObjectId sessionId = parseId(id);
+        Document session = claim(sessionId, token, offset);
+        try {
+            long length = session.getLong("length");
+            int chunkSize = session.getInteger("chunkSize");
+
+            long position = offset;
+            int n = (int) (position / chunkSize);
+            int fill = (int) (position % chunkSize);
+            byte[] buffer = new byte[chunkSize];
+            if (fill > 0) {
+                // Continue the partial chunk the previous request ended with
+                byte[] partial = gridFsRawStore.readChunk(sessionId, n);
+                if (partial == null || partial.length != fill) {
+                    throw new IOException("Upload session " + id + " is missing chunk " + n);
+                }
+                System.arraycopy(partial, 0, buffer, 0, fill);
+            }
+
+            int unsaved = 0;
+            try {
+                while (position < length) {
+                    int wanted = (int) Math.min(chunkSize - fill, length - position);
+                    int read = body.readNBytes(buffer, fill, wanted);
+                    fill += read;
+                    position += read;
+                    unsaved += read;
+                    if (fill == chunkSize || position == length || read < wanted) {
+                        if (unsaved > 0) {
+                            gridFsRawStore.saveChunk(sessionId, n, buffer, fill);
+                            commitOffset(sessionId, position);
+                            unsaved = 0;
+                        }
+                        if (read < wanted) {
+                            break;
+                        }
+                        n++;
+                        fill = 0;
+                    }
+                }
+            } catch (IOException e) {
+                // The client went away; keep what arrived so it can resume from there
+                if (unsaved > 0) {
+                    gridFsRawStore.saveChunk(sessionId, n, buffer, fill);
+                    commitOffset(sessionId, position);
+                }
+                throw e;
+            }
+
+            if (position == length && body.read() != -1) {
+                throw new IllegalArgumentException("Upload is longer than the declared length of " + length + " bytes");
+            }
+            return get(id, token);
+        } finally {
+            release(sessionId);
+        }
+    }
+
+    /**
+     * Verifies a fully uploaded session and turns it into a stored file. Returns the file id,
+     * which differs from the session id when an identical file already existed.
+     */
+    public String complete(String id, String token) throws IOException {
+        ObjectId sessionId = parseId(id);
+        Document session = claim(sessionId, token, null);
+        try {
+            String finalizedId = session.getString("finalizedId");
+            if (finalizedId != null) {
+                return finalizedId;
+            }
+
+            long length = session.getLong("length");
+            long offset = session.getLong("offset");
+            if (offset != length) {
+                throw new IllegalArgumentException("Upload incomplete: " + offset + " of " + length + " bytes received");
+            }
+            int chunkSize = session.getInteger("chunkSize");
+            String filename = session.getString("filename");
+            String contentType = session.getString("contentType");
+
+            // One pass over the stored chunks checks the image signature and computes the hash
+            MessageDigest sha256 = newSha256();
+            try (InputStream in = new DigestInputStream(ImageSignatures.verify(
+                    gridFsRawStore.openRange(sessionId, chunkSize, 0, length - 1), contentType), sha256)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            } catch (IllegalArgumentException e) {
+                abort(sessionId);
+                throw e;
+            }
+
+            Document metadata = new Document("originalFilename", filename)
+                    .append("contentType", contentType)
+                    .append("size", length)
+                    .append("uploadedAt", System.currentTimeMillis());
+            gridFsRawStore.saveFileDocument(sessionId, filename, length, chunkSize, metadata);
+
+            String storedId = fileStorageService.registerUpload(sessionId, filename, contentType,
+                    HexFormat.of().formatHex(sha256.digest()), length);
+            // Kept until it expires, so a retried complete still finds the file
+            sessions().updateOne(Filters.eq("_id", sessionId), Updates.set("finalizedId", storedId));
+            return storedId;
+        } finally {
+            release(sessionId);
+        }
+    }
+
+    /**
+     * Abandons a session and removes the bytes uploaded for it.
+     */
+    public void cancel(String id, String token) throws FileNotFoundException {
+        ObjectId sessionId = parseId(id);
+        Document session = claim(sessionId, token, null);
+        if (session.getString("finalizedId") != null) {
+            release(sessionId);
+            throw new IllegalStateException("Upload already completed");
+        }
+        abort(sessionId);
+    }
+
+    @Scheduled(fixedDelayString = "${filestorage.resumable.sweep-interval-ms:900000}")
+    public void removeExpiredSessions() {
+        Date now = new Date();
+        int removed = 0;
+        for (Document session : sessions().find(Filters.and(
+                        Filters.lt("expiresAt", now),
+                        Filters.exists("finalizedId", false)))
+                .limit(SWEEP_BATCH)) {
+            abort(session.getObjectId("_id"));
+            removed++;
+        }
+        // The chunks of a finalized session belong to the stored file now
+        long finalized = sessions().deleteMany(Filters.and(
+                Filters.lt("expiresAt", now),
+                Filters.exists("finalizedId", true))).getDeletedCount();
+        if (removed > 0 || finalized > 0) {
+            log.info("Removed {} expired and {} finalized upload sessions", removed, finalized);
+        }
+        removeOrphanedChunks();
+    }
+
+    /**
+     * Deletes chunks that have neither an fs.files document nor a session, left by sessions the
+     * TTL index removed before the sweeper got to them. Each pass continues where the last one
+     * stopped, held back by chunks whose session still exists.
+     */
+    void removeOrphanedChunks() {
+        ObjectId before = ObjectId.getSmallestWithDate(new Date(System.currentTimeMillis() - ORPHAN_CHUNK_AGE_MILLIS));
+        List<ObjectId> candidates = gridFsRawStore.findChunksWithoutFile(orphanScanFrom, before, SWEEP_BATCH);
+        ObjectId next = candidates.size() < SWEEP_BATCH ? before : candidates.get(candidates.size() - 1);
+
+        Set<ObjectId> live = new HashSet<>();
+        if (!candidates.isEmpty()) {
+            for (Document session : sessions().find(Filters.in("_id", candidates)).projection(Projections.include("_id"))) {
+                live.add(session.getObjectId("_id"));
+            }
+        }
+        int deleted = 0;
+        for (ObjectId fileId : candidates) {
+            if (live.contains(fileId)) {
+                // Still uploading; look at it again once it is finished or abandoned
+                if (fileId.compareTo(next) < 0) {
+                    next = fileId;
+                }
+                continue;
+            }
+            gridFsRawStore.deleteChunks(fileId);
+            deleted++;
+        }
+        orphanScanFrom = next;
+        if (deleted > 0) {
+            log.info("Removed the chunks of {} abandoned uploads", deleted);
+        }
+    }
+
+    private void abort(ObjectId sessionId) {
+        gridFsRawStore.deleteChunks(sessionId);
+        sessions().deleteOne(Filters.eq("_id", sessionId));
+        log.debug("Upload session removed: id={}", sessionId);
+    }
+
+    /**
+     * Takes the session's short lease so only one request writes to it at a time. With an
+     * expected offset, the lease is only granted if the session is at that offset.
+     */
+    private Document claim(ObjectId sessionId, String token, Long expectedOffset) throws FileNotFoundException {
+        Date now = new Date();
+        var conditions = Filters.and(
+                owned(sessionId, token),
+                expectedOffset != null ? Filters.eq("offset", expectedOffset) : Filters.empty(),
+                Filters.or(Filters.exists("lockedUntil", false), Filters.lt("lockedUntil", now)));
+        Document claimed = sessions().findOneAndUpdate(conditions,
+                Updates.combine(
+                        Updates.set("lockedUntil", new Date(now.getTime() + LEASE_MILLIS)),
+                        Updates.set("expiresAt", new Date(now.getTime() + sessionTtlMillis))),
+                new FindOneAndUpdateOptions().returnDocument(ReturnDocument.AFTER));
+        if (claimed != null) {
+            return claimed;
+        }
+
+        Document session = sessions().find(owned(sessionId, token)).first();
+        if (session == null) {
+            throw new FileNotFoundException("Upload session not found: " + sessionId);
+        }
+        if (expectedOffset != null && session.getLong("offset") != expectedOffset) {
+            throw new OffsetMismatchException(session.getLong("offset"));
+        }
+        throw new IllegalStateException("Upload session is busy");
+    }
+
+    private void commitOffset(ObjectId sessionId, long offset) {
+        sessions().updateOne(Filters.eq("_id", sessionId), Updates.combine(
+                Updates.set("offset", offset),
+                Updates.set("lockedUntil", new Date(System.currentTimeMillis() + LEASE_MILLIS))));
+    }
+
+    private void release(ObjectId sessionId) {
+        sessions().updateOne(Filters.eq("_id", sessionId), Updates.unset("lockedUntil"));
+    }
+
+    private MongoCollection<Document> sessions() {
+        return mongoTemplate.getCollection(collection);
+    }
+
+    private static ObjectId parseId(String id) {
+        try {
+            return new ObjectId(id);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid id format");
+        }
+    }
+
+    // Matches the session only when the token is the one it was created with
+    private static Bson owned(ObjectId sessionId, String token) {
+        return Filters.and(
+                Filters.eq("_id", sessionId),
+                Filters.eq("tokenHash", token != null ? tokenHash(token) : null),
+                Filters.exists("tokenHash", true));
+    }
+
+    private static String tokenHash(String token) {
+        return HexFormat.of().formatHex(newSha256().digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static UploadSession toSession(Document session, String token) {
+        return new UploadSession(
+                session.getObjectId("_id").toHexString(),
+                token,
+                session.getString("filename"),
+                session.getString("contentType"),
+                session.getLong("length"),
+                session.getLong("offset"),
+                session.getDate("expiresAt"));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
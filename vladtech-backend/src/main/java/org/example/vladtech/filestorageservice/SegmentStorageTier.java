@@ -0,0 +1,375 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cold tier: file contents appended to local segment files and read back through memory-mapped
+ * buffers. Where each file sits is recorded in a small locator document
+ * ({@code {_id: fileId, segment, offset, length}}); the fs.files document is marked with
+ * {@code metadata.tier = "segment"}.
+ *
+ * Segments are append-only. Each record is a 20 byte header (file id, length) followed by the
+ * content, so a segment can be scanned to rebuild lost locators. A segment no locator points
+ * into any more is deleted when its last file is removed, and at startup for segments left
+ * behind earlier; the segment being appended to is always kept. Space freed inside a segment
+ * that still holds live files is not reclaimed.
+ */
+@Component
+@Slf4j
+public class SegmentStorageTier implements StorageTier, DisposableBean {
+
+    public static final String NAME = "segment";
+
+    static final int RECORD_HEADER_BYTES = 12 + 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final int MAX_CACHED_LOCATORS = 10_000;
+
+    private final MongoTemplate mongoTemplate;
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final String locatorCollection;
+
+    private final Object appendLock = new Object();
+    private FileChannel activeChannel;
+    private String activeSegment;
+    private int activeIndex = -1;
+
+    private final Map<String, MappedByteBuffer> mappings = new ConcurrentHashMap<>();
+    private final Map<ObjectId, Locator> locatorCache = new ConcurrentHashMap<>();
+    // Appended records whose locator is not saved yet, per segment; such a segment is never deleted
+    private final Map<String, Integer> pendingLocators = new ConcurrentHashMap<>();
+
+    public SegmentStorageTier(MongoTemplate mongoTemplate,
+                              @Value("${filestorage.tiering.segment-dir:data/segments}") String directory,
+                              @Value("${filestorage.tiering.max-segment-bytes:1073741824}") long maxSegmentBytes,
+                              @Value("${filestorage.tiering.locator-collection:file_locators}") String locatorCollection) {
+        // A single mapping must stay addressable by an int offset
+        if (maxSegmentBytes <= RECORD_HEADER_BYTES || maxSegmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("max-segment-bytes must be between " + RECORD_HEADER_BYTES + " and " + Integer.MAX_VALUE);
+        }
+        this.mongoTemplate = mongoTemplate;
+        this.directory = Paths.get(directory).toAbsolutePath().normalize();
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.locatorCollection = locatorCollection;
+    }
+
+    public record Locator(String segment, long offset, long length) {
+    }
+
+    // Segments are checked for remaining files by locator on every removal
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            locators().createIndex(Indexes.ascending("segment"));
+        } catch (Exception e) {
+            log.warn("Could not create segment index on {}: {}", locatorCollection, e.getMessage());
+            return;
+        }
+        reclaimUnusedSegments();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean holds(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        return metadata != null && NAME.equals(metadata.getString("tier"));
+    }
+
+    /**
+     * Appends {@code length} bytes of {@code content} to the active segment, rolling over to a
+     * new segment when it would grow past the size limit. The bytes are forced to disk before
+     * the locator is returned; the caller records it with {@link #saveLocator}.
+     */
+    public Locator append(ObjectId fileId, InputStream content, long length) throws IOException {
+        if (length + RECORD_HEADER_BYTES > maxSegmentBytes) {
+            throw new IOException("File " + fileId + " is larger than a segment");
+        }
+        synchronized (appendLock) {
+            FileChannel channel = activeChannel(length + RECORD_HEADER_BYTES);
+            long recordStart = channel.size();
+            try {
+                ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+                header.put(fileId.toByteArray()).putLong(length).flip();
+                long position = recordStart;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+
+                ReadableByteChannel source = Channels.newChannel(content);
+                long copied = 0;
+                while (copied < length) {
+                    long transferred = channel.transferFrom(source, position + copied, length - copied);
+                    if (transferred <= 0) {
+                        throw new IOException("Content of " + fileId + " ended after " + copied + " of " + length + " bytes");
+                    }
+                    copied += transferred;
+                }
+                channel.force(false);
+                pendingLocators.merge(activeSegment, 1, Integer::sum);
+                return new Locator(activeSegment, recordStart + RECORD_HEADER_BYTES, length);
+            } catch (IOException | RuntimeException e) {
+                // Drop the partial record so the segment stays a clean sequence of records
+                channel.truncate(recordStart);
+                throw e;
+            }
+        }
+    }
+
+    public void saveLocator(ObjectId fileId, Locator locator) {
+        locators().replaceOne(Filters.eq("_id", fileId),
+                new Document("_id", fileId)
+                        .append("segment", locator.segment())
+                        .append("offset", locator.offset())
+                        .append("length", locator.length())
+                        .append("storedAt", new Date()),
+                new ReplaceOptions().upsert(true));
+        pendingLocators.merge(locator.segment(), -1, (count, change) -> count + change > 0 ? count + change : null);
+        cacheLocator(fileId, locator);
+    }
+
+    /**
+     * Forgets where a file was stored. Its bytes stay in the segment until no other file is left
+     * in it, then the segment is deleted.
+     */
+    @Override
+    public void remove(ObjectId fileId) {
+        locatorCache.remove(fileId);
+        Document removed = locators().findOneAndDelete(Filters.eq("_id", fileId));
+        if (removed != null) {
+            deleteIfUnused(removed.getString("segment"));
+        }
+    }
+
+    // Held under the append lock so the segment cannot become active or gain a record meanwhile
+    private void deleteIfUnused(String segment) {
+        synchronized (appendLock) {
+            if (segment.equals(activeSegment) || pendingLocators.containsKey(segment)
+                    || locators().countDocuments(Filters.eq("segment", segment), new CountOptions().limit(1)) > 0) {
+                return;
+            }
+            // Streams already reading from the old mapping keep it alive until they are done
+            mappings.remove(segment);
+            try {
+                Path path = segmentPath(segment);
+                long size = Files.exists(path) ? Files.size(path) : 0;
+                if (Files.deleteIfExists(path)) {
+                    log.info("Deleted segment {} ({} bytes), no files left in it", segment, size);
+                }
+            } catch (IOException e) {
+                log.warn("Could not delete unused segment {}: {}", segment, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes every segment but the newest that no locator points into: segments emptied before
+     * removals deleted them, or whose appends never got their locator saved.
+     */
+    void reclaimUnusedSegments() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        List<String> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files.map(path -> path.getFileName().toString())
+                    .filter(SegmentStorageTier::isSegmentName)
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list segments in {}: {}", directory, e.getMessage());
+            return;
+        }
+        // The newest is where appends resume after a restart
+        for (String segment : segments.subList(0, Math.max(0, segments.size() - 1))) {
+            deleteIfUnused(segment);
+        }
+    }
+
+    @Override
+    public InputStream openRange(GridFSFile file, long start, long endInclusive) throws IOException {
+        ObjectId fileId = file.getObjectId();
+        Locator locator = locate(fileId);
+        if (start < 0 || endInclusive < start || endInclusive >= locator.length()) {
+            throw new IllegalArgumentException("Invalid range: " + start + "-" + endInclusive);
+        }
+
+        long end = locator.offset() + endInclusive + 1;
+        ByteBuffer view = mapping(locator.segment(), end).duplicate();
+        view.limit((int) end).position((int) (locator.offset() + start));
+        return new ByteBufferInputStream(view);
+    }
+
+    private Locator locate(ObjectId fileId) throws IOException {
+        Locator locator = locatorCache.get(fileId);
+        if (locator != null) {
+            return locator;
+        }
+        Document found = locators().find(Filters.eq("_id", fileId)).first();
+        if (found == null) {
+            throw new IOException("No segment locator for file " + fileId);
+        }
+        locator = new Locator(found.getString("segment"),
+                ((Number) found.get("offset")).longValue(),
+                ((Number) found.get("length")).longValue());
+        cacheLocator(fileId, locator);
+        return locator;
+    }
+
+    private void cacheLocator(ObjectId fileId, Locator locator) {
+        if (locatorCache.size() >= MAX_CACHED_LOCATORS) {
+            locatorCache.clear();
+        }
+        locatorCache.put(fileId, locator);
+    }
+
+    // Maps a segment read-only, remapping once appends have grown it past the current mapping
+    private MappedByteBuffer mapping(String segment, long requiredEnd) throws IOException {
+        MappedByteBuffer mapped = mappings.get(segment);
+        if (mapped != null && mapped.capacity() >= requiredEnd) {
+            return mapped;
+        }
+        Path path = segmentPath(segment);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < requiredEnd) {
+                throw new IOException("Segment " + segment + " is shorter than expected (" + size + " < " + requiredEnd + ")");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        mappings.put(segment, mapped);
+        return mapped;
+    }
+
+    private Path segmentPath(String segment) throws IOException {
+        Path path = directory.resolve(segment).normalize();
+        if (!path.getParent().equals(directory)) {
+            throw new IOException("Invalid segment name: " + segment);
+        }
+        return path;
+    }
+
+    private static boolean isSegmentName(String name) {
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private FileChannel activeChannel(long recordBytes) throws IOException {
+        if (activeChannel == null) {
+            Files.createDirectories(directory);
+            activeIndex = lastSegmentIndex();
+            if (activeIndex < 0) {
+                activeIndex = 0;
+            }
+            openSegment(activeIndex);
+        }
+        if (activeChannel.size() + recordBytes > maxSegmentBytes) {
+            activeChannel.close();
+            openSegment(++activeIndex);
+        }
+        return activeChannel;
+    }
+
+    private void openSegment(int index) throws IOException {
+        activeSegment = String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX);
+        activeChannel = FileChannel.open(directory.resolve(activeSegment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        log.info("Appending cold files to segment {}", directory.resolve(activeSegment));
+    }
+
+    private int lastSegmentIndex() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(SegmentStorageTier::isSegmentName)
+                    .mapToInt(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .max()
+                    .orElse(-1);
+        }
+    }
+
+    private MongoCollection<Document> locators() {
+        return mongoTemplate.getCollection(locatorCollection);
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        synchronized (appendLock) {
+            if (activeChannel != null) {
+                activeChannel.close();
+                activeChannel = null;
+            }
+        }
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(target, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A place the bytes of a stored file can live other than GridFS. The fs.files document always
+ * stays in Mongo (it carries the metadata, validators and references); a tier that holds a
+ * file says so through that document, and every read of the content is routed to it.
+ * Files no tier claims are read from GridFS as usual.
+ */
+public interface StorageTier {
+
+    String name();
+
+    /**
+     * Whether this tier holds the content of {@code file}. Decided from the fs.files document
+     * alone, without a round trip.
+     */
+    boolean holds(GridFSFile file);
+
+    /**
+     * Opens the whole content of a file this tier holds.
+     */
+    default InputStream open(GridFSFile file) throws IOException {
+        if (file.getLength() == 0) {
+            return InputStream.nullInputStream();
+        }
+        return openRange(file, 0, file.getLength() - 1);
+    }
+
+    /**
+     * Opens bytes [start, endInclusive] of a file this tier holds.
+     */
+    InputStream openRange(GridFSFile file, long start, long endInclusive) throws IOException;
+
+    /**
+     * Forgets a file this tier held, once it has been deleted or moved back to GridFS.
+     */
+    void remove(ObjectId fileId);
+}
@@ -0,0 +1,272 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves files between GridFS and the segment tier. Files not read for {@code cold-after-days}
+ * are demoted in the background: their bytes are appended to a segment, the fs.files document
+ * is flagged, and after a grace period (so reads that started against GridFS can finish) their
+ * chunks are removed. A cold file is promoted back to GridFS when it is read again, if
+ * {@code promote-on-read} is set, or on request through the admin API.
+ */
+@Service
+@Slf4j
+public class StorageTieringService {
+
+    // lastReadAt is written at most this often per file, so reads don't turn into writes
+    private static final long READ_RECORD_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(12);
+    private static final int MAX_TRACKED_READS = 10_000;
+
+    private final GridFsTemplate gridFsTemplate;
+    private final GridFsOperations gridFsOperations;
+    private final GridFsRawStore gridFsRawStore;
+    private final SegmentStorageTier segmentTier;
+    private final FileCache fileCache;
+    private final FileIoExecutor fileIoExecutor;
+
+    private final boolean enabled;
+    private final long coldAfterMillis;
+    private final int batchSize;
+    private final long purgeGraceMillis;
+    private final boolean promoteOnRead;
+
+    private final Map<ObjectId, Long> recordedReads = new ConcurrentHashMap<>();
+    private final Set<ObjectId> moving = ConcurrentHashMap.newKeySet();
+
+    public StorageTieringService(GridFsTemplate gridFsTemplate,
+                                 GridFsOperations gridFsOperations,
+                                 GridFsRawStore gridFsRawStore,
+                                 SegmentStorageTier segmentTier,
+                                 FileCache fileCache,
+                                 FileIoExecutor fileIoExecutor,
+                                 @Value("${filestorage.tiering.enabled:false}") boolean enabled,
+                                 @Value("${filestorage.tiering.cold-after-days:30}") int coldAfterDays,
+                                 @Value("${filestorage.tiering.batch-size:100}") int batchSize,
+                                 @Value("${filestorage.tiering.purge-grace-ms:600000}") long purgeGraceMillis,
+                                 @Value("${filestorage.tiering.promote-on-read:true}") boolean promoteOnRead) {
+        this.gridFsTemplate = gridFsTemplate;
+        this.gridFsOperations = gridFsOperations;
+        this.gridFsRawStore = gridFsRawStore;
+        this.segmentTier = segmentTier;
+        this.fileCache = fileCache;
+        this.fileIoExecutor = fileIoExecutor;
+        this.enabled = enabled;
+        this.coldAfterMillis = TimeUnit.DAYS.toMillis(coldAfterDays);
+        this.batchSize = batchSize;
+        this.purgeGraceMillis = purgeGraceMillis;
+        this.promoteOnRead = promoteOnRead;
+    }
+
+    public record TieringResult(int demoted, int purged) {
+    }
+
+    /**
+     * Notes a read of {@code file} for idle-file detection, and queues promotion of cold files
+     * when promote-on-read is enabled. The write happens off the request thread.
+     */
+    public void recordRead(GridFSFile file) {
+        if (!enabled || file.getId() == null || !file.getId().isObjectId()) {
+            return;
+        }
+        ObjectId fileId = file.getObjectId();
+
+        if (promoteOnRead && segmentTier.holds(file) && !moving.contains(fileId)) {
+            fileIoExecutor.submit(() -> promote(fileId));
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Document metadata = file.getMetadata();
+        Object lastRead = metadata != null ? metadata.get("lastReadAt") : null;
+        if (lastRead instanceof Number recorded && now - recorded.longValue() < READ_RECORD_INTERVAL_MILLIS) {
+            return;
+        }
+        // Cached fs.files documents don't see our own writes; remember them here instead
+        Long recordedHere = recordedReads.get(fileId);
+        if (recordedHere != null && now - recordedHere < READ_RECORD_INTERVAL_MILLIS) {
+            return;
+        }
+        if (recordedReads.size() >= MAX_TRACKED_READS) {
+            recordedReads.clear();
+        }
+        recordedReads.put(fileId, now);
+        fileIoExecutor.submit(() -> {
+            gridFsRawStore.markRead(fileId, now);
+            return null;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${filestorage.tiering.interval-ms:3600000}",
+            initialDelayString = "${filestorage.tiering.initial-delay-ms:600000}")
+    public void runScheduled() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            run();
+        } catch (Exception e) {
+            log.error("Storage tiering run failed", e);
+        }
+    }
+
+    /**
+     * One pass of the mover: demotes up to {@code batch-size} idle files, then drops the GridFS
+     * chunks of files demoted more than the grace period ago.
+     */
+    public TieringResult run() {
+        int demoted = demoteIdleFiles();
+        int purged = purgeDemotedChunks();
+        if (demoted > 0 || purged > 0) {
+            log.info("Storage tiering: demoted {} files, purged chunks of {}", demoted, purged);
+        }
+        return new TieringResult(demoted, purged);
+    }
+
+    int demoteIdleFiles() {
+        long cutoff = System.currentTimeMillis() - coldAfterMillis;
+        Query idle = new Query(new Criteria().andOperator(
+                Criteria.where("metadata.tier").ne(SegmentStorageTier.NAME),
+                new Criteria().orOperator(
+                        Criteria.where("metadata.lastReadAt").lt(cutoff),
+                        new Criteria().andOperator(
+                                Criteria.where("metadata.lastReadAt").exists(false),
+                                Criteria.where("uploadDate").lt(new Date(cutoff))))))
+                .limit(batchSize);
+
+        List<GridFSFile> candidates = new ArrayList<>();
+        gridFsTemplate.find(idle).forEach(candidates::add);
+
+        int demoted = 0;
+        for (GridFSFile file : candidates) {
+            try {
+                if (demote(file)) {
+                    demoted++;
+                }
+            } catch (Exception e) {
+                log.warn("Could not demote file {}: {}", file.getObjectId(), e.getMessage());
+            }
+        }
+        return demoted;
+    }
+
+    boolean demote(GridFSFile file) throws IOException {
+        ObjectId fileId = file.getObjectId();
+        if (!moving.add(fileId)) {
+            return false;
+        }
+        try {
+            GridFsResource resource = gridFsOperations.getResource(file);
+            SegmentStorageTier.Locator locator;
+            try (InputStream in = resource.getInputStream()) {
+                locator = segmentTier.append(fileId, in, file.getLength());
+            }
+            segmentTier.saveLocator(fileId, locator);
+
+            if (!gridFsRawStore.setTier(fileId, SegmentStorageTier.NAME)) {
+                // Deleted (or demoted elsewhere) meanwhile; the appended bytes are simply unused
+                segmentTier.remove(fileId);
+                return false;
+            }
+            fileCache.invalidate(fileId);
+            log.debug("Demoted file {} to {}", fileId, locator);
+            return true;
+        } finally {
+            moving.remove(fileId);
+        }
+    }
+
+    int purgeDemotedChunks() {
+        long cutoff = System.currentTimeMillis() - purgeGraceMillis;
+        Query demoted = new Query(Criteria.where("metadata.tier").is(SegmentStorageTier.NAME)
+                .and("metadata.chunksPurged").ne(true)
+                .and("metadata.tieredAt").lt(cutoff))
+                .limit(batchSize);
+
+        int purged = 0;
+        for (GridFSFile file : gridFsTemplate.find(demoted)) {
+            ObjectId fileId = file.getObjectId();
+            // A promotion in progress decides on its own whether it still needs the chunks
+            if (!moving.add(fileId)) {
+                continue;
+            }
+            try {
+                if (gridFsRawStore.purgeChunks(fileId)) {
+                    purged++;
+                }
+            } finally {
+                moving.remove(fileId);
+            }
+        }
+        return purged;
+    }
+
+    /**
+     * Moves a cold file back into GridFS. Returns false when the file is unknown or not cold.
+     */
+    public boolean promote(ObjectId fileId) throws IOException {
+        if (!moving.add(fileId)) {
+            return false;
+        }
+        try {
+            GridFSFile file = gridFsTemplate.findOne(new Query(Criteria.where("_id").is(fileId)));
+            if (file == null || !segmentTier.holds(file)) {
+                return false;
+            }
+
+            // Until the chunks are purged GridFS still has the bytes; otherwise copy them back
+            boolean chunksPurged = Boolean.TRUE.equals(file.getMetadata().getBoolean("chunksPurged"));
+            if (chunksPurged) {
+                writeChunksBack(file);
+            }
+            // The tier only flips if the chunks we relied on were not claimed since we looked
+            boolean cleared = gridFsRawStore.clearTier(fileId, chunksPurged);
+            if (!cleared && !chunksPurged) {
+                writeChunksBack(file);
+                cleared = gridFsRawStore.clearTier(fileId, true);
+            }
+            if (!cleared) {
+                // Deleted meanwhile; drop the chunks written back for it
+                gridFsRawStore.deleteChunks(fileId);
+                return false;
+            }
+            segmentTier.remove(fileId);
+            fileCache.invalidate(fileId);
+            recordedReads.remove(fileId);
+            gridFsRawStore.markRead(fileId, System.currentTimeMillis());
+            log.info("Promoted file {} back to GridFS", fileId);
+            return true;
+        } finally {
+            moving.remove(fileId);
+        }
+    }
+
+    private void writeChunksBack(GridFSFile file) throws IOException {
+        try (InputStream in = segmentTier.open(file)) {
+            long written = gridFsRawStore.writeChunks(file.getObjectId(), file.getChunkSize(), in);
+            if (written != file.getLength()) {
+                throw new IOException("Promoted " + written + " of " + file.getLength() + " bytes of " + file.getObjectId());
+            }
+        }
+    }
+}
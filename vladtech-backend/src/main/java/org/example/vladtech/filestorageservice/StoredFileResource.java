@@ -0,0 +1,126 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Resource view of a GridFS file that answers length, name and date from the fs.files document
+ * and only opens the GridFS download stream when the content is actually read. This lets
+ * conditional and HEAD-style requests be answered without touching fs.chunks.
+ *
+ * When a {@link FileCache} is supplied, content already held by the cache is served from memory,
+ * and small files are pulled into the cache the first time their content is read. Content of
+ * files that were moved out of GridFS is read from the given {@link StorageTier}.
+ */
+public class StoredFileResource extends AbstractResource {
+
+    private final GridFSFile gridFsFile;
+    private final GridFsOperations gridFsOperations;
+    private final FileCache fileCache;
+    private final FileCache.CachedFile cached;
+    private final StorageTier tier;
+
+    public StoredFileResource(GridFSFile gridFsFile, GridFsOperations gridFsOperations) {
+        this(gridFsFile, gridFsOperations, null, null);
+    }
+
+    public StoredFileResource(GridFSFile gridFsFile, GridFsOperations gridFsOperations,
+                              FileCache fileCache, FileCache.CachedFile cached) {
+        this(gridFsFile, gridFsOperations, fileCache, cached, null);
+    }
+
+    /**
+     * @param tier a storage tier that may hold the content instead of GridFS (see {@link StorageTier#holds})
+     */
+    public StoredFileResource(GridFSFile gridFsFile, GridFsOperations gridFsOperations,
+                              FileCache fileCache, FileCache.CachedFile cached, StorageTier tier) {
+        this.gridFsFile = gridFsFile;
+        this.gridFsOperations = gridFsOperations;
+        this.fileCache = fileCache;
+        this.cached = cached;
+        this.tier = tier;
+    }
+
+    public GridFSFile getGridFsFile() {
+        return gridFsFile;
+    }
+
+    /**
+     * The cache entry holding this file's content, or null when it has to come from GridFS.
+     */
+    public FileCache.CachedFile getCachedContent() {
+        return cached != null && cached.hasContent() ? cached : null;
+    }
+
+    /**
+     * Opens the underlying GridFsResource. Each call opens a new download stream.
+     */
+    public GridFsResource open() {
+        return gridFsOperations.getResource(gridFsFile);
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        FileCache.CachedFile content = getCachedContent();
+        if (content != null) {
+            return content.openStream();
+        }
+
+        if (fileCache == null || gridFsFile.getId() == null || !gridFsFile.getId().isObjectId()
+                || !fileCache.admitsContent(gridFsFile.getLength())) {
+            return openContent();
+        }
+
+        byte[] bytes;
+        try (InputStream in = openContent()) {
+            bytes = in.readAllBytes();
+        }
+        fileCache.putContent(gridFsFile.getObjectId(), gridFsFile, bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    private InputStream openContent() throws IOException {
+        if (tier != null && tier.holds(gridFsFile)) {
+            return tier.open(gridFsFile);
+        }
+        GridFsResource resource = open();
+        if (resource == null) {
+            throw new IOException("GridFS resource not available for " + getDescription());
+        }
+        return resource.getInputStream();
+    }
+
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    @Override
+    public String getFilename() {
+        return gridFsFile.getFilename();
+    }
+
+    @Override
+    public long contentLength() {
+        return gridFsFile.getLength();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        if (gridFsFile.getUploadDate() == null) {
+            throw new IOException("No upload date for " + getDescription());
+        }
+        return gridFsFile.getUploadDate().getTime();
+    }
+
+    @Override
+    public String getDescription() {
+        return "GridFS file [" + gridFsFile.getId() + ", " + gridFsFile.getFilename() + "]";
+    }
+}
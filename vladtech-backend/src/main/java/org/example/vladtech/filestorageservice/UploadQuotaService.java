@@ -0,0 +1,135 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.result.UpdateResult;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.Date;
+
+/**
+ * Per-user storage quota for review photos. Every stored file is charged to the user (or, for
+ * anonymous uploads, the address) whose request stored it: its fs.files document records the
+ * owner and the bytes charged, and a {@code storage_usage} document per owner keeps running
+ * totals that are {@code $inc}remented when a file is stored and decremented when it is
+ * finally deleted, so checking a quota is a single-document read.
+ *
+ * The owner is taken from the current request (set by {@link UploadThrottleFilter}); files
+ * stored outside an upload request, such as seed data, are not charged to anyone. A
+ * deduplicated upload is charged only to whoever stored the bytes first.
+ */
+@Slf4j
+@Service
+public class UploadQuotaService {
+
+    public static final String OWNER_ATTRIBUTE = UploadQuotaService.class.getName() + ".owner";
+
+    private static final String COLLECTION = "storage_usage";
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsRawStore gridFsRawStore;
+    private final boolean enabled;
+    private final long maxBytesPerUser;
+
+    public UploadQuotaService(MongoTemplate mongoTemplate,
+                              GridFsRawStore gridFsRawStore,
+                              @Value("${filestorage.quota.enabled:true}") boolean enabled,
+                              @Value("${filestorage.quota.max-bytes-per-user:524288000}") long maxBytesPerUser) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsRawStore = gridFsRawStore;
+        this.enabled = enabled;
+        this.maxBytesPerUser = maxBytesPerUser;
+    }
+
+    public record Usage(String owner, long bytes, long files, long maxBytes) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public static String ownerOf(String subject, String address) {
+        return subject != null ? "sub:" + subject : "ip:" + address;
+    }
+
+    public Usage usage(String owner) {
+        Document usage = collection().find(Filters.eq("_id", owner)).first();
+        return new Usage(owner, longValue(usage, "bytes"), longValue(usage, "files"), maxBytesPerUser);
+    }
+
+    /**
+     * Whether the owner may store {@code incomingBytes} more. Checked before the upload is read,
+     * so uploads running side by side can overshoot the quota by what they carry together.
+     */
+    public boolean allows(String owner, long incomingBytes) {
+        if (!enabled || maxBytesPerUser <= 0) {
+            return true;
+        }
+        return usage(owner).bytes() + Math.max(0, incomingBytes) <= maxBytesPerUser;
+    }
+
+    /**
+     * Charges a just-stored file to the owner of the current request, if there is one.
+     */
+    public void charge(ObjectId fileId, long size) {
+        String owner = currentOwner();
+        if (owner == null) {
+            return;
+        }
+        // Only the update that claims the file counts it, so a retried charge is not counted twice
+        UpdateResult claimed = gridFsRawStore.filesCollection().updateOne(
+                Filters.and(Filters.eq("_id", fileId), Filters.exists("metadata.owner", false)),
+                Updates.combine(Updates.set("metadata.owner", owner), Updates.set("metadata.chargedBytes", size)));
+        if (claimed.getModifiedCount() == 0) {
+            return;
+        }
+        collection().updateOne(Filters.eq("_id", owner),
+                Updates.combine(Updates.inc("bytes", size), Updates.inc("files", 1), Updates.set("updatedAt", new Date())),
+                new UpdateOptions().upsert(true));
+    }
+
+    /**
+     * Gives the bytes of a file that is being deleted back to the owner it was charged to.
+     */
+    public void release(GridFSFile file) {
+        Document metadata = file.getMetadata();
+        if (metadata == null || metadata.getString("owner") == null) {
+            return;
+        }
+        long size = longValue(metadata, "chargedBytes");
+        try {
+            collection().updateOne(Filters.eq("_id", metadata.getString("owner")),
+                    Updates.combine(Updates.inc("bytes", -size), Updates.inc("files", -1), Updates.set("updatedAt", new Date())));
+        } catch (Exception e) {
+            // The file is gone either way; a missed release only errs in the user's disfavour
+            log.warn("Could not release {} bytes of {} from quota of {}: {}",
+                    size, file.getObjectId(), metadata.getString("owner"), e.getMessage());
+        }
+    }
+
+    static String currentOwner() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        return attributes != null
+                ? (String) attributes.getAttribute(OWNER_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                : null;
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+
+    private static long longValue(Document document, String field) {
+        Object value = document != null ? document.get(field) : null;
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,269 @@
+package org.example.vladtech.filestorageservice;
+
+import com.mongodb.MongoException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.Updates;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets for upload requests: one bucket of requests and one of body bytes per client,
+ * where a client is both the JWT subject (when signed in) and the remote address, so neither
+ * a shared login nor a change of address gets around the limit.
+ *
+ * Buckets live in a lock-striped map: keys hash onto a fixed set of stripes, each a small LRU
+ * map guarded by its own lock, so uploads from different clients rarely contend and the
+ * number of tracked clients stays bounded (a dropped bucket simply starts full again). With
+ * {@code filestorage.ratelimit.shared=true} the buckets are documents in Mongo instead, refilled
+ * and drawn from in one atomic update, so every node behind a load balancer sees the same ones.
+ */
+@Slf4j
+@Component
+public class UploadRateLimiter {
+
+    private static final int STRIPES = 64;
+    private static final String COLLECTION = "upload_rate_limits";
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final boolean shared;
+    private final long unknownLengthBytes;
+    private final Limit requests;
+    private final Limit bytes;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    private final AtomicLong allowed = new AtomicLong();
+    private final AtomicLong denied = new AtomicLong();
+
+    public UploadRateLimiter(MongoTemplate mongoTemplate,
+                             @Value("${filestorage.ratelimit.enabled:true}") boolean enabled,
+                             @Value("${filestorage.ratelimit.shared:false}") boolean shared,
+                             @Value("${filestorage.ratelimit.requests-per-minute:30}") long requestsPerMinute,
+                             @Value("${filestorage.ratelimit.request-burst:10}") long requestBurst,
+                             @Value("${filestorage.ratelimit.bytes-per-minute:52428800}") long bytesPerMinute,
+                             @Value("${filestorage.ratelimit.byte-burst:31457280}") long byteBurst,
+                             @Value("${filestorage.ratelimit.unknown-length-bytes:10485760}") long unknownLengthBytes,
+                             @Value("${filestorage.ratelimit.max-keys:10000}") int maxKeys) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.shared = shared;
+        this.unknownLengthBytes = unknownLengthBytes;
+        this.requests = new Limit("requests", requestBurst, requestsPerMinute / 60_000.0);
+        this.bytes = new Limit("bytes", byteBurst, bytesPerMinute / 60_000.0);
+        int keysPerStripe = Math.max(1, maxKeys / STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(keysPerStripe);
+        }
+    }
+
+    /**
+     * @param retryAfterSeconds when denied, how long until enough tokens have been refilled
+     * @param limit             when denied, the bucket that ran out ("requests" or "bytes")
+     */
+    public record Decision(boolean allowed, long retryAfterSeconds, String limit) {
+        private static final Decision ALLOWED = new Decision(true, 0, null);
+    }
+
+    public record RateLimitStats(boolean enabled, boolean shared, int trackedKeys, long allowed, long denied) {
+    }
+
+    private record Limit(String name, double capacity, double tokensPerMilli) {
+    }
+
+    private record Taken(String key, Limit limit, long cost) {
+    }
+
+    private static final class Bucket {
+        private double tokens;
+        private long refilledAt;
+
+        private Bucket(double tokens, long refilledAt) {
+            this.tokens = tokens;
+            this.refilledAt = refilledAt;
+        }
+    }
+
+    private static final class Stripe {
+        private final Map<String, Bucket> buckets;
+
+        private Stripe(int maxKeys) {
+            this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+                    return size() > maxKeys;
+                }
+            };
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Draws one request and {@code contentLength} bytes from the buckets of the subject (if
+     * any) and of the address. Either every bucket is drawn from or, when one runs out, none
+     * is. A body larger than the byte burst is let through once the bucket is full and leaves
+     * it in debt, so big files are slowed down rather than refused outright. A body of unknown
+     * length ({@code contentLength < 0}) is charged {@code unknown-length-bytes}.
+     */
+    public Decision acquire(String subject, String address, long contentLength) {
+        if (!enabled) {
+            return Decision.ALLOWED;
+        }
+        long byteCost = contentLength >= 0 ? contentLength : unknownLengthBytes;
+        List<String> clients = subject != null
+                ? List.of("sub:" + subject, "ip:" + address)
+                : List.of("ip:" + address);
+
+        List<Taken> taken = new ArrayList<>();
+        for (String client : clients) {
+            for (Taken draw : List.of(new Taken(requests.name() + ":" + client, requests, 1),
+                    new Taken(bytes.name() + ":" + client, bytes, byteCost))) {
+                long waitMillis = take(draw);
+                if (waitMillis > 0) {
+                    taken.forEach(this::refund);
+                    denied.incrementAndGet();
+                    log.info("Upload rate limit reached: client={}, limit={}, retry in {} ms",
+                            client, draw.limit().name(), waitMillis);
+                    return new Decision(false, Math.max(1, (waitMillis + 999) / 1000), draw.limit().name());
+                }
+                taken.add(draw);
+            }
+        }
+        allowed.incrementAndGet();
+        return Decision.ALLOWED;
+    }
+
+    public RateLimitStats stats() {
+        int trackedKeys = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                trackedKeys += stripe.buckets.size();
+            }
+        }
+        return new RateLimitStats(enabled, shared, trackedKeys, allowed.get(), denied.get());
+    }
+
+    // Returns 0 when the tokens were taken, otherwise the milliseconds until they would be there
+    private long take(Taken draw) {
+        if (shared) {
+            try {
+                return takeShared(draw);
+            } catch (MongoException e) {
+                // Uploads need Mongo anyway; don't turn a hiccup here into refused uploads
+                log.warn("Shared rate limit unavailable, allowing upload: {}", e.getMessage());
+                return 0;
+            }
+        }
+        return takeLocal(draw);
+    }
+
+    private long takeLocal(Taken draw) {
+        Limit limit = draw.limit();
+        double needed = Math.min(draw.cost(), limit.capacity());
+        long now = TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        Stripe stripe = stripes[Math.floorMod(draw.key().hashCode(), STRIPES)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.computeIfAbsent(draw.key(), key -> new Bucket(limit.capacity(), now));
+            bucket.tokens = Math.min(limit.capacity(), bucket.tokens + (now - bucket.refilledAt) * limit.tokensPerMilli());
+            bucket.refilledAt = now;
+            if (bucket.tokens < needed) {
+                return waitMillis(limit, needed - bucket.tokens);
+            }
+            bucket.tokens -= draw.cost();
+            return 0;
+        }
+    }
+
+    private long takeShared(Taken draw) {
+        Limit limit = draw.limit();
+        double needed = Math.min(draw.cost(), limit.capacity());
+        // Refill by the time since the last update (server clock), then take the tokens if there are enough
+        Document elapsed = new Document("$subtract", List.of("$$NOW", new Document("$ifNull", List.of("$updatedAt", "$$NOW"))));
+        List<Bson> pipeline = List.of(
+                new Document("$set", new Document("tokens", new Document("$min", List.of(limit.capacity(),
+                        new Document("$add", List.of(
+                                new Document("$ifNull", List.of("$tokens", limit.capacity())),
+                                new Document("$multiply", List.of(elapsed, limit.tokensPerMilli())))))))
+                        .append("updatedAt", "$$NOW")),
+                new Document("$set", new Document("allowed", new Document("$gte", List.of("$tokens", needed)))),
+                new Document("$set", new Document("tokens", new Document("$cond", List.of("$allowed",
+                        new Document("$subtract", List.of("$tokens", draw.cost())), "$tokens")))));
+        FindOneAndUpdateOptions options = new FindOneAndUpdateOptions().upsert(true).returnDocument(ReturnDocument.AFTER);
+
+        Document bucket;
+        try {
+            bucket = collection().findOneAndUpdate(Filters.eq("_id", draw.key()), pipeline, options);
+        } catch (MongoException e) {
+            if (e.getCode() != DUPLICATE_KEY) {
+                throw e;
+            }
+            // Two nodes created the bucket at once; the other insert won, so this is now an update
+            bucket = collection().findOneAndUpdate(Filters.eq("_id", draw.key()), pipeline, options);
+        }
+        if (bucket == null || Boolean.TRUE.equals(bucket.getBoolean("allowed"))) {
+            return 0;
+        }
+        return waitMillis(limit, needed - ((Number) bucket.get("tokens")).doubleValue());
+    }
+
+    private void refund(Taken draw) {
+        if (shared) {
+            try {
+                // Overshooting the capacity is harmless: the next refill clamps it
+                collection().updateOne(Filters.eq("_id", draw.key()), Updates.inc("tokens", draw.cost()));
+            } catch (MongoException e) {
+                log.warn("Could not refund shared rate limit {}: {}", draw.key(), e.getMessage());
+            }
+            return;
+        }
+        Stripe stripe = stripes[Math.floorMod(draw.key().hashCode(), STRIPES)];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(draw.key());
+            if (bucket != null) {
+                bucket.tokens = Math.min(draw.limit().capacity(), bucket.tokens + draw.cost());
+            }
+        }
+    }
+
+    private static long waitMillis(Limit limit, double missing) {
+        return Math.max(1, (long) Math.ceil(missing / limit.tokensPerMilli()));
+    }
+
+    private MongoCollection<Document> collection() {
+        return mongoTemplate.getCollection(COLLECTION);
+    }
+
+    // A bucket left alone for an hour has long refilled, so its document can go
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        if (!enabled || !shared) {
+            return;
+        }
+        try {
+            collection().createIndex(Indexes.ascending("updatedAt"), new IndexOptions().expireAfter(1L, TimeUnit.HOURS));
+        } catch (Exception e) {
+            log.warn("Could not create expiry index on {}: {}", COLLECTION, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.example.vladtech.filestorageservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Applies {@link UploadRateLimiter} and {@link UploadQuotaService} to the upload endpoints
+ * before their body is read: a servlet filter rather than a handler interceptor, because the
+ * multipart resolver has already spooled the whole body by the time an interceptor runs. It
+ * is ordered after the security filter chain, so the JWT subject is known. Refused requests
+ * get 429 with Retry-After, or 413 when the upload would take the user over their quota.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UploadThrottleFilter extends OncePerRequestFilter {
+
+    private static final Set<String> UPLOAD_METHODS = Set.of("POST", "PUT", "PATCH");
+
+    // Uploads that end up in GridFS and count towards the storage quota
+    private static final Set<String> QUOTA_PATHS = Set.of(
+            "/uploads/reviews",
+            "/uploads/reviews/stream",
+            "/api/reviews",
+            "/api/reviews/stream"
+    );
+
+    private static final String PORTFOLIO_UPLOAD_PATH = "/api/portfolio/upload";
+    private static final String SESSIONS_PATH = "/uploads/reviews/sessions";
+
+    private final UploadRateLimiter uploadRateLimiter;
+    private final UploadQuotaService uploadQuotaService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!UPLOAD_METHODS.contains(request.getMethod())) {
+            return true;
+        }
+        String path = path(request);
+        return !QUOTA_PATHS.contains(path) && !isSessionPath(path) && !PORTFOLIO_UPLOAD_PATH.equals(path);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String subject = subject();
+        String address = request.getRemoteAddr();
+        long contentLength = request.getContentLengthLong();
+
+        UploadRateLimiter.Decision decision = uploadRateLimiter.acquire(subject, address, contentLength);
+        if (!decision.allowed()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(decision.retryAfterSeconds()));
+            reject(response, HttpStatus.TOO_MANY_REQUESTS,
+                    "Too many uploads, try again in " + decision.retryAfterSeconds() + " seconds");
+            return;
+        }
+
+        String path = path(request);
+        if (uploadQuotaService.isEnabled() && (QUOTA_PATHS.contains(path) || isSessionPath(path))) {
+            String owner = UploadQuotaService.ownerOf(subject, address);
+            if (!uploadQuotaService.allows(owner, contentLength)) {
+                log.info("Upload refused, storage quota reached: owner={}, contentLength={}", owner, contentLength);
+                reject(response, HttpStatus.PAYLOAD_TOO_LARGE, "Storage quota exceeded");
+                return;
+            }
+            request.setAttribute(UploadQuotaService.OWNER_ATTRIBUTE, owner);
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private void reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        // Tomcat closes the connection rather than read a large unread body, which is the point
+        response.setHeader(HttpHeaders.CONNECTION, "close");
+        objectMapper.writeValue(response.getOutputStream(), Map.of("error", message));
+    }
+
+    private static String subject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static boolean isSessionPath(String path) {
+        return path.equals(SESSIONS_PATH) || path.startsWith(SESSIONS_PATH + "/");
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
@@ -1,17 +1,42 @@
 package org.example.vladtech.filestorageservice;
 
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
+import java.util.Set;
+
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
     @Value("${filestorage.max-upload-size:10485760}") // 10MB default
     private long maxUploadSize;
 
+    // These endpoints parse the multipart body themselves as it arrives; letting the servlet
+    // container parse it first would buffer every part in memory or on disk.
+    public static final Set<String> STREAMING_UPLOAD_PATHS = Set.of(
+            "/uploads/reviews/stream",
+            "/api/reviews/stream"
+    );
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver() {
+        return new StandardServletMultipartResolver() {
+            @Override
+            public boolean isMultipart(HttpServletRequest request) {
+                String path = request.getRequestURI().substring(request.getContextPath().length());
+                return !STREAMING_UPLOAD_PATHS.contains(path) && super.isMultipart(request);
+            }
+        };
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Keep /uploads/** for other static files (portfolio etc.)
@@ -26,8 +51,10 @@ public class WebConfig implements WebMvcConfigurer {
         // Configure CORS for file uploads if needed
         registry.addMapping("/uploads/reviews/**")
                 .allowedOrigins("http://localhost:3000", "http://localhost:5173") // Add your frontend URLs
-                .allowedMethods("GET", "POST", "DELETE", "OPTIONS")
+                .allowedMethods("GET", "HEAD", "POST", "PATCH", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                // Resumable uploads report progress in these
+                .exposedHeaders("Location", "Upload-Offset", "Upload-Length")
                 .maxAge(3600);
     }
 }
\ No newline at end of file
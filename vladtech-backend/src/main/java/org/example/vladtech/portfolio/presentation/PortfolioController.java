@@ -13,14 +13,23 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
 
 @Slf4j
 @RestController
@@ -43,16 +52,9 @@ public class PortfolioController {
                 Files.createDirectories(uploadPath);
             }
 
-            // Generate unique filename
-            String originalFilename = file.getOriginalFilename();
-            String extension = originalFilename != null && originalFilename.contains(".")
-                    ? originalFilename.substring(originalFilename.lastIndexOf("."))
-                    : "";
-            String filename = UUID.randomUUID().toString() + extension;
-
-            // Save file
-            Path filePath = uploadPath.resolve(filename);
-            Files.copy(file.getInputStream(), filePath, StandardCopyOption.REPLACE_EXISTING);
+            // Name the file after its content: identical uploads share one file, and the URL
+            // can be cached as immutable because a name never refers to different bytes
+            String filename = storeContentAddressed(file, uploadPath);
 
             // Return the relative path
             String imageUrl = "/" + UPLOAD_DIR + filename;
@@ -68,6 +70,57 @@ public class PortfolioController {
         }
     }
 
+    // Streams the upload through SHA-256 into a temp file, then moves it to <hash>.<ext>
+    private static String storeContentAddressed(MultipartFile file, Path uploadPath) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        Path tempFile = Files.createTempFile(uploadPath, ".upload-", ".tmp");
+        try {
+            try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+                Files.copy(in, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String filename = HexFormat.of().formatHex(sha256.digest()).substring(0, 32)
+                    + extensionOf(file.getOriginalFilename());
+            Path filePath = uploadPath.resolve(filename);
+            if (Files.exists(filePath) && touch(filePath)) {
+                log.debug("Image already stored as {}", filename);
+            } else {
+                try {
+                    Files.move(tempFile, filePath, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, filePath, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return filename;
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    // The orphan sweep goes by mtime, so a reused file must look as new as the item about to reference it
+    private static boolean touch(Path filePath) throws IOException {
+        try {
+            Files.setLastModifiedTime(filePath, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            // Swept just now; the upload's own copy takes its place
+            return false;
+        }
+    }
+
+    private static String extensionOf(String originalFilename) {
+        if (originalFilename == null || !originalFilename.contains(".")) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        return extension.matches("[a-z0-9]{1,5}") ? "." + extension : "";
+    }
+
     @GetMapping
     public ResponseEntity<List<PortfolioResponseDto>> getAllPortfolioItems() {
         log.info("GET request to /api/portfolio - Fetching all portfolio items");
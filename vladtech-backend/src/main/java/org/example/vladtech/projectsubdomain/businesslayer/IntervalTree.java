@@ -0,0 +1,186 @@
+package org.example.vladtech.projectsubdomain.businesslayer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Closed intervals [start, end], each with an id, in an AVL tree ordered by (start, id) where
+ * every node also knows the largest end in its subtree. An overlap query only descends into
+ * subtrees whose largest end reaches the query start and whose starts do not pass its end, so
+ * it costs O(log n + matches); insert and remove are O(log n). Not thread-safe.
+ */
+public final class IntervalTree {
+
+    public record Interval(long start, long end, String id) {
+    }
+
+    private static final class Node {
+        private final Interval interval;
+        private Node left;
+        private Node right;
+        private int height = 1;
+        private long maxEnd;
+
+        private Node(Interval interval) {
+            this.interval = interval;
+            this.maxEnd = interval.end();
+        }
+    }
+
+    private Node root;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public void insert(long start, long end, String id) {
+        if (end < start) {
+            throw new IllegalArgumentException("Interval ends before it starts: " + id);
+        }
+        root = insert(root, new Interval(start, end, id));
+        size++;
+    }
+
+    /**
+     * Removes the interval with this start and id; returns false if there is none.
+     */
+    public boolean remove(long start, String id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * Returns the intervals that share at least one point with [start, end], in start order.
+     */
+    public List<Interval> overlapping(long start, long end) {
+        List<Interval> result = new ArrayList<>();
+        collect(root, start, end, result);
+        return result;
+    }
+
+    public List<Interval> all() {
+        return overlapping(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    private static void collect(Node node, long start, long end, List<Interval> result) {
+        if (node == null || node.maxEnd < start) {
+            return;
+        }
+        collect(node.left, start, end, result);
+        if (node.interval.start() > end) {
+            // Everything to the right starts later still
+            return;
+        }
+        if (node.interval.end() >= start) {
+            result.add(node.interval);
+        }
+        collect(node.right, start, end, result);
+    }
+
+    private static int compare(long start, String id, Interval interval) {
+        int byStart = Long.compare(start, interval.start());
+        return byStart != 0 ? byStart : id.compareTo(interval.id());
+    }
+
+    private static Node insert(Node node, Interval interval) {
+        if (node == null) {
+            return new Node(interval);
+        }
+        if (compare(interval.start(), interval.id(), node.interval) < 0) {
+            node.left = insert(node.left, interval);
+        } else {
+            node.right = insert(node.right, interval);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, long start, String id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node.interval);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            size--;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = removeMin(node.right);
+            successor.left = node.left;
+            return balance(successor);
+        }
+        return balance(node);
+    }
+
+    private static Node removeMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        node.left = removeMin(node.left);
+        return balance(node);
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node pivot = node.left;
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node pivot = node.right;
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.interval.end();
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private static int height(Node node) {
+        return node != null ? node.height : 0;
+    }
+}
@@ -1,26 +1,41 @@
 package org.example.vladtech.projectsubdomain.businesslayer;
 
 import org.example.vladtech.projectsubdomain.dataaccesslayer.Project;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectAssignmentBatchResponseModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectAssignmentRequestModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectPageResponseModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectRequestModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectResponseModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.PhotoResponseModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectCalendarEntryResponseModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ScheduleConflictResponseModel;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 public interface ProjectService {
 
     List<ProjectResponseModel> getAllProjects();
 
+    ProjectPageResponseModel getProjectsPage(String after, int limit, String projectType, String clientId,
+                                             String employeeId, LocalDate from, LocalDate to, List<String> fields);
+
     ProjectResponseModel getProjectByIdentifier(String projectIdentifier);
 
     ProjectResponseModel createProject(ProjectRequestModel projectRequestModel);
 
     ProjectResponseModel updateProject(String projectIdentifier, ProjectRequestModel projectRequestModel);
 
+    ProjectResponseModel patchProject(String projectIdentifier, Map<String, Object> fields);
+
     void deleteProject(String projectIdentifier);
 
     ProjectResponseModel assignEmployee(String projectIdentifier, String employeeId);
 
+    ProjectAssignmentBatchResponseModel updateAssignments(List<ProjectAssignmentRequestModel> assignments);
+
+    List<ScheduleConflictResponseModel> getScheduleConflicts(String employeeId);
+
     List<PhotoResponseModel> getProjectPhotos(String projectIdentifier);
 
     ProjectResponseModel addProjectPhoto(String projectIdentifier, PhotoResponseModel photoResponseModel);
@@ -29,7 +44,7 @@ public interface ProjectService {
 
     long getProjectCount();
 
-    List<ProjectCalendarEntryResponseModel> getProjectsForCalendar();
+    List<ProjectCalendarEntryResponseModel> getProjectsForCalendar(LocalDate from, LocalDate to);
 
     void sendEmailNotificationAsync(Project project, String operation);
 
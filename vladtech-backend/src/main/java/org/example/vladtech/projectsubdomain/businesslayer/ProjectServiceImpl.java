@@ -1,9 +1,14 @@
 package org.example.vladtech.projectsubdomain.businesslayer;
 
+import com.mongodb.bulk.BulkWriteResult;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.Address;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.Project;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectAssignmentChange;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectIdentifierSequence;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectPageQuery;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectPatch;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectRepository;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectType;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectEmailSender;
@@ -11,17 +16,33 @@ import org.example.vladtech.projectsubdomain.domain.ProjectNotificationEmail;
 import org.example.vladtech.projectsubdomain.mappinglayer.ProjectRequestMapper;
 import org.example.vladtech.projectsubdomain.mappinglayer.ProjectResponseMapper;
 import org.example.vladtech.projectsubdomain.mappinglayer.ProjectEmailMapper;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectAssignmentBatchResponseModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectAssignmentRequestModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectPageResponseModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectRequestModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectResponseModel;
 import org.example.vladtech.projectsubdomain.presentationlayer.PhotoResponseModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ScheduleConflictResponseModel;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.Address;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectCalendarEntryResponseModel;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.bson.types.ObjectId;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import java.util.stream.Collectors;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.UUID;
 import java.util.ArrayList;
 
@@ -36,6 +57,41 @@ public class ProjectServiceImpl implements ProjectService {
     private final ProjectResponseMapper projectResponseMapper;
     private final ProjectEmailMapper projectEmailMapper;
     private final ProjectEmailSender projectEmailSender;
+    private final ProjectIdentifierSequence projectIdentifierSequence;
+    private final ScheduleConflictIndex scheduleConflictIndex;
+
+    // Attempts at a fresh identifier when the unique index reports one as taken
+    private static final int MAX_IDENTIFIER_ATTEMPTS = 3;
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private static final int MAX_ASSIGNMENT_BATCH = 500;
+
+    // Fields a PATCH may set or (with null) remove, and how to read each from a stored project
+    private static final Map<String, Function<Project, Object>> PATCHABLE_FIELDS = Map.ofEntries(
+            Map.entry("name", Project::getName),
+            Map.entry("clientId", Project::getClientId),
+            Map.entry("clientName", Project::getClientName),
+            Map.entry("clientEmail", Project::getClientEmail),
+            Map.entry("address", Project::getAddress),
+            Map.entry("description", Project::getDescription),
+            Map.entry("startDate", Project::getStartDate),
+            Map.entry("dueDate", Project::getDueDate),
+            Map.entry("projectType", Project::getProjectType),
+            Map.entry("assignedEmployeeIds", Project::getAssignedEmployeeIds),
+            Map.entry("assignedEmployeeEmails", Project::getAssignedEmployeeEmails));
+
+    // What the client sees in a notification email; changing anything else sends none
+    private static final Set<String> CLIENT_VISIBLE_FIELDS = Set.of(
+            "name", "clientName", "clientEmail", "address", "description", "startDate", "dueDate", "projectType");
+
+    private static final Set<String> ADDRESS_FIELDS = Set.of(
+            "streetAddress", "city", "province", "country", "postalCode");
+
+    // Fields a listing may be narrowed to with ?fields= (projectIdentifier is always returned)
+    private static final Set<String> LISTING_FIELDS = Set.of(
+            "projectIdentifier", "name", "clientId", "clientName", "clientEmail", "address", "description",
+            "startDate", "dueDate", "projectType", "assignedEmployeeIds", "assignedEmployeeEmails", "photos");
 
     @Lazy
     @Autowired
@@ -46,12 +102,16 @@ public class ProjectServiceImpl implements ProjectService {
                               ProjectRequestMapper projectRequestMapper,
                               ProjectResponseMapper projectResponseMapper,
                               ProjectEmailMapper projectEmailMapper,
-                              ProjectEmailSender projectEmailSender) {
+                              ProjectEmailSender projectEmailSender,
+                              ProjectIdentifierSequence projectIdentifierSequence,
+                              ScheduleConflictIndex scheduleConflictIndex) {
         this.projectRepository = projectRepository;
         this.projectRequestMapper = projectRequestMapper;
         this.projectResponseMapper = projectResponseMapper;
         this.projectEmailMapper = projectEmailMapper;
         this.projectEmailSender = projectEmailSender;
+        this.projectIdentifierSequence = projectIdentifierSequence;
+        this.scheduleConflictIndex = scheduleConflictIndex;
     }
 
     @Override
@@ -60,6 +120,62 @@ public class ProjectServiceImpl implements ProjectService {
         return projectResponseMapper.entityListToResponseModelList(projects);
     }
 
+    @Override
+    public ProjectPageResponseModel getProjectsPage(String after, int limit, String projectType, String clientId,
+                                                    String employeeId, LocalDate from, LocalDate to, List<String> fields) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        if (after != null && !ObjectId.isValid(after)) {
+            throw new IllegalArgumentException("Invalid cursor: " + after);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        ProjectType.ProjectTypeEnum type = null;
+        if (projectType != null) {
+            try {
+                type = ProjectType.ProjectTypeEnum.valueOf(projectType.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown project type: " + projectType);
+            }
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        if (fields != null) {
+            for (String field : fields) {
+                if (!LISTING_FIELDS.contains(field)) {
+                    throw new IllegalArgumentException("Unknown field: " + field);
+                }
+                selected.add(field);
+            }
+        }
+
+        List<Project> projects = projectRepository.findPage(
+                new ProjectPageQuery(after, limit, type, clientId, employeeId, from, to, selected));
+        boolean hasMore = projects.size() > limit;
+        if (hasMore) {
+            projects = projects.subList(0, limit);
+        }
+
+        List<ProjectResponseModel> items = projectResponseMapper.entityListToResponseModelList(projects);
+        if (!selected.isEmpty()) {
+            // Left out of the query, the lists would otherwise read as empty rather than not loaded
+            for (ProjectResponseModel item : items) {
+                if (!selected.contains("assignedEmployeeIds")) {
+                    item.setAssignedEmployeeIds(null);
+                }
+                if (!selected.contains("assignedEmployeeEmails")) {
+                    item.setAssignedEmployeeEmails(null);
+                }
+                if (!selected.contains("photos")) {
+                    item.setPhotos(null);
+                }
+            }
+        }
+        String nextCursor = hasMore ? projects.get(projects.size() - 1).getId() : null;
+        return new ProjectPageResponseModel(items, nextCursor);
+    }
+
     @Override
     public ProjectResponseModel getProjectByIdentifier(String projectIdentifier) {
         Project project = projectRepository.findByProjectIdentifier(projectIdentifier)
@@ -73,14 +189,29 @@ public class ProjectServiceImpl implements ProjectService {
 
         //project.setProjectIdentifier(UUID.randomUUID().toString());
 
-        long count = projectRepository.count();
-        project.setProjectIdentifier("PROJ-" + (count + 1));
-
-        Project savedProject = projectRepository.save(project);
+        Project savedProject = saveWithNewIdentifier(project);
 
         self.sendEmailNotificationAsync(savedProject, "Created");
 
-        return projectResponseMapper.entityToResponseModel(savedProject);
+        return withScheduleConflicts(savedProject);
+    }
+
+    private Project saveWithNewIdentifier(Project project) {
+        for (int attempt = 1; ; attempt++) {
+            // A failed insert leaves version 0 on the entity, which would turn the retry into a versioned update
+            project.setId(null);
+            project.setVersion(null);
+            project.setProjectIdentifier(projectIdentifierSequence.nextIdentifier());
+            try {
+                return projectRepository.save(project);
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_IDENTIFIER_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Project identifier {} already taken, resyncing the sequence", project.getProjectIdentifier());
+                projectIdentifierSequence.resync();
+            }
+        }
     }
 
     @Override
@@ -120,7 +251,133 @@ public class ProjectServiceImpl implements ProjectService {
 
         self.sendEmailNotificationAsync(updatedProject, "Updated");
 
-        return projectResponseMapper.entityToResponseModel(updatedProject);
+        return withScheduleConflicts(updatedProject);
+    }
+
+    @Override
+    public ProjectResponseModel patchProject(String projectIdentifier, Map<String, Object> fields) {
+        if (fields == null || !(fields.get("version") instanceof Number version)) {
+            throw new IllegalArgumentException("version is required");
+        }
+        Map<String, Object> set = new LinkedHashMap<>();
+        Set<String> unset = new LinkedHashSet<>();
+        for (Map.Entry<String, Object> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (name.equals("version")) {
+                continue;
+            }
+            if (!PATCHABLE_FIELDS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown or read-only field: " + name);
+            }
+            if (field.getValue() != null) {
+                set.put(name, patchValue(name, field.getValue()));
+            } else if (name.equals("name")) {
+                throw new IllegalArgumentException("name cannot be removed");
+            } else {
+                unset.add(name);
+            }
+        }
+
+        Project existingProject = projectRepository.findByProjectIdentifier(projectIdentifier)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectIdentifier));
+        if (!Objects.equals(existingProject.getVersion(), version.longValue())) {
+            throw new OptimisticLockingFailureException("Project " + projectIdentifier
+                    + " is at version " + existingProject.getVersion() + ", not " + version);
+        }
+
+        // Only what actually differs is written, and decides whether the client hears about it
+        set.entrySet().removeIf(entry ->
+                Objects.equals(PATCHABLE_FIELDS.get(entry.getKey()).apply(existingProject), entry.getValue()));
+        unset.removeIf(name -> PATCHABLE_FIELDS.get(name).apply(existingProject) == null);
+
+        LocalDate startDate = set.containsKey("startDate") ? (LocalDate) set.get("startDate")
+                : unset.contains("startDate") ? null : existingProject.getStartDate();
+        LocalDate dueDate = set.containsKey("dueDate") ? (LocalDate) set.get("dueDate")
+                : unset.contains("dueDate") ? null : existingProject.getDueDate();
+        if (startDate != null && dueDate != null && dueDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("dueDate must not be before startDate");
+        }
+
+        if (set.isEmpty() && unset.isEmpty()) {
+            return projectResponseMapper.entityToResponseModel(existingProject);
+        }
+
+        Project patchedProject = projectRepository.applyPatch(projectIdentifier, version.longValue(),
+                        new ProjectPatch(set, unset))
+                .orElseThrow(() -> new OptimisticLockingFailureException(
+                        "Project " + projectIdentifier + " was changed by someone else"));
+
+        boolean clientVisible = set.keySet().stream().anyMatch(CLIENT_VISIBLE_FIELDS::contains)
+                || unset.stream().anyMatch(CLIENT_VISIBLE_FIELDS::contains);
+        if (clientVisible) {
+            self.sendEmailNotificationAsync(patchedProject, "Updated");
+        }
+
+        return withScheduleConflicts(patchedProject);
+    }
+
+    private static Object patchValue(String field, Object value) {
+        switch (field) {
+            case "startDate", "dueDate" -> {
+                try {
+                    return LocalDate.parse(stringValue(field, value));
+                } catch (DateTimeParseException e) {
+                    throw new IllegalArgumentException(field + " must be a date (yyyy-MM-dd)");
+                }
+            }
+            case "projectType" -> {
+                try {
+                    return new ProjectType(ProjectType.ProjectTypeEnum.valueOf(stringValue(field, value).toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Unknown project type: " + value);
+                }
+            }
+            case "address" -> {
+                if (!(value instanceof Map<?, ?> address) || !ADDRESS_FIELDS.containsAll(address.keySet())) {
+                    throw new IllegalArgumentException("address must be an object with " + ADDRESS_FIELDS);
+                }
+                return new Address(
+                        stringOrNull("address.streetAddress", address.get("streetAddress")),
+                        stringOrNull("address.city", address.get("city")),
+                        stringOrNull("address.province", address.get("province")),
+                        stringOrNull("address.country", address.get("country")),
+                        stringOrNull("address.postalCode", address.get("postalCode")));
+            }
+            case "assignedEmployeeIds", "assignedEmployeeEmails" -> {
+                if (!(value instanceof List<?> list)) {
+                    throw new IllegalArgumentException(field + " must be a list");
+                }
+                List<String> strings = new ArrayList<>();
+                for (Object item : list) {
+                    strings.add(stringValue(field, item));
+                }
+                return strings;
+            }
+            default -> {
+                return stringValue(field, value);
+            }
+        }
+    }
+
+    private static String stringValue(String field, Object value) {
+        if (!(value instanceof String string)) {
+            throw new IllegalArgumentException(field + " must be a string");
+        }
+        return string;
+    }
+
+    private static String stringOrNull(String field, Object value) {
+        return value != null ? stringValue(field, value) : null;
+    }
+
+    // Overlaps are reported rather than refused: two short jobs on the same days can be intended
+    private ProjectResponseModel withScheduleConflicts(Project project) {
+        scheduleConflictIndex.update(project);
+        ProjectResponseModel responseModel = projectResponseMapper.entityToResponseModel(project);
+        if (responseModel != null) {
+            responseModel.setScheduleConflicts(scheduleConflictIndex.conflictsFor(project));
+        }
+        return responseModel;
     }
 
     /////////////////////////////////////////////////////////////////////////////////////// FILL THE OTHER ONES OUT IN OTHER TICKETS
@@ -148,23 +405,77 @@ public class ProjectServiceImpl implements ProjectService {
 
     @Override
     public ProjectResponseModel assignEmployee(String projectIdentifier, String employeeId) {
-        Project project = projectRepository.findByProjectIdentifier(projectIdentifier)
-                .orElseThrow(() -> new RuntimeException("Project not found: " + projectIdentifier));
-
         if (employeeId == null || employeeId.isBlank()) {
             throw new IllegalArgumentException("employeeId cannot be null or blank");
         }
 
-        if (project.getAssignedEmployeeIds() == null) {
-            project.setAssignedEmployeeIds(new ArrayList<>());
+        Project project = projectRepository.addAssignedEmployee(projectIdentifier, employeeId)
+                .orElseThrow(() -> new RuntimeException("Project not found: " + projectIdentifier));
+
+        return withScheduleConflicts(project);
+    }
+
+    @Override
+    public ProjectAssignmentBatchResponseModel updateAssignments(List<ProjectAssignmentRequestModel> assignments) {
+        if (assignments == null || assignments.isEmpty()) {
+            throw new IllegalArgumentException("No assignments given");
+        }
+        if (assignments.size() > MAX_ASSIGNMENT_BATCH) {
+            throw new IllegalArgumentException("At most " + MAX_ASSIGNMENT_BATCH + " projects per request");
         }
+        Map<String, ProjectAssignmentChange> changes = new LinkedHashMap<>();
+        for (ProjectAssignmentRequestModel assignment : assignments) {
+            String projectIdentifier = assignment.getProjectIdentifier();
+            if (projectIdentifier == null || projectIdentifier.isBlank()) {
+                throw new IllegalArgumentException("projectIdentifier cannot be null or blank");
+            }
+            Set<String> assign = employeeIds(assignment.getAssign());
+            Set<String> unassign = employeeIds(assignment.getUnassign());
+            if (assign.isEmpty() && unassign.isEmpty()) {
+                throw new IllegalArgumentException("Nothing to change on project " + projectIdentifier);
+            }
+            if (!Collections.disjoint(assign, unassign)) {
+                throw new IllegalArgumentException("An employee is both assigned and unassigned on project " + projectIdentifier);
+            }
+            if (changes.putIfAbsent(projectIdentifier,
+                    new ProjectAssignmentChange(projectIdentifier, assign, unassign)) != null) {
+                throw new IllegalArgumentException("Project listed more than once: " + projectIdentifier);
+            }
+        }
+
+        BulkWriteResult result = projectRepository.updateAssignments(new ArrayList<>(changes.values()));
 
-        if (!project.getAssignedEmployeeIds().contains(employeeId)) {
-            project.getAssignedEmployeeIds().add(employeeId);
-            project = projectRepository.save(project);
+        // Read back only the schedule fields, to refresh the conflict index and spot unknown projects
+        List<Project> updated = projectRepository.findSchedules(changes.keySet());
+        Set<String> missing = new LinkedHashSet<>(changes.keySet());
+        for (Project project : updated) {
+            missing.remove(project.getProjectIdentifier());
+            scheduleConflictIndex.update(project);
         }
+        List<ScheduleConflictResponseModel> conflicts = new ArrayList<>();
+        for (Project project : updated) {
+            conflicts.addAll(scheduleConflictIndex.conflictsFor(project));
+        }
+        return new ProjectAssignmentBatchResponseModel(result.getMatchedCount(), result.getModifiedCount(),
+                new ArrayList<>(missing), conflicts);
+    }
 
-        return projectResponseMapper.entityToResponseModel(project);
+    private static Set<String> employeeIds(List<String> employeeIds) {
+        Set<String> result = new LinkedHashSet<>();
+        if (employeeIds != null) {
+            for (String employeeId : employeeIds) {
+                if (employeeId == null || employeeId.isBlank()) {
+                    throw new IllegalArgumentException("employeeId cannot be null or blank");
+                }
+                result.add(employeeId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<ScheduleConflictResponseModel> getScheduleConflicts(String employeeId) {
+        return scheduleConflictIndex.allConflicts(employeeId);
     }
 
 
@@ -188,8 +499,11 @@ public class ProjectServiceImpl implements ProjectService {
     }
 
     @Override
-    public List<ProjectCalendarEntryResponseModel> getProjectsForCalendar() {
-        List<Project> projects = projectRepository.findAll();
+    public List<ProjectCalendarEntryResponseModel> getProjectsForCalendar(LocalDate from, LocalDate to) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        List<Project> projects = projectRepository.findForCalendar(from, to);
 
         return projects.stream()
                 .map(this::mapToCalendarEntry)
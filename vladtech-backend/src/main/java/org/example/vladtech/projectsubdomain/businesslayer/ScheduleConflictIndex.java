@@ -0,0 +1,231 @@
+package org.example.vladtech.projectsubdomain.businesslayer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.Project;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectRepository;
+import org.example.vladtech.projectsubdomain.presentationlayer.ScheduleConflictResponseModel;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-employee interval trees over the projects they are assigned to, spanning startDate to
+ * dueDate (both inclusive, as epoch days), so "what else is this employee on during these
+ * dates" is an in-memory O(log n + matches) lookup instead of a query per assignee.
+ *
+ * Built from a projected query once the application is ready, kept current by the service on
+ * create, update and assign, and rebuilt from the database on an interval so changes made by
+ * other nodes (or straight in the database) are picked up. Changes made while a rebuild is
+ * reading are replayed onto its result, so a rebuild never loses a local write. Projects
+ * without a start date, a due date or an assignee are not indexed.
+ */
+@Slf4j
+@Component
+public class ScheduleConflictIndex {
+
+    private record Schedule(long start, long end, Set<String> employeeIds) {
+    }
+
+    private record Change(String projectIdentifier, Schedule schedule) {
+    }
+
+    private final ProjectRepository projectRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Map<String, IntervalTree> byEmployee = new HashMap<>();
+    private Map<String, Schedule> byProject = new HashMap<>();
+    // Non-null while a rebuild is reading from the database
+    private List<Change> pending;
+
+    public ScheduleConflictIndex(ProjectRepository projectRepository) {
+        this.projectRepository = projectRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${projects.conflicts.rebuild-interval-ms:900000}",
+            initialDelayString = "${projects.conflicts.rebuild-interval-ms:900000}")
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+        try {
+            pending = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<Project> projects;
+        try {
+            projects = projectRepository.findSchedules();
+        } catch (Exception e) {
+            log.warn("Could not rebuild the schedule conflict index: {}", e.getMessage());
+            lock.writeLock().lock();
+            try {
+                pending = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return;
+        }
+
+        Map<String, IntervalTree> employees = new HashMap<>();
+        Map<String, Schedule> schedules = new HashMap<>();
+        for (Project project : projects) {
+            apply(employees, schedules, project.getProjectIdentifier(), scheduleOf(project));
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (Change change : pending) {
+                apply(employees, schedules, change.projectIdentifier(), change.schedule());
+            }
+            byEmployee = employees;
+            byProject = schedules;
+            pending = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} project schedules across {} employees", schedules.size(), employees.size());
+    }
+
+    /**
+     * Replaces whatever is indexed for this project with its current dates and assignees.
+     */
+    public void update(Project project) {
+        if (project == null || project.getProjectIdentifier() == null) {
+            return;
+        }
+        Schedule schedule = scheduleOf(project);
+        lock.writeLock().lock();
+        try {
+            apply(byEmployee, byProject, project.getProjectIdentifier(), schedule);
+            if (pending != null) {
+                pending.add(new Change(project.getProjectIdentifier(), schedule));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns, for each assignee of the project, their other projects whose dates overlap it.
+     */
+    public List<ScheduleConflictResponseModel> conflictsFor(Project project) {
+        Schedule schedule = project != null ? scheduleOf(project) : null;
+        if (schedule == null) {
+            return List.of();
+        }
+        List<ScheduleConflictResponseModel> conflicts = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (String employeeId : schedule.employeeIds()) {
+                IntervalTree tree = byEmployee.get(employeeId);
+                if (tree == null) {
+                    continue;
+                }
+                for (IntervalTree.Interval other : tree.overlapping(schedule.start(), schedule.end())) {
+                    if (!other.id().equals(project.getProjectIdentifier())) {
+                        conflicts.add(conflict(employeeId, project.getProjectIdentifier(),
+                                schedule.start(), schedule.end(), other));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return conflicts;
+    }
+
+    /**
+     * Returns every pair of overlapping projects per employee (each pair once, the earlier
+     * starting project first), for one employee or, when employeeId is null, for all of them.
+     */
+    public List<ScheduleConflictResponseModel> allConflicts(String employeeId) {
+        List<ScheduleConflictResponseModel> conflicts = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<String> employeeIds = employeeId != null ? Set.of(employeeId) : new TreeSet<>(byEmployee.keySet());
+            for (String id : employeeIds) {
+                IntervalTree tree = byEmployee.get(id);
+                if (tree == null) {
+                    continue;
+                }
+                for (IntervalTree.Interval interval : tree.all()) {
+                    for (IntervalTree.Interval other : tree.overlapping(interval.start(), interval.end())) {
+                        if (isAfter(other, interval)) {
+                            conflicts.add(conflict(id, interval.id(), interval.start(), interval.end(), other));
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return conflicts;
+    }
+
+    private static boolean isAfter(IntervalTree.Interval other, IntervalTree.Interval interval) {
+        return other.start() > interval.start()
+                || (other.start() == interval.start() && other.id().compareTo(interval.id()) > 0);
+    }
+
+    private static ScheduleConflictResponseModel conflict(String employeeId, String projectIdentifier,
+                                                          long start, long end, IntervalTree.Interval other) {
+        return new ScheduleConflictResponseModel(employeeId, projectIdentifier, other.id(),
+                LocalDate.ofEpochDay(Math.max(start, other.start())),
+                LocalDate.ofEpochDay(Math.min(end, other.end())));
+    }
+
+    private static void apply(Map<String, IntervalTree> employees, Map<String, Schedule> schedules,
+                              String projectIdentifier, Schedule schedule) {
+        Schedule previous = schedules.remove(projectIdentifier);
+        if (previous != null) {
+            for (String employeeId : previous.employeeIds()) {
+                IntervalTree tree = employees.get(employeeId);
+                if (tree != null) {
+                    tree.remove(previous.start(), projectIdentifier);
+                    if (tree.size() == 0) {
+                        employees.remove(employeeId);
+                    }
+                }
+            }
+        }
+        if (schedule != null) {
+            schedules.put(projectIdentifier, schedule);
+            for (String employeeId : schedule.employeeIds()) {
+                employees.computeIfAbsent(employeeId, key -> new IntervalTree())
+                        .insert(schedule.start(), schedule.end(), projectIdentifier);
+            }
+        }
+    }
+
+    private static Schedule scheduleOf(Project project) {
+        LocalDate start = project.getStartDate();
+        LocalDate due = project.getDueDate();
+        List<String> assigned = project.getAssignedEmployeeIds();
+        if (start == null || due == null || due.isBefore(start) || assigned == null || assigned.isEmpty()) {
+            return null;
+        }
+        Set<String> employeeIds = new LinkedHashSet<>();
+        for (String employeeId : assigned) {
+            if (employeeId != null && !employeeId.isBlank()) {
+                employeeIds.add(employeeId);
+            }
+        }
+        return employeeIds.isEmpty() ? null : new Schedule(start.toEpochDay(), due.toEpochDay(), employeeIds);
+    }
+}
@@ -3,6 +3,9 @@ package org.example.vladtech.projectsubdomain.dataaccesslayer;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -12,11 +15,21 @@ import java.util.List;
 @Data
 @NoArgsConstructor
 @Document(collection = "projects")
+// Listing filters (newest first within each) and the covered calendar query, see ProjectRepositoryImpl
+@CompoundIndexes({
+        @CompoundIndex(def = "{'projectType.type': 1, '_id': -1}"),
+        @CompoundIndex(def = "{'clientId': 1, '_id': -1}"),
+        @CompoundIndex(def = "{'assignedEmployeeIds': 1, '_id': -1}"),
+        @CompoundIndex(def = "{'dueDate': 1, 'startDate': 1, 'projectIdentifier': 1, 'name': 1, 'address.city': 1, 'address.province': 1}")
+})
 public class Project {
 
     @Id
     private String id;
 
+    @Version
+    private Long version;
+
     private String projectIdentifier;
     private String name;
     private String clientId;
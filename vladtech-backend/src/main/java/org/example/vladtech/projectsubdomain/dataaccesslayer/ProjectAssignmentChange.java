@@ -0,0 +1,12 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import java.util.Set;
+
+/**
+ * Employees to add to and remove from one project's assignees in a bulk assignment. The two
+ * sets must not share an employee, since it would be unclear which of the two should win.
+ */
+public record ProjectAssignmentChange(String projectIdentifier,
+                                      Set<String> assign,
+                                      Set<String> unassign) {
+}
@@ -0,0 +1,114 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Hands out project identifiers (PROJ-1, PROJ-2...) from a counter document in the
+ * {@code counters} collection. Each node reserves a block of numbers with one atomic
+ * findAndModify ({@code $inc} by the block size) and then serves creates from memory, so
+ * nodes never hand out the same number and most creates cost no extra round trip. Numbers
+ * left in a block when a node stops are skipped, so identifiers are unique and increasing per
+ * node but not gap-free.
+ *
+ * Before its first reservation a node raises the counter to the highest PROJ-n already stored
+ * ({@code $max}, so it can only move forward), which covers projects created before the
+ * counter existed or inserted with an explicit identifier. The unique index on
+ * {@code projectIdentifier} is the backstop for anything that still collides.
+ */
+@Slf4j
+@Repository
+public class ProjectIdentifierSequence {
+
+    public static final String PREFIX = "PROJ-";
+
+    private static final String COUNTERS = "counters";
+    private static final String COUNTER_ID = "projectIdentifier";
+    private static final String PROJECTS = "projects";
+
+    private final MongoTemplate mongoTemplate;
+    private final int blockSize;
+
+    private boolean synced;
+    private long next;
+    private long end;
+
+    public ProjectIdentifierSequence(MongoTemplate mongoTemplate,
+                                     @Value("${projects.identifier-block-size:20}") int blockSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    public synchronized String nextIdentifier() {
+        if (next >= end) {
+            reserveBlock();
+        }
+        return PREFIX + next++;
+    }
+
+    /**
+     * Called after an identifier turned out to be taken: drops the rest of the local block and
+     * raises the counter past every stored identifier before the next reservation.
+     */
+    public synchronized void resync() {
+        synced = false;
+        next = end;
+    }
+
+    private void reserveBlock() {
+        if (!synced) {
+            long highest = highestStoredNumber();
+            mongoTemplate.upsert(counterQuery(), new Update().max("seq", highest), COUNTERS);
+            synced = true;
+        }
+        Document counter = mongoTemplate.findAndModify(counterQuery(),
+                new Update().inc("seq", (long) blockSize),
+                FindAndModifyOptions.options().upsert(true).returnNew(true),
+                Document.class, COUNTERS);
+        long last = ((Number) counter.get("seq")).longValue();
+        next = last - blockSize + 1;
+        end = last + 1;
+        log.debug("Reserved project identifiers {}{} to {}{}", PREFIX, next, PREFIX, last);
+    }
+
+    // Identifiers sort as strings (PROJ-10 < PROJ-9), so the number is extracted server side
+    private long highestStoredNumber() {
+        Document result = mongoTemplate.getCollection(PROJECTS).aggregate(List.of(
+                new Document("$match", new Document("projectIdentifier",
+                        new Document("$regex", "^" + PREFIX + "[0-9]{1,18}$"))),
+                new Document("$group", new Document("_id", null)
+                        .append("highest", new Document("$max", new Document("$toLong",
+                                new Document("$substrCP", List.of("$projectIdentifier", PREFIX.length(), 18)))))))
+        ).first();
+        Object highest = result != null ? result.get("highest") : null;
+        return highest instanceof Number number ? number.longValue() : 0;
+    }
+
+    private static Query counterQuery() {
+        return new Query(Criteria.where("_id").is(COUNTER_ID));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        try {
+            mongoTemplate.getCollection(PROJECTS).createIndex(Indexes.ascending("projectIdentifier"),
+                    new IndexOptions().unique(true));
+        } catch (Exception e) {
+            // Most likely duplicates already stored; they have to be renamed before the index can exist
+            log.warn("Could not create unique projectIdentifier index: {}", e.getMessage());
+        }
+    }
+}
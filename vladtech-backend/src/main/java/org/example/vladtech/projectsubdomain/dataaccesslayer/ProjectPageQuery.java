@@ -0,0 +1,20 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * One page of the project listing: projects created before {@code after} (the cursor, an
+ * {@code _id}), newest first, narrowed by any of the filters that are set. {@code from}/{@code to}
+ * keep projects whose start-to-due span overlaps the range. {@code fields} limits the loaded
+ * fields; empty loads whole documents.
+ */
+public record ProjectPageQuery(String after,
+                               int limit,
+                               ProjectType.ProjectTypeEnum projectType,
+                               String clientId,
+                               String employeeId,
+                               LocalDate from,
+                               LocalDate to,
+                               Set<String> fields) {
+}
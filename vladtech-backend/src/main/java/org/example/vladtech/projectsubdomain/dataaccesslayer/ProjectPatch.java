@@ -0,0 +1,12 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The fields a PATCH changes: {@code set} maps field names to their new (already converted)
+ * values, {@code unset} names the fields to remove.
+ */
+public record ProjectPatch(Map<String, Object> set,
+                           Set<String> unset) {
+}
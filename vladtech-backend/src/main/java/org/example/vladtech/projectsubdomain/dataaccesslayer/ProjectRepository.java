@@ -5,7 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import java.util.List;
 import java.util.Optional;
 
-public interface ProjectRepository extends MongoRepository<Project, String> {
+public interface ProjectRepository extends MongoRepository<Project, String>, ProjectRepositoryCustom {
 
     Optional<Project> findByProjectIdentifier(String projectIdentifier);
     List<Project> findByAssignedEmployeeIdsContains(String employeeId);
@@ -0,0 +1,53 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import com.mongodb.bulk.BulkWriteResult;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProjectRepositoryCustom {
+
+    /**
+     * Returns up to {@code limit + 1} projects matching the query, newest first; the extra one
+     * only tells the caller that another page follows.
+     */
+    List<Project> findPage(ProjectPageQuery pageQuery);
+
+    /**
+     * Returns the projects whose start-to-due span overlaps [from, to] (either end may be null
+     * for an open window), ordered by start date, with only the fields a calendar entry shows.
+     */
+    List<Project> findForCalendar(LocalDate from, LocalDate to);
+
+    /**
+     * Returns every project with at least one assignee and both a start and a due date, holding
+     * only projectIdentifier, startDate, dueDate and assignedEmployeeIds.
+     */
+    List<Project> findSchedules();
+
+    /**
+     * Returns the schedule fields (as above) of the given projects, whether or not they have
+     * dates or assignees.
+     */
+    List<Project> findSchedules(Collection<String> projectIdentifiers);
+
+    /**
+     * Adds the employee to the project's assignees unless already there, in one atomic update,
+     * and returns the project as it is afterwards (empty if there is no such project).
+     */
+    Optional<Project> addAssignedEmployee(String projectIdentifier, String employeeId);
+
+    /**
+     * Applies all the changes in a single unordered bulk write, one update per project, so the
+     * matched and modified counts are numbers of projects.
+     */
+    BulkWriteResult updateAssignments(List<ProjectAssignmentChange> changes);
+
+    /**
+     * Applies the patch and bumps the version, only if the project is still at {@code version};
+     * returns the project as it is afterwards, or empty if it is missing or was changed since.
+     */
+    Optional<Project> applyPatch(String projectIdentifier, long version, ProjectPatch patch);
+}
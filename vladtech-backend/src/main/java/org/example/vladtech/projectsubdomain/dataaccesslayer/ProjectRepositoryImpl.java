@@ -0,0 +1,207 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.UpdateOneModel;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Listing, calendar and schedule queries on projects, and the assignment updates.
+ *
+ * Keyset pagination for the project listing. Pages are ordered by {@code _id} descending: it is
+ * unique and grows with creation time, so "after this id" is a stable cursor that neither
+ * skips nor repeats projects when others are created or deleted between pages, and no page
+ * costs more than its own documents (unlike skip/offset).
+ *
+ * Each filter has a compound index (declared on {@link Project}) of the form {filter field, _id}: the equality match comes
+ * first and the index already holds the matches in page order, so a page is read straight off
+ * the index with no in-memory sort.
+ *
+ * The calendar query is an interval overlap ({@code startDate <= to && dueDate >= from}) on an
+ * index that leads with {@code dueDate} (most projects have ended before a calendar window, so
+ * that bound discards the most) followed by {@code startDate} and every field a calendar entry
+ * shows. Projected to exactly those fields without {@code _id}, the query is covered: it is
+ * answered from the index without reading a single project document.
+ *
+ * Assignments are updates on {@code assignedEmployeeIds} alone, computed by the server from the
+ * stored list, so concurrent assignments to one project cannot overwrite each other and nothing
+ * else in the document (photos in particular) is written back. A single assignment is an
+ * {@code $addToSet}; a bulk change is one pipeline update per project that removes and adds in
+ * the same write, so the bulk result counts each project once. A project saved without assignees
+ * has no such field, which both create.
+ *
+ * Every targeted update also increments {@code version}, the {@code @Version} field whole-document
+ * saves check, so a save or patch made from an older read fails instead of undoing the change.
+ * Projects stored before the field existed are given version 0 at startup.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ProjectRepositoryImpl implements ProjectRepositoryCustom {
+
+    private static final String SORT_KEY = "_id";
+
+    private static final String ASSIGNEES = "assignedEmployeeIds";
+
+    private static final String VERSION = "version";
+
+    private static final String[] SCHEDULE_FIELDS = {"projectIdentifier", "startDate", "dueDate", ASSIGNEES};
+
+    private static final String[] CALENDAR_FIELDS = {
+            "dueDate", "startDate", "projectIdentifier", "name", "address.city", "address.province"};
+
+    private final MongoTemplate mongoTemplate;
+
+    @Override
+    public List<Project> findPage(ProjectPageQuery pageQuery) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (pageQuery.after() != null) {
+            criteria.add(Criteria.where(SORT_KEY).lt(new ObjectId(pageQuery.after())));
+        }
+        if (pageQuery.projectType() != null) {
+            criteria.add(Criteria.where("projectType.type").is(pageQuery.projectType()));
+        }
+        if (pageQuery.clientId() != null) {
+            criteria.add(Criteria.where("clientId").is(pageQuery.clientId()));
+        }
+        if (pageQuery.employeeId() != null) {
+            criteria.add(Criteria.where("assignedEmployeeIds").is(pageQuery.employeeId()));
+        }
+        if (pageQuery.to() != null) {
+            criteria.add(Criteria.where("startDate").lte(pageQuery.to()));
+        }
+        if (pageQuery.from() != null) {
+            criteria.add(Criteria.where("dueDate").gte(pageQuery.from()));
+        }
+
+        Query query = new Query();
+        if (!criteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteria));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, SORT_KEY)).limit(pageQuery.limit() + 1);
+        if (pageQuery.fields() != null && !pageQuery.fields().isEmpty()) {
+            // The identifier is what a list row links to, so it is always there
+            query.fields().include("projectIdentifier");
+            pageQuery.fields().forEach(field -> query.fields().include(field));
+        }
+        return mongoTemplate.find(query, Project.class);
+    }
+
+    @Override
+    public List<Project> findForCalendar(LocalDate from, LocalDate to) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (to != null) {
+            criteria.add(Criteria.where("startDate").lte(to));
+        }
+        if (from != null) {
+            criteria.add(Criteria.where("dueDate").gte(from));
+        }
+
+        Query query = new Query();
+        if (!criteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteria));
+        }
+        query.fields().include(CALENDAR_FIELDS).exclude(SORT_KEY);
+        query.with(Sort.by(Sort.Direction.ASC, "startDate"));
+        return mongoTemplate.find(query, Project.class);
+    }
+
+    @Override
+    public List<Project> findSchedules() {
+        Query query = new Query(new Criteria().andOperator(
+                Criteria.where("assignedEmployeeIds.0").exists(true),
+                Criteria.where("startDate").ne(null),
+                Criteria.where("dueDate").ne(null)));
+        query.fields().include(SCHEDULE_FIELDS);
+        return mongoTemplate.find(query, Project.class);
+    }
+
+    @Override
+    public List<Project> findSchedules(Collection<String> projectIdentifiers) {
+        Query query = new Query(Criteria.where("projectIdentifier").in(projectIdentifiers));
+        query.fields().include(SCHEDULE_FIELDS);
+        return mongoTemplate.find(query, Project.class);
+    }
+
+    @Override
+    public Optional<Project> addAssignedEmployee(String projectIdentifier, String employeeId) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(byIdentifier(projectIdentifier),
+                new Update().addToSet(ASSIGNEES, employeeId).inc(VERSION, 1),
+                FindAndModifyOptions.options().returnNew(true),
+                Project.class));
+    }
+
+    @Override
+    public BulkWriteResult updateAssignments(List<ProjectAssignmentChange> changes) {
+        List<UpdateOneModel<Document>> updates = new ArrayList<>();
+        for (ProjectAssignmentChange change : changes) {
+            updates.add(new UpdateOneModel<>(Filters.eq("projectIdentifier", change.projectIdentifier()),
+                    assignmentPipeline(change)));
+        }
+        return mongoTemplate.getCollection(mongoTemplate.getCollectionName(Project.class))
+                .bulkWrite(updates, new BulkWriteOptions().ordered(false));
+    }
+
+    // Keeps the assignees not being removed, in their order, then appends the new ones not already there.
+    // The ids are wrapped in $literal so one starting with "$" is not read as a field path.
+    private static List<Document> assignmentPipeline(ProjectAssignmentChange change) {
+        Document current = new Document("$ifNull", List.of("$" + ASSIGNEES, List.of()));
+        Document kept = new Document("$filter", new Document("input", current)
+                .append("cond", new Document("$not", List.of(
+                        new Document("$in", List.of("$$this", literal(change.unassign())))))));
+        Document added = new Document("$filter", new Document("input", literal(change.assign()))
+                .append("cond", new Document("$not", List.of(
+                        new Document("$in", List.of("$$this", current))))));
+        return List.of(new Document("$set", new Document(ASSIGNEES, new Document("$concatArrays", List.of(kept, added)))
+                .append(VERSION, new Document("$add", List.of(new Document("$ifNull", List.of("$" + VERSION, 0L)), 1L)))));
+    }
+
+    private static Document literal(Collection<String> values) {
+        return new Document("$literal", List.copyOf(values));
+    }
+
+    @Override
+    public Optional<Project> applyPatch(String projectIdentifier, long version, ProjectPatch patch) {
+        Update update = new Update();
+        patch.set().forEach(update::set);
+        patch.unset().forEach(update::unset);
+        update.inc(VERSION, 1);
+        Query query = new Query(Criteria.where("projectIdentifier").is(projectIdentifier).and(VERSION).is(version));
+        return Optional.ofNullable(mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Project.class));
+    }
+
+    private static Query byIdentifier(String projectIdentifier) {
+        return new Query(Criteria.where("projectIdentifier").is(projectIdentifier));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillVersions() {
+        try {
+            long updated = mongoTemplate.updateMulti(new Query(Criteria.where(VERSION).exists(false)),
+                    new Update().set(VERSION, 0L), Project.class).getModifiedCount();
+            if (updated > 0) {
+                log.info("Set version 0 on {} projects stored without one", updated);
+            }
+        } catch (Exception e) {
+            log.warn("Could not backfill project versions: {}", e.getMessage());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.example.vladtech.projectsubdomain.dataaccesslayer;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import org.example.vladtech.projectsubdomain.domain.ProjectNotificationEmail;
+import org.example.vladtech.utils.MailDelivery;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
@@ -16,11 +17,14 @@ public class SmtpProjectEmailSender implements ProjectEmailSender {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("MMM dd, yyyy");
 
     private final JavaMailSender mailSender;
+    private final MailDelivery mailDelivery;
     private final String noReplyEmail;
 
     public SmtpProjectEmailSender(JavaMailSender mailSender,
+                                  MailDelivery mailDelivery,
                                   @Value("${email.noreply}") String noReplyEmail) {
         this.mailSender = mailSender;
+        this.mailDelivery = mailDelivery;
         this.noReplyEmail = noReplyEmail;
     }
 
@@ -35,7 +39,7 @@ public class SmtpProjectEmailSender implements ProjectEmailSender {
             helper.setSubject(email.getSubject());
             helper.setText(buildHtmlBody(email), true);
 
-            mailSender.send(mimeMessage);
+            mailDelivery.send(mimeMessage);
         } catch (MessagingException e) {
             throw new RuntimeException("Failed to send project notification email", e);
         }
@@ -22,6 +22,7 @@ public class ProjectResponseMapper {
 
         ProjectResponseModel responseModel = new ProjectResponseModel();
         responseModel.setProjectIdentifier(project.getProjectIdentifier());
+        responseModel.setVersion(project.getVersion());
         responseModel.setName(project.getName());
         responseModel.setClientId(project.getClientId());
         responseModel.setClientName(project.getClientName());
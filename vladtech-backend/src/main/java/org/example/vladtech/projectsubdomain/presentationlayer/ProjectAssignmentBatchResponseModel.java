@@ -0,0 +1,18 @@
+package org.example.vladtech.projectsubdomain.presentationlayer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectAssignmentBatchResponseModel {
+
+    private long matchedCount;
+    private long modifiedCount;
+    private List<String> missingProjectIdentifiers;
+    private List<ScheduleConflictResponseModel> scheduleConflicts;
+}
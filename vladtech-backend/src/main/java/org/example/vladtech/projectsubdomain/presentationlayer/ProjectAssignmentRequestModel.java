@@ -0,0 +1,18 @@
+package org.example.vladtech.projectsubdomain.presentationlayer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectAssignmentRequestModel {
+
+    private String projectIdentifier;
+    private List<String> assign = new ArrayList<>();
+    private List<String> unassign = new ArrayList<>();
+}
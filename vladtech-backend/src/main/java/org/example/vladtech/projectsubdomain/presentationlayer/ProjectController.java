@@ -2,13 +2,17 @@ package org.example.vladtech.projectsubdomain.presentationlayer;
 
 import lombok.RequiredArgsConstructor;
 import org.example.vladtech.projectsubdomain.businesslayer.ProjectService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.example.vladtech.projectsubdomain.presentationlayer.ProjectCalendarEntryResponseModel;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/projects")
@@ -23,6 +27,25 @@ public class ProjectController {
         return ResponseEntity.ok(projectService.getAllProjects());
     }
 
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/page")
+    public ResponseEntity<?> getProjectsPage(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String projectType,
+            @RequestParam(required = false) String clientId,
+            @RequestParam(required = false) String employeeId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) List<String> fields) {
+        try {
+            return ResponseEntity.ok(projectService.getProjectsPage(
+                    after, limit, projectType, clientId, employeeId, from, to, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @PreAuthorize("hasAuthority('Admin')")
     @GetMapping("/{projectIdentifier}")
     public ResponseEntity<ProjectResponseModel> getProjectByIdentifier(@PathVariable String projectIdentifier) {
@@ -37,10 +60,28 @@ public class ProjectController {
 
     @PreAuthorize("hasAuthority('Admin')")
     @PutMapping("/{projectIdentifier}")
-    public ResponseEntity<ProjectResponseModel> updateProject(
+    public ResponseEntity<?> updateProject(
             @PathVariable String projectIdentifier,
             @RequestBody ProjectRequestModel projectRequestModel) {
-        return ResponseEntity.ok(projectService.updateProject(projectIdentifier, projectRequestModel));
+        try {
+            return ResponseEntity.ok(projectService.updateProject(projectIdentifier, projectRequestModel));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "Project was changed by someone else"));
+        }
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @PatchMapping("/{projectIdentifier}")
+    public ResponseEntity<?> patchProject(
+            @PathVariable String projectIdentifier,
+            @RequestBody Map<String, Object> fields) {
+        try {
+            return ResponseEntity.ok(projectService.patchProject(projectIdentifier, fields));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
     @PreAuthorize("hasAuthority('Admin')")
@@ -58,6 +99,23 @@ public class ProjectController {
         return ResponseEntity.ok(projectService.assignEmployee(projectIdentifier, employeeId));
     }
 
+    @PreAuthorize("hasAuthority('Admin')")
+    @PostMapping("/assignments")
+    public ResponseEntity<?> updateAssignments(@RequestBody List<ProjectAssignmentRequestModel> assignments) {
+        try {
+            return ResponseEntity.ok(projectService.updateAssignments(assignments));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/conflicts")
+    public ResponseEntity<List<ScheduleConflictResponseModel>> getScheduleConflicts(
+            @RequestParam(required = false) String employeeId) {
+        return ResponseEntity.ok(projectService.getScheduleConflicts(employeeId));
+    }
+
     @PreAuthorize("hasAuthority('Admin')")
     @GetMapping("/{projectIdentifier}/photos")
     public ResponseEntity<List<PhotoResponseModel>> getProjectPhotos(@PathVariable String projectIdentifier) {
@@ -88,8 +146,14 @@ public class ProjectController {
 
     @PreAuthorize("hasAuthority('Admin')")
     @GetMapping("/calendar")
-    public ResponseEntity<List<ProjectCalendarEntryResponseModel>> getProjectsForCalendar() {
-        return ResponseEntity.ok(projectService.getProjectsForCalendar());
+    public ResponseEntity<?> getProjectsForCalendar(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            return ResponseEntity.ok(projectService.getProjectsForCalendar(from, to));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
 }
\ No newline at end of file
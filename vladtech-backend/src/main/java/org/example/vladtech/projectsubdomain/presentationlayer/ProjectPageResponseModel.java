@@ -0,0 +1,17 @@
+package org.example.vladtech.projectsubdomain.presentationlayer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProjectPageResponseModel {
+
+    private List<ProjectResponseModel> items;
+    // Pass as ?after= for the next page; null on the last page
+    private String nextCursor;
+}
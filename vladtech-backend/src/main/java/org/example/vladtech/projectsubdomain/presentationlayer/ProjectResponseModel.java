@@ -14,6 +14,7 @@ import java.util.List;
 public class ProjectResponseModel {
 
     private String projectIdentifier;
+    private Long version;
     private String name;
     private String clientId;
     private String clientName;
@@ -26,4 +27,6 @@ public class ProjectResponseModel {
     private List<String> assignedEmployeeIds;
     private List<String> assignedEmployeeEmails = new ArrayList<>();
     private List<PhotoResponseModel> photos;
+    // Only filled in on create, update and assign: the assignees' other projects in the same dates
+    private List<ScheduleConflictResponseModel> scheduleConflicts;
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package org.example.vladtech.projectsubdomain.presentationlayer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleConflictResponseModel {
+
+    private String employeeId;
+    private String projectIdentifier;
+    private String conflictingProjectIdentifier;
+    private LocalDate overlapStart;
+    private LocalDate overlapEnd;
+}
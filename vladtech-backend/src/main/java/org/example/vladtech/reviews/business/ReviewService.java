@@ -4,6 +4,8 @@ import org.example.vladtech.reviews.presentation.ReviewResponseModel;
 import org.example.vladtech.reviews.presentation.ReviewRequestModel;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 public interface ReviewService {
@@ -11,6 +13,9 @@ public interface ReviewService {
     // Create a new review
     ReviewResponseModel createReview(ReviewRequestModel request, MultipartFile[] photos, String OwnerAuth0Id);
 
+    // Create a review from a raw multipart body, streaming each photo part into storage
+    ReviewResponseModel createReviewFromStream(InputStream body, String contentType, String ownerAuth0Id) throws IOException;
+
     List<ReviewResponseModel> getAllReviews();
 
     ReviewResponseModel updateReviewVisibility(String reviewId, boolean visible);
@@ -1,11 +1,17 @@
 package org.example.vladtech.reviews.business;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.example.vladtech.reviews.data.Photo;
 import org.example.vladtech.reviews.data.Review;
 import org.example.vladtech.reviews.data.ReviewRepository;
+import org.example.vladtech.filestorageservice.FileIoExecutor;
 import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.MultipartStreamParser;
 import org.example.vladtech.reviews.mapperlayer.ReviewRequestMapper;
 import org.example.vladtech.reviews.mapperlayer.ReviewResponseMapper;
 import org.example.vladtech.reviews.presentation.ReviewRequestModel;
@@ -15,8 +21,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +39,15 @@ public class ReviewServiceImpl implements ReviewService {
     private final ReviewRequestMapper requestMapper;
     private final ReviewResponseMapper responseMapper;
     private final FileStorageService fileStorageService;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final FileIoExecutor fileIoExecutor;
+
+    // The JSON "review" part of a streamed review is small; anything larger is rejected unread
+    private static final int MAX_REVIEW_PART_BYTES = 64 * 1024;
+
+    // Photos are capped one by one; the whole body is capped too so many parts can't add up
+    private static final long MAX_REVIEW_BODY_BYTES = 5 * FileStorageService.MAX_FILE_SIZE;
 
     @Override
     public List<ReviewResponseModel> getAllReviews() {
@@ -47,19 +67,111 @@ public class ReviewServiceImpl implements ReviewService {
         review.setRating(reviewRequest.getRating());
         review.setOwnerAuth0Id(OwnerAuth0Id);
 
+        List<Photo> photoList = List.of();
         if (photos != null) {
-            List<Photo> photoList = Arrays.stream(photos)
-                    .map(file -> {
-                        try {
-                            String filename = fileStorageService.save(file);
-                            return new Photo(reviewRequest.getClientId(), filename, file.getContentType(), "/uploads/reviews/" + filename);
-                        } catch (IOException e) {
-                            throw new RuntimeException("Failed to save photo", e);
-                        }
-                    })
-
-                    .collect(Collectors.toList());
+            photoList = savePhotos(photos, reviewRequest.getClientId());
+            review.setPhotos(photoList);
+        }
+
+        try {
+            Review saved = reviewRepository.save(review);
+            return responseMapper.entityToResponseModel(saved);
+        } catch (RuntimeException e) {
+            deletePhotos(photoList);
+            throw e;
+        }
+    }
 
+    /**
+     * Stores all photos of a review concurrently, so the wait is roughly that of the slowest
+     * upload. Either every photo is saved or, once all uploads have settled, the ones that did
+     * succeed are deleted again and the first failure is rethrown.
+     */
+    private List<Photo> savePhotos(MultipartFile[] photos, String clientId) {
+        List<CompletableFuture<Photo>> uploads = Arrays.stream(photos)
+                .map(file -> fileIoExecutor.submit(() -> {
+                    String filename = fileStorageService.save(file);
+                    return new Photo(clientId, filename, file.getContentType(), fileStorageService.urlFor(filename));
+                }))
+                .toList();
+
+        List<Photo> photoList = new ArrayList<>(uploads.size());
+        Throwable failure = null;
+        for (CompletableFuture<Photo> upload : uploads) {
+            try {
+                photoList.add(upload.join());
+            } catch (CompletionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                } else {
+                    failure.addSuppressed(e.getCause());
+                }
+            }
+        }
+
+        if (failure != null) {
+            deletePhotos(photoList);
+            if (failure instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new RuntimeException("Failed to save photo", failure);
+        }
+        return photoList;
+    }
+
+    private void deletePhotos(List<Photo> photoList) {
+        for (Photo photo : photoList) {
+            try {
+                fileStorageService.delete(photo.getFilename());
+            } catch (Exception cleanupError) {
+                log.warn("Could not remove photo {} of rejected review: {}", photo.getFilename(), cleanupError.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public ReviewResponseModel createReviewFromStream(InputStream body, String contentType, String ownerAuth0Id) throws IOException {
+        MultipartStreamParser parser = new MultipartStreamParser(body, MultipartStreamParser.boundaryOf(contentType),
+                MAX_REVIEW_BODY_BYTES);
+
+        ReviewRequestModel reviewRequest = null;
+        List<Photo> photoList = new ArrayList<>();
+        try {
+            MultipartStreamParser.Part part;
+            while ((part = parser.nextPart()) != null) {
+                if ("review".equals(part.getName())) {
+                    reviewRequest = readReviewPart(part.getInputStream());
+                } else if ("photos".equals(part.getName()) && part.isFile()) {
+                    // Each photo goes straight from the request into GridFS
+                    String fileId = fileStorageService.saveStream(part.getFilename(), part.getContentType(), part.getInputStream());
+                    photoList.add(new Photo(ownerAuth0Id, fileId, part.getContentType(), fileStorageService.urlFor(fileId)));
+                }
+            }
+
+            if (reviewRequest == null) {
+                throw new IllegalArgumentException("Missing review part");
+            }
+            reviewRequest.setClientId(ownerAuth0Id);
+            reviewRequest.setVisible(false);
+            Set<ConstraintViolation<ReviewRequestModel>> violations = validator.validate(reviewRequest);
+            if (!violations.isEmpty()) {
+                throw new IllegalArgumentException("Invalid review: " + violations.stream()
+                        .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                        .collect(Collectors.joining(", ")));
+            }
+        } catch (IOException | RuntimeException e) {
+            // Don't leave photos of a rejected review behind in GridFS
+            deletePhotos(photoList);
+            throw e;
+        }
+
+        Review review = requestMapper.requestModelToEntity(reviewRequest);
+        review.setOwnerAuth0Id(ownerAuth0Id);
+        review.setClientId(reviewRequest.getClientId());
+        review.setClientName(reviewRequest.getClientName());
+        review.setVisible(reviewRequest.getVisible());
+        review.setRating(reviewRequest.getRating());
+        if (!photoList.isEmpty()) {
             review.setPhotos(photoList);
         }
 
@@ -67,6 +179,18 @@ public class ReviewServiceImpl implements ReviewService {
         return responseMapper.entityToResponseModel(saved);
     }
 
+    private ReviewRequestModel readReviewPart(InputStream in) throws IOException {
+        byte[] json = in.readNBytes(MAX_REVIEW_PART_BYTES + 1);
+        if (json.length > MAX_REVIEW_PART_BYTES) {
+            throw new IllegalArgumentException("Review part too large");
+        }
+        try {
+            return objectMapper.readValue(json, ReviewRequestModel.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid review part: " + e.getOriginalMessage());
+        }
+    }
+
     @Override
     public ReviewResponseModel updateReviewVisibility(String reviewId, boolean visible) {
         Review existing = reviewRepository.findById(reviewId)
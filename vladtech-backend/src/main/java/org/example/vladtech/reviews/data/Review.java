@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.ArrayList;
@@ -22,9 +23,11 @@ public class Review {
     private String appointmentId;
     private String clientName;
     private String comment;
+    @Indexed
     private Boolean visible = false;
     private Rating rating;
     private List<Photo> photos = new ArrayList<>();
+    @Indexed
     private String ownerAuth0Id;
 
     public Review(String clientId, String appointmentId, String clientName, String comment, Boolean visible, Rating rating) {
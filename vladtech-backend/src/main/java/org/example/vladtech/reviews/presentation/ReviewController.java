@@ -1,7 +1,10 @@
 package org.example.vladtech.reviews.presentation;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.example.vladtech.filestorageservice.MultipartStreamParser;
 import org.example.vladtech.reviews.business.ReviewService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -12,7 +15,9 @@ import org.springframework.web.bind.annotation.*;
 import jakarta.validation.Valid;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @CrossOrigin(origins = "*")
@@ -60,6 +65,21 @@ public class ReviewController {
         return ResponseEntity.ok(reviewService.createReview(reviewRequest, photos, userId));
     }
 
+    @PostMapping(value = "/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAuthority('Client')")
+    public ResponseEntity<?> createReviewStream(HttpServletRequest request,
+                                                @AuthenticationPrincipal Jwt jwt) {
+        String userId = jwt.getClaim("sub");
+        try {
+            return ResponseEntity.ok(reviewService.createReviewFromStream(
+                    request.getInputStream(), request.getContentType(), userId));
+        } catch (IllegalArgumentException | MultipartStreamParser.MalformedMultipartException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(Map.of("error", "Failed to create review"));
+        }
+    }
+
     @PreAuthorize("hasAuthority('Client')")
     @DeleteMapping("/{reviewId}")
     public ResponseEntity<Void> deleteReview(@PathVariable String reviewId,
@@ -0,0 +1,303 @@
+package org.example.vladtech.utils;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.NoSuchProviderException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends outgoing mail over a few SMTP connections that stay open, instead of the connection per
+ * message {@link JavaMailSenderImpl#send(MimeMessage)} opens.
+ *
+ * Messages go on a bounded queue drained by {@code email.delivery.pool-size} workers, each
+ * owning one transport and taking up to {@code email.delivery.batch-size} messages at a time.
+ * The connection is checked once per batch, not per message, and closed after
+ * {@code email.delivery.idle-close-ms} without mail. A message the server refuses (unknown
+ * recipient, too large) fails on its own and the batch carries on; a dropped connection is
+ * reopened and the message retried once. When the queue is full or delivery has stopped, the
+ * caller sends the message itself on a connection of its own, which is slower but loses nothing.
+ */
+@Slf4j
+@Component
+public class MailDelivery {
+
+    public record Stats(long sent,
+                        long failed,
+                        long batches,
+                        long connects,
+                        long reconnects,
+                        int queued,
+                        double messagesPerSecond) {
+    }
+
+    private record Delivery(MimeMessage message, CompletableFuture<Void> result) {
+    }
+
+    private static final String HEADER_MESSAGE_ID = "Message-ID";
+
+    private final JavaMailSenderImpl mailSender;
+    private final int poolSize;
+    private final int batchSize;
+    private final long idleCloseMs;
+    private final BlockingQueue<Delivery> queue;
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean stopping;
+
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder connects = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+
+    public MailDelivery(JavaMailSenderImpl mailSender,
+                        @Value("${email.delivery.pool-size:2}") int poolSize,
+                        @Value("${email.delivery.batch-size:50}") int batchSize,
+                        @Value("${email.delivery.queue-capacity:1000}") int queueCapacity,
+                        @Value("${email.delivery.idle-close-ms:30000}") long idleCloseMs) {
+        this.mailSender = mailSender;
+        this.poolSize = Math.max(1, poolSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.idleCloseMs = idleCloseMs;
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * Queues {@code message}; the future completes once the server accepted it, or exceptionally
+     * with a {@link MailException}.
+     */
+    public CompletableFuture<Void> submit(MimeMessage message) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        Delivery delivery = new Delivery(message, result);
+        // Taken back if shutdown began meanwhile, as the workers may already be gone
+        if (startWorkers() && queue.offer(delivery) && !(stopping && queue.remove(delivery))) {
+            return result;
+        }
+        try {
+            mailSender.send(message);
+            sent.increment();
+            result.complete(null);
+        } catch (MailException e) {
+            failed.increment();
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Sends {@code message} and waits for the server to accept it, for callers that report
+     * failures to whoever asked for the mail.
+     */
+    public void send(MimeMessage message) {
+        try {
+            submit(message).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof MailException mailException) {
+                throw mailException;
+            }
+            throw new MailSendException("Failed to send message", e.getCause());
+        }
+    }
+
+    public Stats stats() {
+        double busySeconds = busyNanos.sum() / 1_000_000_000d;
+        long delivered = sent.sum();
+        return new Stats(delivered, failed.sum(), batches.sum(), connects.sum(), reconnects.sum(), queue.size(),
+                busySeconds > 0 ? delivered / busySeconds : 0);
+    }
+
+    // Workers start with the first message so an instance that never sends mail holds no threads
+    private synchronized boolean startWorkers() {
+        if (stopping) {
+            return false;
+        }
+        if (!workers.isEmpty()) {
+            return true;
+        }
+        List<Transport> transports = new ArrayList<>();
+        try {
+            for (int i = 0; i < poolSize; i++) {
+                transports.add(mailSender.getSession().getTransport(mailSender.getProtocol()));
+            }
+        } catch (NoSuchProviderException e) {
+            log.error("No mail transport for protocol {}, sending each message on its own connection",
+                    mailSender.getProtocol(), e);
+            stopping = true;
+            return false;
+        }
+        for (int i = 0; i < poolSize; i++) {
+            Transport transport = transports.get(i);
+            Thread worker = new Thread(() -> work(transport), "mail-delivery-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        return true;
+    }
+
+    private void work(Transport transport) {
+        List<Delivery> batch = new ArrayList<>(batchSize);
+        // Tracked here because Transport.isConnected() costs a round trip to the server
+        boolean open = false;
+        long idleSince = System.nanoTime();
+        try {
+            while (true) {
+                // Short polls so shutdown and the idle close are noticed without waiting for mail
+                Delivery first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    if (open && System.nanoTime() - idleSince >= TimeUnit.MILLISECONDS.toNanos(idleCloseMs)) {
+                        close(transport);
+                        open = false;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                open = deliver(batch, transport);
+                batch.clear();
+                idleSince = System.nanoTime();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.forEach(delivery -> delivery.result()
+                    .completeExceptionally(new MailSendException("Mail delivery stopped")));
+            close(transport);
+        }
+    }
+
+    // Returns whether the transport was left connected
+    private boolean deliver(List<Delivery> batch, Transport transport) {
+        long started = System.nanoTime();
+        int delivered = 0;
+        try {
+            // Also catches a connection the server closed while it sat idle
+            if (!transport.isConnected()) {
+                connect(transport);
+            }
+        } catch (MessagingException e) {
+            log.warn("Could not connect to mail server {}:{}: {}", mailSender.getHost(), mailSender.getPort(), e.getMessage());
+            batch.forEach(delivery -> fail(delivery, e));
+            return false;
+        }
+
+        for (Delivery delivery : batch) {
+            try {
+                sendOne(transport, delivery.message());
+                sent.increment();
+                delivered++;
+                delivery.result().complete(null);
+            } catch (MessagingException | RuntimeException e) {
+                // Unexpected errors also stay with this message, so the worker lives on to drain the queue
+                log.warn("Failed to send mail: {}", e.getMessage());
+                fail(delivery, e);
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        busyNanos.add(elapsed);
+        batches.increment();
+        log.debug("Sent {} of {} messages in {} ms", delivered, batch.size(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return true;
+    }
+
+    private void sendOne(Transport transport, MimeMessage message) throws MessagingException {
+        prepare(message);
+        Address[] recipients = message.getAllRecipients();
+        Address[] addresses = recipients != null ? recipients : new Address[0];
+        try {
+            transport.sendMessage(message, addresses);
+        } catch (MessagingException | IllegalStateException e) {
+            // Still connected means the server refused this message; anything else is a dropped connection
+            if (transport.isConnected()) {
+                throw e;
+            }
+            reconnects.increment();
+            connect(transport);
+            transport.sendMessage(message, addresses);
+        }
+    }
+
+    // What JavaMailSenderImpl does before sending: a sent date, and headers saved without losing a set Message-ID
+    private static void prepare(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            message.setHeader(HEADER_MESSAGE_ID, messageId);
+        }
+    }
+
+    private void connect(Transport transport) throws MessagingException {
+        String username = mailSender.getUsername();
+        String password = mailSender.getPassword();
+        transport.connect(mailSender.getHost(), mailSender.getPort(),
+                username == null || username.isEmpty() ? null : username,
+                password == null || password.isEmpty() ? null : password);
+        connects.increment();
+    }
+
+    private void fail(Delivery delivery, Exception e) {
+        failed.increment();
+        delivery.result().completeExceptionally(e instanceof AuthenticationFailedException
+                ? new MailAuthenticationException(e)
+                : new MailSendException("Failed to send message", e));
+    }
+
+    private static void close(Transport transport) {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing mail transport: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Lets the workers finish what is queued, for up to ten seconds, and fails whatever is left.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        stopping = true;
+        List<Thread> started;
+        synchronized (this) {
+            started = List.copyOf(workers);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        for (Thread worker : started) {
+            worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            worker.interrupt();
+        }
+        List<Delivery> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            log.warn("{} queued messages were not sent before shutdown", left.size());
+            left.forEach(delivery -> delivery.result()
+                    .completeExceptionally(new MailSendException("Mail delivery stopped")));
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package org.example.vladtech.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/admin/mail")
+@RequiredArgsConstructor
+public class MailDiagnosticsController {
+
+    private final MailDelivery mailDelivery;
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/delivery")
+    public ResponseEntity<MailDelivery.Stats> getDeliveryStats() {
+        return ResponseEntity.ok(mailDelivery.stats());
+    }
+}
@@ -0,0 +1,35 @@
+package org.example.vladtech.utils;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin/mongo")
+@RequiredArgsConstructor
+public class MongoDiagnosticsController {
+
+    private final MongoIndexBootstrap mongoIndexBootstrap;
+    private final SlowQueryLog slowQueryLog;
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/indexes")
+    public ResponseEntity<List<MongoIndexBootstrap.IndexStatus>> getIndexes() {
+        return ResponseEntity.ok(mongoIndexBootstrap.check());
+    }
+
+    @PreAuthorize("hasAuthority('Admin')")
+    @GetMapping("/slow-queries")
+    public ResponseEntity<Map<String, Object>> getSlowQueries() {
+        return ResponseEntity.ok(Map.of(
+                "thresholdMs", slowQueryLog.getThresholdMs(),
+                "recorded", slowQueryLog.recordedCount(),
+                "queries", slowQueryLog.recent()));
+    }
+}
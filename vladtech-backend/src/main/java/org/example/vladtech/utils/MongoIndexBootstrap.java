@@ -0,0 +1,125 @@
+package org.example.vladtech.utils;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Creates the indexes declared on the mapped documents ({@code @Indexed}, {@code @CompoundIndex})
+ * once the application is ready, in place of {@code auto-index-creation}, and checks them
+ * against what the live database actually has. A failed or missing index is logged and shows up
+ * in {@link #check()} instead of stopping startup, since the app still works without one, only
+ * slower.
+ *
+ * Indexes created elsewhere on purpose (the unique projectIdentifier index, which has to cope
+ * with existing duplicates) are not declared here and not checked.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MongoIndexBootstrap {
+
+    public record IndexStatus(String collection, Document keys, boolean unique, boolean present, String error) {
+    }
+
+    private final MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        int created = 0;
+        for (MongoPersistentEntity<?> entity : documentEntities()) {
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition definition : resolver().resolveIndexFor(entity.getType())) {
+                try {
+                    indexOps.ensureIndex(definition);
+                    created++;
+                } catch (Exception e) {
+                    log.warn("Could not create index {} on {}: {}",
+                            definition.getIndexKeys().toJson(), entity.getCollection(), e.getMessage());
+                }
+            }
+        }
+
+        List<IndexStatus> missing = check().stream().filter(status -> !status.present()).toList();
+        if (missing.isEmpty()) {
+            log.info("Ensured {} declared indexes", created);
+        } else {
+            missing.forEach(status -> log.warn("Index {} is missing on {}", status.keys().toJson(), status.collection()));
+        }
+    }
+
+    /**
+     * Compares every declared index with the live indexes of its collection, key order included.
+     */
+    public List<IndexStatus> check() {
+        List<IndexStatus> statuses = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : documentEntities()) {
+            List<IndexInfo> live;
+            String error = null;
+            try {
+                live = mongoTemplate.indexOps(entity.getType()).getIndexInfo();
+            } catch (Exception e) {
+                live = List.of();
+                error = e.getMessage();
+            }
+            for (IndexDefinition definition : resolver().resolveIndexFor(entity.getType())) {
+                Document keys = definition.getIndexKeys();
+                boolean unique = Boolean.TRUE.equals(definition.getIndexOptions().get("unique"));
+                boolean present = live.stream().anyMatch(info -> sameKeys(keys, info) && info.isUnique() == unique);
+                statuses.add(new IndexStatus(entity.getCollection(), keys, unique, present, error));
+            }
+        }
+        return statuses;
+    }
+
+    private List<MongoPersistentEntity<?>> documentEntities() {
+        List<MongoPersistentEntity<?>> entities = new ArrayList<>();
+        for (MongoPersistentEntity<?> entity : mongoTemplate.getConverter().getMappingContext().getPersistentEntities()) {
+            if (entity.isAnnotationPresent(org.springframework.data.mongodb.core.mapping.Document.class)) {
+                entities.add(entity);
+            }
+        }
+        return entities;
+    }
+
+    private IndexResolver resolver() {
+        return IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+    }
+
+    // Document equality ignores key order, which matters for a compound index
+    private static boolean sameKeys(Document keys, IndexInfo info) {
+        List<IndexField> fields = info.getIndexFields();
+        if (fields.size() != keys.size()) {
+            return false;
+        }
+        int i = 0;
+        for (Map.Entry<String, Object> key : keys.entrySet()) {
+            IndexField field = fields.get(i++);
+            if (!field.getKey().equals(key.getKey())) {
+                return false;
+            }
+            if (key.getValue() instanceof Number direction) {
+                Sort.Direction expected = direction.intValue() < 0 ? Sort.Direction.DESC : Sort.Direction.ASC;
+                if (field.getDirection() != expected) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,322 @@
+package org.example.vladtech.utils;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Records Mongo commands that take longer than {@code mongo.slow-query.threshold-ms}, newest
+ * first in a fixed-size ring buffer, each with the plan the server picked for it.
+ *
+ * Registers itself as a driver {@link CommandListener} on the client, so it sees every command whichever repository
+ * or template sent it. Only queries and writes that can be explained are followed; the command
+ * is kept from start to finish (the driver only lends it for the callback) with its values
+ * replaced by {@code ?}, which groups identical queries and keeps user data out of the buffer.
+ *
+ * The plan comes from re-running the command as {@code explain} with executionStats (stages
+ * such as COLLSCAN or IXSCAN, keys and documents examined). That runs the query again, so it
+ * happens off the driver's thread, one at a time, and a slow command arriving while another is
+ * being explained is recorded without a plan rather than queued.
+ */
+@Slf4j
+@Component
+public class SlowQueryLog implements CommandListener, MongoClientSettingsBuilderCustomizer {
+
+    public record SlowQuery(Instant at,
+                            String database,
+                            String collection,
+                            String commandName,
+                            long durationMs,
+                            String command,
+                            PlanSummary plan) {
+    }
+
+    public record PlanSummary(List<String> stages,
+                              boolean collectionScan,
+                              Long keysExamined,
+                              Long docsExamined,
+                              Long returned,
+                              String error) {
+    }
+
+    private record Pending(String database, String commandName, BsonDocument command) {
+    }
+
+    private static final Set<String> EXPLAINABLE = Set.of(
+            "find", "aggregate", "count", "distinct", "findAndModify", "update", "delete");
+
+    // Sent by the driver with every command, meaningless to explain
+    private static final Set<String> ENVELOPE = Set.of(
+            "$db", "lsid", "$clusterTime", "txnNumber", "$readPreference", "autocommit", "startTransaction");
+
+    private final ObjectProvider<MongoTemplate> mongoTemplate;
+    private final boolean enabled;
+    private final long thresholdMs;
+    private final boolean explain;
+    private final SlowQuery[] ring;
+    private int next;
+    private long recorded;
+
+    private final Map<Integer, Pending> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean explaining = new AtomicBoolean();
+    private final ExecutorService explainer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "slow-query-explain");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // MongoTemplate is built on the client this listener is registered with, hence the provider
+    public SlowQueryLog(ObjectProvider<MongoTemplate> mongoTemplate,
+                        @Value("${mongo.slow-query.enabled:true}") boolean enabled,
+                        @Value("${mongo.slow-query.threshold-ms:100}") long thresholdMs,
+                        @Value("${mongo.slow-query.explain:true}") boolean explain,
+                        @Value("${mongo.slow-query.capacity:200}") int capacity) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = enabled;
+        this.thresholdMs = thresholdMs;
+        this.explain = explain;
+        this.ring = new SlowQuery[Math.max(1, capacity)];
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder settings) {
+        settings.addCommandListener(this);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (enabled && EXPLAINABLE.contains(event.getCommandName())) {
+            pending.put(event.getRequestId(), new Pending(event.getDatabaseName(), event.getCommandName(),
+                    withoutEnvelope(event.getCommand())));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        Pending command = pending.remove(event.getRequestId());
+        if (command != null && event.getElapsedTime(TimeUnit.MILLISECONDS) >= thresholdMs) {
+            record(command, event.getElapsedTime(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        pending.remove(event.getRequestId());
+    }
+
+    /**
+     * Returns the recorded slow commands, newest first.
+     */
+    public synchronized List<SlowQuery> recent() {
+        List<SlowQuery> result = new ArrayList<>();
+        for (int i = 1; i <= ring.length; i++) {
+            SlowQuery query = ring[Math.floorMod(next - i, ring.length)];
+            if (query == null) {
+                break;
+            }
+            result.add(query);
+        }
+        return result;
+    }
+
+    public synchronized long recordedCount() {
+        return recorded;
+    }
+
+    public long getThresholdMs() {
+        return thresholdMs;
+    }
+
+    private void record(Pending command, long durationMs) {
+        String collection = command.command().isString(command.commandName())
+                ? command.command().getString(command.commandName()).getValue() : null;
+        SlowQuery query = new SlowQuery(Instant.now(), command.database(), collection, command.commandName(),
+                durationMs, shapeOf(command.command()).toJson(), null);
+        int slot = store(query, -1);
+        log.debug("Slow {} on {}.{} took {} ms", command.commandName(), command.database(), collection, durationMs);
+
+        if (explain && explaining.compareAndSet(false, true)) {
+            try {
+                explainer.execute(() -> {
+                    try {
+                        PlanSummary plan = explain(command);
+                        store(new SlowQuery(query.at(), query.database(), query.collection(), query.commandName(),
+                                query.durationMs(), query.command(), plan), slot);
+                    } finally {
+                        explaining.set(false);
+                    }
+                });
+            } catch (Exception e) {
+                explaining.set(false);
+            }
+        }
+    }
+
+    // Stores into the next slot, or replaces the entry in the given one if it is still there
+    private synchronized int store(SlowQuery query, int slot) {
+        if (slot < 0) {
+            slot = next;
+            ring[slot] = query;
+            next = (next + 1) % ring.length;
+            recorded++;
+        } else if (ring[slot] != null && ring[slot].at().equals(query.at())
+                && ring[slot].command().equals(query.command())) {
+            ring[slot] = query;
+        }
+        return slot;
+    }
+
+    private PlanSummary explain(Pending command) {
+        try {
+            BsonDocument explainCommand = new BsonDocument("explain", command.command())
+                    .append("verbosity", new BsonString("executionStats"));
+            return summarizePlan(mongoTemplate.getObject().getMongoDatabaseFactory()
+                    .getMongoDatabase(command.database()).runCommand(explainCommand));
+        } catch (Exception e) {
+            return new PlanSummary(List.of(), false, null, null, null, e.getMessage());
+        }
+    }
+
+    /**
+     * Reduces explain output to the winning plan's stages, top first, and the execution counts.
+     * Handles find-style output and aggregations, where the plan sits inside the first stage.
+     */
+    public static PlanSummary summarizePlan(Document explainOutput) {
+        Document winningPlan = findDocument(explainOutput, "winningPlan");
+        Document stats = findDocument(explainOutput, "executionStats");
+        List<String> stages = new ArrayList<>();
+        if (winningPlan != null) {
+            collectStages(winningPlan, stages);
+        }
+        return new PlanSummary(stages, stages.contains("COLLSCAN"),
+                stats != null ? longOrNull(stats.get("totalKeysExamined")) : null,
+                stats != null ? longOrNull(stats.get("totalDocsExamined")) : null,
+                stats != null ? longOrNull(stats.get("nReturned")) : null,
+                winningPlan == null ? "No plan in explain output" : null);
+    }
+
+    private static void collectStages(Object node, List<String> stages) {
+        if (node instanceof Document document) {
+            if (document.get("stage") instanceof String stage) {
+                stages.add(stage);
+            }
+            for (Object value : document.values()) {
+                collectStages(value, stages);
+            }
+        } else if (node instanceof List<?> list) {
+            list.forEach(item -> collectStages(item, stages));
+        }
+    }
+
+    private static Document findDocument(Object node, String key) {
+        if (node instanceof Document document) {
+            if (document.get(key) instanceof Document found) {
+                return found;
+            }
+            for (Object value : document.values()) {
+                Document found = findDocument(value, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        } else if (node instanceof List<?> list) {
+            for (Object item : list) {
+                Document found = findDocument(item, key);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Long longOrNull(Object value) {
+        return value instanceof Number number ? number.longValue() : null;
+    }
+
+    private static BsonDocument withoutEnvelope(BsonDocument command) {
+        BsonDocument copy = new BsonDocument();
+        for (Map.Entry<String, BsonValue> entry : command.entrySet()) {
+            if (!ENVELOPE.contains(entry.getKey())) {
+                copy.put(entry.getKey(), entry.getValue().isDocument() || entry.getValue().isArray()
+                        ? copyOf(entry.getValue()) : entry.getValue());
+            }
+        }
+        return copy;
+    }
+
+    private static BsonValue copyOf(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument copy = new BsonDocument();
+            value.asDocument().forEach((key, item) -> copy.put(key, copyOf(item)));
+            return copy;
+        }
+        if (value.isArray()) {
+            BsonArray copy = new BsonArray();
+            value.asArray().forEach(item -> copy.add(copyOf(item)));
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * Returns the command with every value replaced by "?", keeping field names, operators and
+     * the collection name; an array keeps only its first element's shape.
+     */
+    public static BsonDocument shapeOf(BsonDocument command) {
+        BsonDocument shape = new BsonDocument();
+        boolean first = true;
+        for (Map.Entry<String, BsonValue> entry : command.entrySet()) {
+            // The first field is the command name and holds the collection
+            shape.put(entry.getKey(), first ? entry.getValue() : shapeOf(entry.getValue()));
+            first = false;
+        }
+        return shape;
+    }
+
+    private static BsonValue shapeOf(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument shape = new BsonDocument();
+            value.asDocument().forEach((key, item) -> shape.put(key, shapeOf(item)));
+            return shape;
+        }
+        if (value.isArray()) {
+            BsonArray shape = new BsonArray();
+            if (!value.asArray().isEmpty()) {
+                shape.add(shapeOf(value.asArray().get(0)));
+            }
+            return shape;
+        }
+        return new BsonString("?");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+}
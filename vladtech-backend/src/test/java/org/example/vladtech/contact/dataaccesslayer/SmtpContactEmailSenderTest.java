@@ -6,6 +6,7 @@ import jakarta.mail.internet.InternetAddress;
 import jakarta.mail.internet.MimeMessage;
 import jakarta.mail.internet.MimeMultipart;
 import org.example.vladtech.contact.domain.ContactEmail;
+import org.example.vladtech.utils.MailDelivery;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
 import java.util.Properties;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -25,6 +27,9 @@ class SmtpContactEmailSenderTest {
     @Mock
     private JavaMailSender mailSender;
 
+    @Mock
+    private MailDelivery mailDelivery;
+
     @InjectMocks
     private SmtpContactEmailSender smtpContactEmailSender;
 
@@ -50,6 +55,9 @@ class SmtpContactEmailSenderTest {
         // Act
         smtpContactEmailSender.send(email);
 
+        // Assert: the message is handed to the pooled delivery
+        verify(mailDelivery).send(mimeMessage);
+
         // Assert: From should be the client email (current backend logic)
         InternetAddress from = (InternetAddress) mimeMessage.getFrom()[0];
         assertEquals("client@example.com", from.getAddress());
@@ -0,0 +1,117 @@
+package org.example.vladtech.fileservice;
+
+import org.example.vladtech.filestorageservice.ByteRangeSupport;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ByteRangeSupportTest {
+
+    @Test
+    void resolve_WithClosedRange_ShouldReturnRange() {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve("bytes=0-99", 1000);
+
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.get(0).start());
+        assertEquals(99, ranges.get(0).end());
+        assertEquals(100, ranges.get(0).length());
+    }
+
+    @Test
+    void resolve_WithSuffixRange_ShouldReturnTail() {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve("bytes=-100", 1000);
+
+        assertEquals(new ByteRangeSupport.ByteRange(900, 999), ranges.get(0));
+    }
+
+    @Test
+    void resolve_WithOpenEndedRange_ShouldClampToLength() {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve("bytes=990-", 1000);
+
+        assertEquals(new ByteRangeSupport.ByteRange(990, 999), ranges.get(0));
+    }
+
+    @Test
+    void resolve_WithEndBeyondLength_ShouldClampToLastByte() {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve("bytes=500-5000", 1000);
+
+        assertEquals(new ByteRangeSupport.ByteRange(500, 999), ranges.get(0));
+    }
+
+    @Test
+    void resolve_WithMultipleRanges_ShouldKeepOrder() {
+        List<ByteRangeSupport.ByteRange> ranges = ByteRangeSupport.resolve("bytes=500-509,0-9", 1000);
+
+        assertEquals(2, ranges.size());
+        assertEquals(500, ranges.get(0).start());
+        assertEquals(0, ranges.get(1).start());
+    }
+
+    @Test
+    void resolve_WithStartBeyondLength_ShouldBeUnsatisfiable() {
+        assertTrue(ByteRangeSupport.resolve("bytes=1000-1010", 1000).isEmpty());
+    }
+
+    @Test
+    void resolve_WithMalformedHeader_ShouldBeUnsatisfiable() {
+        assertTrue(ByteRangeSupport.resolve("items=0-10", 1000).isEmpty());
+        assertTrue(ByteRangeSupport.resolve("bytes=abc", 1000).isEmpty());
+    }
+
+    @Test
+    void isWellFormed_ShouldAcceptOnlyParsableByteRanges() {
+        assertTrue(ByteRangeSupport.isWellFormed("bytes=0-99"));
+        assertTrue(ByteRangeSupport.isWellFormed("bytes=5000-6000"));
+        assertFalse(ByteRangeSupport.isWellFormed("items=0-10"));
+        assertFalse(ByteRangeSupport.isWellFormed("bytes=abc"));
+        assertFalse(ByteRangeSupport.isWellFormed("bytes=10-5"));
+    }
+
+    @Test
+    void resolve_WithOverlappingRangesExceedingLength_ShouldBeUnsatisfiable() {
+        assertTrue(ByteRangeSupport.resolve("bytes=0-999,0-999", 1000).isEmpty());
+    }
+
+    @Test
+    void ifRangeMatches_WithoutHeader_ShouldMatch() {
+        assertTrue(ByteRangeSupport.ifRangeMatches(null, "\"abc\"", 0));
+    }
+
+    @Test
+    void ifRangeMatches_WithEntityTag_ShouldRequireStrongMatch() {
+        assertTrue(ByteRangeSupport.ifRangeMatches("\"abc\"", "\"abc\"", -1));
+        assertFalse(ByteRangeSupport.ifRangeMatches("\"xyz\"", "\"abc\"", -1));
+        assertFalse(ByteRangeSupport.ifRangeMatches("W/\"abc\"", "\"abc\"", -1));
+    }
+
+    @Test
+    void ifRangeMatches_WithDate_ShouldCompareToTheSecond() {
+        long lastModified = 1_700_000_000_123L;
+
+        assertTrue(ByteRangeSupport.ifRangeMatches("Tue, 14 Nov 2023 22:13:20 GMT", null, lastModified));
+        assertFalse(ByteRangeSupport.ifRangeMatches("Tue, 14 Nov 2023 22:13:21 GMT", null, lastModified));
+        assertFalse(ByteRangeSupport.ifRangeMatches("not a date", null, lastModified));
+    }
+
+    @Test
+    void writeMultipart_ShouldWriteEachPartWithContentRange() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<ByteRangeSupport.ByteRange> ranges = List.of(
+                new ByteRangeSupport.ByteRange(0, 1),
+                new ByteRangeSupport.ByteRange(8, 9));
+        byte[] data = "0123456789".getBytes();
+
+        ByteRangeSupport.writeMultipart(out, ranges, "image/png", 10, "BOUNDARY",
+                range -> new ByteArrayInputStream(data, (int) range.start(), (int) range.length()));
+
+        String body = out.toString();
+        assertTrue(body.contains("--BOUNDARY\r\nContent-Type: image/png\r\nContent-Range: bytes 0-1/10\r\n\r\n01"));
+        assertTrue(body.contains("Content-Range: bytes 8-9/10\r\n\r\n89"));
+        assertTrue(body.endsWith("\r\n--BOUNDARY--\r\n"));
+    }
+}
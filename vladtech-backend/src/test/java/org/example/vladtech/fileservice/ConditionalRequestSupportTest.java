@@ -0,0 +1,41 @@
+package org.example.vladtech.fileservice;
+
+import org.example.vladtech.filestorageservice.ConditionalRequestSupport;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalRequestSupportTest {
+
+    private static final long UPLOADED_AT = 1_700_000_000_000L; // Tue, 14 Nov 2023 22:13:20 GMT
+
+    @Test
+    void isNotModified_WithMatchingEntityTag_ShouldBeTrue() {
+        assertTrue(ConditionalRequestSupport.isNotModified("\"abc\"", null, "\"abc\"", UPLOADED_AT));
+    }
+
+    @Test
+    void isNotModified_WithTagInList_ShouldUseWeakComparison() {
+        assertTrue(ConditionalRequestSupport.isNotModified("\"x\", W/\"abc\"", null, "\"abc\"", UPLOADED_AT));
+        assertTrue(ConditionalRequestSupport.isNotModified("*", null, "\"abc\"", UPLOADED_AT));
+    }
+
+    @Test
+    void isNotModified_WithDifferentEntityTag_ShouldIgnoreIfModifiedSince() {
+        assertFalse(ConditionalRequestSupport.isNotModified(
+                "\"other\"", "Wed, 15 Nov 2023 00:00:00 GMT", "\"abc\"", UPLOADED_AT));
+    }
+
+    @Test
+    void isNotModified_WithIfModifiedSince_ShouldCompareSeconds() {
+        assertTrue(ConditionalRequestSupport.isNotModified(null, "Tue, 14 Nov 2023 22:13:20 GMT", "\"abc\"", UPLOADED_AT));
+        assertFalse(ConditionalRequestSupport.isNotModified(null, "Tue, 14 Nov 2023 22:13:19 GMT", "\"abc\"", UPLOADED_AT));
+    }
+
+    @Test
+    void isNotModified_WithoutValidators_ShouldBeFalse() {
+        assertFalse(ConditionalRequestSupport.isNotModified(null, null, "\"abc\"", UPLOADED_AT));
+        assertFalse(ConditionalRequestSupport.isNotModified("\"abc\"", null, null, -1));
+        assertFalse(ConditionalRequestSupport.isNotModified(null, "garbage", "\"abc\"", UPLOADED_AT));
+    }
+}
@@ -0,0 +1,164 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class FileCacheTest {
+
+    private final GridFSFile gridFSFile = mock(GridFSFile.class);
+
+    @Test
+    void get_AfterPutContent_ShouldReturnBytesAndCountHit() throws IOException {
+        // Arrange
+        FileCache cache = new FileCache(10_000, 1_000, false);
+        ObjectId id = new ObjectId();
+        cache.putContent(id, gridFSFile, "0123456789".getBytes());
+
+        // Act
+        FileCache.CachedFile entry = cache.get(id);
+        FileCache.CachedFile missing = cache.get(new ObjectId());
+
+        // Assert
+        assertNotNull(entry);
+        assertTrue(entry.hasContent());
+        assertSame(gridFSFile, entry.getFile());
+        try (InputStream in = entry.openStream()) {
+            assertEquals("0123456789", new String(in.readAllBytes()));
+        }
+        try (InputStream in = entry.openStream(3, 5)) {
+            assertEquals("345", new String(in.readAllBytes()));
+        }
+        assertNull(missing);
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void putContent_AboveEntryLimit_ShouldNotCacheBytes() {
+        // Arrange
+        FileCache cache = new FileCache(10_000, 4, false);
+        ObjectId id = new ObjectId();
+
+        // Act
+        cache.putContent(id, gridFSFile, "too large".getBytes());
+
+        // Assert
+        assertFalse(cache.admitsContent(9));
+        assertNull(cache.get(id));
+    }
+
+    @Test
+    void putMetadata_ShouldCacheEntryWithoutContent() {
+        // Arrange
+        FileCache cache = new FileCache(10_000, 1_000, false);
+        ObjectId id = new ObjectId();
+
+        // Act
+        cache.putMetadata(id, gridFSFile);
+        FileCache.CachedFile entry = cache.get(id);
+
+        // Assert
+        assertNotNull(entry);
+        assertFalse(entry.hasContent());
+    }
+
+    @Test
+    void put_OverBudget_ShouldEvictLeastRecentlyUsedEntry() {
+        // Arrange: room for two 500-byte entries plus bookkeeping, not three
+        FileCache cache = new FileCache(2_100, 1_000, false);
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+        ObjectId third = new ObjectId();
+        byte[] content = new byte[500];
+
+        // Act
+        cache.putContent(first, gridFSFile, content);
+        cache.putContent(second, gridFSFile, content);
+        cache.putContent(third, gridFSFile, content);
+
+        // Assert
+        FileCache.CacheStats stats = cache.stats();
+        assertEquals(2, stats.entries());
+        assertEquals(1, stats.evictions());
+        assertTrue(stats.usedBytes() <= stats.maxBytes());
+        assertNull(cache.get(first));
+        assertNotNull(cache.get(second));
+        assertNotNull(cache.get(third));
+    }
+
+    @Test
+    void put_WhenVictimIsRequestedMoreOften_ShouldRejectNewcomer() {
+        // Arrange: room for a single 500-byte entry
+        FileCache cache = new FileCache(1_100, 1_000, false);
+        ObjectId popular = new ObjectId();
+        ObjectId oneOff = new ObjectId();
+        for (int i = 0; i < 5; i++) {
+            cache.get(popular);
+        }
+        cache.putContent(popular, gridFSFile, new byte[500]);
+
+        // Act
+        cache.putContent(oneOff, gridFSFile, new byte[500]);
+
+        // Assert
+        assertNotNull(cache.get(popular));
+        assertNull(cache.get(oneOff));
+        assertEquals(1, cache.stats().rejections());
+        assertEquals(0, cache.stats().evictions());
+    }
+
+    @Test
+    void invalidate_ShouldRemoveEntryAndReleaseBytes() {
+        // Arrange
+        FileCache cache = new FileCache(10_000, 1_000, false);
+        ObjectId id = new ObjectId();
+        cache.putContent(id, gridFSFile, new byte[100]);
+
+        // Act
+        cache.invalidate(id);
+
+        // Assert
+        assertNull(cache.get(id));
+        assertEquals(0, cache.stats().entries());
+        assertEquals(0, cache.stats().usedBytes());
+    }
+
+    @Test
+    void putContent_OffHeap_ShouldServeBytesFromDirectBuffer() throws IOException {
+        // Arrange
+        FileCache cache = new FileCache(10_000, 1_000, true);
+        ObjectId id = new ObjectId();
+
+        // Act
+        cache.putContent(id, gridFSFile, "direct".getBytes());
+
+        // Assert
+        assertTrue(cache.stats().offHeap());
+        try (InputStream in = cache.get(id).openStream()) {
+            assertEquals("direct", new String(in.readAllBytes()));
+        }
+    }
+
+    @Test
+    void zeroBudget_ShouldDisableCaching() {
+        // Arrange
+        FileCache cache = new FileCache(0, 1_000, false);
+        ObjectId id = new ObjectId();
+
+        // Act
+        cache.putMetadata(id, gridFSFile);
+        cache.putContent(id, gridFSFile, new byte[10]);
+
+        // Assert
+        assertFalse(cache.admitsContent(10));
+        assertNull(cache.get(id));
+    }
+}
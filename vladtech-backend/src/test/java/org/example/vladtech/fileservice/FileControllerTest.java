@@ -17,7 +17,11 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
@@ -52,6 +56,8 @@ class FileControllerTest {
         testMetadata.put("size", 1024L);
         testMetadata.put("uploadedAt", System.currentTimeMillis());
 
+        when(fileStorageService.urlFor(anyString()))
+                .thenAnswer(invocation -> "/uploads/reviews/" + invocation.getArgument(0));
     }
 
     @Test
@@ -376,4 +382,358 @@ class FileControllerTest {
                         .with(jwt()))
                 .andExpect(status().isInternalServerError());
     }
-}
\ No newline at end of file
+
+    @Test
+    @Order(20)
+    void getReviewImage_WithSingleRange_ShouldReturnPartialContent() throws Exception {
+        // Arrange
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.contentLength()).thenReturn(1000L);
+        when(fileStorageService.openRange(any(), eq(900L), eq(999L)))
+                .thenReturn(new ByteArrayInputStream(new byte[100]));
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("Range", "bytes=-100")
+                        .with(jwt()))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().string("Content-Range", "bytes 900-999/1000"))
+                .andExpect(header().string("Content-Length", "100"));
+
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    @Order(21)
+    void getReviewImage_WithMultipleRanges_ShouldReturnMultipartByteranges() throws Exception {
+        // Arrange
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.contentLength()).thenReturn(1000L);
+        when(fileStorageService.openRange(any(), eq(0L), eq(9L)))
+                .thenReturn(new ByteArrayInputStream("AAAAAAAAAA".getBytes()));
+        when(fileStorageService.openRange(any(), eq(500L), eq(504L)))
+                .thenReturn(new ByteArrayInputStream("BBBBB".getBytes()));
+
+        // Act
+        var result = mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("Range", "bytes=0-9,500-504")
+                        .with(jwt()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Type", org.hamcrest.Matchers.startsWith("multipart/byteranges; boundary=")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Content-Range: bytes 0-9/1000")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("Content-Range: bytes 500-504/1000")))
+                .andExpect(content().string(org.hamcrest.Matchers.containsString("BBBBB")));
+    }
+
+    @Test
+    @Order(22)
+    void getReviewImage_WithUnsatisfiableRange_ShouldReturn416() throws Exception {
+        // Arrange
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.contentLength()).thenReturn(1000L);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("Range", "bytes=5000-6000")
+                        .with(jwt()))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */1000"));
+    }
+
+    @Test
+    @Order(22)
+    void getReviewImage_WithMalformedRange_ShouldReturnFullContent() throws Exception {
+        // Arrange
+        byte[] content = "test image content".getBytes();
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("Range", "bytes=abc")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Range"));
+
+        verify(fileStorageService, never()).openRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @Order(23)
+    void getReviewImage_WithStaleIfRange_ShouldReturnFullContent() throws Exception {
+        // Arrange
+        byte[] content = "test image content".getBytes();
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("Range", "bytes=0-3")
+                        .header("If-Range", "\"some-other-version\"")
+                        .with(jwt()))
+                .andExpect(status().isOk());
+
+        verify(fileStorageService, never()).openRange(any(), anyLong(), anyLong());
+    }
+
+    @Test
+    @Order(24)
+    void getReviewImage_WithMatchingIfNoneMatch_ShouldReturnNotModifiedWithoutReadingContent() throws Exception {
+        // Arrange
+        testMetadata.put("sha256", "abc123");
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("If-None-Match", "\"abc123\"")
+                        .with(jwt()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"abc123\""));
+
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    @Order(25)
+    void getReviewImage_WithStaleIfNoneMatch_ShouldReturnContentAndETag() throws Exception {
+        // Arrange
+        byte[] content = "test image content".getBytes();
+        testMetadata.put("sha256", "abc123");
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("If-None-Match", "\"older\"")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"abc123\""));
+    }
+
+    @Test
+    @Order(26)
+    void getReviewImage_WithIfModifiedSinceAfterUpload_ShouldReturnNotModified() throws Exception {
+        // Arrange
+        com.mongodb.client.gridfs.model.GridFSFile gridFsFile = mock(com.mongodb.client.gridfs.model.GridFSFile.class);
+        when(gridFsFile.getUploadDate()).thenReturn(new java.util.Date(1_700_000_000_000L));
+        when(gridFsFile.getLength()).thenReturn(1024L);
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg", gridFsFile);
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .header("If-Modified-Since", "Wed, 15 Nov 2023 00:00:00 GMT")
+                        .with(jwt()))
+                .andExpect(status().isNotModified())
+                .andExpect(header().exists("Last-Modified"));
+
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    @Order(27)
+    void getReviewImage_WithWidth_ShouldServeVariant() throws Exception {
+        // Arrange
+        byte[] content = "thumbnail".getBytes();
+        FileStorageService.FileResourceWithMetadata variant =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId, 300)).thenReturn(variant);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .param("w", "300")
+                        .with(jwt()))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Length", String.valueOf(content.length)));
+
+        verify(fileStorageService, never()).loadResourceWithMetadata(testFileId);
+    }
+
+    @Test
+    @Order(28)
+    void getReviewImage_WithInvalidWidth_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(fileStorageService.loadResourceWithMetadata(testFileId, 0))
+                .thenThrow(new IllegalArgumentException("Width must be positive"));
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId)
+                        .param("w", "0")
+                        .with(jwt()))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @Order(29)
+    void uploadReviewImageStream_WithFilePart_ShouldStreamIntoStorage() throws Exception {
+        // Arrange
+        String body = "--xyz\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"test.jpg\"\r\n"
+                + "Content-Type: image/jpeg\r\n\r\n"
+                + "jpeg-bytes\r\n"
+                + "--xyz--\r\n";
+        when(fileStorageService.saveStream(eq("test.jpg"), eq("image/jpeg"), any())).thenAnswer(invocation -> {
+            invocation.getArgument(2, java.io.InputStream.class).readAllBytes();
+            return testFileId;
+        });
+
+        // Act & Assert
+        mockMvc.perform(post("/uploads/reviews/stream")
+                        .contentType("multipart/form-data; boundary=xyz")
+                        .content(body)
+                        .with(jwt()))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.id").value(testFileId))
+                .andExpect(jsonPath("$.url").value("/uploads/reviews/" + testFileId));
+    }
+
+    @Test
+    @Order(30)
+    void uploadReviewImageStream_WithoutFilePart_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        String body = "--xyz\r\n"
+                + "Content-Disposition: form-data; name=\"other\"\r\n\r\n"
+                + "value\r\n"
+                + "--xyz--\r\n";
+
+        // Act & Assert
+        mockMvc.perform(post("/uploads/reviews/stream")
+                        .contentType("multipart/form-data; boundary=xyz")
+                        .content(body)
+                        .with(jwt()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Missing file part"));
+
+        verify(fileStorageService, never()).saveStream(anyString(), anyString(), any());
+    }
+
+    @Test
+    @Order(31)
+    void getFilesMetadata_ShouldReturnFoundFilesAndListMissingIds() throws Exception {
+        // Arrange
+        String missingId = new ObjectId().toHexString();
+        java.util.Map<String, Document> found = new java.util.LinkedHashMap<>();
+        found.put(testFileId, testMetadata);
+        when(fileStorageService.getMetadata(anyCollection())).thenReturn(found);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/metadata")
+                        .param("ids", testFileId + "," + missingId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.files.length()").value(1))
+                .andExpect(jsonPath("$.files[0].id").value(testFileId))
+                .andExpect(jsonPath("$.files[0].originalFilename").value("test.jpg"))
+                .andExpect(jsonPath("$.missing[0]").value(missingId));
+
+        verify(fileStorageService).getMetadata(java.util.List.of(testFileId, missingId));
+        verify(fileStorageService, never()).getMetadata(anyString());
+    }
+
+    @Test
+    @Order(32)
+    void getFilesMetadata_WithInvalidId_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(fileStorageService.getMetadata(anyCollection()))
+                .thenThrow(new IllegalArgumentException("Invalid id format"));
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/metadata")
+                        .param("ids", "invalid-id"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid id format"));
+    }
+
+    @Test
+    @Order(33)
+    void getVersionedReviewImage_WithCurrentVersion_ShouldBeCachedAsImmutable() throws Exception {
+        // Arrange
+        byte[] content = "test image content".getBytes();
+        testMetadata.put("sha256", "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef");
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(fileStorageService.hasFinalContent(fileData)).thenReturn(true);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId + "/v/0123456789abcdef"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+    }
+
+    @Test
+    @Order(35)
+    void getVersionedReviewImage_WhileAwaitingProcessing_ShouldBeRevalidated() throws Exception {
+        // Arrange - the original is served until its optimized copy takes over under the same URL
+        byte[] content = "test image content".getBytes();
+        testMetadata.put("sha256", "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef");
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+        when(fileStorageService.hasFinalContent(fileData)).thenReturn(false);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(content));
+        when(gridFsResource.contentLength()).thenReturn((long) content.length);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId + "/v/0123456789abcdef"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Cache-Control", "no-cache, public"));
+    }
+
+    @Test
+    @Order(34)
+    void getVersionedReviewImage_WithStaleVersion_ShouldRedirectToCurrentUrl() throws Exception {
+        // Arrange
+        testMetadata.put("sha256", "fedcba9876543210fedcba9876543210fedcba9876543210fedcba9876543210");
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, testMetadata, "image/jpeg");
+
+        when(fileStorageService.loadResourceWithMetadata(testFileId)).thenReturn(fileData);
+
+        // Act & Assert
+        mockMvc.perform(get("/uploads/reviews/" + testFileId + "/v/0123456789abcdef").param("w", "320"))
+                .andExpect(status().isFound())
+                .andExpect(header().string("Location",
+                        "/uploads/reviews/" + testFileId + "/v/fedcba9876543210?w=320"));
+
+        verify(fileStorageService, never()).loadResourceWithMetadata(anyString(), anyInt());
+    }
+}
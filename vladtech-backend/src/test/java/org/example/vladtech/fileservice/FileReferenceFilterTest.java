@@ -0,0 +1,97 @@
+package org.example.vladtech.fileservice;
+
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileReferenceFilter;
+import org.example.vladtech.filestorageservice.MediaUrls;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileReferenceFilterTest {
+
+    @Test
+    void mightContain_ShouldNeverMissAnAddedId() {
+        // Arrange
+        FileReferenceFilter filter = new FileReferenceFilter(5000, 0.01);
+        List<ObjectId> ids = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            ObjectId id = new ObjectId();
+            ids.add(id);
+            filter.add(id);
+        }
+
+        // Act & Assert
+        ids.forEach(id -> assertTrue(filter.mightContain(id)));
+        assertEquals(5000, filter.size());
+    }
+
+    @Test
+    void mightContain_ShouldRarelyMatchUnknownIds() {
+        // Arrange
+        FileReferenceFilter filter = new FileReferenceFilter(5000, 0.01);
+        for (int i = 0; i < 5000; i++) {
+            filter.add(new ObjectId());
+        }
+
+        // Act
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain(new ObjectId())) {
+                falsePositives++;
+            }
+        }
+
+        // Assert
+        assertTrue(falsePositives < 300, "false positives: " + falsePositives);
+    }
+
+    @Test
+    void constructor_WithInvalidRate_ShouldThrowIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> new FileReferenceFilter(10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new FileReferenceFilter(10, 1));
+    }
+
+    @Test
+    void reviewFileId_ShouldParseUrlsAndBareIds() {
+        // Arrange
+        ObjectId id = new ObjectId();
+
+        // Act & Assert
+        assertEquals(id, MediaUrls.reviewFileId("/uploads/reviews/" + id.toHexString()));
+        assertEquals(id, MediaUrls.reviewFileId("https://example.com/uploads/reviews/" + id.toHexString() + "?w=320"));
+        assertEquals(id, MediaUrls.reviewFileId(id.toHexString()));
+        assertEquals(id, MediaUrls.reviewFileId(MediaUrls.reviewUrl(id.toHexString(), "0123456789abcdef")));
+        assertNull(MediaUrls.reviewFileId("/uploads/reviews/review1.jpg"));
+        assertNull(MediaUrls.reviewFileId("/uploads/portfolio/" + id.toHexString()));
+        assertNull(MediaUrls.reviewFileId(null));
+    }
+
+    @Test
+    void portfolioFilename_ShouldParseUrls() {
+        // Act & Assert
+        assertEquals("a.png", MediaUrls.portfolioFilename("/uploads/portfolio/a.png"));
+        assertEquals("a.png", MediaUrls.portfolioFilename("http://localhost:8080/uploads/portfolio/a.png#top"));
+        assertNull(MediaUrls.portfolioFilename("/uploads/reviews/a.png"));
+        assertNull(MediaUrls.portfolioFilename("/uploads/portfolio/"));
+    }
+
+    @Test
+    void reviewUrl_ShouldIncludeVersionWhenKnown() {
+        // Act & Assert
+        assertEquals("/uploads/reviews/abc/v/0123456789abcdef", MediaUrls.reviewUrl("abc", "0123456789abcdef"));
+        assertEquals("/uploads/reviews/abc", MediaUrls.reviewUrl("abc", null));
+    }
+
+    @Test
+    void isContentAddressed_ShouldMatchOnlyHashedNames() {
+        // Act & Assert
+        assertTrue(MediaUrls.isContentAddressed("0123456789abcdef0123456789abcdef.png"));
+        assertFalse(MediaUrls.isContentAddressed("3f2b8c1e-0b7d-4c52-9a55-0e8f7d7c1a2b.png"));
+        assertFalse(MediaUrls.isContentAddressed("0123456789abcdef0123456789abcdef"));
+        assertFalse(MediaUrls.isContentAddressed(null));
+    }
+}
@@ -3,7 +3,14 @@ package org.example.vladtech.fileservice;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import org.bson.Document;
 import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileCache;
 import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.ImageVariantService;
+import org.example.vladtech.filestorageservice.MediaProcessingService;
+import org.example.vladtech.filestorageservice.StorageTier;
+import org.example.vladtech.filestorageservice.StorageTieringService;
+import org.example.vladtech.filestorageservice.UploadQuotaService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -46,6 +53,27 @@ class FileStorageServiceTest {
     @Mock
     private GridFsResource gridFsResource;
 
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileCache fileCache;
+
+    @Mock
+    private ImageVariantService imageVariantService;
+
+    @Mock
+    private StorageTier coldTier;
+
+    @Mock
+    private StorageTieringService storageTieringService;
+
+    @Mock
+    private MediaProcessingService mediaProcessingService;
+
+    @Mock
+    private UploadQuotaService uploadQuotaService;
+
     @InjectMocks
     private FileStorageService fileStorageService;
 
@@ -58,7 +86,8 @@ class FileStorageServiceTest {
         testFileId = testObjectId.toHexString();
         ReflectionTestUtils.setField(fileStorageService, "bucket", "reviews");
         // Clear any leftover stubs/interactions from other tests, then set deterministic defaults.
-        reset(gridFsTemplate, gridFsOperations, gridFSFile, gridFsResource);
+        reset(gridFsTemplate, gridFsOperations, gridFSFile, gridFsResource, gridFsRawStore, fileCache, imageVariantService,
+                coldTier, storageTieringService, mediaProcessingService, uploadQuotaService);
         doReturn(gridFSFile).when(gridFsTemplate).findOne(any(Query.class));
         doReturn(gridFsResource).when(gridFsOperations).getResource(any(GridFSFile.class));
     }
@@ -84,6 +113,8 @@ class FileStorageServiceTest {
         assertNotNull(fileId);
         assertEquals(testFileId, fileId);
         verify(gridFsTemplate).store(any(InputStream.class), eq("test-image.jpg"), eq("image/jpeg"), any(Document.class));
+        verify(mediaProcessingService).enqueue(testObjectId, "image/jpeg");
+        verify(uploadQuotaService).charge(eq(testObjectId), anyLong());
     }
 
     @Test
@@ -372,6 +403,32 @@ class FileStorageServiceTest {
         verify(gridFsTemplate).findOne(any(Query.class));
     }
 
+    @Test
+    void loadResourceWithMetadata_WhenOptimized_ShouldServeOptimizedCopy() throws FileNotFoundException {
+        // Arrange
+        ObjectId optimizedId = new ObjectId();
+        GridFSFile optimizedFile = mock(GridFSFile.class);
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg")
+                .append("sha256", "a".repeat(64))
+                .append("optimizedId", optimizedId)
+                .append("optimizedSha256", "b".repeat(64)));
+        when(optimizedFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg")
+                .append("variantOf", testObjectId)
+                .append("optimizedSha256", "b".repeat(64)));
+        when(optimizedFile.getObjectId()).thenReturn(optimizedId);
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFSFile, optimizedFile);
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+
+        // Assert
+        assertSame(optimizedFile, result.getGridFsFile());
+        // The URL version stays the upload's, even for copies stored without uploadSha256
+        assertEquals("a".repeat(16), FileStorageService.versionOf(result.getMetadata()));
+        assertEquals("a".repeat(16), FileStorageService.versionOf(gridFSFile.getMetadata()));
+        verify(gridFsTemplate, times(2)).findOne(any(Query.class));
+    }
+
     @Test
     void loadResourceWithMetadata_WithInvalidId_ShouldThrowException() {
         // Act & Assert
@@ -451,10 +508,8 @@ class FileStorageServiceTest {
         Document metadata = new Document();
         metadata.put("originalFilename", "test.jpg");
 
-        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFSFile);
-        when(gridFsOperations.getResource(any(GridFSFile.class))).thenReturn(gridFsResource);
-        when(gridFSFile.getMetadata()).thenReturn(metadata);
-        when(gridFsResource.getContentType()).thenReturn("image/jpeg");
+        when(gridFsRawStore.findMetadata(anyCollection(), any(String[].class)))
+                .thenReturn(java.util.Map.of(testObjectId, metadata));
 
         // Act
         Document result = fileStorageService.getMetadata(testFileId);
@@ -462,6 +517,66 @@ class FileStorageServiceTest {
         // Assert
         assertNotNull(result);
         assertEquals("test.jpg", result.getString("originalFilename"));
+        // Only the projected fs.files document is read; the file itself is never opened
+        verifyNoInteractions(gridFsOperations);
+        verify(gridFsTemplate, never()).findOne(any(Query.class));
+    }
+
+    @Test
+    void getMetadata_WithUnknownId_ShouldThrowFileNotFoundException() {
+        // Arrange
+        when(gridFsRawStore.findMetadata(anyCollection(), any(String[].class))).thenReturn(java.util.Map.of());
+
+        // Act & Assert
+        assertThrows(FileNotFoundException.class, () -> fileStorageService.getMetadata(testFileId));
+    }
+
+    @Test
+    void getMetadata_ForManyIds_ShouldUseOneQueryAndKeepRequestOrder() {
+        // Arrange
+        ObjectId second = new ObjectId();
+        ObjectId missing = new ObjectId();
+        when(gridFsRawStore.findMetadata(anyCollection(), any(String[].class))).thenReturn(java.util.Map.of(
+                testObjectId, new Document("originalFilename", "a.jpg"),
+                second, new Document("originalFilename", "b.jpg")));
+
+        // Act
+        java.util.Map<String, Document> result = fileStorageService.getMetadata(
+                java.util.List.of(second.toHexString(), missing.toHexString(), testFileId));
+
+        // Assert
+        assertEquals(java.util.List.of(second.toHexString(), testFileId), new java.util.ArrayList<>(result.keySet()));
+        verify(gridFsRawStore, times(1)).findMetadata(anyCollection(), any(String[].class));
+    }
+
+    @Test
+    void getMetadata_ForManyIds_WithInvalidIdOrTooMany_ShouldThrowIllegalArgumentException() {
+        // Arrange
+        java.util.List<String> tooMany = java.util.Collections.nCopies(
+                FileStorageService.MAX_METADATA_BATCH + 1, testFileId);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.getMetadata(java.util.List.of(testFileId, "not-an-id")));
+        assertThrows(IllegalArgumentException.class, () -> fileStorageService.getMetadata(tooMany));
+        verify(gridFsRawStore, never()).findMetadata(anyCollection(), any(String[].class));
+    }
+
+    @Test
+    void urlFor_ShouldVersionUrlByContentHash() {
+        // Arrange
+        ObjectId legacy = new ObjectId();
+        when(gridFsRawStore.findMetadata(anyCollection(), any(String[].class))).thenAnswer(invocation -> {
+            java.util.Collection<ObjectId> ids = invocation.getArgument(0);
+            return ids.contains(testObjectId)
+                    ? java.util.Map.of(testObjectId, new Document("sha256", "0123456789abcdef" + "f".repeat(48)))
+                    : java.util.Map.of(legacy, new Document());
+        });
+
+        // Act & Assert
+        assertEquals("/uploads/reviews/" + testFileId + "/v/0123456789abcdef", fileStorageService.urlFor(testFileId));
+        assertEquals("/uploads/reviews/" + legacy.toHexString(), fileStorageService.urlFor(legacy.toHexString()));
+        assertThrows(IllegalArgumentException.class, () -> fileStorageService.urlFor("not-an-id"));
     }
 
     @Test
@@ -475,6 +590,7 @@ class FileStorageServiceTest {
         // Assert
         verify(gridFsTemplate).findOne(any(Query.class));
         verify(gridFsTemplate).delete(any(Query.class));
+        verify(uploadQuotaService).release(gridFSFile);
     }
 
     @Test
@@ -498,6 +614,45 @@ class FileStorageServiceTest {
         assertTrue(exception.getMessage().contains("File not found"));
     }
 
+    @Test
+    void deleteUnreferenced_ShouldDeleteRegardlessOfReferenceCount() {
+        // Arrange
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFSFile);
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+        when(gridFsRawStore.claimUnreferenced(testObjectId, 1000L)).thenReturn(true);
+
+        // Act
+        boolean deleted = fileStorageService.deleteUnreferenced(testObjectId, 1000L);
+
+        // Assert
+        assertTrue(deleted);
+        verify(gridFsRawStore, never()).releaseReference(any());
+        verify(gridFsTemplate).delete(any(Query.class));
+        verify(imageVariantService).deleteVariants(testObjectId);
+    }
+
+    @Test
+    void deleteUnreferenced_WhenFileIsGone_ShouldReturnFalse() {
+        // Arrange
+        doReturn(null).when(gridFsTemplate).findOne(any(Query.class));
+
+        // Act & Assert
+        assertFalse(fileStorageService.deleteUnreferenced(testObjectId, 1000L));
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+    }
+
+    @Test
+    void deleteUnreferenced_WhenReferencedSinceCutoff_ShouldKeepFile() {
+        // Arrange - an upload deduplicated onto the file after the collector scanned it
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFSFile);
+        when(gridFsRawStore.claimUnreferenced(testObjectId, 1000L)).thenReturn(false);
+
+        // Act & Assert
+        assertFalse(fileStorageService.deleteUnreferenced(testObjectId, 1000L));
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+        verify(imageVariantService, never()).deleteVariants(any());
+    }
+
     @Test
     void fileResourceWithMetadata_Getters_ShouldReturnCorrectValues() {
         // Arrange
@@ -513,4 +668,492 @@ class FileStorageServiceTest {
         assertEquals(metadata, fileData.getMetadata());
         assertEquals(contentType, fileData.getContentType());
     }
+
+    @Test
+    void openRange_WithGridFsFile_ShouldReadOnlyRequestedChunksFromRawStore() throws IOException {
+        // Arrange
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+        when(gridFSFile.getChunkSize()).thenReturn(261120);
+        InputStream ranged = new ByteArrayInputStream("tail".getBytes());
+        when(gridFsRawStore.openRange(testObjectId, 261120, 9_000_000L, 9_000_003L)).thenReturn(ranged);
+
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, new Document(), "image/jpeg", gridFSFile);
+
+        // Act
+        InputStream result = fileStorageService.openRange(fileData, 9_000_000L, 9_000_003L);
+
+        // Assert
+        assertSame(ranged, result);
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    void openRange_WithFileInColdTier_ShouldReadFromTier() throws IOException {
+        // Arrange
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+        when(coldTier.holds(gridFSFile)).thenReturn(true);
+        InputStream ranged = new ByteArrayInputStream("cold".getBytes());
+        when(coldTier.openRange(gridFSFile, 10L, 13L)).thenReturn(ranged);
+
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, new Document(), "image/jpeg", gridFSFile);
+
+        // Act
+        InputStream result = fileStorageService.openRange(fileData, 10L, 13L);
+
+        // Assert
+        assertSame(ranged, result);
+        verify(gridFsRawStore, never()).openRange(any(), anyInt(), anyLong(), anyLong());
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithFileInColdTier_ShouldReadContentFromTierAndRecordRead() throws IOException {
+        // Arrange
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+        when(gridFSFile.getLength()).thenReturn(4L);
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg").append("tier", "segment"));
+        when(coldTier.holds(gridFSFile)).thenReturn(true);
+        when(coldTier.open(gridFSFile)).thenReturn(new ByteArrayInputStream("cold".getBytes()));
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+        byte[] content;
+        try (InputStream in = result.getResource().getInputStream()) {
+            content = in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("cold", new String(content));
+        verify(storageTieringService).recordRead(gridFSFile);
+        verify(gridFsOperations, never()).getResource(any(GridFSFile.class));
+    }
+
+    @Test
+    void delete_WithFileInColdTier_ShouldForgetItsLocation() throws FileNotFoundException {
+        // Arrange
+        when(coldTier.holds(gridFSFile)).thenReturn(true);
+
+        // Act
+        fileStorageService.delete(testFileId);
+
+        // Assert
+        verify(gridFsTemplate).delete(any(Query.class));
+        verify(coldTier).remove(testObjectId);
+    }
+
+    @Test
+    void openRange_WithoutGridFsFile_ShouldSkipThroughResourceStream() throws IOException {
+        // Arrange
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream("0123456789".getBytes()));
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, null, "image/jpeg");
+
+        // Act
+        byte[] bytes;
+        try (InputStream result = fileStorageService.openRange(fileData, 3, 6)) {
+            bytes = result.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("3456", new String(bytes));
+        verifyNoInteractions(gridFsRawStore);
+    }
+
+    @Test
+    void fileResourceWithMetadata_WithGridFsFile_ShouldExposeLengthAndUploadDate() {
+        // Arrange
+        java.util.Date uploadDate = new java.util.Date(1_700_000_000_000L);
+        when(gridFSFile.getLength()).thenReturn(4096L);
+        when(gridFSFile.getUploadDate()).thenReturn(uploadDate);
+
+        // Act
+        FileStorageService.FileResourceWithMetadata fileData =
+                new FileStorageService.FileResourceWithMetadata(gridFsResource, null, "image/jpeg", gridFSFile);
+
+        // Assert
+        assertEquals(4096L, fileData.getLength());
+        assertEquals(1_700_000_000_000L, fileData.getLastModified());
+    }
+
+    @Test
+    void loadResourceWithMetadata_ShouldNotOpenGridFsResource() throws IOException {
+        // Arrange
+        Document metadata = new Document("contentType", "image/jpeg");
+        when(gridFSFile.getMetadata()).thenReturn(metadata);
+        when(gridFSFile.getLength()).thenReturn(2048L);
+        when(gridFSFile.getFilename()).thenReturn("test.jpg");
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+
+        // Assert
+        assertEquals(2048L, result.getResource().contentLength());
+        assertEquals("test.jpg", result.getResource().getFilename());
+        verify(gridFsOperations, never()).getResource(any(GridFSFile.class));
+    }
+
+    @Test
+    void loadResourceWithMetadata_ShouldOpenGridFsResourceOnlyWhenContentIsRead() throws IOException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg"));
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream("bytes".getBytes()));
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+        byte[] content;
+        try (InputStream in = result.getResource().getInputStream()) {
+            content = in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("bytes", new String(content));
+        verify(gridFsOperations, times(1)).getResource(gridFSFile);
+    }
+
+    @Test
+    void fileResourceWithMetadata_GetETag_ShouldPreferContentHashOverObjectId() {
+        // Arrange
+        when(gridFSFile.getId()).thenReturn(new org.bson.BsonObjectId(testObjectId));
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+
+        FileStorageService.FileResourceWithMetadata hashed = new FileStorageService.FileResourceWithMetadata(
+                gridFsResource, new Document("sha256", "deadbeef"), "image/jpeg", gridFSFile);
+        FileStorageService.FileResourceWithMetadata unhashed = new FileStorageService.FileResourceWithMetadata(
+                gridFsResource, new Document(), "image/jpeg", gridFSFile);
+        FileStorageService.FileResourceWithMetadata notGridFs = new FileStorageService.FileResourceWithMetadata(
+                gridFsResource, null, "image/jpeg");
+
+        // Assert
+        assertEquals("\"deadbeef\"", hashed.getETag());
+        assertEquals("\"" + testFileId + "\"", unhashed.getETag());
+        assertNull(notGridFs.getETag());
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithCachedEntry_ShouldSkipFilesLookup() throws FileNotFoundException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/png"));
+        FileCache realCache = new FileCache(1024 * 1024, 1024, false);
+        realCache.putMetadata(testObjectId, gridFSFile);
+        when(fileCache.get(testObjectId)).thenReturn(realCache.get(testObjectId));
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+
+        // Assert
+        assertEquals("image/png", result.getContentType());
+        verify(gridFsTemplate, never()).findOne(any(Query.class));
+        verify(fileCache, never()).putMetadata(any(), any());
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithCachedContent_ShouldServeBytesAndRangesFromMemory() throws IOException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/png"));
+        FileCache realCache = new FileCache(1024 * 1024, 1024, false);
+        realCache.putContent(testObjectId, gridFSFile, "0123456789".getBytes());
+        when(fileCache.get(testObjectId)).thenReturn(realCache.get(testObjectId));
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+        byte[] content;
+        try (InputStream in = result.getResource().getInputStream()) {
+            content = in.readAllBytes();
+        }
+        byte[] range;
+        try (InputStream in = fileStorageService.openRange(result, 2, 4)) {
+            range = in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("0123456789", new String(content));
+        assertEquals("234", new String(range));
+        verify(gridFsOperations, never()).getResource(any(GridFSFile.class));
+        verifyNoInteractions(gridFsRawStore);
+    }
+
+    @Test
+    void loadResourceWithMetadata_OnMiss_ShouldCacheMetadataAndSmallContentOnRead() throws IOException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg"));
+        when(gridFSFile.getId()).thenReturn(new org.bson.BsonObjectId(testObjectId));
+        when(gridFSFile.getObjectId()).thenReturn(testObjectId);
+        when(gridFSFile.getLength()).thenReturn(5L);
+        when(fileCache.admitsContent(5L)).thenReturn(true);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream("bytes".getBytes()));
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId);
+        byte[] content;
+        try (InputStream in = result.getResource().getInputStream()) {
+            content = in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("bytes", new String(content));
+        verify(fileCache).putMetadata(testObjectId, gridFSFile);
+        verify(fileCache).putContent(eq(testObjectId), eq(gridFSFile), any(byte[].class));
+    }
+
+    @Test
+    void delete_ShouldInvalidateCacheEntry() throws FileNotFoundException {
+        // Act
+        fileStorageService.delete(testFileId);
+
+        // Assert
+        verify(fileCache).invalidate(testObjectId);
+    }
+
+    @Test
+    void save_WithSupportedImage_ShouldRequestVariants() throws IOException {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "photo.png", "image/png", "png bytes".getBytes());
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(testObjectId);
+        when(imageVariantService.supports("image/png")).thenReturn(true);
+
+        // Act
+        fileStorageService.save(file);
+
+        // Assert
+        verify(imageVariantService).generateVariantsAsync(testObjectId, "photo.png", "image/png");
+        verify(imageVariantService, never()).generateVariantsAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithWidth_ShouldLoadResolvedVariant() throws IOException {
+        // Arrange
+        ObjectId variantId = new ObjectId();
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg"));
+        when(imageVariantService.resolveVariant(any(FileStorageService.FileResourceWithMetadata.class), eq(300)))
+                .thenReturn(ImageVariantService.Resolution.of(variantId));
+
+        // Act
+        fileStorageService.loadResourceWithMetadata(testFileId, 300);
+
+        // Assert
+        verify(fileCache).get(testObjectId);
+        verify(fileCache).get(variantId);
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithWidthAndNoVariant_ShouldReturnOriginal() throws IOException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/webp"));
+        when(imageVariantService.resolveVariant(any(FileStorageService.FileResourceWithMetadata.class), eq(300)))
+                .thenReturn(ImageVariantService.Resolution.ORIGINAL);
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId, 300);
+
+        // Assert
+        assertEquals("image/webp", result.getContentType());
+        assertTrue(fileStorageService.hasFinalContent(result));
+        verify(gridFsTemplate, times(1)).findOne(any(Query.class));
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithWidthNotGeneratedYet_ShouldReturnOriginalAsNotFinal() throws IOException {
+        // Arrange
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg"));
+        when(imageVariantService.resolveVariant(any(FileStorageService.FileResourceWithMetadata.class), eq(300)))
+                .thenReturn(ImageVariantService.Resolution.DEFERRED);
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId, 300);
+
+        // Assert
+        assertEquals("image/jpeg", result.getContentType());
+        assertTrue(result.isInterim());
+        assertFalse(fileStorageService.hasFinalContent(result));
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithWidthWhoseVariantIsMissing_ShouldReturnOriginalAsNotFinal() throws IOException {
+        // Arrange
+        ObjectId variantId = new ObjectId();
+        when(gridFSFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg"));
+        when(imageVariantService.resolveVariant(any(FileStorageService.FileResourceWithMetadata.class), eq(300)))
+                .thenReturn(ImageVariantService.Resolution.of(variantId));
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFSFile, (GridFSFile) null);
+
+        // Act
+        FileStorageService.FileResourceWithMetadata result = fileStorageService.loadResourceWithMetadata(testFileId, 300);
+
+        // Assert
+        assertTrue(result.isInterim());
+        assertFalse(fileStorageService.hasFinalContent(result));
+    }
+
+    @Test
+    void loadResourceWithMetadata_WithNonPositiveWidth_ShouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.loadResourceWithMetadata(testFileId, 0));
+    }
+
+    @Test
+    void delete_ShouldRemoveImageVariants() throws FileNotFoundException {
+        // Act
+        fileStorageService.delete(testFileId);
+
+        // Assert
+        verify(imageVariantService).deleteVariants(testObjectId);
+    }
+
+    @Test
+    void save_ShouldRecordSha256OfStreamedContent() throws IOException {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.jpg", "image/jpeg", "abc".getBytes());
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    invocation.getArgument(0, InputStream.class).readAllBytes();
+                    return testObjectId;
+                });
+
+        // Act
+        String result = fileStorageService.save(file);
+
+        // Assert
+        assertEquals(testFileId, result);
+        verify(gridFsRawStore).setContentHash(testObjectId,
+                "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", 3L);
+    }
+
+    @Test
+    void save_WithDuplicateContent_ShouldReturnExistingFileAndDropNewCopy() throws IOException {
+        // Arrange
+        ObjectId existingId = new ObjectId();
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.jpg", "image/jpeg", "abc".getBytes());
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(testObjectId);
+        when(gridFsRawStore.findCanonical(anyString(), eq(3L))).thenReturn(existingId);
+        when(gridFsRawStore.addReference(existingId)).thenReturn(true);
+        when(imageVariantService.supports("image/jpeg")).thenReturn(true);
+
+        // Act
+        String result = fileStorageService.save(file);
+
+        // Assert
+        assertEquals(existingId.toHexString(), result);
+        verify(gridFsTemplate).delete(any(Query.class));
+        verify(fileCache).invalidate(existingId);
+        verify(imageVariantService, never()).generateVariantsAsync(any(), any(), any(), any());
+    }
+
+    @Test
+    void save_WhenExistingCopyVanished_ShouldKeepNewCopy() throws IOException {
+        // Arrange
+        ObjectId existingId = new ObjectId();
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.jpg", "image/jpeg", "abc".getBytes());
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenReturn(testObjectId);
+        when(gridFsRawStore.findCanonical(anyString(), eq(3L))).thenReturn(existingId);
+        when(gridFsRawStore.addReference(existingId)).thenReturn(false);
+
+        // Act
+        String result = fileStorageService.save(file);
+
+        // Assert
+        assertEquals(testFileId, result);
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+    }
+
+    @Test
+    void delete_WithOtherReferencesRemaining_ShouldKeepBytes() throws FileNotFoundException {
+        // Arrange
+        when(gridFsRawStore.releaseReference(testObjectId)).thenReturn(1L);
+
+        // Act
+        fileStorageService.delete(testFileId);
+
+        // Assert
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+        verify(imageVariantService, never()).deleteVariants(any());
+        verify(fileCache).invalidate(testObjectId);
+    }
+
+    @Test
+    void delete_WhenDeletionAlreadyClaimed_ShouldLeaveFileToOtherCaller() throws FileNotFoundException {
+        // Arrange
+        when(gridFsRawStore.releaseReference(testObjectId)).thenReturn(-1L);
+
+        // Act
+        fileStorageService.delete(testFileId);
+
+        // Assert
+        verify(gridFsTemplate, never()).delete(any(Query.class));
+        verify(uploadQuotaService, never()).release(any());
+    }
+
+    @Test
+    void saveStream_WithValidImage_ShouldStoreAndRecordHashAndSize() throws IOException {
+        // Arrange
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3, 4};
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    assertArrayEquals(png, invocation.getArgument(0, InputStream.class).readAllBytes());
+                    return testObjectId;
+                });
+        when(imageVariantService.supports("image/png")).thenReturn(true);
+
+        // Act
+        String result = fileStorageService.saveStream("my photo.png", "image/png", new ByteArrayInputStream(png));
+
+        // Assert
+        assertEquals(testFileId, result);
+        verify(gridFsTemplate).store(any(InputStream.class), eq("my_photo.png"), eq("image/png"), any(Document.class));
+        verify(gridFsRawStore).setContentHash(eq(testObjectId), anyString(), eq((long) png.length));
+        verify(imageVariantService).generateVariantsAsync(testObjectId, "my_photo.png", "image/png");
+    }
+
+    @Test
+    void saveStream_WithMismatchedSignature_ShouldRejectBeforeStoring() {
+        // Arrange
+        InputStream notAJpeg = new ByteArrayInputStream("just some text".getBytes());
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.saveStream("photo.jpg", "image/jpeg", notAJpeg));
+        assertTrue(exception.getMessage().contains("does not match"));
+        verify(gridFsTemplate, never()).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+    }
+
+    @Test
+    void saveStream_WithInvalidTypeOrName_ShouldRejectBeforeReading() {
+        InputStream content = mock(InputStream.class);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.saveStream("doc.pdf", "application/pdf", content));
+        assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.saveStream("../photo.jpg", "image/jpeg", content));
+        verifyNoInteractions(content);
+    }
+
+    @Test
+    void saveStream_WhenContentExceedsLimit_ShouldFailWithSizeError() {
+        // Arrange: a JPEG header followed by more than MAX_FILE_SIZE bytes
+        InputStream oversized = new java.io.SequenceInputStream(
+                new ByteArrayInputStream(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF}),
+                new ByteArrayInputStream(new byte[(int) FileStorageService.MAX_FILE_SIZE]));
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    try {
+                        invocation.getArgument(0, InputStream.class).transferTo(java.io.OutputStream.nullOutputStream());
+                    } catch (IOException e) {
+                        throw new RuntimeException("IOException when reading from the InputStream", e);
+                    }
+                    return testObjectId;
+                });
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> fileStorageService.saveStream("big.jpg", "image/jpeg", oversized));
+        assertTrue(exception.getMessage().contains("exceeds maximum"));
+        verify(gridFsRawStore, never()).setContentHash(any(), anyString(), anyLong());
+    }
 }
@@ -0,0 +1,177 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Reference counting against a real fs.files collection, where the interleavings between a
+ * delete and a deduplicating upload actually happen.
+ */
+@DataMongoTest
+@Import(GridFsRawStore.class)
+class GridFsRawStoreMongoTest {
+
+    @Autowired
+    private GridFsRawStore rawStore;
+
+    private MongoCollection<Document> files;
+
+    @BeforeEach
+    void setUp() {
+        files = rawStore.filesCollection();
+        files.deleteMany(new Document());
+    }
+
+    @Test
+    void addReference_AfterLastReferenceReleased_ShouldRefuseSoUploadKeepsItsCopy() {
+        // Arrange
+        ObjectId canonical = storeFile("abc");
+
+        // Act - the delete releases the last reference, then a duplicate upload tries to join it
+        long remaining = rawStore.releaseReference(canonical);
+        boolean joined = rawStore.addReference(canonical);
+
+        // Assert
+        assertEquals(0, remaining);
+        assertFalse(joined);
+        assertNull(rawStore.findCanonical("abc", 3));
+    }
+
+    @Test
+    void releaseReference_AfterUploadJoined_ShouldKeepFile() {
+        // Arrange
+        ObjectId canonical = storeFile("abc");
+
+        // Act - the duplicate upload joins first, then the delete releases its reference
+        boolean joined = rawStore.addReference(canonical);
+        long remaining = rawStore.releaseReference(canonical);
+
+        // Assert
+        assertTrue(joined);
+        assertEquals(1, remaining);
+        assertEquals(canonical, rawStore.findCanonical("abc", 3));
+        assertNotEquals(Boolean.TRUE, metadata(canonical).get("deleting"));
+    }
+
+    @Test
+    void releaseReference_ShouldClaimLastReferenceOnlyOnce() {
+        // Arrange
+        ObjectId canonical = storeFile("abc");
+        rawStore.addReference(canonical);
+
+        // Act
+        long first = rawStore.releaseReference(canonical);
+        long second = rawStore.releaseReference(canonical);
+        long third = rawStore.releaseReference(canonical);
+
+        // Assert
+        assertEquals(1, first);
+        assertEquals(0, second);
+        assertEquals(-1, third);
+        assertEquals(Boolean.TRUE, metadata(canonical).get("deleting"));
+    }
+
+    @Test
+    void findCanonical_ShouldSkipFileBeingDeleted() {
+        // Arrange
+        ObjectId older = storeFile("abc");
+        ObjectId newer = storeFile("abc");
+        rawStore.releaseReference(older);
+
+        // Act & Assert
+        assertEquals(newer, rawStore.findCanonical("abc", 3));
+    }
+
+    @Test
+    void claimUnreferenced_AfterUploadJoinedOldFile_ShouldKeepItUntilGracePeriodPasses() {
+        // Arrange - an old file nothing referred to, then a duplicate upload joins it
+        ObjectId canonical = storeFile("abc");
+        long scannedAt = System.currentTimeMillis();
+        rawStore.addReference(canonical);
+
+        // Act - the collector's cutoff predates the join
+        boolean claimed = rawStore.claimUnreferenced(canonical, scannedAt - 1);
+
+        // Assert
+        assertFalse(claimed);
+        assertTrue(((Number) metadata(canonical).get("lastReferencedAt")).longValue() >= scannedAt);
+        assertTrue(rawStore.claimUnreferenced(canonical, System.currentTimeMillis() + 1));
+        assertFalse(rawStore.addReference(canonical));
+    }
+
+    @Test
+    void findChunksWithoutFile_ShouldReturnOnlyAbandonedUploads() {
+        // Arrange
+        rawStore.chunksCollection().deleteMany(new Document());
+        ObjectId stored = storeFile("abc");
+        ObjectId abandoned = new ObjectId();
+        rawStore.saveChunk(stored, 0, new byte[]{1}, 1);
+        rawStore.saveChunk(abandoned, 0, new byte[]{1}, 1);
+        rawStore.saveChunk(abandoned, 1, new byte[]{2}, 1);
+
+        // Act & Assert
+        assertEquals(List.of(abandoned), rawStore.findChunksWithoutFile(null, new ObjectId(), 10));
+        assertEquals(List.of(), rawStore.findChunksWithoutFile(null, abandoned, 10));
+    }
+
+    @Test
+    void purgeChunks_AfterPromotionClearedTier_ShouldKeepChunks() {
+        // Arrange
+        ObjectId cold = storeFile("abc");
+        rawStore.setTier(cold, "segment");
+        rawStore.saveChunk(cold, 0, "abc".getBytes(), 3);
+
+        // Act - the promotion flips the tier before the purge gets to the file
+        boolean cleared = rawStore.clearTier(cold, false);
+        boolean purged = rawStore.purgeChunks(cold);
+
+        // Assert
+        assertTrue(cleared);
+        assertFalse(purged);
+        assertArrayEquals("abc".getBytes(), rawStore.readChunk(cold, 0));
+        assertNull(metadata(cold).get("tier"));
+    }
+
+    @Test
+    void clearTier_AfterPurgeClaimedChunks_ShouldRefuseUnlessChunksWereWrittenBack() {
+        // Arrange
+        ObjectId cold = storeFile("abc");
+        rawStore.setTier(cold, "segment");
+        rawStore.saveChunk(cold, 0, "abc".getBytes(), 3);
+
+        // Act - the purge gets there first, then the promotion that saw unpurged chunks
+        boolean purged = rawStore.purgeChunks(cold);
+        boolean clearedWithoutChunks = rawStore.clearTier(cold, false);
+        boolean clearedAfterWriteBack = rawStore.clearTier(cold, true);
+
+        // Assert
+        assertTrue(purged);
+        assertNull(rawStore.readChunk(cold, 0));
+        assertFalse(clearedWithoutChunks);
+        assertTrue(clearedAfterWriteBack);
+        assertNull(metadata(cold).get("chunksPurged"));
+    }
+
+    private ObjectId storeFile(String sha256) {
+        ObjectId id = new ObjectId();
+        files.insertOne(new Document("_id", id)
+                .append("length", 3L)
+                .append("metadata", new Document("sha256", sha256)));
+        return id;
+    }
+
+    private Document metadata(ObjectId id) {
+        return files.find(new Document("_id", id)).first().get("metadata", Document.class);
+    }
+}
@@ -0,0 +1,195 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.result.UpdateResult;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class GridFsRawStoreTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> chunksCollection;
+
+    @Mock
+    private MongoCollection<Document> filesCollection;
+
+    @Mock
+    private FindIterable<Document> findIterable;
+
+    @Mock
+    private MongoCursor<Document> cursor;
+
+    private GridFsRawStore rawStore;
+
+    @BeforeEach
+    void setUp() {
+        rawStore = new GridFsRawStore(mongoTemplate, "fs");
+        when(mongoTemplate.getCollection("fs.chunks")).thenReturn(chunksCollection);
+        when(mongoTemplate.getCollection("fs.files")).thenReturn(filesCollection);
+        when(chunksCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.projection(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.sort(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.iterator()).thenReturn(cursor);
+    }
+
+    @Test
+    void openRange_ShouldSkipIntoFirstChunkAndStopAtRangeEnd() throws IOException {
+        // Arrange: chunk size 4, file "abcdefghij", range 6-8 lives in chunks 1 and 2
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(
+                new Document("n", 1).append("data", new Binary("efgh".getBytes())),
+                new Document("n", 2).append("data", new Binary("ij".getBytes())));
+
+        // Act
+        byte[] bytes;
+        try (InputStream in = rawStore.openRange(new ObjectId(), 4, 6, 8)) {
+            bytes = in.readAllBytes();
+        }
+
+        // Assert
+        assertEquals("ghi", new String(bytes));
+        verify(cursor).close();
+    }
+
+    @Test
+    void openRange_WhenChunksAreMissing_ShouldFail() {
+        // Arrange
+        when(cursor.hasNext()).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IOException.class, () -> {
+            try (InputStream in = rawStore.openRange(new ObjectId(), 4, 0, 3)) {
+                in.readAllBytes();
+            }
+        });
+    }
+
+    @Test
+    void openRange_WithInvalidRange_ShouldThrowException() {
+        assertThrows(IllegalArgumentException.class, () -> rawStore.openRange(new ObjectId(), 4, 5, 2));
+        assertThrows(IllegalArgumentException.class, () -> rawStore.openRange(new ObjectId(), 0, 0, 2));
+    }
+
+    @Test
+    void findCanonical_ShouldReturnOldestMatchingFile() {
+        // Arrange
+        ObjectId oldest = new ObjectId();
+        when(filesCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.limit(1)).thenReturn(findIterable);
+        when(findIterable.first()).thenReturn(new Document("_id", oldest));
+
+        // Act & Assert
+        assertEquals(oldest, rawStore.findCanonical("abc", 10));
+        verify(findIterable).sort(any(Bson.class));
+    }
+
+    @Test
+    void findCanonical_WithoutMatch_ShouldReturnNull() {
+        // Arrange
+        when(filesCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.limit(1)).thenReturn(findIterable);
+        when(findIterable.first()).thenReturn(null);
+
+        // Act & Assert
+        assertNull(rawStore.findCanonical("abc", 10));
+    }
+
+    @Test
+    void addReference_ShouldReportWhetherFileStillExists() {
+        // Arrange
+        ObjectId present = new ObjectId();
+        ObjectId gone = new ObjectId();
+        when(filesCollection.findOneAndUpdate(any(Bson.class), anyList()))
+                .thenReturn(new Document("_id", present), (Document) null);
+
+        // Act & Assert
+        assertTrue(rawStore.addReference(present));
+        assertFalse(rawStore.addReference(gone));
+    }
+
+    @Test
+    void releaseReference_ShouldReturnRemainingReferences() {
+        // Arrange
+        when(filesCollection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(new Document("metadata", new Document("refCount", 2)));
+
+        // Act & Assert
+        assertEquals(2, rawStore.releaseReference(new ObjectId()));
+    }
+
+    @Test
+    void releaseReference_ForLastReference_ShouldClaimFileAndReturnZero() {
+        // Arrange
+        when(filesCollection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(null);
+        when(filesCollection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+
+        // Act & Assert
+        assertEquals(0, rawStore.releaseReference(new ObjectId()));
+    }
+
+    @Test
+    void releaseReference_WhenFileIsGoneOrClaimed_ShouldReturnMinusOne() {
+        // Arrange
+        when(filesCollection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class)))
+                .thenReturn(null);
+        when(filesCollection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        when(filesCollection.countDocuments(any(Bson.class))).thenReturn(0L);
+
+        // Act & Assert
+        assertEquals(-1, rawStore.releaseReference(new ObjectId()));
+    }
+
+    @Test
+    void findMetadata_ShouldQueryAllIdsAtOnceAndMapMetadataById() {
+        // Arrange
+        ObjectId withMetadata = new ObjectId();
+        ObjectId withoutMetadata = new ObjectId();
+        when(filesCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(
+                new Document("_id", withMetadata).append("metadata", new Document("originalFilename", "a.jpg")),
+                new Document("_id", withoutMetadata));
+
+        // Act
+        java.util.Map<ObjectId, Document> result = rawStore.findMetadata(
+                java.util.List.of(withMetadata, withoutMetadata, new ObjectId()), "originalFilename");
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals("a.jpg", result.get(withMetadata).getString("originalFilename"));
+        assertTrue(result.containsKey(withoutMetadata));
+        assertNull(result.get(withoutMetadata));
+        verify(filesCollection, times(1)).find(any(Bson.class));
+        verify(findIterable).projection(any(Bson.class));
+    }
+}
@@ -0,0 +1,385 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.gridfs.GridFSFindIterable;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileCache;
+import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.ImageVariantService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ImageVariantServiceTest {
+
+    @Mock
+    private GridFsTemplate gridFsTemplate;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileCache fileCache;
+
+    @Mock
+    private MongoCollection<Document> filesCollection;
+
+    @Mock
+    private GridFSFile gridFSFile;
+
+    @Mock
+    private GridFsResource gridFsResource;
+
+    private ImageVariantService imageVariantService;
+    private ObjectId originalId;
+
+    @BeforeEach
+    void setUp() {
+        imageVariantService = new ImageVariantService(gridFsTemplate, gridFsRawStore, fileCache, List.of(1600, 320, 800),
+                40_000_000, 2);
+        originalId = new ObjectId();
+        when(gridFsRawStore.filesCollection()).thenReturn(filesCollection);
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> new ObjectId());
+        when(gridFSFile.getId()).thenReturn(new BsonObjectId(originalId));
+        when(gridFSFile.getObjectId()).thenReturn(originalId);
+        when(gridFSFile.getFilename()).thenReturn("photo.png");
+    }
+
+    @Test
+    void selectWidth_ShouldPickSmallestConfiguredWidthAtLeastRequested() {
+        assertEquals(320, imageVariantService.selectWidth(300));
+        assertEquals(320, imageVariantService.selectWidth(320));
+        assertEquals(1600, imageVariantService.selectWidth(900));
+        assertNull(imageVariantService.selectWidth(2000));
+        assertEquals(List.of(320, 800, 1600), imageVariantService.getWidths());
+    }
+
+    @Test
+    void generateVariantsAsync_ShouldStoreOnlyVariantsNarrowerThanOriginal() throws IOException {
+        // Arrange
+        byte[] png = png(1000, 500);
+
+        // Act
+        imageVariantService.generateVariantsAsync(originalId, "photo.png", "image/png", png);
+
+        // Assert
+        ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+        ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+        verify(gridFsTemplate, times(2)).store(content.capture(), anyString(), eq("image/png"), metadata.capture());
+
+        assertEquals(320, metadata.getAllValues().get(0).getInteger("variantWidth"));
+        assertEquals(800, metadata.getAllValues().get(1).getInteger("variantWidth"));
+        assertEquals(originalId, metadata.getAllValues().get(0).getObjectId("variantOf"));
+
+        BufferedImage thumbnail = ImageIO.read(content.getAllValues().get(0));
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(160, thumbnail.getHeight());
+
+        verify(filesCollection).updateOne(any(Bson.class), any(Bson.class));
+        verify(fileCache).invalidate(originalId);
+    }
+
+    @Test
+    void generateVariantsAsync_WithExifOrientation_ShouldScaleUprightImage() throws IOException {
+        // Arrange - 1000x500 pixels, EXIF says rotate 90 degrees clockwise to display
+        byte[] jpeg = withExifOrientation(jpeg(1000, 500), 6);
+
+        // Act
+        imageVariantService.generateVariantsAsync(originalId, "photo.jpg", "image/jpeg", jpeg);
+
+        // Assert - only 320 is narrower than the displayed 500 pixels
+        ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+        verify(gridFsTemplate, times(1)).store(content.capture(), eq("photo-320w.jpg"), eq("image/jpeg"), any(Document.class));
+        BufferedImage thumbnail = ImageIO.read(content.getValue());
+        assertEquals(320, thumbnail.getWidth());
+        assertEquals(640, thumbnail.getHeight());
+
+        ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+        verify(filesCollection).updateOne(any(Bson.class), update.capture());
+        BsonDocument set = update.getValue().toBsonDocument().getDocument("$set");
+        assertEquals(500, set.getInt32("metadata.width").getValue());
+        assertEquals(1000, set.getInt32("metadata.height").getValue());
+    }
+
+    @Test
+    void resolveVariant_WithRecordedVariant_ShouldReturnItWithoutGenerating() throws IOException {
+        // Arrange
+        ObjectId variantId = new ObjectId();
+        Document metadata = new Document("width", 1000).append("variants", new Document("320", variantId));
+
+        // Act
+        ImageVariantService.Resolution result = imageVariantService.resolveVariant(original(metadata, "image/png"), 200);
+
+        // Assert
+        assertEquals(variantId, result.variantId());
+        verify(gridFsTemplate, never()).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+    }
+
+    @Test
+    void resolveVariant_WhenTargetIsNotNarrowerThanOriginal_ShouldServeOriginal() throws IOException {
+        // Arrange
+        Document metadata = new Document("width", 600);
+
+        // Act & Assert
+        assertEquals(ImageVariantService.Resolution.ORIGINAL, imageVariantService.resolveVariant(original(metadata, "image/png"), 700));
+        assertEquals(ImageVariantService.Resolution.ORIGINAL, imageVariantService.resolveVariant(original(metadata, "image/png"), 5000));
+    }
+
+    @Test
+    void resolveVariant_ForUnsupportedFormat_ShouldServeOriginal() throws IOException {
+        assertEquals(ImageVariantService.Resolution.ORIGINAL, imageVariantService.resolveVariant(original(new Document(), "image/webp"), 320));
+    }
+
+    @Test
+    void resolveVariant_ForOlderUpload_ShouldGenerateRequestedVariantOnDemand() throws IOException {
+        // Arrange
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(null);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(png(1000, 500)));
+
+        // Act
+        ImageVariantService.Resolution result = imageVariantService.resolveVariant(original(new Document(), "image/png"), 700);
+
+        // Assert
+        assertNotNull(result.variantId());
+        ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+        verify(gridFsTemplate, times(1)).store(any(InputStream.class), eq("photo-800w.png"), eq("image/png"), metadata.capture());
+        assertEquals(800, metadata.getValue().getInteger("variantWidth"));
+        verify(fileCache).invalidate(originalId);
+    }
+
+    @Test
+    void resolveVariant_WhenDeclaredSizeExceedsPixelLimit_ShouldServeOriginalWithoutDecoding() throws IOException {
+        // Arrange - 2000x1000 declared, limit of one million pixels
+        imageVariantService = new ImageVariantService(gridFsTemplate, gridFsRawStore, fileCache, List.of(320),
+                1_000_000, 2);
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(null);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream(png(2000, 1000)));
+
+        // Act
+        ImageVariantService.Resolution result = imageVariantService.resolveVariant(original(new Document(), "image/png"), 320);
+
+        // Assert
+        assertEquals(ImageVariantService.Resolution.ORIGINAL, result);
+        verify(gridFsTemplate, never()).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+        verify(filesCollection).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void resolveVariant_WhenOriginalWasTooLarge_ShouldNotReadItAgain() throws IOException {
+        // Arrange
+        Document metadata = new Document("width", 9000).append("variantsSkipped", true);
+
+        // Act & Assert
+        assertEquals(ImageVariantService.Resolution.ORIGINAL, imageVariantService.resolveVariant(original(metadata, "image/png"), 320));
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    void resolveVariant_WhenGenerationsAreBusy_ShouldServeOriginalForNow() throws Exception {
+        // Arrange - one permit, held by a generation blocked reading another original
+        imageVariantService = new ImageVariantService(gridFsTemplate, gridFsRawStore, fileCache, List.of(320),
+                40_000_000, 1);
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(null);
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        GridFsResource slowResource = mock(GridFsResource.class);
+        byte[] png = png(1000, 500);
+        when(slowResource.getInputStream()).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new ByteArrayInputStream(png);
+        });
+        GridFSFile otherFile = mock(GridFSFile.class);
+        ObjectId otherId = new ObjectId();
+        when(otherFile.getId()).thenReturn(new BsonObjectId(otherId));
+        when(otherFile.getObjectId()).thenReturn(otherId);
+        Thread busy = new Thread(() -> {
+            try {
+                imageVariantService.resolveVariant(new FileStorageService.FileResourceWithMetadata(
+                        slowResource, new Document(), "image/png", otherFile), 320);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        busy.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+        // Act
+        ImageVariantService.Resolution result = imageVariantService.resolveVariant(original(new Document(), "image/png"), 320);
+        release.countDown();
+        busy.join(5000);
+
+        // Assert
+        assertEquals(ImageVariantService.Resolution.DEFERRED, result);
+        verify(gridFsResource, never()).getInputStream();
+    }
+
+    @Test
+    void resolveVariant_WhenRequestArrivesAfterFirstHolderLeft_ShouldWaitForTheGenerationInProgress() throws Exception {
+        // Arrange - the first reader fails, the second generates while a third request comes in
+        AtomicReference<ObjectId> storedId = new AtomicReference<>();
+        when(gridFsTemplate.store(any(InputStream.class), anyString(), anyString(), any(Document.class)))
+                .thenAnswer(invocation -> {
+                    storedId.set(new ObjectId());
+                    return storedId.get();
+                });
+        GridFSFile storedVariant = mock(GridFSFile.class);
+        when(storedVariant.getObjectId()).thenAnswer(invocation -> storedId.get());
+        when(gridFsTemplate.findOne(any(Query.class)))
+                .thenAnswer(invocation -> storedId.get() != null ? storedVariant : null);
+        CountDownLatch firstReading = new CountDownLatch(1);
+        CountDownLatch failFirst = new CountDownLatch(1);
+        CountDownLatch secondReading = new CountDownLatch(1);
+        CountDownLatch finishSecond = new CountDownLatch(1);
+        byte[] png = png(1000, 500);
+        AtomicInteger reads = new AtomicInteger();
+        when(gridFsResource.getInputStream()).thenAnswer(invocation -> {
+            switch (reads.incrementAndGet()) {
+                case 1 -> {
+                    firstReading.countDown();
+                    failFirst.await(5, TimeUnit.SECONDS);
+                    throw new IOException("connection reset");
+                }
+                case 2 -> {
+                    secondReading.countDown();
+                    finishSecond.await(5, TimeUnit.SECONDS);
+                }
+                default -> { }
+            }
+            return new ByteArrayInputStream(png);
+        });
+        AtomicReference<ImageVariantService.Resolution> secondResult = new AtomicReference<>();
+        AtomicReference<ImageVariantService.Resolution> thirdResult = new AtomicReference<>();
+        Thread first = resolveInBackground(new AtomicReference<>());
+        first.start();
+        assertTrue(firstReading.await(5, TimeUnit.SECONDS));
+        Thread second = resolveInBackground(secondResult);
+        second.start();
+        awaitBlocked(second);
+        failFirst.countDown();
+        assertTrue(secondReading.await(5, TimeUnit.SECONDS));
+
+        // Act
+        Thread third = resolveInBackground(thirdResult);
+        third.start();
+        awaitBlocked(third);
+        verify(gridFsTemplate, never()).store(any(InputStream.class), anyString(), anyString(), any(Document.class));
+        finishSecond.countDown();
+        first.join(5000);
+        second.join(5000);
+        third.join(5000);
+
+        // Assert
+        verify(gridFsTemplate, times(1)).store(any(InputStream.class), eq("photo-320w.png"), eq("image/png"), any(Document.class));
+        assertNotNull(secondResult.get().variantId());
+        assertEquals(secondResult.get(), thirdResult.get());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteVariants_ShouldInvalidateAndDeleteEveryVariant() {
+        // Arrange
+        ObjectId variantId = new ObjectId();
+        GridFSFile variant = mock(GridFSFile.class);
+        when(variant.getObjectId()).thenReturn(variantId);
+        GridFSFindIterable found = mock(GridFSFindIterable.class);
+        MongoCursor<GridFSFile> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenReturn(true, false);
+        when(cursor.next()).thenReturn(variant);
+        when(found.iterator()).thenReturn(cursor);
+        when(gridFsTemplate.find(any(Query.class))).thenReturn(found);
+
+        // Act
+        imageVariantService.deleteVariants(originalId);
+
+        // Assert
+        verify(fileCache).invalidate(variantId);
+        verify(gridFsTemplate).delete(any(Query.class));
+    }
+
+    private FileStorageService.FileResourceWithMetadata original(Document metadata, String contentType) {
+        return new FileStorageService.FileResourceWithMetadata(gridFsResource, metadata, contentType, gridFSFile);
+    }
+
+    private Thread resolveInBackground(AtomicReference<ImageVariantService.Resolution> result) {
+        return new Thread(() -> {
+            try {
+                result.set(imageVariantService.resolveVariant(original(new Document(), "image/png"), 320));
+            } catch (IOException e) {
+                // The failed read is expected for the first request
+            }
+        });
+    }
+
+    private static void awaitBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.BLOCKED && thread.isAlive() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    // Inserts a minimal big-endian EXIF APP1 segment holding only the orientation tag
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0x00, 0x22,
+                'E', 'x', 'i', 'f', 0x00, 0x00,
+                'M', 'M', 0x00, 0x2A, 0x00, 0x00, 0x00, 0x08,
+                0x00, 0x01,
+                0x01, 0x12, 0x00, 0x03, 0x00, 0x00, 0x00, 0x01, 0x00, (byte) orientation, 0x00, 0x00,
+                0x00, 0x00, 0x00, 0x00
+        };
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+}
@@ -0,0 +1,104 @@
+package org.example.vladtech.fileservice;
+
+import org.example.vladtech.filestorageservice.LocalFileCatalog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.MediaType;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileCatalogTest {
+
+    @TempDir
+    Path root;
+
+    private Path portfolio;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        portfolio = Files.createDirectories(root.resolve("portfolio"));
+    }
+
+    @Test
+    void lookup_ShouldDescribeFile() throws IOException {
+        // Arrange
+        Files.write(portfolio.resolve("a.png"), new byte[100]);
+        LocalFileCatalog catalog = new LocalFileCatalog(root.toString(), 60_000, 100);
+
+        // Act
+        LocalFileCatalog.LocalFile file = catalog.lookup("portfolio", "a.png");
+
+        // Assert
+        assertEquals(100, file.size());
+        assertEquals(MediaType.IMAGE_PNG, file.contentType());
+        assertTrue(file.etag().startsWith("\"") && file.etag().endsWith("\""));
+        assertEquals(portfolio.resolve("a.png").toAbsolutePath().normalize(), file.path());
+    }
+
+    @Test
+    void lookup_WithinTtl_ShouldReuseAttributes() throws IOException {
+        // Arrange
+        Path path = Files.write(portfolio.resolve("a.jpg"), new byte[10]);
+        LocalFileCatalog catalog = new LocalFileCatalog(root.toString(), 60_000, 100);
+        LocalFileCatalog.LocalFile first = catalog.lookup("portfolio", "a.jpg");
+
+        // Act
+        Files.write(path, new byte[20]);
+        LocalFileCatalog.LocalFile second = catalog.lookup("portfolio", "a.jpg");
+
+        // Assert
+        assertSame(first, second);
+    }
+
+    @Test
+    void lookup_AfterTtl_ShouldPickUpChangedFile() throws IOException {
+        // Arrange
+        Path path = Files.write(portfolio.resolve("a.jpg"), new byte[10]);
+        LocalFileCatalog catalog = new LocalFileCatalog(root.toString(), 0, 100);
+        LocalFileCatalog.LocalFile first = catalog.lookup("portfolio", "a.jpg");
+
+        // Act
+        Files.write(path, new byte[20]);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(first.lastModified() + 5000));
+        LocalFileCatalog.LocalFile second = catalog.lookup("portfolio", "a.jpg");
+
+        // Assert
+        assertEquals(20, second.size());
+        assertNotEquals(first.etag(), second.etag());
+    }
+
+    @Test
+    void lookup_WhenFileDeleted_ShouldThrowFileNotFound() throws IOException {
+        // Arrange
+        Path path = Files.write(portfolio.resolve("a.jpg"), new byte[10]);
+        LocalFileCatalog catalog = new LocalFileCatalog(root.toString(), 0, 100);
+        catalog.lookup("portfolio", "a.jpg");
+
+        // Act
+        Files.delete(path);
+
+        // Assert
+        assertThrows(FileNotFoundException.class, () -> catalog.lookup("portfolio", "a.jpg"));
+    }
+
+    @Test
+    void lookup_WithTraversalOrDirectory_ShouldBeRejected() throws IOException {
+        // Arrange
+        Files.write(root.resolve("secret.txt"), new byte[1]);
+        Files.createDirectories(portfolio.resolve("sub"));
+        LocalFileCatalog catalog = new LocalFileCatalog(root.toString(), 60_000, 100);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> catalog.lookup("portfolio", "../secret.txt"));
+        assertThrows(IllegalArgumentException.class, () -> catalog.lookup("portfolio", "..%2Fsecret.txt"));
+        assertThrows(IllegalArgumentException.class, () -> catalog.lookup("portfolio", ".hidden"));
+        assertThrows(FileNotFoundException.class, () -> catalog.lookup("portfolio", "sub"));
+    }
+}
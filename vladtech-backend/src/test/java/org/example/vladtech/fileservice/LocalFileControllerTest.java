@@ -0,0 +1,162 @@
+package org.example.vladtech.fileservice;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest(webEnvironment = RANDOM_PORT)
+@AutoConfigureMockMvc
+class LocalFileControllerTest {
+
+    private static final String UPLOAD_DIR = "uploads/portfolio/";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private Path file;
+    private byte[] content;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(Paths.get(UPLOAD_DIR));
+        content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        file = Files.write(Paths.get(UPLOAD_DIR, UUID.randomUUID() + ".jpg"), content);
+    }
+
+    @AfterEach
+    void cleanup() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    void getPortfolioImage_ShouldStreamFileWithValidators() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        MvcResult completed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "image/jpeg"))
+                .andExpect(header().string("Content-Length", String.valueOf(content.length)))
+                .andExpect(header().string("Accept-Ranges", "bytes"))
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().exists("Last-Modified"))
+                .andReturn();
+        assertArrayEquals(content, completed.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void getPortfolioImage_WithMatchingIfNoneMatch_ShouldReturnNotModified() throws Exception {
+        // Arrange
+        String etag = mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()))
+                .andReturn().getResponse().getHeader("ETag");
+
+        // Act & Assert
+        mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()).header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    @Test
+    void getPortfolioImage_WithRange_ShouldReturnPartialContent() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()).header("Range", "bytes=10-19"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        MvcResult completed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Range", "bytes 10-19/" + content.length))
+                .andExpect(header().string("Content-Length", "10"))
+                .andReturn();
+        assertArrayEquals(java.util.Arrays.copyOfRange(content, 10, 20), completed.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void getPortfolioImage_WithUnsatisfiableRange_ShouldReturn416() throws Exception {
+        mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()).header("Range", "bytes=200000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string("Content-Range", "bytes */" + content.length));
+    }
+
+    @Test
+    void getPortfolioImage_WithMalformedRange_ShouldStreamWholeFile() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()).header("Range", "bytes=oops"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Assert
+        MvcResult completed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Length", String.valueOf(content.length)))
+                .andExpect(header().doesNotExist("Content-Range"))
+                .andReturn();
+        assertArrayEquals(content, completed.getResponse().getContentAsByteArray());
+    }
+
+    @Test
+    void getPortfolioImage_WhenContainerSupportsSendfile_ShouldDelegateBody() throws Exception {
+        // Act
+        MvcResult result = mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName())
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE)
+                        .header("Range", "bytes=1000-"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string("Content-Length", String.valueOf(content.length - 1000)))
+                .andReturn();
+
+        // Assert
+        assertEquals(file.toAbsolutePath().normalize().toString(),
+                result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"));
+        assertEquals(1000L, result.getRequest().getAttribute("org.apache.tomcat.sendfile.start"));
+        assertEquals((long) content.length, result.getRequest().getAttribute("org.apache.tomcat.sendfile.end"));
+        assertEquals(0, result.getResponse().getContentAsByteArray().length);
+    }
+
+    @Test
+    void getPortfolioImage_WhenMissing_ShouldReturnNotFound() throws Exception {
+        mockMvc.perform(get("/" + UPLOAD_DIR + "missing.jpg"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void getPortfolioImage_WithContentAddressedName_ShouldBeCachedAsImmutable() throws Exception {
+        // Arrange
+        Path hashed = Files.write(Paths.get(UPLOAD_DIR, "0123456789abcdef0123456789abcdef.jpg"), content);
+
+        try {
+            // Act
+            MvcResult result = mockMvc.perform(get("/" + UPLOAD_DIR + hashed.getFileName())).andReturn();
+
+            // Assert
+            mockMvc.perform(asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"));
+            mockMvc.perform(get("/" + UPLOAD_DIR + file.getFileName()).header("If-None-Match", "\"x\""))
+                    .andExpect(header().string("Cache-Control", "max-age=604800, public"));
+        } finally {
+            Files.deleteIfExists(hashed);
+        }
+    }
+}
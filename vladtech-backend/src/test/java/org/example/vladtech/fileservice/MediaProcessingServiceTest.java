@@ -0,0 +1,272 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileCache;
+import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.JpegSegments;
+import org.example.vladtech.filestorageservice.MediaProcessingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MediaProcessingServiceTest {
+
+    @Mock
+    private GridFsTemplate gridFsTemplate;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileCache fileCache;
+
+    @Mock
+    private MongoCollection<Document> filesCollection;
+
+    @Mock
+    private GridFSFile gridFsFile;
+
+    @Mock
+    private GridFsResource gridFsResource;
+
+    private final ObjectId fileId = new ObjectId();
+    private final ObjectId optimizedId = new ObjectId();
+    private MediaProcessingService mediaProcessingService;
+
+    @BeforeEach
+    void setUp() {
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(gridFsFile);
+        when(gridFsTemplate.getResource(gridFsFile)).thenReturn(gridFsResource);
+        when(gridFsTemplate.store(any(InputStream.class), any(), anyString(), any(Document.class))).thenReturn(optimizedId);
+        when(gridFsFile.getFilename()).thenReturn("photo.jpg");
+        when(gridFsRawStore.filesCollection()).thenReturn(filesCollection);
+        when(filesCollection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(UpdateResult.acknowledged(1, 1L, null));
+        mediaProcessingService = new MediaProcessingService(gridFsTemplate, gridFsRawStore, fileCache,
+                true, 1, 4, 2560, 0.82f, 262144, 40_000_000, 3, 600_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        mediaProcessingService.destroy();
+    }
+
+    @Test
+    void process_WithExifJpeg_ShouldStoreUprightCopyWithoutMetadataAndSwapItIn() throws IOException {
+        // Arrange - 40x20 pixels, EXIF says rotate 90 degrees clockwise to display
+        byte[] upload = withExifOrientation(jpeg(40, 20), 6);
+        stubUpload(upload, "image/jpeg");
+
+        // Act
+        boolean optimized = mediaProcessingService.process(fileId);
+
+        // Assert
+        assertTrue(optimized);
+        ArgumentCaptor<InputStream> content = ArgumentCaptor.forClass(InputStream.class);
+        ArgumentCaptor<Document> metadata = ArgumentCaptor.forClass(Document.class);
+        verify(gridFsTemplate).store(content.capture(), eq("photo.jpg"), eq("image/jpeg"), metadata.capture());
+        byte[] stored = content.getValue().readAllBytes();
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(stored));
+        assertEquals(20, image.getWidth());
+        assertEquals(40, image.getHeight());
+        assertFalse(JpegSegments.read(stored).hasMetadata());
+        assertEquals(fileId, metadata.getValue().get("variantOf"));
+        assertNull(metadata.getValue().get("sha256"));
+        ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+        verify(filesCollection).updateOne(any(Bson.class), update.capture());
+        BsonDocument set = update.getValue().toBsonDocument().getDocument("$set");
+        assertEquals(20, set.getInt32("metadata.width").getValue());
+        assertEquals(40, set.getInt32("metadata.height").getValue());
+        verify(fileCache).invalidate(fileId);
+    }
+
+    @Test
+    void process_WhenOriginalDeletedMeanwhile_ShouldDropTheCopy() throws IOException {
+        // Arrange
+        stubUpload(withExifOrientation(jpeg(40, 20), 1), "image/jpeg");
+        when(filesCollection.updateOne(any(Bson.class), any(Bson.class)))
+                .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+
+        // Act
+        boolean optimized = mediaProcessingService.process(fileId);
+
+        // Assert
+        assertFalse(optimized);
+        verify(gridFsTemplate).delete(any(Query.class));
+    }
+
+    @Test
+    void process_WithSmallCleanImage_ShouldOnlyRecordDimensions() throws IOException {
+        // Arrange
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(30, 10, BufferedImage.TYPE_INT_RGB), "png", png);
+        stubUpload(png.toByteArray(), "image/png");
+
+        // Act
+        boolean optimized = mediaProcessingService.process(fileId);
+
+        // Assert
+        assertFalse(optimized);
+        verify(gridFsTemplate, never()).store(any(InputStream.class), any(), anyString(), any(Document.class));
+        verify(filesCollection).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void process_WhenDeclaredSizeExceedsPixelLimit_ShouldSkipWithoutDecoding() throws IOException {
+        // Arrange
+        mediaProcessingService.destroy();
+        mediaProcessingService = new MediaProcessingService(gridFsTemplate, gridFsRawStore, fileCache,
+                true, 1, 4, 2560, 0.82f, 262144, 500, 3, 600_000);
+        stubUpload(jpeg(40, 20), "image/jpeg");
+
+        // Act
+        boolean optimized = mediaProcessingService.process(fileId);
+
+        // Assert
+        assertFalse(optimized);
+        verify(gridFsTemplate, never()).store(any(InputStream.class), any(), anyString(), any(Document.class));
+        verify(filesCollection).updateOne(any(Bson.class), any(Bson.class));
+    }
+
+    @Test
+    void process_WhenFileExceedsUploadLimit_ShouldMarkItSkippedWithoutReading() throws IOException {
+        // Arrange - a resumable upload, larger than a regular one may be
+        stubUpload(jpeg(40, 20), "image/jpeg");
+        when(gridFsFile.getLength()).thenReturn(FileStorageService.MAX_FILE_SIZE + 1);
+
+        // Act
+        boolean optimized = mediaProcessingService.process(fileId);
+
+        // Assert
+        assertFalse(optimized);
+        verify(gridFsTemplate, never()).getResource(any(GridFSFile.class));
+        ArgumentCaptor<Bson> update = ArgumentCaptor.forClass(Bson.class);
+        verify(filesCollection).updateOne(any(Bson.class), update.capture());
+        BsonDocument set = update.getValue().toBsonDocument().getDocument("$set");
+        assertEquals("too large", set.getString("metadata.processingSkipped").getValue());
+        assertTrue(set.containsKey("metadata.processedAt"));
+        assertFalse(mediaProcessingService.awaitsProcessing(new Document("contentType", "image/jpeg")
+                .append("processedAt", set.getInt64("metadata.processedAt").getValue())
+                .append("processingSkipped", "too large")));
+    }
+
+    @Test
+    void process_WhenAlreadyProcessed_ShouldDoNothing() throws IOException {
+        // Arrange
+        when(gridFsFile.getMetadata()).thenReturn(new Document("contentType", "image/jpeg").append("processedAt", 1L));
+
+        // Act & Assert
+        assertFalse(mediaProcessingService.process(fileId));
+        verify(gridFsTemplate, never()).getResource(any(GridFSFile.class));
+    }
+
+    @Test
+    void enqueue_WithUnsupportedType_ShouldNotQueue() {
+        // Act & Assert
+        assertFalse(mediaProcessingService.enqueue(fileId, "image/gif"));
+        assertEquals(0, mediaProcessingService.stats().submitted());
+    }
+
+    @Test
+    void awaitsProcessing_ShouldHoldOnlyForSupportedUploadsNotYetSettled() {
+        Document upload = new Document("contentType", "image/jpeg");
+
+        assertTrue(mediaProcessingService.awaitsProcessing(upload));
+        assertFalse(mediaProcessingService.awaitsProcessing(new Document(upload).append("processedAt", 1L)));
+        assertFalse(mediaProcessingService.awaitsProcessing(new Document(upload).append("processingFailures", 3)));
+        assertFalse(mediaProcessingService.awaitsProcessing(new Document(upload).append("variantOf", fileId)));
+        assertFalse(mediaProcessingService.awaitsProcessing(new Document("contentType", "image/gif")));
+    }
+
+    @Test
+    void requeueUnprocessed_ShouldQueueUploadsTheQueueRefusedOrThatFailed() {
+        // Arrange
+        ObjectId refused = new ObjectId();
+        FindIterable<Document> unprocessed = mock(FindIterable.class);
+        when(unprocessed.projection(any())).thenReturn(unprocessed);
+        when(unprocessed.limit(anyInt())).thenReturn(unprocessed);
+        when(unprocessed.iterator()).thenAnswer(invocation -> {
+            Iterator<Document> source = List.of(new Document("_id", refused)
+                    .append("metadata", new Document("contentType", "image/png"))).iterator();
+            MongoCursor<Document> cursor = mock(MongoCursor.class);
+            when(cursor.hasNext()).thenAnswer(i -> source.hasNext());
+            when(cursor.next()).thenAnswer(i -> source.next());
+            return cursor;
+        });
+        when(filesCollection.find(any(Bson.class))).thenReturn(unprocessed);
+
+        // Act
+        int queued = mediaProcessingService.requeueUnprocessed();
+
+        // Assert
+        assertEquals(1, queued);
+        assertEquals(1, mediaProcessingService.stats().requeued());
+        assertEquals(1, mediaProcessingService.stats().submitted());
+    }
+
+    private void stubUpload(byte[] content, String contentType) throws IOException {
+        when(gridFsFile.getLength()).thenReturn((long) content.length);
+        when(gridFsFile.getMetadata()).thenReturn(new Document("contentType", contentType)
+                .append("originalFilename", "photo.jpg"));
+        when(gridFsResource.getInputStream()).thenAnswer(invocation -> new ByteArrayInputStream(content));
+    }
+
+    private static byte[] jpeg(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, Color.RED.getRGB());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", out);
+        return out.toByteArray();
+    }
+
+    // Inserts a minimal big-endian EXIF APP1 segment holding only an orientation tag after SOI
+    private static byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0x00, 0x22,
+                'E', 'x', 'i', 'f', 0x00, 0x00,
+                'M', 'M', 0x00, 0x2A, 0x00, 0x00, 0x00, 0x08,
+                0x00, 0x01,
+                0x01, 0x12, 0x00, 0x03, 0x00, 0x00, 0x00, 0x01, 0x00, (byte) orientation, 0x00, 0x00,
+                0x00, 0x00, 0x00, 0x00
+        };
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(app1, 0, result, 2, app1.length);
+        System.arraycopy(jpeg, 2, result, 2 + app1.length, jpeg.length - 2);
+        return result;
+    }
+}
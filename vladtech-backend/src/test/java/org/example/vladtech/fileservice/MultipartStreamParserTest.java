@@ -0,0 +1,162 @@
+package org.example.vladtech.fileservice;
+
+import org.example.vladtech.filestorageservice.MultipartStreamParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultipartStreamParserTest {
+
+    private static final String BOUNDARY = "----test-boundary";
+
+    @Test
+    void nextPart_ShouldExposeHeadersAndContentOfEachPart() throws IOException {
+        // Arrange
+        String body = "preamble to ignore\r\n"
+                + part("review", null, "application/json", "{\"a\":1}")
+                + part("file", "photo.jpg", "image/jpeg", "jpeg-bytes")
+                + "--" + BOUNDARY + "--\r\nepilogue";
+        MultipartStreamParser parser = parser(body.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        MultipartStreamParser.Part review = parser.nextPart();
+        String reviewContent = new String(review.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        MultipartStreamParser.Part file = parser.nextPart();
+        String fileContent = new String(file.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+        // Assert
+        assertEquals("review", review.getName());
+        assertFalse(review.isFile());
+        assertEquals("{\"a\":1}", reviewContent);
+        assertEquals("file", file.getName());
+        assertEquals("photo.jpg", file.getFilename());
+        assertEquals("image/jpeg", file.getContentType());
+        assertEquals("jpeg-bytes", fileContent);
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    void nextPart_ShouldSkipUnreadContentOfPreviousPart() throws IOException {
+        // Arrange
+        String body = part("skipped", "a.bin", "application/octet-stream", "x".repeat(100_000))
+                + part("kept", null, "text/plain", "value")
+                + "--" + BOUNDARY + "--\r\n";
+        MultipartStreamParser parser = parser(body.getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        parser.nextPart();
+        MultipartStreamParser.Part kept = parser.nextPart();
+
+        // Assert
+        assertEquals("kept", kept.getName());
+        assertEquals("value", new String(kept.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void partStream_ShouldReturnBinaryContentResemblingTheDelimiterIntact() throws IOException {
+        // Arrange: content larger than the parser buffer, containing a near-miss of the delimiter
+        byte[] content = new byte[200_000];
+        new Random(42).nextBytes(content);
+        byte[] nearMiss = ("\r\n--" + BOUNDARY.substring(0, BOUNDARY.length() - 1) + "X").getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(nearMiss, 0, content, 50_000, nearMiss.length);
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"x.png\"\r\n\r\n")
+                .getBytes(StandardCharsets.US_ASCII));
+        body.write(content);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+
+        // Act: read through a stream that hands out small, uneven slices
+        MultipartStreamParser parser = new MultipartStreamParser(trickle(body.toByteArray()), BOUNDARY);
+        byte[] read = parser.nextPart().getInputStream().readAllBytes();
+
+        // Assert
+        assertArrayEquals(content, read);
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    void partStream_WhenBodyIsTruncated_ShouldFail() throws IOException {
+        // Arrange
+        String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.jpg\"\r\n\r\nabc";
+        MultipartStreamParser parser = parser(body.getBytes(StandardCharsets.UTF_8));
+        InputStream content = parser.nextPart().getInputStream();
+
+        // Act & Assert
+        assertThrows(MultipartStreamParser.MalformedMultipartException.class, content::readAllBytes);
+    }
+
+    @Test
+    void nextPart_WhenPartsAddUpPastBodyLimit_ShouldFail() throws IOException {
+        // Arrange: each part is small, together they are over the limit
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            body.append(part("photos", i + ".jpg", "image/jpeg", "x".repeat(50_000)));
+        }
+        body.append("--" + BOUNDARY + "--\r\n");
+        MultipartStreamParser parser = new MultipartStreamParser(
+                new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), BOUNDARY, 200_000);
+
+        // Act & Assert
+        MultipartStreamParser.MalformedMultipartException e = assertThrows(
+                MultipartStreamParser.MalformedMultipartException.class, () -> {
+                    while (parser.nextPart() != null) {
+                        // skip every part
+                    }
+                });
+        assertEquals("Multipart body exceeds maximum size of 200000 bytes", e.getMessage());
+    }
+
+    @Test
+    void nextPart_WhenBodyFitsLimit_ShouldReadEveryPart() throws IOException {
+        // Arrange
+        String body = part("a", null, "text/plain", "one") + part("b", null, "text/plain", "two")
+                + "--" + BOUNDARY + "--\r\n";
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        MultipartStreamParser parser = new MultipartStreamParser(new ByteArrayInputStream(bytes), BOUNDARY, bytes.length);
+
+        // Act & Assert
+        assertEquals("a", parser.nextPart().getName());
+        assertEquals("b", parser.nextPart().getName());
+        assertNull(parser.nextPart());
+    }
+
+    @Test
+    void boundaryOf_ShouldRequireMultipartFormData() {
+        assertEquals("abc", MultipartStreamParser.boundaryOf("multipart/form-data; boundary=abc"));
+        assertEquals("a b", MultipartStreamParser.boundaryOf("multipart/form-data; boundary=\"a b\""));
+        assertThrows(IllegalArgumentException.class, () -> MultipartStreamParser.boundaryOf("application/json"));
+        assertThrows(IllegalArgumentException.class, () -> MultipartStreamParser.boundaryOf("multipart/form-data"));
+        assertThrows(IllegalArgumentException.class, () -> MultipartStreamParser.boundaryOf(null));
+    }
+
+    private static MultipartStreamParser parser(byte[] body) {
+        return new MultipartStreamParser(new ByteArrayInputStream(body), BOUNDARY);
+    }
+
+    private static String part(String name, String filename, String contentType, String content) {
+        String disposition = "form-data; name=\"" + name + "\"" + (filename != null ? "; filename=\"" + filename + "\"" : "");
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: " + disposition + "\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n"
+                + content + "\r\n";
+    }
+
+    private static InputStream trickle(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            private final Random random = new Random(7);
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + random.nextInt(3000)));
+            }
+        };
+    }
+}
@@ -0,0 +1,177 @@
+package org.example.vladtech.fileservice;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.example.vladtech.filestorageservice.FileIoExecutor;
+import org.example.vladtech.filestorageservice.NonBlockingResponseWriter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class NonBlockingResponseWriterTest {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private AsyncContext asyncContext;
+
+    private final FileIoExecutor fileIoExecutor = new FileIoExecutor(2, 8);
+    private final SocketOutput output = new SocketOutput();
+    private final CountDownLatch completed = new CountDownLatch(1);
+    private NonBlockingResponseWriter writer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(request.startAsync(request, response)).thenReturn(asyncContext);
+        when(response.getOutputStream()).thenReturn(output);
+        doAnswer(invocation -> {
+            completed.countDown();
+            return null;
+        }).when(asyncContext).complete();
+        writer = new NonBlockingResponseWriter(fileIoExecutor, BUFFER_SIZE, 30_000);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        fileIoExecutor.destroy();
+    }
+
+    @Test
+    void write_ShouldDeliverContentAsTheSocketDrains() throws Exception {
+        // Arrange
+        byte[] content = new byte[200_000];
+        new Random(7).nextBytes(content);
+
+        // Act
+        writer.write(request, response, () -> new ByteArrayInputStream(content));
+        drainUntilComplete();
+
+        // Assert
+        assertArrayEquals(content, output.written.toByteArray());
+        assertTrue(output.largestWrite <= BUFFER_SIZE);
+        verify(asyncContext).setTimeout(30_000);
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    void write_WithEmptyContent_ShouldCompleteWithoutWriting() throws Exception {
+        // Act
+        writer.write(request, response, () -> new ByteArrayInputStream(new byte[0]));
+        drainUntilComplete();
+
+        // Assert
+        assertEquals(0, output.written.size());
+        verify(asyncContext).complete();
+    }
+
+    @Test
+    void write_WhenClientGoesAway_ShouldCloseSourceAndComplete() throws Exception {
+        // Arrange
+        AtomicBoolean closed = new AtomicBoolean();
+        InputStream source = new ByteArrayInputStream(new byte[1_000_000]) {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        writer.write(request, response, () -> source);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (output.written.size() == 0 && System.currentTimeMillis() < deadline) {
+            output.ready = true;
+            output.listener.onWritePossible();
+            Thread.sleep(1);
+        }
+
+        // Act
+        output.listener.onError(new IOException("Connection reset"));
+
+        // Assert
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertTrue(closed.get());
+        assertTrue(output.written.size() < 1_000_000);
+        verify(asyncContext, times(1)).complete();
+    }
+
+    @Test
+    void write_WhenSourceFails_ShouldComplete() throws Exception {
+        // Act
+        writer.write(request, response, () -> {
+            throw new IOException("Chunk missing");
+        });
+        drainUntilComplete();
+
+        // Assert
+        assertEquals(0, output.written.size());
+        verify(asyncContext).complete();
+    }
+
+    // Plays the container: the socket takes one write, then needs a writable callback
+    private void drainUntilComplete() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (completed.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            if (!output.ready) {
+                output.ready = true;
+                output.listener.onWritePossible();
+            }
+            Thread.sleep(1);
+        }
+        assertEquals(0, completed.getCount(), "transfer did not complete");
+    }
+
+    private static class SocketOutput extends ServletOutputStream {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        volatile boolean ready;
+        volatile WriteListener listener;
+        int largestWrite;
+
+        @Override
+        public boolean isReady() {
+            return ready;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            this.listener = writeListener;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            written.write(b, off, len);
+            largestWrite = Math.max(largestWrite, len);
+            ready = false;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileIoExecutor;
+import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.LocalFileCatalog;
+import org.example.vladtech.filestorageservice.OrphanFileCollector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OrphanFileCollectorTest {
+
+    private static final long OLD = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3);
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> reviews;
+
+    @Mock
+    private MongoCollection<Document> projects;
+
+    @Mock
+    private MongoCollection<Document> portfolio;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    @Mock
+    private FileIoExecutor fileIoExecutor;
+
+    private OrphanFileCollector collector;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection("reviews")).thenReturn(reviews);
+        when(mongoTemplate.getCollection("projects")).thenReturn(projects);
+        when(mongoTemplate.getCollection("portfolio")).thenReturn(portfolio);
+        for (MongoCollection<Document> collection : List.of(reviews, projects, portfolio)) {
+            stubFind(collection, List.of());
+            stubExactCheck(collection, List.of());
+        }
+        when(gridFsRawStore.scanFiles(any(), anyInt())).thenReturn(List.of());
+        when(fileStorageService.deleteUnreferenced(any(), anyLong())).thenReturn(true);
+
+        collector = new OrphanFileCollector(mongoTemplate, gridFsRawStore, fileStorageService,
+                new LocalFileCatalog(root.toString(), 2000, 100), fileIoExecutor,
+                false, true, 24, 100, 0, 1000);
+    }
+
+    @Test
+    void run_ShouldDeleteOnlyUnreferencedFilesPastGracePeriod() {
+        // Arrange
+        ObjectId referenced = new ObjectId();
+        ObjectId orphan = new ObjectId();
+        ObjectId young = new ObjectId();
+        ObjectId variant = new ObjectId();
+        stubFind(reviews, List.of(review("/uploads/reviews/" + referenced.toHexString())));
+        when(gridFsRawStore.scanFiles(isNull(), eq(100))).thenReturn(List.of(
+                file(referenced, OLD, null),
+                file(orphan, OLD, null),
+                file(young, System.currentTimeMillis(), null),
+                file(variant, OLD, referenced)));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(false);
+
+        // Assert
+        assertEquals(OrphanFileCollector.Phase.DONE, status.phase());
+        assertEquals(4, status.scannedFiles());
+        assertEquals(1, status.deletedFiles());
+        assertEquals(100, status.freedBytes());
+        verify(fileStorageService).deleteUnreferenced(eq(orphan), anyLong());
+        verify(fileStorageService, times(1)).deleteUnreferenced(any(), anyLong());
+    }
+
+    @Test
+    void run_WhenOldFileWasRecentlyDeduplicatedOnto_ShouldKeepIt() {
+        // Arrange - uploaded long ago, but an upload joined it moments ago and is not saved yet
+        ObjectId joined = new ObjectId();
+        Document file = file(joined, OLD, null)
+                .append("metadata", new Document("lastReferencedAt", System.currentTimeMillis()));
+        when(gridFsRawStore.scanFiles(isNull(), eq(100))).thenReturn(List.of(file));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(false);
+
+        // Assert
+        assertEquals(0, status.orphanedFiles());
+        verify(fileStorageService, never()).deleteUnreferenced(any(), anyLong());
+    }
+
+    @Test
+    void run_WithVariantOfExistingOriginal_ShouldLeaveItToTheOriginal() {
+        // Arrange - the original is within its grace period, its old variant is not
+        ObjectId original = new ObjectId();
+        ObjectId variant = new ObjectId();
+        when(gridFsRawStore.scanFiles(isNull(), eq(100))).thenReturn(List.of(
+                file(original, System.currentTimeMillis(), null),
+                file(variant, OLD, original)));
+        when(gridFsRawStore.findMetadata(anyCollection())).thenReturn(Map.of(original, new Document()));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(false);
+
+        // Assert
+        assertEquals(0, status.orphanedFiles());
+        verify(fileStorageService, never()).deleteUnreferenced(any(), anyLong());
+    }
+
+    @Test
+    void run_WhenDryRun_ShouldReportOrphansWithoutDeleting() {
+        // Arrange
+        ObjectId orphan = new ObjectId();
+        when(gridFsRawStore.scanFiles(isNull(), eq(100))).thenReturn(List.of(file(orphan, OLD, null)));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(true);
+
+        // Assert
+        assertTrue(status.dryRun());
+        assertEquals(1, status.orphanedFiles());
+        assertEquals(0, status.deletedFiles());
+        assertEquals(List.of(orphan.toHexString()), status.sample());
+        verify(fileStorageService, never()).deleteUnreferenced(any(), anyLong());
+    }
+
+    @Test
+    void run_WhenReferenceAppearsAfterMark_ShouldKeepFile() {
+        // Arrange
+        ObjectId id = new ObjectId();
+        when(gridFsRawStore.scanFiles(isNull(), eq(100))).thenReturn(List.of(file(id, OLD, null)));
+        stubExactCheck(projects, List.of(new Document("photos",
+                List.of(new Document("photoId", id.toHexString())))));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(false);
+
+        // Assert
+        assertEquals(0, status.orphanedFiles());
+        verify(fileStorageService, never()).deleteUnreferenced(any(), anyLong());
+    }
+
+    @Test
+    void run_ShouldDeleteUnusedPortfolioFiles() throws IOException {
+        // Arrange
+        Path directory = Files.createDirectories(root.resolve("portfolio"));
+        Path used = Files.write(directory.resolve("used.png"), new byte[10]);
+        Path unused = Files.write(directory.resolve("unused.png"), new byte[20]);
+        Path recent = Files.write(directory.resolve("recent.png"), new byte[30]);
+        Files.setLastModifiedTime(used, FileTime.fromMillis(OLD));
+        Files.setLastModifiedTime(unused, FileTime.fromMillis(OLD));
+        stubFind(portfolio, List.of(new Document("imageUrl", "/uploads/portfolio/used.png")));
+
+        // Act
+        OrphanFileCollector.GcStatus status = collector.run(false);
+
+        // Assert
+        assertEquals(3, status.scannedLocalFiles());
+        assertEquals(1, status.deletedLocalFiles());
+        assertTrue(Files.exists(used));
+        assertFalse(Files.exists(unused));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void start_WhenAlreadyRunning_ShouldReturnFalse() {
+        // Arrange - the executor never runs the task, so the first pass stays in progress
+        when(fileIoExecutor.submit(any())).thenReturn(null);
+
+        // Act & Assert
+        assertTrue(collector.start(true));
+        assertFalse(collector.start(true));
+        assertThrows(IllegalStateException.class, () -> collector.run(true));
+    }
+
+    private static Document review(String url) {
+        return new Document("photos", List.of(new Document("url", url)));
+    }
+
+    private static Document file(ObjectId id, long uploaded, ObjectId variantOf) {
+        Document file = new Document("_id", id).append("length", 100L).append("uploadDate", new Date(uploaded));
+        if (variantOf != null) {
+            file.append("metadata", new Document("variantOf", variantOf));
+        }
+        return file;
+    }
+
+    private static void stubFind(MongoCollection<Document> collection, List<Document> documents) {
+        FindIterable<Document> iterable = iterable(documents);
+        when(collection.find()).thenReturn(iterable);
+    }
+
+    private static void stubExactCheck(MongoCollection<Document> collection, List<Document> documents) {
+        FindIterable<Document> iterable = iterable(documents);
+        when(collection.find(any(Bson.class))).thenReturn(iterable);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FindIterable<Document> iterable(List<Document> documents) {
+        FindIterable<Document> iterable = mock(FindIterable.class);
+        when(iterable.projection(any())).thenReturn(iterable);
+        when(iterable.iterator()).thenAnswer(invocation -> {
+            Iterator<Document> source = documents.iterator();
+            MongoCursor<Document> cursor = mock(MongoCursor.class);
+            when(cursor.hasNext()).thenAnswer(i -> source.hasNext());
+            when(cursor.next()).thenAnswer(i -> source.next());
+            return cursor;
+        });
+        return iterable;
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.LocalFileCatalog;
+import org.example.vladtech.filestorageservice.PhotoArchiveService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PhotoArchiveServiceTest {
+
+    @TempDir
+    Path root;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> projects;
+
+    @Mock
+    private FindIterable<Document> found;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    private PhotoArchiveService photoArchiveService;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection("projects")).thenReturn(projects);
+        when(projects.find(any(Bson.class))).thenReturn(found);
+        when(found.projection(any())).thenReturn(found);
+        photoArchiveService = new PhotoArchiveService(mongoTemplate, gridFsRawStore, fileStorageService,
+                new LocalFileCatalog(root.toString(), 2000, 100));
+    }
+
+    @Test
+    void projectPhotos_ShouldResolveIdsAndUrlsOnce() throws FileNotFoundException {
+        // Arrange
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+        when(found.first()).thenReturn(new Document("photos", List.of(
+                new Document("photoId", first.toHexString()),
+                new Document("photoUrl", "/uploads/reviews/" + second.toHexString() + "/v/0123456789abcdef"),
+                new Document("photoUrl", "/uploads/portfolio/kitchen.jpg"),
+                new Document("photoId", first.toHexString()).append("photoUrl", "/uploads/reviews/" + first.toHexString()),
+                new Document("photoUrl", "https://example.com/elsewhere.jpg"))));
+
+        // Act
+        List<PhotoArchiveService.PhotoRef> photos = photoArchiveService.projectPhotos("proj-001");
+
+        // Assert
+        assertEquals(List.of(
+                new PhotoArchiveService.PhotoRef(first, null),
+                new PhotoArchiveService.PhotoRef(second, null),
+                new PhotoArchiveService.PhotoRef(null, "kitchen.jpg")), photos);
+    }
+
+    @Test
+    void projectPhotos_WithUnknownProject_ShouldThrowFileNotFoundException() {
+        // Arrange
+        when(found.first()).thenReturn(null);
+
+        // Act & Assert
+        assertThrows(FileNotFoundException.class, () -> photoArchiveService.projectPhotos("missing"));
+    }
+
+    @Test
+    void writeArchive_ShouldStoreEntriesAndRecordMissingChecksums() throws IOException {
+        // Arrange
+        byte[] known = bytes(1, 70_000);
+        byte[] unknown = bytes(2, 150_000);
+        byte[] local = bytes(3, 5_000);
+        ObjectId knownId = stubFile(known, new Document("originalFilename", "a.jpg").append("crc32", crc(known)));
+        ObjectId unknownId = stubFile(unknown, new Document("originalFilename", "a.jpg"));
+        ObjectId missingId = new ObjectId();
+        when(fileStorageService.loadResourceWithMetadata(missingId.toHexString()))
+                .thenThrow(new FileNotFoundException("File not found"));
+        Files.createDirectories(root.resolve("portfolio"));
+        Files.write(root.resolve("portfolio").resolve("kitchen.png"), local);
+
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+
+        // Act
+        photoArchiveService.writeArchive(List.of(
+                new PhotoArchiveService.PhotoRef(knownId, null),
+                new PhotoArchiveService.PhotoRef(missingId, null),
+                new PhotoArchiveService.PhotoRef(unknownId, null),
+                new PhotoArchiveService.PhotoRef(null, "kitchen.png")), archive);
+
+        // Assert
+        List<ZipEntry> entries = new ArrayList<>();
+        List<byte[]> contents = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                entries.add(entry);
+                contents.add(zip.readAllBytes());
+            }
+        }
+        assertEquals(List.of("a.jpg", "a-2.jpg", "kitchen.png"), entries.stream().map(ZipEntry::getName).toList());
+        assertEquals(ZipEntry.STORED, entries.get(0).getMethod());
+        assertEquals(ZipEntry.DEFLATED, entries.get(1).getMethod());
+        assertEquals(ZipEntry.STORED, entries.get(2).getMethod());
+        assertArrayEquals(known, contents.get(0));
+        assertArrayEquals(unknown, contents.get(1));
+        assertArrayEquals(local, contents.get(2));
+        // Level 0: the image bytes pass through without being recompressed
+        assertTrue(archive.size() > known.length + unknown.length + local.length);
+        verify(gridFsRawStore).setChecksum(unknownId, crc(unknown));
+        verify(gridFsRawStore, times(1)).setChecksum(any(), anyLong());
+    }
+
+    private ObjectId stubFile(byte[] content, Document metadata) throws IOException {
+        ObjectId id = new ObjectId();
+        when(fileStorageService.loadResourceWithMetadata(id.toHexString())).thenReturn(
+                new FileStorageService.FileResourceWithMetadata(new ByteArrayResource(content), metadata, "image/jpeg"));
+        return id;
+    }
+
+    private static byte[] bytes(long seed, int length) {
+        byte[] content = new byte[length];
+        new Random(seed).nextBytes(content);
+        return content;
+    }
+
+    private static long crc(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        return crc.getValue();
+    }
+}
@@ -0,0 +1,290 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileStorageService;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.ResumableUploadService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class ResumableUploadServiceTest {
+
+    private static final int CHUNK = ResumableUploadService.CHUNK_SIZE;
+    private static final String TOKEN = "upload-token";
+    private static final byte[] PNG_HEADER = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> sessionCollection;
+
+    @Mock
+    private FindIterable<Document> findIterable;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private FileStorageService fileStorageService;
+
+    private ResumableUploadService service;
+    private ObjectId sessionId;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection("upload_sessions")).thenReturn(sessionCollection);
+        when(sessionCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(fileStorageService.validateContentType(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(fileStorageService.validateFilename(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        service = new ResumableUploadService(mongoTemplate, gridFsRawStore, fileStorageService,
+                "upload_sessions", 100L * 1024 * 1024, 86_400_000L);
+        sessionId = new ObjectId();
+    }
+
+    @Test
+    void create_WhenLengthExceedsLimit_ShouldThrowIllegalArgumentException() {
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> service.create("big.png", "image/png", 101L * 1024 * 1024));
+        assertTrue(exception.getMessage().contains("100MB"));
+        verify(sessionCollection, never()).insertOne(any());
+    }
+
+    @Test
+    void create_ShouldStoreSessionAtOffsetZero() throws NoSuchAlgorithmException {
+        // Act
+        ResumableUploadService.UploadSession session = service.create("photo.png", "image/png", 5000);
+
+        // Assert
+        assertEquals(0, session.offset());
+        assertEquals(5000, session.length());
+        assertEquals("photo.png", session.filename());
+        assertTrue(session.token().length() >= 43, "token carries 256 random bits");
+        ArgumentCaptor<Document> stored = ArgumentCaptor.forClass(Document.class);
+        verify(sessionCollection).insertOne(stored.capture());
+        assertEquals(sha256(session.token()), stored.getValue().getString("tokenHash"));
+        assertFalse(stored.getValue().containsValue(session.token()));
+    }
+
+    @Test
+    void get_WithWrongToken_ShouldLookLikeMissingSession() throws NoSuchAlgorithmException {
+        // Arrange
+        when(findIterable.first()).thenReturn(null);
+
+        // Act & Assert
+        assertThrows(FileNotFoundException.class, () -> service.get(sessionId.toHexString(), "guessed"));
+        ArgumentCaptor<Bson> filter = ArgumentCaptor.forClass(Bson.class);
+        verify(sessionCollection).find(filter.capture());
+        assertTrue(filter.getValue().toBsonDocument().toJson().contains(sha256("guessed")));
+    }
+
+    @Test
+    void append_ShouldWriteOneChunkDocumentPerChunkAndCommitOffset() throws IOException {
+        // Arrange
+        long length = CHUNK + 10;
+        claimable(session(length, 0));
+        when(findIterable.first()).thenReturn(session(length, length));
+
+        // Act
+        ResumableUploadService.UploadSession result = service.append(sessionId.toHexString(), TOKEN, 0, new ByteArrayInputStream(new byte[(int) length]));
+
+        // Assert
+        assertTrue(result.isComplete());
+        verify(gridFsRawStore).saveChunk(eq(sessionId), eq(0), any(byte[].class), eq(CHUNK));
+        verify(gridFsRawStore).saveChunk(eq(sessionId), eq(1), any(byte[].class), eq(10));
+        verify(gridFsRawStore, never()).readChunk(any(), anyInt());
+    }
+
+    @Test
+    void append_WhenOffsetIsInsideChunk_ShouldContinuePartialChunk() throws IOException {
+        // Arrange
+        claimable(session(300, 100));
+        when(gridFsRawStore.readChunk(sessionId, 0)).thenReturn(new byte[100]);
+        when(findIterable.first()).thenReturn(session(300, 300));
+
+        // Act
+        service.append(sessionId.toHexString(), TOKEN, 100, new ByteArrayInputStream(new byte[200]));
+
+        // Assert
+        verify(gridFsRawStore).saveChunk(eq(sessionId), eq(0), any(byte[].class), eq(300));
+    }
+
+    @Test
+    void append_WhenBodyEndsEarly_ShouldKeepReceivedBytes() throws IOException {
+        // Arrange
+        claimable(session(1000, 0));
+        when(findIterable.first()).thenReturn(session(1000, 400));
+
+        // Act
+        ResumableUploadService.UploadSession result = service.append(sessionId.toHexString(), TOKEN, 0, new ByteArrayInputStream(new byte[400]));
+
+        // Assert
+        assertEquals(400, result.offset());
+        verify(gridFsRawStore).saveChunk(eq(sessionId), eq(0), any(byte[].class), eq(400));
+    }
+
+    @Test
+    void append_WhenOffsetDoesNotMatch_ShouldReportCurrentOffset() {
+        // Arrange
+        when(sessionCollection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class))).thenReturn(null);
+        when(findIterable.first()).thenReturn(session(1000, 600));
+
+        // Act & Assert
+        ResumableUploadService.OffsetMismatchException exception = assertThrows(ResumableUploadService.OffsetMismatchException.class,
+                () -> service.append(sessionId.toHexString(), TOKEN, 200, new ByteArrayInputStream(new byte[10])));
+        assertEquals(600, exception.getCurrentOffset());
+        verify(gridFsRawStore, never()).saveChunk(any(), anyInt(), any(), anyInt());
+    }
+
+    @Test
+    void append_WhenBodyIsLongerThanDeclared_ShouldThrowIllegalArgumentException() {
+        // Arrange
+        claimable(session(100, 0));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> service.append(sessionId.toHexString(), TOKEN, 0, new ByteArrayInputStream(new byte[101])));
+    }
+
+    @Test
+    void complete_ShouldWriteFileDocumentAndRegisterUpload() throws IOException {
+        // Arrange
+        byte[] content = png(500);
+        claimable(session(content.length, content.length));
+        when(gridFsRawStore.openRange(sessionId, CHUNK, 0, content.length - 1)).thenReturn(new ByteArrayInputStream(content));
+        when(fileStorageService.registerUpload(eq(sessionId), eq("photo.png"), eq("image/png"), anyString(), eq((long) content.length)))
+                .thenReturn(sessionId.toHexString());
+
+        // Act
+        String fileId = service.complete(sessionId.toHexString(), TOKEN);
+
+        // Assert
+        assertEquals(sessionId.toHexString(), fileId);
+        verify(gridFsRawStore).saveFileDocument(eq(sessionId), eq("photo.png"), eq((long) content.length), eq(CHUNK), any(Document.class));
+        verify(sessionCollection, never()).deleteOne(any(Bson.class));
+    }
+
+    @Test
+    void complete_WhenAlreadyFinalized_ShouldReturnSameFileId() throws IOException {
+        // Arrange - the client never saw the response to its first complete and retries
+        ObjectId storedId = new ObjectId();
+        claimable(session(500, 500).append("finalizedId", storedId.toHexString()));
+
+        // Act
+        String fileId = service.complete(sessionId.toHexString(), TOKEN);
+
+        // Assert
+        assertEquals(storedId.toHexString(), fileId);
+        verify(fileStorageService, never()).registerUpload(any(), any(), any(), any(), anyLong());
+        verify(gridFsRawStore, never()).saveFileDocument(any(), any(), anyLong(), anyInt(), any());
+    }
+
+    @Test
+    void removeExpiredSessions_ShouldDeleteChunksLeftWithoutFileOrSession() {
+        // Arrange - the TTL index removed one session before the sweeper saw it; the other is still uploading
+        ObjectId abandoned = new ObjectId();
+        ObjectId uploading = new ObjectId();
+        when(findIterable.limit(anyInt())).thenReturn(findIterable);
+        when(findIterable.projection(any())).thenReturn(findIterable);
+        when(findIterable.iterator()).thenAnswer(invocation -> cursor(List.of()))
+                .thenAnswer(invocation -> cursor(List.of(new Document("_id", uploading))));
+        when(sessionCollection.deleteMany(any(Bson.class))).thenReturn(DeleteResult.acknowledged(0));
+        when(gridFsRawStore.findChunksWithoutFile(isNull(), any(ObjectId.class), anyInt()))
+                .thenReturn(List.of(abandoned, uploading));
+
+        // Act
+        service.removeExpiredSessions();
+
+        // Assert
+        verify(gridFsRawStore).deleteChunks(abandoned);
+        verify(gridFsRawStore, never()).deleteChunks(uploading);
+    }
+
+    @Test
+    void complete_WhenUploadIsIncomplete_ShouldThrowIllegalArgumentException() {
+        // Arrange
+        claimable(session(1000, 999));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.complete(sessionId.toHexString(), TOKEN));
+        verify(gridFsRawStore, never()).saveFileDocument(any(), any(), anyLong(), anyInt(), any());
+    }
+
+    @Test
+    void complete_WhenContentIsNotTheDeclaredType_ShouldDiscardSession() {
+        // Arrange
+        byte[] content = new byte[500];
+        claimable(session(content.length, content.length));
+        when(gridFsRawStore.openRange(sessionId, CHUNK, 0, content.length - 1)).thenReturn(new ByteArrayInputStream(content));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> service.complete(sessionId.toHexString(), TOKEN));
+        verify(gridFsRawStore).deleteChunks(sessionId);
+        verify(sessionCollection).deleteOne(any(Bson.class));
+        verify(gridFsRawStore, never()).saveFileDocument(any(), any(), anyLong(), anyInt(), any());
+    }
+
+    private void claimable(Document session) {
+        when(sessionCollection.findOneAndUpdate(any(Bson.class), any(Bson.class), any(FindOneAndUpdateOptions.class))).thenReturn(session);
+    }
+
+    private Document session(long length, long offset) {
+        return new Document("_id", sessionId)
+                .append("filename", "photo.png")
+                .append("contentType", "image/png")
+                .append("length", length)
+                .append("chunkSize", CHUNK)
+                .append("offset", offset)
+                .append("expiresAt", new Date(System.currentTimeMillis() + 60_000));
+    }
+
+    private static String sha256(String value) throws NoSuchAlgorithmException {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MongoCursor<Document> cursor(List<Document> documents) {
+        Iterator<Document> source = documents.iterator();
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(cursor.hasNext()).thenAnswer(i -> source.hasNext());
+        when(cursor.next()).thenAnswer(i -> source.next());
+        return cursor;
+    }
+
+    private static byte[] png(int size) {
+        byte[] content = new byte[size];
+        System.arraycopy(PNG_HEADER, 0, content, 0, PNG_HEADER.length);
+        return content;
+    }
+}
@@ -0,0 +1,225 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.model.CountOptions;
+import com.mongodb.client.model.ReplaceOptions;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.SegmentStorageTier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SegmentStorageTierTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> locatorCollection;
+
+    @Mock
+    private FindIterable<Document> findIterable;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection("file_locators")).thenReturn(locatorCollection);
+    }
+
+    @Test
+    void appendedContent_ShouldBeReadableInFullAndByRange() throws IOException {
+        // Arrange
+        SegmentStorageTier tier = tier(1024 * 1024);
+        byte[] first = randomBytes(5000, 1);
+        byte[] second = randomBytes(3000, 2);
+        GridFSFile firstFile = file(first.length);
+        GridFSFile secondFile = file(second.length);
+
+        // Act
+        tier.saveLocator(firstFile.getObjectId(), tier.append(firstFile.getObjectId(), new ByteArrayInputStream(first), first.length));
+        tier.saveLocator(secondFile.getObjectId(), tier.append(secondFile.getObjectId(), new ByteArrayInputStream(second), second.length));
+
+        // Assert
+        assertArrayEquals(first, read(tier.open(firstFile)));
+        assertArrayEquals(second, read(tier.open(secondFile)));
+        assertArrayEquals(java.util.Arrays.copyOfRange(second, 100, 200), read(tier.openRange(secondFile, 100, 199)));
+        verify(locatorCollection, times(2)).replaceOne(any(Bson.class), any(Document.class), any(ReplaceOptions.class));
+    }
+
+    @Test
+    void append_WhenSegmentIsFull_ShouldRollOverToNewSegment() throws IOException {
+        // Arrange
+        SegmentStorageTier tier = tier(1000);
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+
+        // Act
+        SegmentStorageTier.Locator a = tier.append(first, new ByteArrayInputStream(new byte[600]), 600);
+        SegmentStorageTier.Locator b = tier.append(second, new ByteArrayInputStream(new byte[600]), 600);
+
+        // Assert
+        assertNotEquals(a.segment(), b.segment());
+        assertEquals(20, b.offset());
+        assertTrue(Files.exists(directory.resolve(a.segment())));
+        assertTrue(Files.exists(directory.resolve(b.segment())));
+    }
+
+    @Test
+    void append_WhenContentEndsEarly_ShouldFailAndLeaveSegmentUnchanged() throws IOException {
+        // Arrange
+        SegmentStorageTier tier = tier(1024 * 1024);
+        SegmentStorageTier.Locator kept = tier.append(new ObjectId(), new ByteArrayInputStream(new byte[100]), 100);
+
+        // Act & Assert
+        assertThrows(IOException.class,
+                () -> tier.append(new ObjectId(), new ByteArrayInputStream(new byte[10]), 50));
+        assertEquals(kept.offset() + kept.length(), Files.size(directory.resolve(kept.segment())));
+    }
+
+    @Test
+    void openRange_ShouldLoadLocatorFromMongoWhenNotCached() throws IOException {
+        // Arrange
+        SegmentStorageTier writer = tier(1024 * 1024);
+        byte[] content = randomBytes(256, 3);
+        GridFSFile file = file(content.length);
+        SegmentStorageTier.Locator locator = writer.append(file.getObjectId(), new ByteArrayInputStream(content), content.length);
+        writer.destroy();
+
+        when(locatorCollection.find(any(Bson.class))).thenReturn(findIterable);
+        when(findIterable.first()).thenReturn(new Document("_id", file.getObjectId())
+                .append("segment", locator.segment())
+                .append("offset", locator.offset())
+                .append("length", locator.length()));
+
+        // Act: a fresh instance, as after a restart
+        byte[] read = read(tier(1024 * 1024).open(file));
+
+        // Assert
+        assertArrayEquals(content, read);
+    }
+
+    @Test
+    void remove_WhenLastFileOfSegmentGoes_ShouldDeleteSegmentButNeverTheActiveOne() throws IOException {
+        // Arrange - two full segments, the second one active
+        SegmentStorageTier tier = tier(1000);
+        ObjectId first = new ObjectId();
+        ObjectId second = new ObjectId();
+        SegmentStorageTier.Locator a = tier.append(first, new ByteArrayInputStream(new byte[600]), 600);
+        tier.saveLocator(first, a);
+        SegmentStorageTier.Locator b = tier.append(second, new ByteArrayInputStream(new byte[600]), 600);
+        tier.saveLocator(second, b);
+        when(locatorCollection.findOneAndDelete(any(Bson.class)))
+                .thenReturn(new Document("_id", first).append("segment", a.segment()),
+                        new Document("_id", second).append("segment", b.segment()));
+        when(locatorCollection.countDocuments(any(Bson.class), any(CountOptions.class))).thenReturn(0L);
+
+        // Act
+        tier.remove(first);
+        tier.remove(second);
+
+        // Assert
+        assertFalse(Files.exists(directory.resolve(a.segment())));
+        assertTrue(Files.exists(directory.resolve(b.segment())));
+    }
+
+    @Test
+    void remove_WhenSegmentStillHoldsFiles_ShouldKeepIt() throws IOException {
+        // Arrange
+        SegmentStorageTier tier = tier(1000);
+        ObjectId first = new ObjectId();
+        SegmentStorageTier.Locator a = tier.append(first, new ByteArrayInputStream(new byte[300]), 300);
+        tier.saveLocator(first, a);
+        tier.saveLocator(new ObjectId(), tier.append(new ObjectId(), new ByteArrayInputStream(new byte[300]), 300));
+        tier.saveLocator(new ObjectId(), tier.append(new ObjectId(), new ByteArrayInputStream(new byte[600]), 600));
+        when(locatorCollection.findOneAndDelete(any(Bson.class)))
+                .thenReturn(new Document("_id", first).append("segment", a.segment()));
+        when(locatorCollection.countDocuments(any(Bson.class), any(CountOptions.class))).thenReturn(1L);
+
+        // Act
+        tier.remove(first);
+
+        // Assert
+        assertTrue(Files.exists(directory.resolve(a.segment())));
+    }
+
+    @Test
+    void remove_WhileAnotherAppendAwaitsItsLocator_ShouldKeepSegment() throws IOException {
+        // Arrange - the second record is appended but its locator not saved yet
+        SegmentStorageTier tier = tier(1000);
+        ObjectId first = new ObjectId();
+        SegmentStorageTier.Locator a = tier.append(first, new ByteArrayInputStream(new byte[300]), 300);
+        tier.saveLocator(first, a);
+        tier.append(new ObjectId(), new ByteArrayInputStream(new byte[300]), 300);
+        tier.saveLocator(new ObjectId(), tier.append(new ObjectId(), new ByteArrayInputStream(new byte[600]), 600));
+        when(locatorCollection.findOneAndDelete(any(Bson.class)))
+                .thenReturn(new Document("_id", first).append("segment", a.segment()));
+        when(locatorCollection.countDocuments(any(Bson.class), any(CountOptions.class))).thenReturn(0L);
+
+        // Act
+        tier.remove(first);
+
+        // Assert
+        assertTrue(Files.exists(directory.resolve(a.segment())));
+    }
+
+    @Test
+    void holds_ShouldOnlyClaimFilesMarkedWithItsTier() {
+        // Arrange
+        SegmentStorageTier tier = tier(1024 * 1024);
+        GridFSFile cold = new GridFSFile(new org.bson.BsonObjectId(new ObjectId()), "a.jpg", 1, 255, new Date(),
+                new Document("tier", SegmentStorageTier.NAME));
+        GridFSFile hot = new GridFSFile(new org.bson.BsonObjectId(new ObjectId()), "a.jpg", 1, 255, new Date(),
+                new Document("contentType", "image/jpeg"));
+
+        // Act & Assert
+        assertTrue(tier.holds(cold));
+        assertFalse(tier.holds(hot));
+    }
+
+    private SegmentStorageTier tier(long maxSegmentBytes) {
+        return new SegmentStorageTier(mongoTemplate, directory.toString(), maxSegmentBytes, "file_locators");
+    }
+
+    private static GridFSFile file(long length) {
+        return new GridFSFile(new org.bson.BsonObjectId(new ObjectId()), "a.jpg", length, 255, new Date(),
+                new Document("tier", SegmentStorageTier.NAME));
+    }
+
+    private static byte[] randomBytes(int size, long seed) {
+        byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package org.example.vladtech.fileservice;
+
+import com.mongodb.client.gridfs.GridFSFindIterable;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.example.vladtech.filestorageservice.FileCache;
+import org.example.vladtech.filestorageservice.FileIoExecutor;
+import org.example.vladtech.filestorageservice.GridFsRawStore;
+import org.example.vladtech.filestorageservice.SegmentStorageTier;
+import org.example.vladtech.filestorageservice.StorageTieringService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsOperations;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class StorageTieringServiceTest {
+
+    @Mock
+    private GridFsTemplate gridFsTemplate;
+
+    @Mock
+    private GridFsOperations gridFsOperations;
+
+    @Mock
+    private GridFsRawStore gridFsRawStore;
+
+    @Mock
+    private SegmentStorageTier segmentTier;
+
+    @Mock
+    private FileCache fileCache;
+
+    @Mock
+    private GridFsResource gridFsResource;
+
+    private final FileIoExecutor fileIoExecutor = new FileIoExecutor(1, 8);
+
+    @Test
+    void run_ShouldDemoteIdleFilesAndPurgeChunksAfterGracePeriod() throws IOException {
+        // Arrange
+        GridFSFile idle = file(new Document("contentType", "image/jpeg"));
+        GridFSFile demotedEarlier = file(new Document("tier", SegmentStorageTier.NAME));
+        stubFind(List.of(idle), List.of(demotedEarlier));
+        SegmentStorageTier.Locator locator = new SegmentStorageTier.Locator("segment-000000.dat", 20, 4);
+        when(gridFsOperations.getResource(idle)).thenReturn(gridFsResource);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream("abcd".getBytes()));
+        when(segmentTier.append(eq(idle.getObjectId()), any(InputStream.class), eq(4L))).thenReturn(locator);
+        when(gridFsRawStore.setTier(idle.getObjectId(), SegmentStorageTier.NAME)).thenReturn(true);
+        when(gridFsRawStore.purgeChunks(demotedEarlier.getObjectId())).thenReturn(true);
+
+        // Act
+        StorageTieringService.TieringResult result = service(true).run();
+
+        // Assert
+        assertEquals(new StorageTieringService.TieringResult(1, 1), result);
+        verify(segmentTier).saveLocator(idle.getObjectId(), locator);
+        verify(fileCache).invalidate(idle.getObjectId());
+        verify(gridFsRawStore).purgeChunks(demotedEarlier.getObjectId());
+        verify(gridFsRawStore, never()).purgeChunks(idle.getObjectId());
+    }
+
+    @Test
+    void run_WhenFileVanishesDuringDemotion_ShouldDropItsLocator() throws IOException {
+        // Arrange
+        GridFSFile idle = file(new Document());
+        stubFind(List.of(idle), List.of());
+        when(gridFsOperations.getResource(idle)).thenReturn(gridFsResource);
+        when(gridFsResource.getInputStream()).thenReturn(new ByteArrayInputStream("abcd".getBytes()));
+        when(segmentTier.append(any(), any(InputStream.class), anyLong()))
+                .thenReturn(new SegmentStorageTier.Locator("segment-000000.dat", 20, 4));
+        when(gridFsRawStore.setTier(idle.getObjectId(), SegmentStorageTier.NAME)).thenReturn(false);
+
+        // Act
+        StorageTieringService.TieringResult result = service(true).run();
+
+        // Assert
+        assertEquals(0, result.demoted());
+        verify(segmentTier).remove(idle.getObjectId());
+    }
+
+    @Test
+    void promote_WithPurgedChunks_ShouldCopyBytesBackIntoGridFs() throws IOException {
+        // Arrange
+        GridFSFile cold = file(new Document("tier", SegmentStorageTier.NAME).append("chunksPurged", true));
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(cold);
+        when(segmentTier.holds(cold)).thenReturn(true);
+        when(segmentTier.open(cold)).thenReturn(new ByteArrayInputStream("abcd".getBytes()));
+        when(gridFsRawStore.writeChunks(eq(cold.getObjectId()), eq(255), any(InputStream.class))).thenReturn(4L);
+        when(gridFsRawStore.clearTier(cold.getObjectId(), true)).thenReturn(true);
+
+        // Act
+        boolean promoted = service(true).promote(cold.getObjectId());
+
+        // Assert
+        assertTrue(promoted);
+        verify(gridFsRawStore).clearTier(cold.getObjectId(), true);
+        verify(segmentTier).remove(cold.getObjectId());
+        verify(fileCache).invalidate(cold.getObjectId());
+    }
+
+    @Test
+    void promote_BeforeChunksArePurged_ShouldOnlyFlipTheTier() throws IOException {
+        // Arrange
+        GridFSFile cold = file(new Document("tier", SegmentStorageTier.NAME));
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(cold);
+        when(segmentTier.holds(cold)).thenReturn(true);
+        when(gridFsRawStore.clearTier(cold.getObjectId(), false)).thenReturn(true);
+
+        // Act
+        boolean promoted = service(true).promote(cold.getObjectId());
+
+        // Assert
+        assertTrue(promoted);
+        verify(gridFsRawStore, never()).writeChunks(any(), anyInt(), any());
+        verify(gridFsRawStore).clearTier(cold.getObjectId(), false);
+    }
+
+    @Test
+    void promote_WhenChunksArePurgedAfterItLooked_ShouldWriteThemBackBeforeDroppingSegmentCopy() throws IOException {
+        // Arrange - the purge claims the chunks between the read of the file and the tier flip
+        GridFSFile cold = file(new Document("tier", SegmentStorageTier.NAME));
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(cold);
+        when(segmentTier.holds(cold)).thenReturn(true);
+        when(segmentTier.open(cold)).thenReturn(new ByteArrayInputStream("abcd".getBytes()));
+        when(gridFsRawStore.clearTier(cold.getObjectId(), false)).thenReturn(false);
+        when(gridFsRawStore.writeChunks(eq(cold.getObjectId()), eq(255), any(InputStream.class))).thenReturn(4L);
+        when(gridFsRawStore.clearTier(cold.getObjectId(), true)).thenReturn(true);
+
+        // Act
+        boolean promoted = service(true).promote(cold.getObjectId());
+
+        // Assert
+        assertTrue(promoted);
+        InOrder order = inOrder(gridFsRawStore, segmentTier);
+        order.verify(gridFsRawStore).clearTier(cold.getObjectId(), false);
+        order.verify(gridFsRawStore).writeChunks(eq(cold.getObjectId()), eq(255), any(InputStream.class));
+        order.verify(gridFsRawStore).clearTier(cold.getObjectId(), true);
+        order.verify(segmentTier).remove(cold.getObjectId());
+    }
+
+    @Test
+    void run_WhileFileIsBeingPromoted_ShouldLeaveItsChunksAlone() throws IOException {
+        // Arrange - the mover's purge runs while the promotion is about to flip the tier
+        StorageTieringService service = service(true);
+        GridFSFile cold = file(new Document("tier", SegmentStorageTier.NAME));
+        when(gridFsTemplate.findOne(any(Query.class))).thenReturn(cold);
+        when(segmentTier.holds(cold)).thenReturn(true);
+        stubFind(List.of(), List.of(cold));
+        List<StorageTieringService.TieringResult> duringPromotion = new ArrayList<>();
+        when(gridFsRawStore.clearTier(cold.getObjectId(), false)).thenAnswer(invocation -> {
+            duringPromotion.add(service.run());
+            return true;
+        });
+
+        // Act
+        boolean promoted = service.promote(cold.getObjectId());
+
+        // Assert
+        assertTrue(promoted);
+        assertEquals(List.of(new StorageTieringService.TieringResult(0, 0)), duringPromotion);
+        verify(gridFsRawStore, never()).purgeChunks(any());
+        verify(gridFsRawStore, never()).writeChunks(any(), anyInt(), any());
+    }
+
+    @Test
+    void recordRead_ShouldWriteLastReadAtOncePerInterval() {
+        // Arrange
+        StorageTieringService service = service(true);
+        GridFSFile file = file(new Document());
+
+        // Act
+        service.recordRead(file);
+        service.recordRead(file);
+
+        // Assert
+        verify(gridFsRawStore, timeout(1000).times(1)).markRead(eq(file.getObjectId()), anyLong());
+    }
+
+    @Test
+    void recordRead_WhenDisabled_ShouldNotWrite() {
+        // Act
+        service(false).recordRead(file(new Document()));
+
+        // Assert
+        verifyNoInteractions(gridFsRawStore);
+    }
+
+    private StorageTieringService service(boolean enabled) {
+        return new StorageTieringService(gridFsTemplate, gridFsOperations, gridFsRawStore, segmentTier,
+                fileCache, fileIoExecutor, enabled, 30, 100, 600_000, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubFind(List<GridFSFile> idle, List<GridFSFile> demoted) {
+        GridFSFindIterable idleIterable = mock(GridFSFindIterable.class);
+        GridFSFindIterable demotedIterable = mock(GridFSFindIterable.class);
+        doAnswer(invocation -> {
+            idle.forEach(invocation.getArgument(0, Consumer.class));
+            return null;
+        }).when(idleIterable).forEach(any(Consumer.class));
+        when(demotedIterable.iterator()).thenAnswer(invocation -> cursorOf(demoted));
+        when(gridFsTemplate.find(any(Query.class))).thenReturn(idleIterable, demotedIterable);
+    }
+
+    private static com.mongodb.client.MongoCursor<GridFSFile> cursorOf(List<GridFSFile> files) {
+        @SuppressWarnings("unchecked")
+        com.mongodb.client.MongoCursor<GridFSFile> cursor = mock(com.mongodb.client.MongoCursor.class);
+        java.util.Iterator<GridFSFile> iterator = files.iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+    private static GridFSFile file(Document metadata) {
+        return new GridFSFile(new BsonObjectId(new ObjectId()), "a.jpg", 4, 255, new Date(), metadata);
+    }
+}
@@ -0,0 +1,115 @@
+package org.example.vladtech.fileservice;
+
+import org.example.vladtech.filestorageservice.UploadRateLimiter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class UploadRateLimiterTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    // 2 requests of burst, then one a minute; 1000 bytes of burst, then 1000 a minute
+    private UploadRateLimiter limiter(boolean enabled) {
+        return new UploadRateLimiter(mongoTemplate, enabled, false, 1, 2, 1000, 1000, 500, 100);
+    }
+
+    @Test
+    void acquire_BeyondRequestBurst_ShouldDenyWithRetryAfter() {
+        // Arrange
+        UploadRateLimiter limiter = limiter(true);
+
+        // Act
+        UploadRateLimiter.Decision first = limiter.acquire(null, "10.0.0.1", 10);
+        UploadRateLimiter.Decision second = limiter.acquire(null, "10.0.0.1", 10);
+        UploadRateLimiter.Decision third = limiter.acquire(null, "10.0.0.1", 10);
+
+        // Assert
+        assertTrue(first.allowed());
+        assertTrue(second.allowed());
+        assertFalse(third.allowed());
+        assertEquals("requests", third.limit());
+        assertTrue(third.retryAfterSeconds() > 0 && third.retryAfterSeconds() <= 60);
+        assertEquals(1, limiter.stats().denied());
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void acquire_ShouldKeepClientsApart() {
+        // Arrange
+        UploadRateLimiter limiter = limiter(true);
+        limiter.acquire(null, "10.0.0.1", 0);
+        limiter.acquire(null, "10.0.0.1", 0);
+
+        // Act & Assert
+        assertFalse(limiter.acquire(null, "10.0.0.1", 0).allowed());
+        assertTrue(limiter.acquire(null, "10.0.0.2", 0).allowed());
+    }
+
+    @Test
+    void acquire_WithBodyLargerThanBurst_ShouldAllowOnceThenDenyOnBytes() {
+        // Arrange
+        UploadRateLimiter limiter = limiter(true);
+
+        // Act
+        UploadRateLimiter.Decision large = limiter.acquire("user-1", "10.0.0.1", 5000);
+        UploadRateLimiter.Decision next = limiter.acquire("user-1", "10.0.0.1", 10);
+
+        // Assert
+        assertTrue(large.allowed());
+        assertFalse(next.allowed());
+        assertEquals("bytes", next.limit());
+    }
+
+    @Test
+    void acquire_WhenAddressIsLimited_ShouldRefundSubjectBuckets() {
+        // Arrange - exhaust the shared address with another user
+        UploadRateLimiter limiter = limiter(true);
+        limiter.acquire("user-1", "10.0.0.1", 0);
+        limiter.acquire("user-1", "10.0.0.1", 0);
+
+        // Act - user-2's own bucket is drawn first, then the address refuses
+        UploadRateLimiter.Decision denied = limiter.acquire("user-2", "10.0.0.1", 0);
+        UploadRateLimiter.Decision elsewhere1 = limiter.acquire("user-2", "10.0.0.2", 0);
+        UploadRateLimiter.Decision elsewhere2 = limiter.acquire("user-2", "10.0.0.3", 0);
+
+        // Assert - the refused attempt did not use up one of user-2's two requests
+        assertFalse(denied.allowed());
+        assertTrue(elsewhere1.allowed());
+        assertTrue(elsewhere2.allowed());
+    }
+
+    @Test
+    void acquire_WithUnknownLength_ShouldChargeConfiguredBytes() {
+        // Arrange
+        UploadRateLimiter limiter = limiter(true);
+
+        // Act
+        UploadRateLimiter.Decision unknown = limiter.acquire(null, "10.0.0.1", -1);
+        UploadRateLimiter.Decision next = limiter.acquire(null, "10.0.0.1", 600);
+
+        // Assert - 500 of the 1000 byte burst went to the body of unknown length
+        assertTrue(unknown.allowed());
+        assertFalse(next.allowed());
+        assertEquals("bytes", next.limit());
+    }
+
+    @Test
+    void acquire_WhenDisabled_ShouldAlwaysAllow() {
+        // Arrange
+        UploadRateLimiter limiter = limiter(false);
+
+        // Act & Assert
+        for (int i = 0; i < 10; i++) {
+            assertTrue(limiter.acquire("user-1", "10.0.0.1", 1_000_000).allowed());
+        }
+        assertEquals(0, limiter.stats().trackedKeys());
+    }
+}
@@ -0,0 +1,138 @@
+package org.example.vladtech.fileservice;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.vladtech.filestorageservice.UploadQuotaService;
+import org.example.vladtech.filestorageservice.UploadRateLimiter;
+import org.example.vladtech.filestorageservice.UploadThrottleFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class UploadThrottleFilterTest {
+
+    @Mock
+    private UploadRateLimiter uploadRateLimiter;
+
+    @Mock
+    private UploadQuotaService uploadQuotaService;
+
+    private UploadThrottleFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        filter = new UploadThrottleFilter(uploadRateLimiter, uploadQuotaService, new ObjectMapper());
+        when(uploadRateLimiter.acquire(any(), anyString(), anyLong()))
+                .thenReturn(new UploadRateLimiter.Decision(true, 0, null));
+        when(uploadQuotaService.isEnabled()).thenReturn(true);
+        when(uploadQuotaService.allows(anyString(), anyLong())).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void upload_WithinLimits_ShouldPassOnWithOwner() throws Exception {
+        // Arrange
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("auth0|42", null, "Client"));
+        MockHttpServletRequest request = upload("/uploads/reviews", 2048);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertNotNull(chain.getRequest());
+        assertEquals("sub:auth0|42", request.getAttribute(UploadQuotaService.OWNER_ATTRIBUTE));
+        verify(uploadRateLimiter).acquire("auth0|42", "10.0.0.1", 2048);
+        verify(uploadQuotaService).allows("sub:auth0|42", 2048);
+    }
+
+    @Test
+    void upload_WhenRateLimited_ShouldReturn429WithRetryAfter() throws Exception {
+        // Arrange
+        when(uploadRateLimiter.acquire(any(), anyString(), anyLong()))
+                .thenReturn(new UploadRateLimiter.Decision(false, 12, "bytes"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(upload("/uploads/reviews/stream", 2048), response, chain);
+
+        // Assert
+        assertEquals(429, response.getStatus());
+        assertEquals("12", response.getHeader("Retry-After"));
+        assertTrue(response.getContentAsString().contains("\"error\""));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void upload_OverQuota_ShouldReturn413() throws Exception {
+        // Arrange
+        when(uploadQuotaService.allows("ip:10.0.0.1", 2048)).thenReturn(false);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(upload("/uploads/reviews/sessions/abc", 2048), response, chain);
+
+        // Assert
+        assertEquals(413, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Storage quota exceeded"));
+        assertNull(chain.getRequest());
+    }
+
+    @Test
+    void portfolioUpload_ShouldBeRateLimitedButNotCountedAgainstQuota() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = upload("/api/portfolio/upload", 2048);
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertNotNull(chain.getRequest());
+        verify(uploadRateLimiter).acquire(null, "10.0.0.1", 2048);
+        verify(uploadQuotaService, never()).allows(anyString(), anyLong());
+        assertNull(request.getAttribute(UploadQuotaService.OWNER_ATTRIBUTE));
+    }
+
+    @Test
+    void download_ShouldNotBeThrottled() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/uploads/reviews/" + "a".repeat(24));
+        MockFilterChain chain = new MockFilterChain();
+
+        // Act
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        // Assert
+        assertNotNull(chain.getRequest());
+        verifyNoInteractions(uploadRateLimiter, uploadQuotaService);
+    }
+
+    private static MockHttpServletRequest upload(String path, int length) {
+        MockHttpServletRequest request = new MockHttpServletRequest(path.startsWith("/uploads/reviews/sessions/") ? "PATCH" : "POST", path);
+        request.setRemoteAddr("10.0.0.1");
+        request.setContent(new byte[length]);
+        return request;
+    }
+}
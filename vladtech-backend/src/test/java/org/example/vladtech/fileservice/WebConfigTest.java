@@ -97,6 +97,7 @@ class WebConfigTest {
         assertTrue(corsRegistration.allowedOrigins.contains("http://localhost:5173"));
         assertTrue(corsRegistration.allowedMethods.contains("GET"));
         assertTrue(corsRegistration.allowedMethods.contains("POST"));
+        assertTrue(corsRegistration.allowedMethods.contains("PATCH"));
         assertTrue(corsRegistration.allowedMethods.contains("DELETE"));
         assertTrue(corsRegistration.allowedMethods.contains("OPTIONS"));
         assertTrue(corsRegistration.allowedHeaders.contains("*"));
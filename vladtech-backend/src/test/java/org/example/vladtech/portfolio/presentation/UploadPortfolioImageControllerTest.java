@@ -15,6 +15,9 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Comparator;
 import java.util.stream.Stream;
 
@@ -184,6 +187,26 @@ class UploadPortfolioImageControllerTest {
         assertTrue(Files.exists(filePath), "Uploaded file should exist on disk");
     }
 
+    @Test
+    void uploadImage_SameContentAsOldFile_ShouldRefreshItsModifiedTime() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-image.jpg",
+                MediaType.IMAGE_JPEG_VALUE,
+                "test image content reused".getBytes()
+        );
+        Path filePath = Paths.get(imagePath(uploadAsAdmin(file)));
+        // Looks like a file nothing referenced for days, due for the orphan sweep
+        FileTime old = FileTime.from(Instant.now().minus(Duration.ofDays(3)));
+        Files.setLastModifiedTime(filePath, old);
+
+        String response = uploadAsAdmin(file);
+
+        assertEquals(filePath, Paths.get(imagePath(response)));
+        assertTrue(Files.getLastModifiedTime(filePath).compareTo(old) > 0,
+                "Reusing a stored file should keep the orphan sweep away from it");
+    }
+
     @Test
     void uploadImage_MultipleFiles_ShouldHaveUniqueNames() throws Exception {
         MockMultipartFile file1 = new MockMultipartFile(
@@ -284,5 +307,24 @@ class UploadPortfolioImageControllerTest {
         // Verify directory was created
         assertTrue(Files.exists(uploadPath), "Upload directory should be created if it doesn't exist");
     }
-}
 
+    private String uploadAsAdmin(MockMultipartFile file) throws Exception {
+        return mockMvc.perform(multipart("/api/portfolio/upload")
+                        .file(file)
+                        .with(jwt()
+                                .jwt(jwt -> jwt
+                                        .subject("auth0|admin123")
+                                        .claim("name", "Admin User")
+                                        .claim("https://vladtech.com/roles", java.util.List.of("Admin")))
+                                .authorities(new SimpleGrantedAuthority("Admin"))))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    // Relative path of the stored file, from the imageUrl in an upload response
+    private static String imagePath(String response) {
+        return response.substring(response.indexOf("/uploads/") + 1, response.indexOf(".jpg") + 4);
+    }
+}
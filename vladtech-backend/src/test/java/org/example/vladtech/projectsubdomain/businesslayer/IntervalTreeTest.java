@@ -0,0 +1,90 @@
+package org.example.vladtech.projectsubdomain.businesslayer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntervalTreeTest {
+
+    @Test
+    void overlapping_ShouldTreatBothEndsAsInclusive() {
+        // Arrange
+        IntervalTree tree = new IntervalTree();
+        tree.insert(1, 5, "A");
+        tree.insert(6, 9, "B");
+        tree.insert(10, 10, "C");
+
+        // Act & Assert
+        assertEquals(List.of("A", "B"), ids(tree.overlapping(5, 6)));
+        assertEquals(List.of("C"), ids(tree.overlapping(10, 20)));
+        assertTrue(tree.overlapping(11, 20).isEmpty());
+    }
+
+    @Test
+    void remove_ShouldOnlyRemoveMatchingInterval() {
+        // Arrange
+        IntervalTree tree = new IntervalTree();
+        tree.insert(1, 5, "A");
+        tree.insert(1, 8, "B");
+
+        // Act
+        boolean removed = tree.remove(1, "A");
+        boolean missing = tree.remove(2, "B");
+
+        // Assert
+        assertTrue(removed);
+        assertFalse(missing);
+        assertEquals(List.of("B"), ids(tree.all()));
+        assertEquals(1, tree.size());
+    }
+
+    @Test
+    void insert_WhenEndBeforeStart_ShouldThrow() {
+        IntervalTree tree = new IntervalTree();
+
+        assertThrows(IllegalArgumentException.class, () -> tree.insert(5, 4, "A"));
+    }
+
+    @Test
+    void overlapping_AfterRandomInsertsAndRemoves_ShouldMatchLinearScan() {
+        // Arrange
+        Random random = new Random(42);
+        IntervalTree tree = new IntervalTree();
+        List<IntervalTree.Interval> expected = new ArrayList<>();
+
+        for (int i = 0; i < 20_000; i++) {
+            // Act
+            if (expected.isEmpty() || random.nextInt(3) > 0) {
+                long start = random.nextInt(1000);
+                IntervalTree.Interval interval = new IntervalTree.Interval(start, start + random.nextInt(40), "P" + i);
+                tree.insert(interval.start(), interval.end(), interval.id());
+                expected.add(interval);
+            } else {
+                IntervalTree.Interval interval = expected.remove(random.nextInt(expected.size()));
+                assertTrue(tree.remove(interval.start(), interval.id()));
+            }
+
+            // Assert
+            long from = random.nextInt(1050);
+            long to = from + random.nextInt(20);
+            Set<IntervalTree.Interval> overlapping = new HashSet<>();
+            for (IntervalTree.Interval interval : expected) {
+                if (interval.start() <= to && interval.end() >= from) {
+                    overlapping.add(interval);
+                }
+            }
+            assertEquals(overlapping, new HashSet<>(tree.overlapping(from, to)));
+            assertEquals(expected.size(), tree.size());
+        }
+    }
+
+    private static List<String> ids(List<IntervalTree.Interval> intervals) {
+        return intervals.stream().map(IntervalTree.Interval::id).toList();
+    }
+}
@@ -0,0 +1,90 @@
+package org.example.vladtech.projectsubdomain.businesslayer;
+
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.Project;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectEmailSender;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectIdentifierSequence;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectRepository;
+import org.example.vladtech.projectsubdomain.mappinglayer.ProjectEmailMapper;
+import org.example.vladtech.projectsubdomain.mappinglayer.ProjectRequestMapper;
+import org.example.vladtech.projectsubdomain.mappinglayer.ProjectResponseMapper;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectRequestModel;
+import org.example.vladtech.projectsubdomain.presentationlayer.ProjectResponseModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.Mockito.*;
+
+/**
+ * Project creation against a real collection with the unique projectIdentifier index, where a
+ * taken identifier surfaces as the driver's duplicate key error.
+ */
+@DataMongoTest
+@Import({ProjectServiceImpl.class, ScheduleConflictIndex.class,
+        ProjectRequestMapper.class, ProjectResponseMapper.class, ProjectEmailMapper.class})
+class ProjectServiceImplMongoTest {
+
+    @Autowired
+    private ProjectService projectService;
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @MockitoBean
+    private ProjectIdentifierSequence projectIdentifierSequence;
+
+    @MockitoBean
+    private ProjectEmailSender projectEmailSender;
+
+    @BeforeEach
+    void setUp() {
+        projectRepository.deleteAll();
+        mongoTemplate.getCollection("projects").createIndex(Indexes.ascending("projectIdentifier"),
+                new IndexOptions().unique(true));
+    }
+
+    @Test
+    void createProject_WhenIdentifierTaken_ShouldInsertUnderNextIdentifier() {
+        // Arrange
+        Project existing = new Project();
+        existing.setProjectIdentifier("PROJ-1");
+        existing.setName("Existing");
+        projectRepository.save(existing);
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-1", "PROJ-2");
+
+        // Act
+        ProjectResponseModel created = projectService.createProject(requestModel("New Kitchen"));
+
+        // Assert
+        assertThat(created.getProjectIdentifier()).isEqualTo("PROJ-2");
+        verify(projectIdentifierSequence).resync();
+        assertThat(projectRepository.findAll())
+                .extracting(Project::getProjectIdentifier, Project::getName, Project::getVersion)
+                .containsExactlyInAnyOrder(
+                        tuple("PROJ-1", "Existing", 0L),
+                        tuple("PROJ-2", "New Kitchen", 0L));
+    }
+
+    private static ProjectRequestModel requestModel(String name) {
+        ProjectRequestModel requestModel = new ProjectRequestModel();
+        requestModel.setName(name);
+        requestModel.setClientId("CLIENT-1");
+        requestModel.setStartDate(LocalDate.of(2025, 1, 1));
+        requestModel.setDueDate(LocalDate.of(2025, 1, 31));
+        requestModel.setProjectType("SCHEDULED");
+        return requestModel;
+    }
+}
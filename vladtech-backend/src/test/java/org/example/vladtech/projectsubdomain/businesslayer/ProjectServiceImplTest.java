@@ -1,5 +1,6 @@
 package org.example.vladtech.projectsubdomain.businesslayer;
 
+import com.mongodb.bulk.BulkWriteResult;
 import org.example.vladtech.projectsubdomain.dataaccesslayer.*;
 import org.example.vladtech.projectsubdomain.domain.ProjectNotificationEmail;
 import org.example.vladtech.projectsubdomain.mappinglayer.ProjectEmailMapper;
@@ -11,6 +12,8 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 
 import java.time.LocalDate;
 import java.util.*;
@@ -18,6 +21,10 @@ import java.util.*;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.*;
 
@@ -39,6 +46,12 @@ class ProjectServiceImplTest {
     @Mock
     private ProjectEmailSender projectEmailSender;
 
+    @Mock
+    private ProjectIdentifierSequence projectIdentifierSequence;
+
+    @Mock
+    private ScheduleConflictIndex scheduleConflictIndex;
+
     @Mock
     private ProjectService projectServiceMock;
 
@@ -55,7 +68,9 @@ class ProjectServiceImplTest {
                 projectRequestMapper,
                 projectResponseMapper,
                 projectEmailMapper,
-                projectEmailSender
+                projectEmailSender,
+                projectIdentifierSequence,
+                scheduleConflictIndex
         );
         projectService.self = projectServiceMock;
 
@@ -118,6 +133,62 @@ class ProjectServiceImplTest {
         verify(projectResponseMapper, times(1)).entityListToResponseModelList(projects);
     }
 
+    @Test
+    void getProjectsPage_WithMoreResults_ShouldTrimAndReturnCursor() {
+        // Arrange
+        Project second = new Project();
+        second.setId("65f000000000000000000002");
+        Project third = new Project();
+        third.setId("65f000000000000000000001");
+        project.setId("65f000000000000000000003");
+        List<Project> page = Arrays.asList(project, second, third);
+        when(projectRepository.findPage(any(ProjectPageQuery.class))).thenReturn(page);
+        when(projectResponseMapper.entityListToResponseModelList(page.subList(0, 2)))
+                .thenReturn(Arrays.asList(responseModel, new ProjectResponseModel()));
+
+        // Act
+        ProjectPageResponseModel result = projectService.getProjectsPage(null, 2, "scheduled", "CLIENT-123",
+                null, null, null, List.of("name", "startDate"));
+
+        // Assert
+        assertEquals(2, result.getItems().size());
+        assertEquals("65f000000000000000000002", result.getNextCursor());
+        // Lists left out of the projection are reported as not loaded, not as empty
+        assertNull(result.getItems().get(0).getAssignedEmployeeEmails());
+        verify(projectRepository).findPage(new ProjectPageQuery(null, 2, ProjectType.ProjectTypeEnum.SCHEDULED,
+                "CLIENT-123", null, null, null, new LinkedHashSet<>(List.of("name", "startDate"))));
+    }
+
+    @Test
+    void getProjectsPage_OnLastPage_ShouldReturnNoCursor() {
+        // Arrange
+        List<Project> page = List.of(project);
+        when(projectRepository.findPage(any(ProjectPageQuery.class))).thenReturn(page);
+        when(projectResponseMapper.entityListToResponseModelList(page)).thenReturn(List.of(responseModel));
+
+        // Act
+        ProjectPageResponseModel result = projectService.getProjectsPage("65f000000000000000000009", 20,
+                null, null, "EMP-1", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 12, 31), null);
+
+        // Assert
+        assertEquals(1, result.getItems().size());
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void getProjectsPage_WithInvalidArguments_ShouldThrowIllegalArgumentException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getProjectsPage(null, 0, null, null, null, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getProjectsPage("not-a-cursor", 20, null, null, null, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getProjectsPage(null, 20, "RENOVATION", null, null, null, null, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getProjectsPage(null, 20, null, null, null, null, null, List.of("password")));
+        verify(projectRepository, never()).findPage(any());
+    }
+
     @Test
     void getAllProjects_ShouldReturnEmptyList_WhenNoProjects() {
         // Arrange
@@ -163,7 +234,7 @@ class ProjectServiceImplTest {
     @Test
     void createProject_ShouldCreateAndReturnProject() {
         // Arrange
-        when(projectRepository.count()).thenReturn(5L);
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-6");
         when(projectRequestMapper.requestModelToEntity(requestModel)).thenReturn(project);
         when(projectRepository.save(any(Project.class))).thenReturn(project);
         when(projectResponseMapper.entityToResponseModel(project)).thenReturn(responseModel);
@@ -173,7 +244,8 @@ class ProjectServiceImplTest {
 
         // Assert
         assertNotNull(result);
-        verify(projectRepository, times(1)).count();
+        verify(projectIdentifierSequence, times(1)).nextIdentifier();
+        verify(projectRepository, never()).count();
         verify(projectRequestMapper, times(1)).requestModelToEntity(requestModel);
         verify(projectRepository, times(1)).save(any(Project.class));
         verify(projectResponseMapper, times(1)).entityToResponseModel(project);
@@ -183,7 +255,7 @@ class ProjectServiceImplTest {
     @Test
     void createProject_ShouldSetCorrectProjectIdentifier() {
         // Arrange
-        when(projectRepository.count()).thenReturn(10L);
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-11");
         when(projectRequestMapper.requestModelToEntity(requestModel)).thenReturn(project);
         when(projectRepository.save(any(Project.class))).thenAnswer(invocation -> {
             Project savedProject = invocation.getArgument(0);
@@ -196,12 +268,44 @@ class ProjectServiceImplTest {
         projectService.createProject(requestModel);
 
         // Assert
-        verify(projectRepository, times(1)).count();
+        verify(projectIdentifierSequence, times(1)).nextIdentifier();
+    }
+
+    @Test
+    void createProject_WhenIdentifierTaken_ShouldResyncAndRetry() {
+        // Arrange
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-3", "PROJ-41");
+        when(projectRequestMapper.requestModelToEntity(requestModel)).thenReturn(project);
+        when(projectRepository.save(any(Project.class)))
+                .thenThrow(new DuplicateKeyException("E11000 duplicate key error"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        when(projectResponseMapper.entityToResponseModel(any())).thenReturn(responseModel);
+
+        // Act
+        projectService.createProject(requestModel);
+
+        // Assert
+        assertEquals("PROJ-41", project.getProjectIdentifier());
+        verify(projectIdentifierSequence, times(1)).resync();
+        verify(projectRepository, times(2)).save(project);
+    }
+
+    @Test
+    void createProject_WhenIdentifiersKeepColliding_ShouldGiveUp() {
+        // Arrange
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-1", "PROJ-2", "PROJ-3");
+        when(projectRequestMapper.requestModelToEntity(requestModel)).thenReturn(project);
+        when(projectRepository.save(any(Project.class))).thenThrow(new DuplicateKeyException("E11000 duplicate key error"));
+
+        // Act & Assert
+        assertThrows(DuplicateKeyException.class, () -> projectService.createProject(requestModel));
+        verify(projectRepository, times(3)).save(project);
+        verify(projectServiceMock, never()).sendEmailNotificationAsync(any(Project.class), anyString());
     }
 
     @Test
     void createProject_ShouldSendEmailNotification_WhenClientEmailPresent() {
-        when(projectRepository.count()).thenReturn(5L);
+        when(projectIdentifierSequence.nextIdentifier()).thenReturn("PROJ-6");
         when(projectRequestMapper.requestModelToEntity(requestModel)).thenReturn(project);
         when(projectRepository.save(any(Project.class))).thenReturn(project);
         when(projectResponseMapper.entityToResponseModel(project)).thenReturn(responseModel);
@@ -246,6 +350,103 @@ class ProjectServiceImplTest {
         verify(projectServiceMock, times(1)).sendEmailNotificationAsync(project, "Updated");
     }
 
+    @Test
+    void patchProject_ShouldSetAndUnsetOnlyChangedFieldsAndNotifyClient() {
+        // Arrange
+        project.setVersion(3L);
+        project.setDescription("Old description");
+        project.setClientEmail("client@example.com");
+        Project patched = new Project();
+        patched.setProjectIdentifier("PROJ-1");
+        when(projectRepository.findByProjectIdentifier("PROJ-1")).thenReturn(Optional.of(project));
+        when(projectRepository.applyPatch(eq("PROJ-1"), eq(3L), any(ProjectPatch.class))).thenReturn(Optional.of(patched));
+        when(projectResponseMapper.entityToResponseModel(patched)).thenReturn(responseModel);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("version", 3);
+        fields.put("name", "Test Project");
+        fields.put("dueDate", LocalDate.now().plusDays(60).toString());
+        fields.put("description", null);
+
+        // Act
+        ProjectResponseModel result = projectService.patchProject("PROJ-1", fields);
+
+        // Assert - the unchanged name is left out of the update
+        assertSame(responseModel, result);
+        verify(projectRepository).applyPatch("PROJ-1", 3L, new ProjectPatch(
+                Map.of("dueDate", LocalDate.now().plusDays(60)), Set.of("description")));
+        verify(projectRepository, never()).save(any(Project.class));
+        verify(projectServiceMock).sendEmailNotificationAsync(patched, "Updated");
+    }
+
+    @Test
+    void patchProject_WhenOnlyInternalFieldsChange_ShouldNotNotifyClient() {
+        // Arrange
+        project.setVersion(0L);
+        Project patched = new Project();
+        when(projectRepository.findByProjectIdentifier("PROJ-1")).thenReturn(Optional.of(project));
+        when(projectRepository.applyPatch(eq("PROJ-1"), eq(0L), any(ProjectPatch.class))).thenReturn(Optional.of(patched));
+
+        // Act
+        projectService.patchProject("PROJ-1", Map.of("version", 0, "clientId", "CLIENT-999"));
+
+        // Assert
+        verify(projectServiceMock, never()).sendEmailNotificationAsync(any(Project.class), anyString());
+    }
+
+    @Test
+    void patchProject_WithNoActualChange_ShouldNotWrite() {
+        // Arrange
+        project.setVersion(1L);
+        when(projectRepository.findByProjectIdentifier("PROJ-1")).thenReturn(Optional.of(project));
+        when(projectResponseMapper.entityToResponseModel(project)).thenReturn(responseModel);
+
+        // Act
+        ProjectResponseModel result = projectService.patchProject("PROJ-1", Map.of("version", 1, "name", "Test Project"));
+
+        // Assert
+        assertSame(responseModel, result);
+        verify(projectRepository, never()).applyPatch(anyString(), anyLong(), any());
+        verifyNoInteractions(projectServiceMock);
+    }
+
+    @Test
+    void patchProject_WithStaleVersion_ShouldThrowConflict() {
+        // Arrange
+        project.setVersion(5L);
+        when(projectRepository.findByProjectIdentifier("PROJ-1")).thenReturn(Optional.of(project));
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> projectService.patchProject("PROJ-1", Map.of("version", 4, "name", "Renamed")));
+        verify(projectRepository, never()).applyPatch(anyString(), anyLong(), any());
+    }
+
+    @Test
+    void patchProject_WhenChangedBetweenReadAndWrite_ShouldThrowConflict() {
+        // Arrange
+        project.setVersion(2L);
+        when(projectRepository.findByProjectIdentifier("PROJ-1")).thenReturn(Optional.of(project));
+        when(projectRepository.applyPatch(eq("PROJ-1"), eq(2L), any(ProjectPatch.class))).thenReturn(Optional.empty());
+
+        // Act & Assert
+        assertThrows(OptimisticLockingFailureException.class,
+                () -> projectService.patchProject("PROJ-1", Map.of("version", 2, "name", "Renamed")));
+        verifyNoInteractions(projectServiceMock);
+    }
+
+    @Test
+    void patchProject_WithInvalidFields_ShouldThrowBeforeReading() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.patchProject("PROJ-1", Map.of("name", "No version")));
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.patchProject("PROJ-1", Map.of("version", 1, "photos", List.of())));
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.patchProject("PROJ-1", Map.of("version", 1, "startDate", "next week")));
+        verifyNoInteractions(projectRepository);
+    }
+
     @Test
     void sendEmailNotificationAsync_ShouldSendEmail_WhenClientEmailPresent() {
         ProjectNotificationEmail email = mock(ProjectNotificationEmail.class);
@@ -310,21 +511,15 @@ class ProjectServiceImplTest {
         String projectId = "PROJ-1";
         String employeeId = "EMP-123";
 
-        Project existing = new Project();
-        existing.setProjectIdentifier(projectId);
-        existing.setAssignedEmployeeIds(new ArrayList<>());
-
-        Project savedProject = new Project();
-        savedProject.setProjectIdentifier(projectId);
-        savedProject.setAssignedEmployeeIds(List.of(employeeId));
+        Project updatedProject = new Project();
+        updatedProject.setProjectIdentifier(projectId);
+        updatedProject.setAssignedEmployeeIds(List.of(employeeId));
 
         ProjectResponseModel mapped = new ProjectResponseModel();
 
-        when(projectRepository.findByProjectIdentifier(projectId))
-                .thenReturn(Optional.of(existing));
-        when(projectRepository.save(existing))
-                .thenReturn(savedProject);
-        when(projectResponseMapper.entityToResponseModel(savedProject))
+        when(projectRepository.addAssignedEmployee(projectId, employeeId))
+                .thenReturn(Optional.of(updatedProject));
+        when(projectResponseMapper.entityToResponseModel(updatedProject))
                 .thenReturn(mapped);
 
         // Act
@@ -333,12 +528,97 @@ class ProjectServiceImplTest {
 
         // Assert
         assertSame(mapped, result);
-        assertEquals(1, existing.getAssignedEmployeeIds().size());
-        assertEquals(employeeId, existing.getAssignedEmployeeIds().get(0));
+        verify(projectRepository).addAssignedEmployee(projectId, employeeId);
+        verify(projectRepository, never()).findByProjectIdentifier(anyString());
+        verify(projectRepository, never()).save(any(Project.class));
+        verify(projectResponseMapper).entityToResponseModel(updatedProject);
+    }
 
-        verify(projectRepository).findByProjectIdentifier(projectId);
-        verify(projectRepository).save(existing);
-        verify(projectResponseMapper).entityToResponseModel(savedProject);
+    @Test
+    void assignEmployee_ShouldIndexProjectAndReportScheduleConflicts() {
+        // Arrange
+        Project updatedProject = new Project();
+        updatedProject.setProjectIdentifier("PROJ-1");
+        updatedProject.setAssignedEmployeeIds(new ArrayList<>(List.of("EMP-1")));
+        ProjectResponseModel mapped = new ProjectResponseModel();
+        List<ScheduleConflictResponseModel> conflicts = List.of(new ScheduleConflictResponseModel(
+                "EMP-1", "PROJ-1", "PROJ-7", LocalDate.of(2025, 3, 3), LocalDate.of(2025, 3, 5)));
+
+        when(projectRepository.addAssignedEmployee("PROJ-1", "EMP-1")).thenReturn(Optional.of(updatedProject));
+        when(projectResponseMapper.entityToResponseModel(updatedProject)).thenReturn(mapped);
+        when(scheduleConflictIndex.conflictsFor(updatedProject)).thenReturn(conflicts);
+
+        // Act
+        ProjectResponseModel result = projectService.assignEmployee("PROJ-1", "EMP-1");
+
+        // Assert
+        assertSame(conflicts, result.getScheduleConflicts());
+        verify(scheduleConflictIndex).update(updatedProject);
+    }
+
+    @Test
+    void updateAssignments_ShouldApplyOneBulkWriteAndReportMissingProjects() {
+        // Arrange
+        Project first = new Project();
+        first.setProjectIdentifier("PROJ-1");
+        first.setAssignedEmployeeIds(new ArrayList<>(List.of("EMP-1", "EMP-2")));
+        List<ScheduleConflictResponseModel> conflicts = List.of(new ScheduleConflictResponseModel());
+
+        when(projectRepository.updateAssignments(anyList()))
+                .thenReturn(BulkWriteResult.acknowledged(0, 1, 0, 1, List.of(), List.of()));
+        when(projectRepository.findSchedules(anyCollection())).thenReturn(List.of(first));
+        when(scheduleConflictIndex.conflictsFor(first)).thenReturn(conflicts);
+
+        // Act
+        ProjectAssignmentBatchResponseModel result = projectService.updateAssignments(List.of(
+                new ProjectAssignmentRequestModel("PROJ-1", List.of("EMP-2", "EMP-2"), List.of("EMP-3")),
+                new ProjectAssignmentRequestModel("PROJ-9", List.of("EMP-1"), null)));
+
+        // Assert
+        assertEquals(1, result.getMatchedCount());
+        assertEquals(1, result.getModifiedCount());
+        assertEquals(List.of("PROJ-9"), result.getMissingProjectIdentifiers());
+        assertEquals(conflicts, result.getScheduleConflicts());
+        verify(projectRepository).updateAssignments(List.of(
+                new ProjectAssignmentChange("PROJ-1", Set.of("EMP-2"), Set.of("EMP-3")),
+                new ProjectAssignmentChange("PROJ-9", Set.of("EMP-1"), Set.of())));
+        verify(scheduleConflictIndex).update(first);
+    }
+
+    @Test
+    void updateAssignments_WithSameEmployeeAddedAndRemoved_ShouldThrowWithoutWriting() {
+        // Arrange
+        List<ProjectAssignmentRequestModel> assignments = List.of(
+                new ProjectAssignmentRequestModel("PROJ-1", List.of("EMP-1"), List.of("EMP-1")));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> projectService.updateAssignments(assignments));
+        verify(projectRepository, never()).updateAssignments(anyList());
+    }
+
+    @Test
+    void updateAssignments_WithProjectListedTwice_ShouldThrow() {
+        // Arrange
+        List<ProjectAssignmentRequestModel> assignments = List.of(
+                new ProjectAssignmentRequestModel("PROJ-1", List.of("EMP-1"), List.of()),
+                new ProjectAssignmentRequestModel("PROJ-1", List.of(), List.of("EMP-2")));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> projectService.updateAssignments(assignments));
+        verify(projectRepository, never()).updateAssignments(anyList());
+    }
+
+    @Test
+    void getScheduleConflicts_ShouldReturnIndexReport() {
+        // Arrange
+        List<ScheduleConflictResponseModel> conflicts = List.of(new ScheduleConflictResponseModel());
+        when(scheduleConflictIndex.allConflicts("EMP-1")).thenReturn(conflicts);
+
+        // Act
+        List<ScheduleConflictResponseModel> result = projectService.getScheduleConflicts("EMP-1");
+
+        // Assert
+        assertSame(conflicts, result);
     }
 
 
@@ -382,94 +662,52 @@ class ProjectServiceImplTest {
     }
 
     @Test
-    void assignEmployee_addsNewEmployeeAndSaves() {
+    void assignEmployee_returnsDocumentAsUpdated() {
         String projectId = "PROJ-1";
         String employeeId = "auth0|emp-1";
 
-        Project existing = new Project();
-        existing.setProjectIdentifier(projectId);
-        existing.setAssignedEmployeeIds(
-                new ArrayList<>(List.of("auth0|old-emp"))
-        );
-
-        Project saved = new Project();
-        saved.setProjectIdentifier(projectId);
-        saved.setAssignedEmployeeIds(
+        Project updated = new Project();
+        updated.setProjectIdentifier(projectId);
+        updated.setAssignedEmployeeIds(
                 new ArrayList<>(List.of("auth0|old-emp", employeeId))
         );
 
         ProjectResponseModel mapped = new ProjectResponseModel();
+        mapped.setAssignedEmployeeIds(updated.getAssignedEmployeeIds());
 
-        given(projectRepository.findByProjectIdentifier(projectId))
-                .willReturn(Optional.of(existing));
-        given(projectRepository.save(existing)).willReturn(saved);
-        given(projectResponseMapper.entityToResponseModel(saved))
+        given(projectRepository.addAssignedEmployee(projectId, employeeId))
+                .willReturn(Optional.of(updated));
+        given(projectResponseMapper.entityToResponseModel(updated))
                 .willReturn(mapped);
 
         ProjectResponseModel result =
                 projectService.assignEmployee(projectId, employeeId);
 
         assertThat(result).isSameAs(mapped);
-        verify(projectRepository).save(existing);
-        assertThat(existing.getAssignedEmployeeIds())
-                .containsExactlyInAnyOrder("auth0|old-emp", employeeId);
-    }
-
-    @Test
-    void assignEmployee_doesNotDuplicateExistingEmployee() {
-        String projectId = "PROJ-1";
-        String employeeId = "auth0|emp-1";
-
-        Project existing = new Project();
-        existing.setProjectIdentifier(projectId);
-        existing.setAssignedEmployeeIds(new ArrayList<>(List.of(employeeId)));
-
-        ProjectResponseModel mapped = new ProjectResponseModel();
-
-        given(projectRepository.findByProjectIdentifier(projectId))
-                .willReturn(Optional.of(existing));
-        // no need to stub save, it should NOT be called in this scenario
-        given(projectResponseMapper.entityToResponseModel(existing))
-                .willReturn(mapped);
-
-        // when
-        ProjectResponseModel result = projectService.assignEmployee(projectId, employeeId);
-
-        // then
-        assertThat(result).isSameAs(mapped);
-        assertThat(existing.getAssignedEmployeeIds())
-                .containsExactly(employeeId);  // still only one instance
-        verify(projectRepository, never()).save(any(Project.class));
+        assertThat(result.getAssignedEmployeeIds())
+                .containsExactly("auth0|old-emp", employeeId);
     }
 
     @Test
     void assignEmployee_blankEmployeeIdThrows() {
         String projectId = "PROJ-1";
-        Project existing = new Project();
-        existing.setProjectIdentifier(projectId);
-        existing.setAssignedEmployeeIds(new ArrayList<>());
-
-        given(projectRepository.findByProjectIdentifier(projectId))
-                .willReturn(Optional.of(existing));
 
         assertThrows(IllegalArgumentException.class,
                 () -> projectService.assignEmployee(projectId, "   "));
-        verify(projectRepository, never()).save(any());
+        verify(projectRepository, never()).addAssignedEmployee(anyString(), anyString());
     }
 
     @Test
     void assignEmployee_projectNotFoundThrows() {
         String projectId = "PROJ-404";
-        given(projectRepository.findByProjectIdentifier(projectId))
+        given(projectRepository.addAssignedEmployee(projectId, "auth0|emp-1"))
                 .willReturn(Optional.empty());
 
         assertThrows(RuntimeException.class,
                 () -> projectService.assignEmployee(projectId, "auth0|emp-1"));
-        verify(projectRepository, never()).save(any());
+        verify(scheduleConflictIndex, never()).update(any());
     }
 
-    // ---------- getProjectsForCalendar / mapToCalendarEntry tests ----------
-
     @Test
     void getProjectsForCalendar_mapsProjectsToCalendarEntries_withLocation() {
         Project p1 = new Project();
@@ -493,10 +731,11 @@ class ProjectServiceImplTest {
         // address left null on purpose
         p2.setAddress(null);
 
-        given(projectRepository.findAll()).willReturn(List.of(p1, p2));
+        given(projectRepository.findForCalendar(LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28)))
+                .willReturn(List.of(p1, p2));
 
         List<ProjectCalendarEntryResponseModel> result =
-                projectService.getProjectsForCalendar();
+                projectService.getProjectsForCalendar(LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28));
 
         assertEquals(2, result.size());
 
@@ -511,6 +750,14 @@ class ProjectServiceImplTest {
         assertEquals("PROJ-2", e2.getProjectIdentifier());
         assertEquals("Bathroom Remodel", e2.getName());
         assertNull(e2.getLocationSummary());
+        verify(projectRepository, never()).findAll();
+    }
+
+    @Test
+    void getProjectsForCalendar_withInvertedWindow_shouldThrowIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class,
+                () -> projectService.getProjectsForCalendar(LocalDate.of(2026, 3, 1), LocalDate.of(2026, 2, 1)));
+        verify(projectRepository, never()).findForCalendar(any(), any());
     }
 
     @Test
@@ -0,0 +1,133 @@
+package org.example.vladtech.projectsubdomain.businesslayer;
+
+import org.example.vladtech.projectsubdomain.dataaccesslayer.Project;
+import org.example.vladtech.projectsubdomain.dataaccesslayer.ProjectRepository;
+import org.example.vladtech.projectsubdomain.presentationlayer.ScheduleConflictResponseModel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ScheduleConflictIndexTest {
+
+    @Mock
+    private ProjectRepository projectRepository;
+
+    private ScheduleConflictIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ScheduleConflictIndex(projectRepository);
+    }
+
+    @Test
+    void conflictsFor_ShouldReturnOverlappingProjectsOfEachAssignee() {
+        // Arrange
+        when(projectRepository.findSchedules()).thenReturn(List.of(
+                project("PROJ-1", "2026-03-01", "2026-03-10", "EMP-1"),
+                project("PROJ-2", "2026-03-08", "2026-03-20", "EMP-2"),
+                project("PROJ-3", "2026-04-01", "2026-04-05", "EMP-1")));
+        index.rebuild();
+        Project assigned = project("PROJ-4", "2026-03-05", "2026-03-09", "EMP-1", "EMP-2");
+        index.update(assigned);
+
+        // Act
+        List<ScheduleConflictResponseModel> conflicts = index.conflictsFor(assigned);
+
+        // Assert
+        assertEquals(List.of(
+                new ScheduleConflictResponseModel("EMP-1", "PROJ-4", "PROJ-1",
+                        LocalDate.parse("2026-03-05"), LocalDate.parse("2026-03-09")),
+                new ScheduleConflictResponseModel("EMP-2", "PROJ-4", "PROJ-2",
+                        LocalDate.parse("2026-03-08"), LocalDate.parse("2026-03-09"))), conflicts);
+    }
+
+    @Test
+    void update_WhenDatesMove_ShouldDropOldConflicts() {
+        // Arrange
+        when(projectRepository.findSchedules()).thenReturn(List.of(
+                project("PROJ-1", "2026-03-01", "2026-03-10", "EMP-1"),
+                project("PROJ-2", "2026-03-05", "2026-03-12", "EMP-1")));
+        index.rebuild();
+
+        // Act
+        index.update(project("PROJ-2", "2026-03-11", "2026-03-12", "EMP-1"));
+
+        // Assert
+        assertTrue(index.allConflicts(null).isEmpty());
+    }
+
+    @Test
+    void allConflicts_ShouldReportEachOverlappingPairOnce() {
+        // Arrange - due dates are inclusive, so PROJ-1 and PROJ-3 share the 10th
+        when(projectRepository.findSchedules()).thenReturn(List.of(
+                project("PROJ-1", "2026-03-01", "2026-03-10", "EMP-1"),
+                project("PROJ-2", "2026-03-02", "2026-03-03", "EMP-1", "EMP-2"),
+                project("PROJ-3", "2026-03-10", "2026-03-15", "EMP-1"),
+                project("PROJ-4", "2026-03-11", "2026-03-15", "EMP-2")));
+        index.rebuild();
+
+        // Act
+        List<ScheduleConflictResponseModel> all = index.allConflicts(null);
+        List<ScheduleConflictResponseModel> second = index.allConflicts("EMP-2");
+
+        // Assert
+        assertEquals(List.of(
+                new ScheduleConflictResponseModel("EMP-1", "PROJ-1", "PROJ-2",
+                        LocalDate.parse("2026-03-02"), LocalDate.parse("2026-03-03")),
+                new ScheduleConflictResponseModel("EMP-1", "PROJ-1", "PROJ-3",
+                        LocalDate.parse("2026-03-10"), LocalDate.parse("2026-03-10"))), all);
+        assertTrue(second.isEmpty());
+    }
+
+    @Test
+    void rebuild_ShouldSkipProjectsWithoutDatesOrAssignees() {
+        // Arrange
+        Project undated = project("PROJ-2", "2026-03-01", "2026-03-10", "EMP-1");
+        undated.setDueDate(null);
+        when(projectRepository.findSchedules()).thenReturn(List.of(
+                project("PROJ-1", "2026-03-01", "2026-03-10", "EMP-1"),
+                undated,
+                project("PROJ-3", "2026-03-10", "2026-03-01", "EMP-1"),
+                project("PROJ-4", "2026-03-01", "2026-03-10")));
+
+        // Act
+        index.rebuild();
+
+        // Assert
+        assertTrue(index.allConflicts(null).isEmpty());
+        assertTrue(index.conflictsFor(undated).isEmpty());
+    }
+
+    @Test
+    void rebuild_WhenQueryFails_ShouldKeepCurrentIndex() {
+        // Arrange
+        index.update(project("PROJ-1", "2026-03-01", "2026-03-10", "EMP-1"));
+        index.update(project("PROJ-2", "2026-03-05", "2026-03-06", "EMP-1"));
+        when(projectRepository.findSchedules()).thenThrow(new RuntimeException("connection refused"));
+
+        // Act
+        index.rebuild();
+
+        // Assert
+        assertEquals(1, index.allConflicts("EMP-1").size());
+    }
+
+    private static Project project(String identifier, String start, String due, String... employeeIds) {
+        Project project = new Project();
+        project.setProjectIdentifier(identifier);
+        project.setStartDate(LocalDate.parse(start));
+        project.setDueDate(LocalDate.parse(due));
+        project.setAssignedEmployeeIds(new ArrayList<>(List.of(employeeIds)));
+        return project;
+    }
+}
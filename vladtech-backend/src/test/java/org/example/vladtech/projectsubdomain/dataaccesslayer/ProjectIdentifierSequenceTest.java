@@ -0,0 +1,82 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import com.mongodb.client.AggregateIterable;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProjectIdentifierSequenceTest {
+
+    @Mock
+    private MongoTemplate mongoTemplate;
+
+    @Mock
+    private MongoCollection<Document> projects;
+
+    @Mock
+    private AggregateIterable<Document> aggregate;
+
+    private ProjectIdentifierSequence sequence;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.getCollection("projects")).thenReturn(projects);
+        when(projects.aggregate(anyList())).thenReturn(aggregate);
+        when(aggregate.first()).thenReturn(new Document("highest", 12L));
+        sequence = new ProjectIdentifierSequence(mongoTemplate, 3);
+    }
+
+    @Test
+    void nextIdentifier_ShouldServeReservedBlockFromMemory() {
+        // Arrange - the counter stood at 12, so this node's block is 13..15
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("counters")))
+                .thenReturn(new Document("seq", 15L), new Document("seq", 18L));
+
+        // Act
+        List<String> identifiers = List.of(sequence.nextIdentifier(), sequence.nextIdentifier(),
+                sequence.nextIdentifier(), sequence.nextIdentifier());
+
+        // Assert
+        assertEquals(List.of("PROJ-13", "PROJ-14", "PROJ-15", "PROJ-16"), identifiers);
+        verify(mongoTemplate, times(2)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Document.class), eq("counters"));
+        // Raised to the highest stored identifier once, before the first reservation
+        ArgumentCaptor<Update> seed = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(1)).upsert(any(Query.class), seed.capture(), eq("counters"));
+        assertEquals(new Document("seq", 12L), seed.getValue().getUpdateObject().get("$max"));
+    }
+
+    @Test
+    void resync_ShouldDropBlockAndRaiseCounterAgain() {
+        // Arrange
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Document.class), eq("counters")))
+                .thenReturn(new Document("seq", 15L), new Document("seq", 33L));
+        sequence.nextIdentifier();
+
+        // Act
+        sequence.resync();
+        String identifier = sequence.nextIdentifier();
+
+        // Assert
+        assertEquals("PROJ-31", identifier);
+        verify(mongoTemplate, times(2)).upsert(any(Query.class), any(Update.class), eq("counters"));
+    }
+}
@@ -0,0 +1,363 @@
+package org.example.vladtech.projectsubdomain.dataaccesslayer;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataMongoTest
+class ProjectRepositoryTest {
+
+    @Autowired
+    private ProjectRepository projectRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        projectRepository.deleteAll();
+    }
+
+    @Test
+    void findPage_ShouldReturnNewestFirstWithOneExtraAndContinueAfterCursor() {
+        // Arrange
+        for (int i = 1; i <= 5; i++) {
+            projectRepository.save(project("PROJ-" + i, ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                    List.of(), null, null));
+        }
+
+        // Act
+        List<Project> first = projectRepository.findPage(pageQuery(null, 2));
+        List<Project> second = projectRepository.findPage(pageQuery(first.get(1).getId(), 2));
+
+        // Assert
+        assertThat(first).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-5", "PROJ-4", "PROJ-3");
+        assertThat(second).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-3", "PROJ-2", "PROJ-1");
+    }
+
+    @Test
+    void findPage_WithProjectAfterCursorDeleted_ShouldNeitherSkipNorRepeat() {
+        // Arrange
+        for (int i = 1; i <= 4; i++) {
+            projectRepository.save(project("PROJ-" + i, ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                    List.of(), null, null));
+        }
+        List<Project> first = projectRepository.findPage(pageQuery(null, 2));
+
+        // Act - a project already listed goes away between the two pages
+        projectRepository.deleteById(first.get(0).getId());
+        List<Project> second = projectRepository.findPage(pageQuery(first.get(1).getId(), 2));
+
+        // Assert
+        assertThat(second).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-2", "PROJ-1");
+    }
+
+    @Test
+    void findPage_WithFilters_ShouldReturnOnlyMatchingProjects() {
+        // Arrange
+        projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+        projectRepository.save(project("PROJ-2", ProjectType.ProjectTypeEnum.APPOINTMENT, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 10), LocalDate.of(2025, 1, 10)));
+        projectRepository.save(project("PROJ-3", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-2",
+                List.of("EMP-2"), LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)));
+        projectRepository.save(project("PROJ-4", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-2"), LocalDate.of(2025, 1, 20), LocalDate.of(2025, 2, 20)));
+
+        // Act
+        List<Project> scheduled = projectRepository.findPage(new ProjectPageQuery(null, 10,
+                ProjectType.ProjectTypeEnum.SCHEDULED, null, null, null, null, Set.of()));
+        List<Project> forClientAndEmployee = projectRepository.findPage(new ProjectPageQuery(null, 10,
+                null, "CLIENT-1", "EMP-2", null, null, Set.of()));
+        List<Project> overlappingFebruary = projectRepository.findPage(new ProjectPageQuery(null, 10,
+                null, null, null, LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28), Set.of()));
+
+        // Assert
+        assertThat(scheduled).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-4", "PROJ-3", "PROJ-1");
+        assertThat(forClientAndEmployee).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-4");
+        assertThat(overlappingFebruary).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-4");
+    }
+
+    @Test
+    void findPage_WithFields_ShouldLoadOnlyThoseAndTheIdentifier() {
+        // Arrange
+        projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+
+        // Act
+        List<Project> page = projectRepository.findPage(new ProjectPageQuery(null, 10,
+                null, null, null, null, null, Set.of("name")));
+
+        // Assert
+        assertThat(page).hasSize(1);
+        assertThat(page.get(0).getProjectIdentifier()).isEqualTo("PROJ-1");
+        assertThat(page.get(0).getName()).isEqualTo("Project PROJ-1");
+        assertThat(page.get(0).getClientId()).isNull();
+        assertThat(page.get(0).getStartDate()).isNull();
+    }
+
+    @Test
+    void findForCalendar_ShouldReturnOverlappingProjectsByStartDateWithCalendarFieldsOnly() {
+        // Arrange
+        projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 2, 10), LocalDate.of(2025, 3, 10)));
+        projectRepository.save(project("PROJ-2", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 15), LocalDate.of(2025, 2, 5)));
+        projectRepository.save(project("PROJ-3", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 20)));
+        projectRepository.save(project("PROJ-4", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 5)));
+
+        // Act
+        List<Project> february = projectRepository.findForCalendar(LocalDate.of(2025, 2, 1), LocalDate.of(2025, 2, 28));
+
+        // Assert
+        assertThat(february).extracting(Project::getProjectIdentifier)
+                .containsExactly("PROJ-2", "PROJ-1");
+        Project entry = february.get(0);
+        assertThat(entry.getName()).isEqualTo("Project PROJ-2");
+        assertThat(entry.getAddress().getCity()).isEqualTo("Montreal");
+        assertThat(entry.getAddress().getProvince()).isEqualTo("QC");
+        assertThat(entry.getAddress().getStreetAddress()).isNull();
+        assertThat(entry.getId()).isNull();
+        assertThat(entry.getClientId()).isNull();
+        assertThat(entry.getAssignedEmployeeIds()).isEmpty();
+    }
+
+    @Test
+    void findForCalendar_WithOpenEnds_ShouldApplyOnlyTheGivenBound() {
+        // Arrange
+        projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of(), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+        projectRepository.save(project("PROJ-2", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of(), LocalDate.of(2025, 6, 1), LocalDate.of(2025, 6, 30)));
+
+        // Act
+        List<Project> fromMarch = projectRepository.findForCalendar(LocalDate.of(2025, 3, 1), null);
+        List<Project> untilMarch = projectRepository.findForCalendar(null, LocalDate.of(2025, 3, 1));
+        List<Project> all = projectRepository.findForCalendar(null, null);
+
+        // Assert
+        assertThat(fromMarch).extracting(Project::getProjectIdentifier).containsExactly("PROJ-2");
+        assertThat(untilMarch).extracting(Project::getProjectIdentifier).containsExactly("PROJ-1");
+        assertThat(all).extracting(Project::getProjectIdentifier).containsExactly("PROJ-1", "PROJ-2");
+    }
+
+    @Test
+    void addAssignedEmployee_ShouldAddOnceAndBumpVersion() {
+        // Arrange
+        Project saved = projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), null, null));
+
+        // Act
+        Optional<Project> added = projectRepository.addAssignedEmployee("PROJ-1", "EMP-2");
+        Optional<Project> again = projectRepository.addAssignedEmployee("PROJ-1", "EMP-2");
+
+        // Assert
+        assertThat(added).isPresent();
+        assertThat(added.get().getAssignedEmployeeIds()).containsExactly("EMP-1", "EMP-2");
+        assertThat(again).isPresent();
+        assertThat(again.get().getAssignedEmployeeIds()).containsExactly("EMP-1", "EMP-2");
+        assertThat(again.get().getVersion()).isEqualTo(saved.getVersion() + 2);
+    }
+
+    @Test
+    void addAssignedEmployee_WhenProjectStoredWithoutAssignees_ShouldCreateList() {
+        // Arrange
+        mongoTemplate.getCollection("projects").insertOne(
+                new Document("projectIdentifier", "PROJ-1").append("version", 0L));
+
+        // Act
+        Optional<Project> added = projectRepository.addAssignedEmployee("PROJ-1", "EMP-1");
+
+        // Assert
+        assertThat(added).isPresent();
+        assertThat(added.get().getAssignedEmployeeIds()).containsExactly("EMP-1");
+    }
+
+    @Test
+    void addAssignedEmployee_WhenProjectDoesNotExist_ShouldReturnEmpty() {
+        // Act
+        Optional<Project> added = projectRepository.addAssignedEmployee("PROJ-404", "EMP-1");
+
+        // Assert
+        assertThat(added).isEmpty();
+    }
+
+    @Test
+    void addAssignedEmployee_ShouldMakeSaveFromOlderReadFail() {
+        // Arrange
+        Project stale = projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of(), null, null));
+        projectRepository.addAssignedEmployee("PROJ-1", "EMP-1");
+
+        // Act & Assert
+        stale.setName("Renamed");
+        assertThatThrownBy(() -> projectRepository.save(stale))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(projectRepository.findById(stale.getId()).get().getAssignedEmployeeIds())
+                .containsExactly("EMP-1");
+    }
+
+    @Test
+    void updateAssignments_ShouldCountEachProjectOnceAndKeepAssigneeOrder() {
+        // Arrange
+        Project first = projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1", "EMP-2", "EMP-3"), null, null));
+        projectRepository.save(project("PROJ-2", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), null, null));
+
+        // Act
+        BulkWriteResult result = projectRepository.updateAssignments(List.of(
+                new ProjectAssignmentChange("PROJ-1", Set.of("EMP-3", "EMP-4"), Set.of("EMP-2")),
+                new ProjectAssignmentChange("PROJ-2", Set.of(), Set.of("EMP-1", "EMP-9")),
+                new ProjectAssignmentChange("PROJ-404", Set.of("EMP-1"), Set.of())));
+
+        // Assert
+        assertThat(result.getMatchedCount()).isEqualTo(2);
+        assertThat(result.getModifiedCount()).isEqualTo(2);
+        Project updated = projectRepository.findById(first.getId()).get();
+        assertThat(updated.getAssignedEmployeeIds()).containsExactly("EMP-1", "EMP-3", "EMP-4");
+        assertThat(updated.getVersion()).isEqualTo(first.getVersion() + 1);
+        assertThat(projectRepository.findSchedules(List.of("PROJ-2")))
+                .singleElement()
+                .satisfies(project -> assertThat(project.getAssignedEmployeeIds()).isEmpty());
+    }
+
+    @Test
+    void updateAssignments_WhenProjectStoredWithoutAssignees_ShouldCreateList() {
+        // Arrange
+        mongoTemplate.getCollection("projects").insertOne(new Document("projectIdentifier", "PROJ-1"));
+
+        // Act
+        BulkWriteResult result = projectRepository.updateAssignments(List.of(
+                new ProjectAssignmentChange("PROJ-1", Set.of("EMP-1"), Set.of("EMP-2"))));
+
+        // Assert
+        assertThat(result.getModifiedCount()).isEqualTo(1);
+        Document stored = mongoTemplate.getCollection("projects").find().first();
+        assertThat(stored.getList("assignedEmployeeIds", String.class)).containsExactly("EMP-1");
+        assertThat(stored.get("version")).isEqualTo(1L);
+    }
+
+    @Test
+    void updateAssignments_WithIdsLookingLikeFieldPaths_ShouldStoreThemAsGiven() {
+        // Arrange
+        mongoTemplate.getCollection("projects").insertOne(new Document("projectIdentifier", "PROJ-1")
+                .append("assignedEmployeeIds", List.of("$projectIdentifier", "EMP-1")));
+
+        // Act
+        BulkWriteResult result = projectRepository.updateAssignments(List.of(
+                new ProjectAssignmentChange("PROJ-1", Set.of("$version"), Set.of("$projectIdentifier"))));
+
+        // Assert
+        assertThat(result.getModifiedCount()).isEqualTo(1);
+        Document stored = mongoTemplate.getCollection("projects").find().first();
+        assertThat(stored.getList("assignedEmployeeIds", String.class)).containsExactly("EMP-1", "$version");
+        assertThat(stored.getString("projectIdentifier")).isEqualTo("PROJ-1");
+    }
+
+    @Test
+    void applyPatch_AtCurrentVersion_ShouldSetAndUnsetFieldsAndBumpVersion() {
+        // Arrange
+        Project saved = projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of("EMP-1"), LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 31)));
+
+        // Act
+        Optional<Project> patched = projectRepository.applyPatch("PROJ-1", saved.getVersion(), new ProjectPatch(
+                Map.of("name", "Renamed", "address.city", "Laval"), Set.of("dueDate")));
+
+        // Assert
+        assertThat(patched).isPresent();
+        assertThat(patched.get().getName()).isEqualTo("Renamed");
+        assertThat(patched.get().getAddress().getCity()).isEqualTo("Laval");
+        assertThat(patched.get().getAddress().getProvince()).isEqualTo("QC");
+        assertThat(patched.get().getDueDate()).isNull();
+        assertThat(patched.get().getStartDate()).isEqualTo(LocalDate.of(2025, 1, 1));
+        assertThat(patched.get().getAssignedEmployeeIds()).containsExactly("EMP-1");
+        assertThat(patched.get().getVersion()).isEqualTo(saved.getVersion() + 1);
+    }
+
+    @Test
+    void applyPatch_AtOlderVersion_ShouldReturnEmptyAndLeaveProjectUnchanged() {
+        // Arrange
+        Project saved = projectRepository.save(project("PROJ-1", ProjectType.ProjectTypeEnum.SCHEDULED, "CLIENT-1",
+                List.of(), null, null));
+        projectRepository.addAssignedEmployee("PROJ-1", "EMP-1");
+
+        // Act
+        Optional<Project> patched = projectRepository.applyPatch("PROJ-1", saved.getVersion(),
+                new ProjectPatch(Map.of("name", "Renamed"), Set.of()));
+
+        // Assert
+        assertThat(patched).isEmpty();
+        assertThat(projectRepository.findById(saved.getId()).get().getName()).isEqualTo("Project PROJ-1");
+    }
+
+    @Test
+    void applyPatch_WhenProjectDoesNotExist_ShouldReturnEmpty() {
+        // Act
+        Optional<Project> patched = projectRepository.applyPatch("PROJ-404", 0L,
+                new ProjectPatch(Map.of("name", "Renamed"), Set.of()));
+
+        // Assert
+        assertThat(patched).isEmpty();
+    }
+
+    @Test
+    void backfillVersions_ShouldSetZeroOnlyWhereVersionIsMissing() {
+        // Arrange
+        MongoCollection<Document> projects = mongoTemplate.getCollection("projects");
+        projects.insertOne(new Document("projectIdentifier", "PROJ-1"));
+        projects.insertOne(new Document("projectIdentifier", "PROJ-2").append("version", 4L));
+
+        // Act
+        new ProjectRepositoryImpl(mongoTemplate).backfillVersions();
+
+        // Assert
+        assertThat(projects.find(new Document("projectIdentifier", "PROJ-1")).first().get("version")).isEqualTo(0L);
+        assertThat(projects.find(new Document("projectIdentifier", "PROJ-2")).first().get("version")).isEqualTo(4L);
+        assertThat(projectRepository.applyPatch("PROJ-1", 0L,
+                new ProjectPatch(Map.of("name", "Renamed"), Set.of()))).isPresent();
+    }
+
+    private static ProjectPageQuery pageQuery(String after, int limit) {
+        return new ProjectPageQuery(after, limit, null, null, null, null, null, Set.of());
+    }
+
+    private static Project project(String identifier, ProjectType.ProjectTypeEnum type, String clientId,
+                                   List<String> employeeIds, LocalDate startDate, LocalDate dueDate) {
+        Project project = new Project();
+        project.setProjectIdentifier(identifier);
+        project.setName("Project " + identifier);
+        project.setProjectType(new ProjectType(type));
+        project.setClientId(clientId);
+        project.setAssignedEmployeeIds(new ArrayList<>(employeeIds));
+        project.setStartDate(startDate);
+        project.setDueDate(dueDate);
+        project.setAddress(new Address("1 Main St", "Montreal", "QC", "Canada", "H1A 1A1"));
+        return project;
+    }
+}
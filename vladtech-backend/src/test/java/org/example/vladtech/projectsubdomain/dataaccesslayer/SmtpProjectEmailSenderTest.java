@@ -3,6 +3,7 @@ package org.example.vladtech.projectsubdomain.dataaccesslayer;
 import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
 import org.example.vladtech.projectsubdomain.domain.ProjectNotificationEmail;
+import org.example.vladtech.utils.MailDelivery;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -24,13 +25,16 @@ class SmtpProjectEmailSenderTest {
     @Mock
     private JavaMailSender mailSender;
 
+    @Mock
+    private MailDelivery mailDelivery;
+
     private SmtpProjectEmailSender emailSender;
 
     private ProjectNotificationEmail notificationEmail;
 
     @BeforeEach
     void setUp() {
-        emailSender = new SmtpProjectEmailSender(mailSender, "noreply@vladtech.com");
+        emailSender = new SmtpProjectEmailSender(mailSender, mailDelivery, "noreply@vladtech.com");
 
         notificationEmail = new ProjectNotificationEmail(
                 "client@example.com",
@@ -56,18 +60,18 @@ class SmtpProjectEmailSenderTest {
         emailSender.send(notificationEmail);
 
         verify(mailSender, times(1)).createMimeMessage();
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
     void send_ShouldThrowException_WhenMailServerFails() {
         MimeMessage mimeMessage = new MimeMessage((Session) null);
         when(mailSender.createMimeMessage()).thenReturn(mimeMessage);
-        doThrow(new MailSendException("Mail server error")).when(mailSender).send(any(MimeMessage.class));
+        doThrow(new MailSendException("Mail server error")).when(mailDelivery).send(any(MimeMessage.class));
 
         assertThrows(MailSendException.class, () -> emailSender.send(notificationEmail));
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -77,7 +81,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(notificationEmail);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -102,7 +106,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithoutDescription);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -127,7 +131,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithBlankDescription);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -152,7 +156,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithoutType);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -177,7 +181,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithoutStartDate);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -202,7 +206,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithoutDueDate);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -227,7 +231,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithoutAddress);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -252,7 +256,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithBlankAddress);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -277,7 +281,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(updateEmail);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -302,7 +306,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(emailWithHtmlChars);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -312,7 +316,7 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(notificationEmail);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -323,7 +327,7 @@ class SmtpProjectEmailSenderTest {
         emailSender.send(notificationEmail);
 
         verify(mailSender, times(1)).createMimeMessage();
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 
     @Test
@@ -348,6 +352,6 @@ class SmtpProjectEmailSenderTest {
 
         emailSender.send(minimalEmail);
 
-        verify(mailSender, times(1)).send(any(MimeMessage.class));
+        verify(mailDelivery, times(1)).send(any(MimeMessage.class));
     }
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -15,8 +16,11 @@ import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -89,6 +93,101 @@ class ProjectControllerTest {
         verify(projectService, times(1)).getAllProjects();
     }
 
+    @Test
+    void getProjectsPage_ShouldPassFiltersAndReturnPage() throws Exception {
+        // Arrange
+        when(projectService.getProjectsPage(eq("65f000000000000000000002"), eq(10), eq("SCHEDULED"), eq(null),
+                eq("EMP-1"), eq(LocalDate.of(2025, 1, 1)), eq(null), eq(List.of("name", "startDate"))))
+                .thenReturn(new ProjectPageResponseModel(List.of(responseModel), "65f000000000000000000001"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/projects/page")
+                        .param("after", "65f000000000000000000002")
+                        .param("limit", "10")
+                        .param("projectType", "SCHEDULED")
+                        .param("employeeId", "EMP-1")
+                        .param("from", "2025-01-01")
+                        .param("fields", "name,startDate"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].projectIdentifier").value("PROJ-1"))
+                .andExpect(jsonPath("$.nextCursor").value("65f000000000000000000001"));
+    }
+
+    @Test
+    void getProjectsPage_WithInvalidArguments_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(projectService.getProjectsPage(any(), anyInt(), any(), any(), any(), any(), any(), any()))
+                .thenThrow(new IllegalArgumentException("Unknown field: password"));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/projects/page").param("fields", "password"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Unknown field: password"));
+    }
+
+    @Test
+    void getProjectsForCalendar_ShouldQueryWindow() throws Exception {
+        // Arrange
+        when(projectService.getProjectsForCalendar(LocalDate.of(2026, 2, 1), LocalDate.of(2026, 2, 28)))
+                .thenReturn(List.of(new ProjectCalendarEntryResponseModel("PROJ-1", "Kitchen Renovation",
+                        "Montreal, Quebec", LocalDate.of(2026, 1, 15), LocalDate.of(2026, 3, 30))));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/projects/calendar")
+                        .param("from", "2026-02-01")
+                        .param("to", "2026-02-28"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].projectIdentifier").value("PROJ-1"))
+                .andExpect(jsonPath("$[0].locationSummary").value("Montreal, Quebec"));
+    }
+
+    @Test
+    void updateAssignments_ShouldReturnOkWithSummary() throws Exception {
+        // Arrange
+        List<ProjectAssignmentRequestModel> assignments = List.of(
+                new ProjectAssignmentRequestModel("PROJ-1", List.of("EMP-1"), List.of("EMP-2")));
+        when(projectService.updateAssignments(assignments))
+                .thenReturn(new ProjectAssignmentBatchResponseModel(2, 1, List.of(), List.of()));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/projects/assignments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(assignments)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.matchedCount").value(2))
+                .andExpect(jsonPath("$.modifiedCount").value(1));
+    }
+
+    @Test
+    void updateAssignments_WhenInvalid_ShouldReturnBadRequest() throws Exception {
+        // Arrange
+        when(projectService.updateAssignments(any()))
+                .thenThrow(new IllegalArgumentException("No assignments given"));
+
+        // Act & Assert
+        mockMvc.perform(post("/api/projects/assignments")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("No assignments given"));
+    }
+
+    @Test
+    void getScheduleConflicts_ShouldReturnOverlapsForEmployee() throws Exception {
+        // Arrange
+        when(projectService.getScheduleConflicts("EMP-1"))
+                .thenReturn(List.of(new ScheduleConflictResponseModel("EMP-1", "PROJ-1", "PROJ-7",
+                        LocalDate.of(2026, 3, 3), LocalDate.of(2026, 3, 5))));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/projects/conflicts").param("employeeId", "EMP-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].conflictingProjectIdentifier").value("PROJ-7"))
+                .andExpect(jsonPath("$[0].overlapStart").value("2026-03-03"));
+
+        verify(projectService, never()).getProjectByIdentifier(anyString());
+    }
+
     @Test
     void getProjectByIdentifier_ShouldReturnOkWithProject() throws Exception {
         // Arrange
@@ -139,6 +238,33 @@ class ProjectControllerTest {
         verify(projectService, times(1)).updateProject(eq("PROJ-1"), any(ProjectRequestModel.class));
     }
 
+    @Test
+    void patchProject_ShouldReturnOkWithPatchedProject() throws Exception {
+        // Arrange
+        when(projectService.patchProject("PROJ-1", Map.of("version", 2, "name", "Renamed"))).thenReturn(responseModel);
+
+        // Act & Assert
+        mockMvc.perform(patch("/api/projects/PROJ-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\": 2, \"name\": \"Renamed\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.projectIdentifier").value("PROJ-1"));
+    }
+
+    @Test
+    void patchProject_WhenVersionIsStale_ShouldReturnConflict() throws Exception {
+        // Arrange
+        when(projectService.patchProject(eq("PROJ-1"), any()))
+                .thenThrow(new OptimisticLockingFailureException("Project PROJ-1 is at version 3, not 2"));
+
+        // Act & Assert
+        mockMvc.perform(patch("/api/projects/PROJ-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"version\": 2, \"name\": \"Renamed\"}"))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.error").value("Project PROJ-1 is at version 3, not 2"));
+    }
+
     @Test
     void deleteProject_ShouldReturnNoContent() throws Exception {
         // Arrange
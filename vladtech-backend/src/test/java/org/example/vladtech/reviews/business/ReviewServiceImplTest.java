@@ -1,5 +1,6 @@
 package org.example.vladtech.reviews.business;
 
+import org.example.vladtech.filestorageservice.FileIoExecutor;
 import org.example.vladtech.filestorageservice.FileStorageService;
 import org.example.vladtech.reviews.data.Rating;
 import org.example.vladtech.reviews.data.Review;
@@ -8,19 +9,29 @@ import org.example.vladtech.reviews.mapperlayer.ReviewRequestMapper;
 import org.example.vladtech.reviews.mapperlayer.ReviewResponseMapper;
 import org.example.vladtech.reviews.presentation.ReviewRequestModel;
 import org.example.vladtech.reviews.presentation.ReviewResponseModel;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Arrays;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -40,6 +51,19 @@ class ReviewServiceImplTest {
 
     @Mock
     private FileStorageService fileStorageService;
+
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private Validator validator;
+
+    @Spy
+    private FileIoExecutor fileIoExecutor = new FileIoExecutor(4, 8);
+
+    private static final String BOUNDARY = "review-boundary";
+    private static final String REVIEW_JSON =
+            "{\"appointmentId\":\"appt1\",\"clientName\":\"Jamie\",\"comment\":\"Great\",\"rating\":\"FIVE\"}";
     @Test
     void getAllVisibleReviews_returnsMappedList() {
         Review r1 = new Review("client1","abc234", "Jamie","appt1",  true, Rating.FIVE);
@@ -242,4 +266,167 @@ class ReviewServiceImplTest {
         verify(responseMapper).entityListToResponseModelList(reviews);
         verifyNoMoreInteractions(reviewRepository, responseMapper);
     }
+
+    @Test
+    void createReview_savesAllPhotosConcurrentlyAndKeepsTheirOrder() throws Exception {
+        // Arrange
+        ReviewRequestModel request = new ReviewRequestModel("client1", "appt1", "Jamie", "Great", true, Rating.FIVE);
+        MultipartFile first = mock(MultipartFile.class);
+        MultipartFile second = mock(MultipartFile.class);
+        when(first.getContentType()).thenReturn("image/jpeg");
+        when(second.getContentType()).thenReturn("image/png");
+        Review entity = new Review();
+        ReviewResponseModel responseModel = new ReviewResponseModel();
+
+        // Both uploads must be in flight at once for either to finish
+        java.util.concurrent.CountDownLatch bothStarted = new java.util.concurrent.CountDownLatch(2);
+        when(fileStorageService.save(any(MultipartFile.class))).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, java.util.concurrent.TimeUnit.SECONDS));
+            return invocation.getArgument(0) == first ? "file1" : "file2";
+        });
+        when(fileStorageService.urlFor(anyString()))
+                .thenAnswer(invocation -> "/uploads/reviews/" + invocation.getArgument(0) + "/v/0123456789abcdef");
+        when(requestMapper.requestModelToEntity(request)).thenReturn(entity);
+        when(reviewRepository.save(entity)).thenReturn(entity);
+        when(responseMapper.entityToResponseModel(entity)).thenReturn(responseModel);
+
+        // Act
+        ReviewResponseModel result = reviewService.createReview(request, new MultipartFile[]{first, second}, "auth0|client");
+
+        // Assert
+        assertEquals(responseModel, result);
+        assertEquals(2, entity.getPhotos().size());
+        assertEquals("/uploads/reviews/file1/v/0123456789abcdef", entity.getPhotos().get(0).getUrl());
+        assertEquals("image/png", entity.getPhotos().get(1).getImageType());
+        verify(fileStorageService, never()).delete(anyString());
+    }
+
+    @Test
+    void createReview_deletesSavedPhotosWhenAnotherPhotoFails() throws Exception {
+        // Arrange
+        ReviewRequestModel request = new ReviewRequestModel("client1", "appt1", "Jamie", "Great", true, Rating.FIVE);
+        MultipartFile good = mock(MultipartFile.class);
+        MultipartFile bad = mock(MultipartFile.class);
+        when(good.getContentType()).thenReturn("image/jpeg");
+        when(requestMapper.requestModelToEntity(request)).thenReturn(new Review());
+        when(fileStorageService.save(good)).thenReturn("file1");
+        when(fileStorageService.save(bad)).thenThrow(new IOException("GridFS unavailable"));
+
+        // Act
+        RuntimeException thrown = assertThrows(RuntimeException.class,
+                () -> reviewService.createReview(request, new MultipartFile[]{bad, good}, "auth0|client"));
+
+        // Assert
+        assertInstanceOf(IOException.class, thrown.getCause());
+        verify(fileStorageService).delete("file1");
+        verifyNoInteractions(reviewRepository);
+    }
+
+    @Test
+    void createReview_deletesSavedPhotosWhenReviewCannotBeStored() throws Exception {
+        // Arrange
+        ReviewRequestModel request = new ReviewRequestModel("client1", "appt1", "Jamie", "Great", true, Rating.FIVE);
+        MultipartFile photo = mock(MultipartFile.class);
+        Review entity = new Review();
+        when(photo.getContentType()).thenReturn("image/jpeg");
+        when(requestMapper.requestModelToEntity(request)).thenReturn(entity);
+        when(fileStorageService.save(photo)).thenReturn("file1");
+        when(reviewRepository.save(entity)).thenThrow(new IllegalStateException("write failed"));
+
+        // Act & Assert
+        assertThrows(IllegalStateException.class,
+                () -> reviewService.createReview(request, new MultipartFile[]{photo}, "auth0|client"));
+        verify(fileStorageService).delete("file1");
+    }
+
+    @Test
+    void createReviewFromStream_savesStreamedPhotosAndReview() throws IOException {
+        // Arrange
+        String body = part("review", null, "application/json", REVIEW_JSON)
+                + part("photos", "a.jpg", "image/jpeg", "jpeg-bytes")
+                + "--" + BOUNDARY + "--\r\n";
+        Review entity = new Review();
+        ReviewResponseModel responseModel = new ReviewResponseModel();
+
+        when(fileStorageService.saveStream(eq("a.jpg"), eq("image/jpeg"), any(InputStream.class))).thenReturn("file1");
+        when(fileStorageService.urlFor("file1")).thenReturn("/uploads/reviews/file1/v/0123456789abcdef");
+        when(requestMapper.requestModelToEntity(any(ReviewRequestModel.class))).thenReturn(entity);
+        when(reviewRepository.save(entity)).thenReturn(entity);
+        when(responseMapper.entityToResponseModel(entity)).thenReturn(responseModel);
+
+        // Act
+        ReviewResponseModel result = reviewService.createReviewFromStream(stream(body), contentType(), "auth0|client");
+
+        // Assert
+        assertEquals(responseModel, result);
+        ArgumentCaptor<ReviewRequestModel> request = ArgumentCaptor.forClass(ReviewRequestModel.class);
+        verify(requestMapper).requestModelToEntity(request.capture());
+        assertEquals("auth0|client", request.getValue().getClientId());
+        assertFalse(request.getValue().getVisible());
+        assertEquals(1, entity.getPhotos().size());
+        assertEquals("/uploads/reviews/file1/v/0123456789abcdef", entity.getPhotos().get(0).getUrl());
+        assertEquals("auth0|client", entity.getOwnerAuth0Id());
+    }
+
+    @Test
+    void createReviewFromStream_deletesSavedPhotosWhenLaterPhotoFails() throws IOException {
+        // Arrange
+        String body = part("review", null, "application/json", REVIEW_JSON)
+                + part("photos", "a.jpg", "image/jpeg", "first")
+                + part("photos", "b.jpg", "image/jpeg", "second")
+                + "--" + BOUNDARY + "--\r\n";
+
+        when(fileStorageService.saveStream(eq("a.jpg"), anyString(), any(InputStream.class))).thenReturn("file1");
+        when(fileStorageService.saveStream(eq("b.jpg"), anyString(), any(InputStream.class)))
+                .thenThrow(new IllegalArgumentException("File content does not match its declared type image/jpeg"));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.createReviewFromStream(stream(body), contentType(), "auth0|client"));
+        verify(fileStorageService).delete("file1");
+        verify(reviewRepository, never()).save(any());
+    }
+
+    @Test
+    void createReviewFromStream_withoutReviewPart_rejectsAndCleansUp() throws IOException {
+        // Arrange
+        String body = part("photos", "a.jpg", "image/jpeg", "jpeg-bytes")
+                + "--" + BOUNDARY + "--\r\n";
+        when(fileStorageService.saveStream(anyString(), anyString(), any(InputStream.class))).thenReturn("file1");
+
+        // Act & Assert
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> reviewService.createReviewFromStream(stream(body), contentType(), "auth0|client"));
+        assertEquals("Missing review part", exception.getMessage());
+        verify(fileStorageService).delete("file1");
+    }
+
+    @Test
+    void createReviewFromStream_withInvalidJson_rejectsWithIllegalArgument() {
+        // Arrange
+        String body = part("review", null, "application/json", "{not json")
+                + "--" + BOUNDARY + "--\r\n";
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> reviewService.createReviewFromStream(stream(body), contentType(), "auth0|client"));
+        verifyNoInteractions(reviewRepository);
+    }
+
+    private static String part(String name, String filename, String contentType, String content) {
+        String disposition = "form-data; name=\"" + name + "\"" + (filename != null ? "; filename=\"" + filename + "\"" : "");
+        return "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: " + disposition + "\r\n"
+                + "Content-Type: " + contentType + "\r\n\r\n"
+                + content + "\r\n";
+    }
+
+    private static InputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String contentType() {
+        return "multipart/form-data; boundary=" + BOUNDARY;
+    }
 }
@@ -0,0 +1,226 @@
+package org.example.vladtech.utils;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MailDeliveryTest {
+
+    private SmtpStub smtp;
+    private JavaMailSenderImpl sender;
+    private MailDelivery delivery;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        smtp = new SmtpStub();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (delivery != null) {
+            delivery.shutdown();
+        }
+        smtp.close();
+    }
+
+    @Test
+    void submit_ShouldSendManyMessagesPerConnection() throws Exception {
+        // Arrange
+        delivery = delivery(2, 10);
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 30; i++) {
+            results.add(delivery.submit(message("client" + i + "@example.com", "Update " + i)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(30, smtp.subjects.size());
+        assertTrue(smtp.connections.get() <= 2, "opened " + smtp.connections.get() + " connections");
+        MailDelivery.Stats stats = delivery.stats();
+        assertEquals(30, stats.sent());
+        assertEquals(0, stats.failed());
+        assertTrue(stats.messagesPerSecond() > 0);
+    }
+
+    @Test
+    void submit_WhenServerRefusesOneRecipient_ShouldFailOnlyThatMessage() throws Exception {
+        // Arrange
+        delivery = delivery(1, 10);
+
+        // Act
+        CompletableFuture<Void> first = delivery.submit(message("client@example.com", "First"));
+        CompletableFuture<Void> refused = delivery.submit(message("unknown@example.com", "Refused"));
+        CompletableFuture<Void> last = delivery.submit(message("client@example.com", "Last"));
+
+        // Assert
+        first.get(10, TimeUnit.SECONDS);
+        last.get(10, TimeUnit.SECONDS);
+        CompletionException failure = assertThrows(CompletionException.class, refused::join);
+        assertInstanceOf(MailSendException.class, failure.getCause());
+        assertEquals(List.of("First", "Last"), smtp.subjects);
+        assertEquals(1, smtp.connections.get());
+        assertEquals(1, delivery.stats().failed());
+    }
+
+    @Test
+    void submit_WhenServerDropsConnection_ShouldReconnectAndDeliverEverything() throws Exception {
+        // Arrange - the stub hangs up after every message
+        smtp.messagesPerConnection = 1;
+        delivery = delivery(1, 10);
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            results.add(delivery.submit(message("client@example.com", "Update " + i)));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals(List.of("Update 0", "Update 1", "Update 2"), smtp.subjects);
+        assertEquals(3, smtp.connections.get());
+        assertEquals(3, delivery.stats().connects());
+    }
+
+    @Test
+    void send_WhenServerIsDown_ShouldThrowMailSendException() throws Exception {
+        // Arrange
+        delivery = delivery(1, 10);
+        MimeMessage message = message("client@example.com", "Lost");
+        smtp.close();
+
+        // Act & Assert
+        assertThrows(MailSendException.class, () -> delivery.send(message));
+        assertEquals(1, delivery.stats().failed());
+    }
+
+    private MailDelivery delivery(int poolSize, int batchSize) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost("localhost");
+        mailSender.setPort(smtp.port());
+        mailSender.getJavaMailProperties().put("mail.smtp.localhost", "localhost");
+        mailSender.getJavaMailProperties().put("mail.smtp.connectiontimeout", "5000");
+        mailSender.getJavaMailProperties().put("mail.smtp.timeout", "5000");
+        this.sender = mailSender;
+        return new MailDelivery(mailSender, poolSize, batchSize, 100, 30_000);
+    }
+
+    private MimeMessage message(String to, String subject) throws MessagingException {
+        MimeMessage message = sender.createMimeMessage();
+        message.setFrom("noreply@vladtech.com");
+        message.setRecipients(MimeMessage.RecipientType.TO, to);
+        message.setSubject(subject);
+        message.setText("Your project was updated.");
+        return message;
+    }
+
+    /**
+     * Just enough SMTP for Jakarta Mail: accepts every recipient except unknown@..., records the
+     * subject of each message and can hang up after a set number of messages per connection.
+     */
+    private static class SmtpStub implements AutoCloseable {
+
+        final AtomicInteger connections = new AtomicInteger();
+        final List<String> subjects = new CopyOnWriteArrayList<>();
+        volatile int messagesPerConnection = Integer.MAX_VALUE;
+
+        private final ServerSocket serverSocket;
+
+        SmtpStub() throws IOException {
+            serverSocket = new ServerSocket(0);
+            Thread acceptor = new Thread(this::accept, "smtp-stub");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        int port() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void accept() {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    Thread session = new Thread(() -> converse(socket), "smtp-stub-session");
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void converse(Socket socket) {
+            try (socket) {
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                OutputStream out = socket.getOutputStream();
+                reply(out, "220 localhost ESMTP stub");
+                int accepted = 0;
+                String line;
+                while ((line = in.readLine()) != null) {
+                    String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+                    switch (command) {
+                        case "EHLO", "HELO" -> reply(out, "250 localhost");
+                        case "MAIL", "RSET", "NOOP" -> reply(out, "250 OK");
+                        case "RCPT" -> reply(out, line.contains("unknown@") ? "550 5.1.1 No such user" : "250 OK");
+                        case "DATA" -> {
+                            reply(out, "354 End data with <CR><LF>.<CR><LF>");
+                            String subject = null;
+                            while ((line = in.readLine()) != null && !line.equals(".")) {
+                                if (subject == null && line.startsWith("Subject: ")) {
+                                    subject = line.substring("Subject: ".length());
+                                }
+                            }
+                            subjects.add(subject);
+                            reply(out, "250 OK queued");
+                            if (++accepted >= messagesPerConnection) {
+                                return;
+                            }
+                        }
+                        case "QUIT" -> {
+                            reply(out, "221 Bye");
+                            return;
+                        }
+                        default -> reply(out, "500 Unknown command");
+                    }
+                }
+            } catch (IOException e) {
+                // Client went away
+            }
+        }
+
+        private static void reply(OutputStream out, String line) throws IOException {
+            out.write((line + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package org.example.vladtech.utils;
+
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonDocument;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SlowQueryLogTest {
+
+    @Mock
+    private ObjectProvider<MongoTemplate> mongoTemplate;
+
+    private SlowQueryLog slowQueryLog(int capacity) {
+        return new SlowQueryLog(mongoTemplate, true, 100, false, capacity);
+    }
+
+    @Test
+    void slowFind_ShouldBeRecordedWithValuesMasked() {
+        // Arrange
+        SlowQueryLog slowQueryLog = slowQueryLog(10);
+        BsonDocument find = BsonDocument.parse(
+                "{find: 'reviews', filter: {ownerAuth0Id: 'auth0|42'}, $db: 'vladtechdb', lsid: {id: 1}}");
+
+        // Act
+        run(slowQueryLog, 1, "find", find, 250);
+
+        // Assert
+        List<SlowQueryLog.SlowQuery> recent = slowQueryLog.recent();
+        assertEquals(1, recent.size());
+        assertEquals("reviews", recent.get(0).collection());
+        assertEquals(250, recent.get(0).durationMs());
+        assertEquals(BsonDocument.parse("{find: 'reviews', filter: {ownerAuth0Id: '?'}}"),
+                BsonDocument.parse(recent.get(0).command()));
+        verifyNoInteractions(mongoTemplate);
+    }
+
+    @Test
+    void fastOrUnexplainableCommands_ShouldNotBeRecorded() {
+        // Arrange
+        SlowQueryLog slowQueryLog = slowQueryLog(10);
+
+        // Act
+        run(slowQueryLog, 1, "find", BsonDocument.parse("{find: 'projects', filter: {}}"), 20);
+        run(slowQueryLog, 2, "insert", BsonDocument.parse("{insert: 'projects'}"), 500);
+
+        // Assert
+        assertTrue(slowQueryLog.recent().isEmpty());
+    }
+
+    @Test
+    void recent_WhenFull_ShouldKeepNewestFirst() {
+        // Arrange
+        SlowQueryLog slowQueryLog = slowQueryLog(2);
+
+        // Act
+        for (int i = 1; i <= 3; i++) {
+            run(slowQueryLog, i, "find", BsonDocument.parse("{find: 'c" + i + "', filter: {}}"), 100 + i);
+        }
+
+        // Assert
+        List<SlowQueryLog.SlowQuery> recent = slowQueryLog.recent();
+        assertEquals(List.of("c3", "c2"), recent.stream().map(SlowQueryLog.SlowQuery::collection).toList());
+        assertEquals(3, slowQueryLog.recordedCount());
+    }
+
+    @Test
+    void summarizePlan_ShouldReadIndexScanAndCounts() {
+        // Arrange
+        Document explain = Document.parse("{queryPlanner: {winningPlan: {stage: 'FETCH', inputStage: {stage: 'IXSCAN'}}},"
+                + " executionStats: {nReturned: 3, totalKeysExamined: 3, totalDocsExamined: 3}}");
+
+        // Act
+        SlowQueryLog.PlanSummary plan = SlowQueryLog.summarizePlan(explain);
+
+        // Assert
+        assertEquals(List.of("FETCH", "IXSCAN"), plan.stages());
+        assertFalse(plan.collectionScan());
+        assertEquals(3L, plan.docsExamined());
+        assertNull(plan.error());
+    }
+
+    @Test
+    void summarizePlan_ShouldFindCollectionScanInsideAggregation() {
+        // Arrange
+        Document explain = Document.parse("{stages: [{$cursor: {queryPlanner: {winningPlan: {stage: 'COLLSCAN'}},"
+                + " executionStats: {nReturned: 1, totalKeysExamined: 0, totalDocsExamined: 5000}}}]}");
+
+        // Act
+        SlowQueryLog.PlanSummary plan = SlowQueryLog.summarizePlan(explain);
+
+        // Assert
+        assertTrue(plan.collectionScan());
+        assertEquals(5000L, plan.docsExamined());
+        assertEquals(0L, plan.keysExamined());
+    }
+
+    private static void run(SlowQueryLog slowQueryLog, int requestId, String commandName, BsonDocument command,
+                            long elapsedMs) {
+        CommandStartedEvent started = mock(CommandStartedEvent.class);
+        when(started.getCommandName()).thenReturn(commandName);
+        if (!commandName.equals("insert")) {
+            when(started.getRequestId()).thenReturn(requestId);
+            when(started.getDatabaseName()).thenReturn("vladtechdb");
+            when(started.getCommand()).thenReturn(command);
+        }
+        CommandSucceededEvent succeeded = mock(CommandSucceededEvent.class);
+        when(succeeded.getRequestId()).thenReturn(requestId);
+        if (!commandName.equals("insert")) {
+            when(succeeded.getElapsedTime(TimeUnit.MILLISECONDS)).thenReturn(elapsedMs);
+        }
+
+        slowQueryLog.commandStarted(started);
+        slowQueryLog.commandSucceeded(succeeded);
+    }
+}